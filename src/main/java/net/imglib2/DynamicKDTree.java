@@ -0,0 +1,502 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A spatial index that supports inserting and removing points, for use with
+ * {@link net.imglib2.neighborsearch.NearestNeighborSearchOnDynamicKDTree},
+ * {@link net.imglib2.neighborsearch.KNearestNeighborSearchOnDynamicKDTree},
+ * and {@link net.imglib2.neighborsearch.RadiusNeighborSearchOnDynamicKDTree}.
+ * <p>
+ * The points are stored in a logarithmic forest of static {@link FlatKDTree}s:
+ * tree {@code i} holds at most {@code 2^i} points. New points are appended to
+ * an unindexed buffer of at most {@code B} points (see
+ * {@link #DynamicKDTree(int, int)}), which searches scan linearly. When the
+ * buffer is full, it is merged with trees {@code 0, ..., j-1} into tree
+ * {@code j}, where {@code j} is the first empty tree that is large enough,
+ * like incrementing a binary counter. Removed points are only marked as
+ * deleted, until more than half of the points of their tree are deleted and
+ * the tree is rebuilt without them.
+ * <p>
+ * Inserting a point costs O(1), plus its share of the rebuilds: each point
+ * takes part in O(log(n/B)) rebuilds of O(log n) per point, so insertion
+ * costs amortized O(log n log(n/B)) time. Building a static kd-tree of m
+ * points takes O(m log m) time, so no forest of rebuilt static trees gets
+ * below that. A larger buffer makes insertion cheaper and searches more
+ * expensive. With {@code B = 1}, this is the plain logarithmic method with
+ * amortized O(log^2 n) insertion.
+ * <p>
+ * Every point is identified by the {@code int} id returned by
+ * {@link #insert(RealLocalizable, Object)}. Ids of removed points may be
+ * reused by later insertions.
+ * <p>
+ * The index must not be modified while searches on it are in progress, and
+ * search results are invalid after modification.
+ *
+ * @param <T>
+ *            type of values stored in the tree.
+ *
+ * @author agent
+ */
+public class DynamicKDTree< T > implements EuclideanSpace
+{
+	/**
+	 * the number of dimensions.
+	 */
+	protected final int n;
+
+	/**
+	 * coordinates of point {@code id} are at {@code coordinates[id*n + d]}.
+	 */
+	protected double[] coordinates;
+
+	/**
+	 * value of each point, indexed by id.
+	 */
+	protected final ArrayList< T > values;
+
+	/**
+	 * the tree each point is stored in, indexed by id. {@code -1} for ids
+	 * that are not in use, {@link #BUFFERED} for points in the buffer.
+	 */
+	protected int[] treeOf;
+
+	protected static final int BUFFERED = -2;
+
+	/**
+	 * ids of the points that are not in a tree yet.
+	 */
+	protected final int[] buffer;
+
+	protected int bufferLength;
+
+	/**
+	 * whether each point is deleted (but still in its tree), indexed by id.
+	 */
+	protected boolean[] deleted;
+
+	/**
+	 * ids that are not in use.
+	 */
+	protected int[] freeIds;
+
+	protected int numFreeIds;
+
+	/**
+	 * the trees of the forest. {@code trees[i]} is {@code null} or has at most
+	 * {@code 2^i} points.
+	 */
+	protected FlatKDTree< ? >[] trees;
+
+	/**
+	 * {@code treeIds[i][j]} is the id of the point with
+	 * {@link FlatKDTree#getIndex(int) index} {@code j} in {@code trees[i]}.
+	 */
+	protected int[][] treeIds;
+
+	/**
+	 * the number of deleted points in each tree.
+	 */
+	protected int[] numDeleted;
+
+	/**
+	 * the number of points (not counting deleted ones).
+	 */
+	protected int size;
+
+	/**
+	 * Create an empty {@link DynamicKDTree} with a buffer of 64 points.
+	 *
+	 * @param n
+	 *            number of dimensions
+	 */
+	public DynamicKDTree( final int n )
+	{
+		this( n, 64 );
+	}
+
+	/**
+	 * Create an empty {@link DynamicKDTree}.
+	 *
+	 * @param n
+	 *            number of dimensions
+	 * @param bufferSize
+	 *            the maximum number of inserted points that are kept
+	 *            unindexed, before they are built into a tree.
+	 */
+	public DynamicKDTree( final int n, final int bufferSize )
+	{
+		if ( bufferSize < 1 )
+			throw new IllegalArgumentException( "bufferSize must be positive" );
+		this.n = n;
+		this.buffer = new int[ bufferSize ];
+		this.coordinates = new double[ 16 * n ];
+		this.values = new ArrayList< T >();
+		this.treeOf = new int[ 16 ];
+		this.deleted = new boolean[ 16 ];
+		this.freeIds = new int[ 16 ];
+		this.trees = new FlatKDTree< ? >[ 32 ];
+		this.treeIds = new int[ 32 ][];
+		this.numDeleted = new int[ 32 ];
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * @return the number of points in the index.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Insert a point.
+	 *
+	 * @param position
+	 *            position of the point
+	 * @param value
+	 *            value of the point
+	 * @return the id of the new point
+	 */
+	public int insert( final RealLocalizable position, final T value )
+	{
+		final int id = allocateId();
+		for ( int d = 0; d < n; ++d )
+			coordinates[ id * n + d ] = position.getDoublePosition( d );
+		values.set( id, value );
+		deleted[ id ] = false;
+		treeOf[ id ] = BUFFERED;
+		buffer[ bufferLength++ ] = id;
+		++size;
+		if ( bufferLength == buffer.length )
+			flushBuffer();
+		return id;
+	}
+
+	/**
+	 * Merge the buffer and trees {@code 0, ..., j-1} into the first empty tree
+	 * {@code j} that can hold them.
+	 */
+	private void flushBuffer()
+	{
+		int j = 0;
+		int count = bufferLength;
+		while ( trees[ j ] != null || ( 1l << j ) < count )
+		{
+			if ( trees[ j ] != null )
+				count += trees[ j ].numPoints();
+			++j;
+		}
+		final int[] ids = new int[ count ];
+		System.arraycopy( buffer, 0, ids, 0, bufferLength );
+		int numIds = bufferLength;
+		bufferLength = 0;
+		for ( int i = 0; i < j; ++i )
+		{
+			if ( trees[ i ] != null )
+			{
+				numIds = collectLiveIds( i, ids, numIds );
+				clearTree( i );
+			}
+		}
+		buildTree( j, Arrays.copyOf( ids, numIds ) );
+	}
+
+	/**
+	 * Remove the point with the given id.
+	 *
+	 * @return {@code false} if there is no point with that id.
+	 */
+	public boolean remove( final int id )
+	{
+		if ( !contains( id ) )
+			return false;
+		values.set( id, null );
+		--size;
+
+		final int tree = treeOf[ id ];
+		if ( tree == BUFFERED )
+		{
+			int i = 0;
+			while ( buffer[ i ] != id )
+				++i;
+			buffer[ i ] = buffer[ --bufferLength ];
+			freeId( id );
+			return true;
+		}
+
+		deleted[ id ] = true;
+		if ( 2 * ++numDeleted[ tree ] > trees[ tree ].numPoints() )
+		{
+			final int[] ids = new int[ trees[ tree ].numPoints() - numDeleted[ tree ] ];
+			collectLiveIds( tree, ids, 0 );
+			clearTree( tree );
+			if ( ids.length > 0 )
+				buildTree( tree, ids );
+		}
+		return true;
+	}
+
+	/**
+	 * @return whether there is a point with the given id.
+	 */
+	public boolean contains( final int id )
+	{
+		return id >= 0 && id < values.size() && treeOf[ id ] != -1 && !deleted[ id ];
+	}
+
+	/**
+	 * @return the value of the point with the given id.
+	 */
+	public T getValue( final int id )
+	{
+		return values.get( id );
+	}
+
+	/**
+	 * @return coordinate {@code d} of the point with the given id.
+	 */
+	public double getDoublePosition( final int id, final int d )
+	{
+		return coordinates[ id * n + d ];
+	}
+
+	/**
+	 * Compute the squared distance from {@code p} to the point with the given
+	 * id.
+	 */
+	public double squDistance( final int id, final double[] p )
+	{
+		final int o = id * n;
+		double sum = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double diff = coordinates[ o + d ] - p[ d ];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * @return the number of points in the buffer, that are not in any tree.
+	 */
+	public int numBuffered()
+	{
+		return bufferLength;
+	}
+
+	/**
+	 * @return the id of the {@code i}th point in the buffer.
+	 */
+	public int getBufferedId( final int i )
+	{
+		return buffer[ i ];
+	}
+
+	/**
+	 * @return the number of trees in the forest. Some of them may be empty.
+	 */
+	public int numTrees()
+	{
+		return trees.length;
+	}
+
+	/**
+	 * @return tree {@code i} of the forest, or {@code null} if it is empty.
+	 *         Its {@link FlatKDTree#getIndex(int) indices} map to ids by
+	 *         {@link #getId(int, int)}. It may contain deleted points.
+	 */
+	public FlatKDTree< ? > getTree( final int i )
+	{
+		return trees[ i ];
+	}
+
+	/**
+	 * @return the id of {@code node} of tree {@code i}, or {@code -1} if the
+	 *         point has been deleted.
+	 */
+	public int getId( final int i, final int node )
+	{
+		final int id = treeIds[ i ][ trees[ i ].getIndex( node ) ];
+		return deleted[ id ] ? -1 : id;
+	}
+
+	/**
+	 * Create an {@link Element} that refers to the point with the given id.
+	 */
+	public Element element( final int id )
+	{
+		final Element element = new Element();
+		element.setId( id );
+		return element;
+	}
+
+	/**
+	 * A reference to a point of the {@link DynamicKDTree}. It provides the
+	 * point's coordinates via the {@link RealLocalizable} interface and its
+	 * value via {@link Sampler#get()}. The point it refers to can be changed,
+	 * so an {@link Element} can be reused to avoid allocation.
+	 */
+	public class Element implements RealLocalizable, Sampler< T >
+	{
+		private int id;
+
+		public void setId( final int id )
+		{
+			this.id = id;
+		}
+
+		public int getId()
+		{
+			return id;
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = ( float ) coordinates[ id * n + d ];
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( coordinates, id * n, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) coordinates[ id * n + d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return coordinates[ id * n + d ];
+		}
+
+		@Override
+		public T get()
+		{
+			return values.get( id );
+		}
+
+		@Override
+		public Element copy()
+		{
+			return element( id );
+		}
+	}
+
+	private int allocateId()
+	{
+		if ( numFreeIds > 0 )
+			return freeIds[ --numFreeIds ];
+
+		final int id = values.size();
+		values.add( null );
+		if ( id == treeOf.length )
+		{
+			final int capacity = 2 * id;
+			coordinates = Arrays.copyOf( coordinates, capacity * n );
+			treeOf = Arrays.copyOf( treeOf, capacity );
+			deleted = Arrays.copyOf( deleted, capacity );
+		}
+		return id;
+	}
+
+	private void freeId( final int id )
+	{
+		treeOf[ id ] = -1;
+		deleted[ id ] = false;
+		if ( numFreeIds == freeIds.length )
+			freeIds = Arrays.copyOf( freeIds, 2 * numFreeIds );
+		freeIds[ numFreeIds++ ] = id;
+	}
+
+	/**
+	 * Append the ids of the live points of tree {@code i} to {@code ids},
+	 * starting at {@code ids[numIds]}, and free the ids of its deleted points.
+	 *
+	 * @return the number of ids in {@code ids}
+	 */
+	private int collectLiveIds( final int i, final int[] ids, int numIds )
+	{
+		for ( final int id : treeIds[ i ] )
+		{
+			if ( deleted[ id ] )
+				freeId( id );
+			else
+				ids[ numIds++ ] = id;
+		}
+		return numIds;
+	}
+
+	private void clearTree( final int i )
+	{
+		trees[ i ] = null;
+		treeIds[ i ] = null;
+		numDeleted[ i ] = 0;
+	}
+
+	private void buildTree( final int i, final int[] ids )
+	{
+		final double[] treeCoordinates = new double[ ids.length * n ];
+		for ( int j = 0; j < ids.length; ++j )
+		{
+			System.arraycopy( coordinates, ids[ j ] * n, treeCoordinates, j * n, n );
+			treeOf[ ids[ j ] ] = i;
+		}
+		trees[ i ] = new FlatKDTree< Object >( null, treeCoordinates, n );
+		treeIds[ i ] = ids;
+		numDeleted[ i ] = 0;
+	}
+}
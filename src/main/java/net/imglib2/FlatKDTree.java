@@ -0,0 +1,771 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A KDTree that stores its nodes in flat primitive arrays instead of
+ * {@link KDTreeNode} objects.
+ * <p>
+ * Nodes are stored in implicit heap order: the root is node {@code 0}, and the
+ * children of node {@code i} are nodes {@code 2i+1} (left) and {@code 2i+2}
+ * (right). The tree is left-balanced (complete), so the nodes occupy indices
+ * {@code 0, ..., size()-1} without gaps. Coordinates of all nodes are stored
+ * in a single {@code double[]} (node {@code i} at
+ * {@code [i*n, i*n+n)}), split dimensions in a {@code byte[]}, and the index
+ * of the value of each node (into the list of values the tree was built from)
+ * in an {@code int[]}.
+ * <p>
+ * Each node splits along the dimension in which the points of its subtree
+ * have the largest extent. All nodes {@code x} in the left subtree of node
+ * {@code i} have {@code x[split(i)] <= i[split(i)]}, all nodes in the right
+ * subtree have {@code x[split(i)] >= i[split(i)]}.
+ * <p>
+ * Use with {@link net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree},
+ * {@link net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree}, and
+ * {@link net.imglib2.neighborsearch.RadiusNeighborSearchOnFlatKDTree}.
+ *
+ * @param <T>
+ *            type of values stored in the tree.
+ *
+ * @author agent
+ */
+public class FlatKDTree< T > implements EuclideanSpace, IterableRealInterval< T >
+{
+	/**
+	 * the number of dimensions.
+	 */
+	protected final int n;
+
+	/**
+	 * the number of nodes in the tree.
+	 */
+	protected final int size;
+
+	/**
+	 * coordinates of node {@code i} are at {@code positions[i*n + d]}.
+	 */
+	protected final double[] positions;
+
+	/**
+	 * split dimension of each node.
+	 */
+	protected final byte[] splitDimensions;
+
+	/**
+	 * index into {@link #values} of the value of each node.
+	 */
+	protected final int[] indices;
+
+	/**
+	 * the values, in the order the tree was built from.
+	 */
+	protected final List< T > values;
+
+	/**
+	 * minimum of each dimension.
+	 */
+	protected final double[] min;
+
+	/**
+	 * maximum of each dimension.
+	 */
+	protected final double[] max;
+
+	/**
+	 * Construct a {@link FlatKDTree} from the elements in the given list.
+	 * <p>
+	 * Note that the constructor can be called with the same list for both
+	 * {@code values == positions} if {@code T extends RealLocalizable}.
+	 * Unlike {@link KDTree}, this does not reorder the lists. The tree keeps a
+	 * reference to {@code values}, which must not be modified afterwards.
+	 *
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 */
+	public < L extends RealLocalizable > FlatKDTree( final List< T > values, final List< L > positions )
+	{
+		this( values, flatten( positions ), positions.get( 0 ).numDimensions() );
+	}
+
+	/**
+	 * Construct a {@link FlatKDTree} from flattened coordinates. The
+	 * coordinates of point {@code i} (with value {@code values.get(i)}) are
+	 * {@code coordinates[i*n], ..., coordinates[i*n + n-1]}. The
+	 * {@code coordinates} array is not modified.
+	 *
+	 * @param values
+	 *            a list of values. May be {@code null}, in which case only
+	 *            {@link #getIndex(int) indices} are available.
+	 * @param coordinates
+	 *            flattened coordinates of the points
+	 * @param n
+	 *            number of dimensions
+	 */
+	public FlatKDTree( final List< T > values, final double[] coordinates, final int n )
+	{
+		this( values, coordinates, n, 0, null );
+	}
+
+	/**
+	 * Construct a {@link FlatKDTree} from flattened coordinates, building
+	 * subtrees in parallel on the {@link ForkJoinPool#commonPool() common
+	 * pool}. The resulting tree is identical to the one constructed by
+	 * {@link #FlatKDTree(List, double[], int)}.
+	 *
+	 * @param values
+	 *            a list of values. May be {@code null}, in which case only
+	 *            {@link #getIndex(int) indices} are available.
+	 * @param coordinates
+	 *            flattened coordinates of the points
+	 * @param n
+	 *            number of dimensions
+	 * @param parallelDepth
+	 *            the left and right subtrees of nodes with depth less than
+	 *            {@code parallelDepth} are built concurrently (the root has
+	 *            depth 0), giving up to {@code 2^parallelDepth} tasks. For
+	 *            {@code parallelDepth <= 0} the tree is built on the calling
+	 *            thread.
+	 */
+	public FlatKDTree( final List< T > values, final double[] coordinates, final int n, final int parallelDepth )
+	{
+		this( values, coordinates, n, parallelDepth, ForkJoinPool.commonPool() );
+	}
+
+	/**
+	 * Construct a {@link FlatKDTree} from flattened coordinates, building
+	 * subtrees in parallel on the given {@link ForkJoinPool}. The resulting
+	 * tree is identical to the one constructed by
+	 * {@link #FlatKDTree(List, double[], int)}.
+	 *
+	 * @param values
+	 *            a list of values. May be {@code null}, in which case only
+	 *            {@link #getIndex(int) indices} are available.
+	 * @param coordinates
+	 *            flattened coordinates of the points
+	 * @param n
+	 *            number of dimensions
+	 * @param parallelDepth
+	 *            the left and right subtrees of nodes with depth less than
+	 *            {@code parallelDepth} are built concurrently (the root has
+	 *            depth 0), giving up to {@code 2^parallelDepth} tasks. For
+	 *            {@code parallelDepth <= 0} the tree is built on the calling
+	 *            thread.
+	 * @param pool
+	 *            the pool to build on. May be {@code null} if
+	 *            {@code parallelDepth <= 0}.
+	 */
+	public FlatKDTree( final List< T > values, final double[] coordinates, final int n, final int parallelDepth, final ForkJoinPool pool )
+	{
+		if ( n < 1 || n > Byte.MAX_VALUE )
+			throw new IllegalArgumentException( "number of dimensions must be in [1, " + Byte.MAX_VALUE + "]" );
+		if ( coordinates.length % n != 0 )
+			throw new IllegalArgumentException( "coordinates.length is not a multiple of n" );
+		if ( values != null && values.size() != coordinates.length / n )
+			throw new IllegalArgumentException( "number of values does not match number of points" );
+
+		this.n = n;
+		this.size = coordinates.length / n;
+		this.values = values;
+		this.positions = new double[ coordinates.length ];
+		this.splitDimensions = new byte[ size ];
+		this.indices = new int[ size ];
+		this.min = new double[ n ];
+		this.max = new double[ n ];
+
+		final int[] order = new int[ size ];
+		for ( int i = 0; i < size; ++i )
+			order[ i ] = i;
+		computeBounds( coordinates, n, order, 0, size, min, max );
+		if ( parallelDepth > 0 && size > MIN_PARALLEL_SUBTREE_SIZE )
+			pool.invoke( new BuildTask( coordinates, order, 0, 0, size, parallelDepth ) );
+		else
+			build( coordinates, order, 0, 0, size );
+	}
+
+	/**
+	 * Subtrees with fewer nodes are never built in parallel.
+	 */
+	private static final int MIN_PARALLEL_SUBTREE_SIZE = 1024;
+
+	private static < L extends RealLocalizable > double[] flatten( final List< L > positions )
+	{
+		final int n = positions.get( 0 ).numDimensions();
+		final double[] coordinates = new double[ positions.size() * n ];
+		int i = 0;
+		for ( final L position : positions )
+		{
+			if ( position.numDimensions() != n )
+				throw new IllegalArgumentException( "positions have different number of dimensions" );
+			for ( int d = 0; d < n; ++d )
+				coordinates[ i++ ] = position.getDoublePosition( d );
+		}
+		return coordinates;
+	}
+
+	/**
+	 * Recursively build the subtree rooted at {@code node} from the points
+	 * {@code order[from], ..., order[to-1]}.
+	 */
+	protected void build( final double[] coordinates, final int[] order, final int node, final int from, final int to )
+	{
+		if ( to <= from )
+			return;
+		final int k = partition( coordinates, order, node, from, to );
+		build( coordinates, order, leftChild( node ), from, k );
+		build( coordinates, order, rightChild( node ), k + 1, to );
+	}
+
+	/**
+	 * Builds the subtree rooted at {@code node}, forking the left and right
+	 * subtrees for another {@code parallelDepth} levels. Because subtrees work on
+	 * disjoint ranges of {@code order} and write disjoint nodes, the result is
+	 * the same as for {@link FlatKDTree#build(double[], int[], int, int, int)}.
+	 */
+	private class BuildTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final double[] coordinates;
+
+		private final int[] order;
+
+		private final int node;
+
+		private final int from;
+
+		private final int to;
+
+		private final int parallelDepth;
+
+		BuildTask( final double[] coordinates, final int[] order, final int node, final int from, final int to, final int parallelDepth )
+		{
+			this.coordinates = coordinates;
+			this.order = order;
+			this.node = node;
+			this.from = from;
+			this.to = to;
+			this.parallelDepth = parallelDepth;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ( parallelDepth <= 0 || to - from <= MIN_PARALLEL_SUBTREE_SIZE )
+			{
+				build( coordinates, order, node, from, to );
+				return;
+			}
+			final int k = partition( coordinates, order, node, from, to );
+			invokeAll(
+					new BuildTask( coordinates, order, leftChild( node ), from, k, parallelDepth - 1 ),
+					new BuildTask( coordinates, order, rightChild( node ), k + 1, to, parallelDepth - 1 ) );
+		}
+	}
+
+	/**
+	 * Select the point for {@code node} from the points
+	 * {@code order[from], ..., order[to-1]}: Find the dimension of largest
+	 * extent, and partition the points around the element that makes the
+	 * left subtree of {@code node} complete. Store the selected point in
+	 * {@code node}.
+	 *
+	 * @return the index into {@code order} of the selected point. Points
+	 *         before it go to the left subtree, points after it to the right
+	 *         subtree.
+	 */
+	protected int partition( final double[] coordinates, final int[] order, final int node, final int from, final int to )
+	{
+		final double[] lo = new double[ n ];
+		final double[] hi = new double[ n ];
+		computeBounds( coordinates, n, order, from, to, lo, hi );
+		int splitDim = 0;
+		for ( int d = 1; d < n; ++d )
+			if ( hi[ d ] - lo[ d ] > hi[ splitDim ] - lo[ splitDim ] )
+				splitDim = d;
+
+		final int k = from + leftSubtreeSize( to - from );
+		kthElement( coordinates, n, splitDim, order, from, to - 1, k );
+
+		final int p = order[ k ];
+		System.arraycopy( coordinates, p * n, positions, node * n, n );
+		splitDimensions[ node ] = ( byte ) splitDim;
+		indices[ node ] = p;
+		return k;
+	}
+
+	/**
+	 * Number of nodes in the left subtree of a left-balanced tree with
+	 * {@code m} nodes.
+	 */
+	static int leftSubtreeSize( final int m )
+	{
+		if ( m <= 1 )
+			return 0;
+		// height of the tree, i.e., index of the lowest level
+		final int h = 31 - Integer.numberOfLeadingZeros( m );
+		final int lastLevelCapacity = 1 << ( h - 1 ); // in the left subtree
+		final int lastLevelSize = m - ( ( 1 << h ) - 1 );
+		return lastLevelCapacity - 1 + Math.min( lastLevelSize, lastLevelCapacity );
+	}
+
+	private static void computeBounds( final double[] coordinates, final int n, final int[] order, final int from, final int to, final double[] lo, final double[] hi )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			lo[ d ] = Double.POSITIVE_INFINITY;
+			hi[ d ] = Double.NEGATIVE_INFINITY;
+		}
+		for ( int i = from; i < to; ++i )
+		{
+			final int o = order[ i ] * n;
+			for ( int d = 0; d < n; ++d )
+			{
+				final double x = coordinates[ o + d ];
+				if ( x < lo[ d ] )
+					lo[ d ] = x;
+				if ( x > hi[ d ] )
+					hi[ d ] = x;
+			}
+		}
+	}
+
+	/**
+	 * Partition {@code order[i], ..., order[j]} such that the point with the
+	 * k-th smallest coordinate in dimension {@code d} is at position
+	 * {@code k}, points before it have smaller or equal coordinates, and
+	 * points after it have larger or equal coordinates.
+	 */
+	private static void kthElement( final double[] coordinates, final int n, final int d, final int[] order, int i, int j, final int k )
+	{
+		while ( j > i )
+		{
+			// median of three pivot
+			final double a = coord( coordinates, n, d, order, i );
+			final double b = coord( coordinates, n, d, order, ( i + j ) >>> 1 );
+			final double c = coord( coordinates, n, d, order, j );
+			final double pivot = a < b
+					? ( b < c ? b : ( a < c ? c : a ) )
+					: ( a < c ? a : ( b < c ? c : b ) );
+
+			int l = i;
+			int r = j;
+			while ( l <= r )
+			{
+				while ( coord( coordinates, n, d, order, l ) < pivot )
+					++l;
+				while ( coord( coordinates, n, d, order, r ) > pivot )
+					--r;
+				if ( l <= r )
+					swap( order, l++, r-- );
+			}
+
+			if ( k <= r )
+				j = r;
+			else if ( k >= l )
+				i = l;
+			else
+				return;
+		}
+	}
+
+	private static double coord( final double[] coordinates, final int n, final int d, final int[] order, final int i )
+	{
+		return coordinates[ order[ i ] * n + d ];
+	}
+
+	private static void swap( final int[] order, final int i, final int j )
+	{
+		final int tmp = order[ i ];
+		order[ i ] = order[ j ];
+		order[ j ] = tmp;
+	}
+
+	/**
+	 * @return index of the left child of {@code node}. The child exists if the
+	 *         index is less than {@link #size()}.
+	 */
+	public static int leftChild( final int node )
+	{
+		return 2 * node + 1;
+	}
+
+	/**
+	 * @return index of the right child of {@code node}. The child exists if
+	 *         the index is less than {@link #size()}.
+	 */
+	public static int rightChild( final int node )
+	{
+		return 2 * node + 2;
+	}
+
+	/**
+	 * @return index of the parent of {@code node}.
+	 */
+	public static int parent( final int node )
+	{
+		return ( node - 1 ) / 2;
+	}
+
+	/**
+	 * @return the number of nodes, as an {@code int}.
+	 */
+	public int numPoints()
+	{
+		return size;
+	}
+
+	/**
+	 * Get the flattened coordinates of all nodes. The coordinates of node
+	 * {@code i} are at {@code [i*n, i*n+n)}. The array must not be modified.
+	 */
+	public double[] getPositions()
+	{
+		return positions;
+	}
+
+	/**
+	 * Get the values the tree was built from, in their original order.
+	 * {@link #getIndex(int)} and the indices returned by batch searches refer
+	 * to this list. May be {@code null} if the tree was built from
+	 * coordinates only.
+	 */
+	public List< T > getValues()
+	{
+		return values;
+	}
+
+	/**
+	 * @return the dimension along which {@code node} divides the space.
+	 */
+	public int getSplitDimension( final int node )
+	{
+		return splitDimensions[ node ];
+	}
+
+	/**
+	 * @return the position along {@link #getSplitDimension(int)} where
+	 *         {@code node} divides the space.
+	 */
+	public double getSplitCoordinate( final int node )
+	{
+		return positions[ node * n + splitDimensions[ node ] ];
+	}
+
+	/**
+	 * @return coordinate of {@code node} in dimension {@code d}.
+	 */
+	public double getDoublePosition( final int node, final int d )
+	{
+		return positions[ node * n + d ];
+	}
+
+	/**
+	 * @return the index (into the list of values, respectively the points
+	 *         the tree was built from) of the value of {@code node}.
+	 */
+	public int getIndex( final int node )
+	{
+		return indices[ node ];
+	}
+
+	/**
+	 * @return the value of {@code node}.
+	 */
+	public T getValue( final int node )
+	{
+		return values.get( indices[ node ] );
+	}
+
+	/**
+	 * Compute the squared distance from {@code p} to {@code node}.
+	 */
+	public double squDistance( final int node, final double[] p )
+	{
+		final int o = node * n;
+		double sum = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double diff = positions[ o + d ] - p[ d ];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Compute the squared distance from {@code p} to the bounding box of the
+	 * tree. This is a lower bound for the squared distance from {@code p} to
+	 * any node.
+	 */
+	public double squDistanceToBounds( final double[] p )
+	{
+		double sum = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double diff = p[ d ] < min[ d ] ? min[ d ] - p[ d ] : ( p[ d ] > max[ d ] ? p[ d ] - max[ d ] : 0 );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Create a {@link Node} that refers to the given {@code node} index.
+	 */
+	public Node node( final int node )
+	{
+		final Node ref = new Node();
+		ref.setNodeIndex( node );
+		return ref;
+	}
+
+	/**
+	 * A reference to a node of the {@link FlatKDTree}. It provides the node's
+	 * coordinates via the {@link RealLocalizable} interface and its value via
+	 * {@link Sampler#get()}. The node it refers to can be changed, so a
+	 * {@link Node} can be reused to avoid allocation.
+	 */
+	public class Node implements RealLocalizable, Sampler< T >
+	{
+		private int nodeIndex;
+
+		private int offset;
+
+		public void setNodeIndex( final int nodeIndex )
+		{
+			this.nodeIndex = nodeIndex;
+			this.offset = nodeIndex * n;
+		}
+
+		public int getNodeIndex()
+		{
+			return nodeIndex;
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = ( float ) positions[ offset + d ];
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( positions, offset, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) positions[ offset + d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return positions[ offset + d ];
+		}
+
+		@Override
+		public T get()
+		{
+			return getValue( nodeIndex );
+		}
+
+		@Override
+		public Node copy()
+		{
+			return node( nodeIndex );
+		}
+
+		@Override
+		public String toString()
+		{
+			return "node " + nodeIndex;
+		}
+	}
+
+	/**
+	 * Iterates the nodes in heap order.
+	 */
+	public class FlatKDTreeCursor extends Node implements RealCursor< T >
+	{
+		private int node = -1;
+
+		@Override
+		public void jumpFwd( final long steps )
+		{
+			node += steps;
+			setNodeIndex( node );
+		}
+
+		@Override
+		public void fwd()
+		{
+			setNodeIndex( ++node );
+		}
+
+		@Override
+		public void reset()
+		{
+			node = -1;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return node < size - 1;
+		}
+
+		@Override
+		public T next()
+		{
+			fwd();
+			return get();
+		}
+
+		@Override
+		public void remove()
+		{
+			// NB: no action.
+		}
+
+		@Override
+		public FlatKDTreeCursor copy()
+		{
+			final FlatKDTreeCursor copy = new FlatKDTreeCursor();
+			copy.jumpFwd( node + 1 );
+			return copy;
+		}
+
+		@Override
+		public FlatKDTreeCursor copyCursor()
+		{
+			return copy();
+		}
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public double realMin( final int d )
+	{
+		return min[ d ];
+	}
+
+	@Override
+	public void realMin( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = min[ d ];
+	}
+
+	@Override
+	public void realMin( final RealPositionable m )
+	{
+		m.setPosition( min );
+	}
+
+	@Override
+	public double realMax( final int d )
+	{
+		return max[ d ];
+	}
+
+	@Override
+	public void realMax( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = max[ d ];
+	}
+
+	@Override
+	public void realMax( final RealPositionable m )
+	{
+		m.setPosition( max );
+	}
+
+	@Override
+	public long size()
+	{
+		return size;
+	}
+
+	@Override
+	public Object iterationOrder()
+	{
+		return this; // iteration order is only compatible with ourselves
+	}
+
+	@Override
+	public FlatKDTreeCursor iterator()
+	{
+		return new FlatKDTreeCursor();
+	}
+
+	@Override
+	public FlatKDTreeCursor cursor()
+	{
+		return new FlatKDTreeCursor();
+	}
+
+	@Override
+	public FlatKDTreeCursor localizingCursor()
+	{
+		return new FlatKDTreeCursor();
+	}
+
+	@Override
+	public T firstElement()
+	{
+		return iterator().next();
+	}
+}
@@ -0,0 +1,307 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import net.imglib2.img.array.ArrayRandomAccess;
+import net.imglib2.type.NativeType;
+
+/**
+ * A list of data samples at explicit {@link Localizable integer coordinates},
+ * like {@link PointSampleList}, but without an object per sample or
+ * coordinate tuple. The coordinates are stored in one growable
+ * {@code long[]} per dimension, and the samples are stored in
+ * {@link net.imglib2.img.array.ArrayImg}-backed chunks of {@link NativeType}
+ * values. Cursors do not allocate per element.
+ * <p>
+ * Cursors and samples obtained before an {@link #add} may become invalid.
+ *
+ * @author agent
+ */
+public class NativePointSampleList< T extends NativeType< T > > extends AbstractInterval implements IterableInterval< T >
+{
+	public class NativePointSampleListCursor implements Cursor< T >
+	{
+		protected int index = -1;
+
+		/**
+		 * accesses the chunk containing the current sample.
+		 */
+		protected ArrayRandomAccess< T > access = null;
+
+		@Override
+		public Cursor< T > copy()
+		{
+			final NativePointSampleListCursor copy = new NativePointSampleListCursor();
+			copy.index = index;
+			copy.access = access == null ? null : access.copy();
+			return copy;
+		}
+
+		@Override
+		final public Cursor< T > copyCursor()
+		{
+			return copy();
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return coordinates[ d ][ index ];
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) coordinates[ d ][ index ];
+		}
+
+		@Override
+		public int getIntPosition( final int d )
+		{
+			return ( int ) coordinates[ d ][ index ];
+		}
+
+		@Override
+		public long getLongPosition( final int d )
+		{
+			return coordinates[ d ][ index ];
+		}
+
+		@Override
+		public void localize( final int[] pos )
+		{
+			for ( int d = 0; d < n; ++d )
+				pos[ d ] = ( int ) coordinates[ d ][ index ];
+		}
+
+		@Override
+		public void localize( final long[] pos )
+		{
+			for ( int d = 0; d < n; ++d )
+				pos[ d ] = coordinates[ d ][ index ];
+		}
+
+		@Override
+		public void localize( final float[] pos )
+		{
+			for ( int d = 0; d < n; ++d )
+				pos[ d ] = ( float ) coordinates[ d ][ index ];
+		}
+
+		@Override
+		public void localize( final double[] pos )
+		{
+			for ( int d = 0; d < n; ++d )
+				pos[ d ] = coordinates[ d ][ index ];
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public T get()
+		{
+			return access.get();
+		}
+
+		@Override
+		public void fwd()
+		{
+			++index;
+			if ( access == null || ( index & NativeSampleChunks.CHUNK_MASK ) == 0 )
+				access = samples.access( index );
+			else
+				access.fwd( 0 );
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return index < size - 1;
+		}
+
+		@Override
+		public void jumpFwd( final long steps )
+		{
+			final long target = index + steps;
+			if ( target < 0 || target >= size )
+				throw new IndexOutOfBoundsException( "index " + target + " is out of range [0, " + size + ")" );
+			final int previous = index;
+			index = ( int ) target;
+			if ( access == null || ( index >>> NativeSampleChunks.CHUNK_BITS ) != ( previous >>> NativeSampleChunks.CHUNK_BITS ) )
+				access = samples.access( index );
+			else
+				access.setPosition( index & NativeSampleChunks.CHUNK_MASK, 0 );
+		}
+
+		@Override
+		public void reset()
+		{
+			index = -1;
+			access = null;
+		}
+
+		@Override
+		public T next()
+		{
+			fwd();
+			return get();
+		}
+
+		@Override
+		public void remove()
+		{
+			/* Not yet implemented */
+		}
+	}
+
+	/**
+	 * {@code coordinates[d][i]} is coordinate {@code d} of sample {@code i}.
+	 */
+	protected long[][] coordinates;
+
+	final protected NativeSampleChunks< T > samples;
+
+	protected int size;
+
+	/**
+	 * @param n
+	 *            - number of dimensions
+	 * @param type
+	 *            - an instance of the sample type
+	 */
+	public NativePointSampleList( final int n, final T type )
+	{
+		super( initInterval( n ) );
+		coordinates = new long[ n ][ 16 ];
+		samples = new NativeSampleChunks< T >( type );
+	}
+
+	private static Interval initInterval( final int n )
+	{
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = Long.MAX_VALUE;
+			max[ d ] = Long.MIN_VALUE;
+		}
+		return new FinalInterval( min, max );
+	}
+
+	/**
+	 * Append a sample at {@code position}, and return the {@link NativeType}
+	 * that refers to it, to set the value of the sample. The returned instance
+	 * is reused by the next {@code add}.
+	 */
+	public T add( final Localizable position )
+	{
+		if ( size == coordinates[ 0 ].length )
+			for ( int d = 0; d < n; ++d )
+				coordinates[ d ] = Arrays.copyOf( coordinates[ d ], ( int ) Math.min( 2L * size, Integer.MAX_VALUE ) );
+		for ( int d = 0; d < n; ++d )
+		{
+			final long x = position.getLongPosition( d );
+			coordinates[ d ][ size ] = x;
+
+			if ( x < min[ d ] )
+				min[ d ] = x;
+			if ( x > max[ d ] )
+				max[ d ] = x;
+		}
+		++size;
+		return samples.add();
+	}
+
+	/**
+	 * Append a sample at {@code position}, with a value copied from
+	 * {@code sample}.
+	 */
+	public void add( final Localizable position, final T sample )
+	{
+		add( position ).set( sample );
+	}
+
+	/**
+	 * @return coordinate {@code d} of sample {@code i}.
+	 */
+	public long getLongPosition( final int i, final int d )
+	{
+		return coordinates[ d ][ i ];
+	}
+
+	@Override
+	public Cursor< T > cursor()
+	{
+		return new NativePointSampleListCursor();
+	}
+
+	@Override
+	public Object iterationOrder()
+	{
+		return this; // iteration order is only compatible with ourselves
+	}
+
+	@Override
+	public T firstElement()
+	{
+		return samples.access( 0 ).get();
+	}
+
+	@Override
+	public Cursor< T > localizingCursor()
+	{
+		return new NativePointSampleListCursor();
+	}
+
+	@Override
+	public long size()
+	{
+		return size;
+	}
+
+	@Override
+	public Iterator< T > iterator()
+	{
+		return cursor();
+	}
+}
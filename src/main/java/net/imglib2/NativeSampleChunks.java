@@ -0,0 +1,114 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2;
+
+import java.util.ArrayList;
+
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayRandomAccess;
+import net.imglib2.type.NativeType;
+
+/**
+ * Growable storage for samples of a {@link NativeType}, used by
+ * {@link NativePointSampleList} and {@link NativeRealPointSampleList}. Samples
+ * are stored in a list of one-dimensional {@link ArrayImg}s of
+ * {@code 2^CHUNK_BITS} elements each, so growing never copies existing
+ * samples.
+ *
+ * @author agent
+ */
+final class NativeSampleChunks< T extends NativeType< T > >
+{
+	static final int CHUNK_BITS = 16;
+
+	static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private final T type;
+
+	private final ArrayImgFactory< T > factory = new ArrayImgFactory< T >();
+
+	private final ArrayList< ArrayImg< T, ? > > chunks = new ArrayList< ArrayImg< T, ? > >();
+
+	/**
+	 * accesses the chunk that was last appended to.
+	 */
+	private ArrayRandomAccess< T > last;
+
+	private int size;
+
+	NativeSampleChunks( final T type )
+	{
+		this.type = type.createVariable();
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Append a sample, and return the {@link NativeType} that refers to it.
+	 * The returned instance is reused by the next call.
+	 */
+	T add()
+	{
+		if ( size == Integer.MAX_VALUE )
+			throw new IllegalStateException( "too many samples" );
+		if ( ( size & CHUNK_MASK ) == 0 )
+		{
+			final ArrayImg< T, ? > chunk = factory.create( new long[] { CHUNK_SIZE }, type );
+			chunks.add( chunk );
+			last = chunk.randomAccess();
+		}
+		last.setPosition( size & CHUNK_MASK, 0 );
+		++size;
+		return last.get();
+	}
+
+	/**
+	 * Get a {@link RandomAccess} into the chunk containing sample
+	 * {@code index}, positioned at that sample.
+	 */
+	ArrayRandomAccess< T > access( final int index )
+	{
+		final ArrayRandomAccess< T > access = chunks.get( index >>> CHUNK_BITS ).randomAccess();
+		access.setPosition( index & CHUNK_MASK, 0 );
+		return access;
+	}
+}
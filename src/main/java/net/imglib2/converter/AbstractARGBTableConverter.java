@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.converter;
+
+import net.imglib2.display.AbstractLinearRange;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.integer.Unsigned12BitType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+/**
+ * Base class for converters from unsigned integer types with a small value
+ * range (e.g., {@link UnsignedByteType}, {@link Unsigned12BitType},
+ * {@link UnsignedShortType}) to {@link ARGBType}. The ARGB value for every
+ * possible input value is precomputed into a table whenever min or max
+ * change, so that {@link #convert(IntegerType, ARGBType)} is a single array
+ * lookup.
+ * 
+ * @author agent
+ */
+public abstract class AbstractARGBTableConverter< R extends IntegerType< R > > extends AbstractLinearRange implements Converter< R, ARGBType >
+{
+	/**
+	 * The largest supported number of input values.
+	 */
+	public static final int MAX_TABLE_SIZE = 1 << 16;
+
+	private final int tableSize;
+
+	private int[] table;
+
+	/**
+	 * @param type
+	 *            an instance of the input type, used to determine the range
+	 *            of input values.
+	 */
+	public AbstractARGBTableConverter( final R type, final double min, final double max )
+	{
+		super( min, max );
+		if ( type.getMinValue() != 0 || type.getMaxValue() >= MAX_TABLE_SIZE )
+			throw new IllegalArgumentException( "value range of " + type.getClass().getSimpleName() + " is not supported" );
+		tableSize = ( int ) type.getMaxValue() + 1;
+	}
+
+	/**
+	 * Compute the ARGB value for input {@code value}.
+	 */
+	protected abstract int computeARGB( final int value );
+
+	/**
+	 * Recompute the table. This is called automatically when min or max
+	 * change, and should be called by subclasses when other parameters change.
+	 */
+	public void updateTable()
+	{
+		final int[] t = new int[ tableSize ];
+		for ( int i = 0; i < tableSize; ++i )
+			t[ i ] = computeARGB( i );
+		table = t;
+	}
+
+	@Override
+	public void setMin( final double min )
+	{
+		super.setMin( min );
+		updateTable();
+	}
+
+	@Override
+	public void setMax( final double max )
+	{
+		super.setMax( max );
+		updateTable();
+	}
+
+	@Override
+	public void convert( final R input, final ARGBType output )
+	{
+		output.set( table[ input.getInteger() ] );
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.converter;
+
+import net.imglib2.display.ColorTable;
+import net.imglib2.display.ColorTable16;
+import net.imglib2.display.ColorTable8;
+import net.imglib2.type.numeric.IntegerType;
+
+/**
+ * Table-based equivalent of {@link RealLUTConverter} for unsigned integer
+ * types with at most 16 bits. The {@link ColorTable} (e.g.,
+ * {@link ColorTable8}, {@link ColorTable16}) is resampled into a table of
+ * ARGB values for every possible input value.
+ * <p>
+ * The table is recomputed when min, max or the color table are set. If the
+ * contents of the color table are modified, {@link #updateTable()} must be
+ * called.
+ * 
+ * @see AbstractARGBTableConverter
+ * 
+ * @author agent
+ */
+public class IntegerLUTConverter< R extends IntegerType< R > > extends AbstractARGBTableConverter< R >
+{
+	private ColorTable lut;
+
+	public IntegerLUTConverter( final R type )
+	{
+		this( type, 0, 1, null );
+	}
+
+	public IntegerLUTConverter( final R type, final double min, final double max, final ColorTable lut )
+	{
+		super( type, min, max );
+		setLUT( lut );
+	}
+
+	public ColorTable getLUT()
+	{
+		return lut;
+	}
+
+	public void setLUT( final ColorTable lut )
+	{
+		this.lut = lut == null ? new ColorTable8() : lut;
+		updateTable();
+	}
+
+	@Override
+	protected int computeARGB( final int value )
+	{
+		return lut.lookupARGB( min, max, value );
+	}
+}
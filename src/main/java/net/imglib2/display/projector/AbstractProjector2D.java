@@ -33,9 +33,19 @@
  */
 package net.imglib2.display.projector;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
 import net.imglib2.Point;
 import net.imglib2.display.projector.sampler.SamplingProjector2D;
 import net.imglib2.display.projector.specialized.ArrayImgXYByteProjector;
+import net.imglib2.parallel.Chunk;
+import net.imglib2.parallel.Chunks;
+import net.imglib2.parallel.ParallelIteration;
 
 /**
  * Base class for 2D projectors. Projecting means in this case projecting from a
@@ -47,6 +57,13 @@ import net.imglib2.display.projector.specialized.ArrayImgXYByteProjector;
  * point to project data into a 2 dimensional representation. <br>
  * A basic example is the extraction of a data plain (containing the reference
  * point) by sampling two axes
+ * <p>
+ * Projectors that support it can render in parallel: after
+ * {@link #setExecutorService(ExecutorService, int)}, the target is split into
+ * bands of whole rows which are rendered as separate tasks. A running
+ * {@link #map()} can be {@link #cancel() canceled}, which skips all bands that
+ * have not been started yet. A cancel request that arrives before
+ * {@link #map()} is started applies to that call.
  * 
  * @author Michael Zinsmaier
  * @author Martin Horn
@@ -74,4 +91,134 @@ public abstract class AbstractProjector2D extends Point implements Projector
 		max = new long[ n ];
 	}
 
+	protected ExecutorService executorService = null;
+
+	protected int numTasks = 1;
+
+	/**
+	 * Set by {@link #cancel()}, cleared when a {@link #map()} call finishes.
+	 */
+	private final AtomicBoolean cancelRequested = new AtomicBoolean();
+
+	/**
+	 * Whether the last {@link #map()} call skipped any chunks.
+	 */
+	private volatile boolean canceled = false;
+
+	/**
+	 * Set the executor used to render the target in parallel.
+	 * 
+	 * @param executorService
+	 *            the executor, or {@code null} to render in the calling thread
+	 * @param numTasks
+	 *            number of bands into which the target is split. Using a few
+	 *            more bands than threads balances load and allows earlier
+	 *            cancellation.
+	 */
+	public void setExecutorService( final ExecutorService executorService, final int numTasks )
+	{
+		this.executorService = executorService;
+		this.numTasks = numTasks;
+	}
+
+	/**
+	 * Abort the current {@link #map()} call, or the next one if none is
+	 * running. Bands that are already being rendered are completed, the
+	 * remaining bands are skipped.
+	 */
+	public void cancel()
+	{
+		cancelRequested.set( true );
+	}
+
+	/**
+	 * Returns {@code true} if the last {@link #map()} call was canceled before
+	 * rendering all of the target.
+	 */
+	public boolean isCanceled()
+	{
+		return canceled;
+	}
+
+	/**
+	 * Returns {@code true} if {@link #map()} renders in parallel. In this case
+	 * each task should use its own copy of any non-thread-safe
+	 * {@link net.imglib2.converter.Converter}.
+	 */
+	protected boolean isParallel()
+	{
+		return executorService != null && numTasks > 1;
+	}
+
+	/**
+	 * Split {@code size} target pixels into {@link Chunk}s of whole rows of
+	 * length {@code rowLength} and render them using {@code renderer}, in
+	 * parallel if an executor is {@link #setExecutorService(ExecutorService, int)
+	 * set}. Checks for a {@link #cancel() cancel request} before rendering
+	 * each chunk, and clears it when done.
+	 * 
+	 * @return {@code true} if all chunks were rendered, {@code false} if
+	 *         rendering was canceled.
+	 */
+	protected boolean mapChunks( final long size, final long rowLength, final Consumer< Chunk > renderer )
+	{
+		if ( !isParallel() )
+		{
+			final boolean skip = cancelRequested.get();
+			if ( size > 0 && !skip )
+				renderer.accept( new Chunk( 0, size ) );
+			return finish( skip );
+		}
+		return mapChunks( Chunks.split( size, Math.max( 1, rowLength ), numTasks ), renderer );
+	}
+
+	/**
+	 * Render the given {@code chunks} using {@code renderer}, in parallel if
+	 * an executor is {@link #setExecutorService(ExecutorService, int) set}.
+	 * Checks for a {@link #cancel() cancel request} before rendering each
+	 * chunk, and clears it when done.
+	 * 
+	 * @return {@code true} if all chunks were rendered, {@code false} if
+	 *         rendering was canceled.
+	 */
+	protected boolean mapChunks( final List< Chunk > chunks, final Consumer< Chunk > renderer )
+	{
+		if ( !isParallel() )
+		{
+			for ( final Chunk chunk : chunks )
+			{
+				if ( cancelRequested.get() )
+					return finish( true );
+				renderer.accept( chunk );
+			}
+			return finish( false );
+		}
+
+		final AtomicBoolean skipped = new AtomicBoolean();
+		final List< Callable< Void > > tasks = new ArrayList<>( chunks.size() );
+		for ( final Chunk chunk : chunks )
+		{
+			tasks.add( () -> {
+				if ( cancelRequested.get() )
+					skipped.set( true );
+				else
+					renderer.accept( chunk );
+				return null;
+			} );
+		}
+		ParallelIteration.invokeAll( tasks, executorService );
+		return finish( skipped.get() );
+	}
+
+	/**
+	 * Clear the cancel request at the end of a {@link #map()} call and record
+	 * whether any chunks were skipped.
+	 */
+	private boolean finish( final boolean skipped )
+	{
+		cancelRequested.set( false );
+		canceled = skipped;
+		return !skipped;
+	}
+
 }
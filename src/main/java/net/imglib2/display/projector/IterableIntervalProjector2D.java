@@ -33,6 +33,9 @@
  */
 package net.imglib2.display.projector;
 
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
 import net.imglib2.FlatIterationOrder;
@@ -40,6 +43,7 @@ import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.converter.Converter;
+import net.imglib2.parallel.Chunk;
 import net.imglib2.view.RandomAccessibleIntervalCursor;
 import net.imglib2.view.Views;
 
@@ -52,7 +56,11 @@ import net.imglib2.view.Views;
  * Starting from the reference point two dimensions are sampled such
  * that a plain gets cut out of a higher dimensional data volume. <br>
  * The mapping function can be specified with a {@link Converter}. <br>
- * A basic example is cutting out a time frame from a (greyscale) video.
+ * A basic example is cutting out a time frame from a (greyscale) video. <br>
+ * When rendering in {@link #setExecutorService parallel}, each task obtains
+ * its own converter from the {@code converterSupplier} given at construction.
+ * A projector constructed with a single converter renders in the calling
+ * thread only.
  * 
  * @author Michael Zinsmaier
  * @author Martin Horn
@@ -65,6 +73,12 @@ public class IterableIntervalProjector2D< A, B > extends AbstractProjector2D
 {
 	final protected Converter< ? super A, B > converter;
 
+	/**
+	 * Provides a converter per task when rendering in parallel, {@code null}
+	 * if constructed with a single converter.
+	 */
+	final protected Supplier< ? extends Converter< ? super A, B > > converterSupplier;
+
 	final protected RandomAccessible< A > source;
 
 	final protected IterableInterval< B > target;
@@ -88,6 +102,28 @@ public class IterableIntervalProjector2D< A, B > extends AbstractProjector2D
 	 *            can e.g. be used for normalization, conversions, ...
 	 */
 	public IterableIntervalProjector2D( final int dimX, final int dimY, final RandomAccessible< A > source, final IterableInterval< B > target, final Converter< ? super A, B > converter )
+	{
+		this( dimX, dimY, source, target, converter, null );
+	}
+
+	/**
+	 * creates a new 2D projector that samples a plain in the dimensions dimX,
+	 * dimY.
+	 * 
+	 * @param dimX
+	 * @param dimY
+	 * @param source
+	 * @param target
+	 * @param converterSupplier
+	 *            provides a new converter for each task when rendering in
+	 *            parallel.
+	 */
+	public IterableIntervalProjector2D( final int dimX, final int dimY, final RandomAccessible< A > source, final IterableInterval< B > target, final Supplier< ? extends Converter< ? super A, B > > converterSupplier )
+	{
+		this( dimX, dimY, source, target, converterSupplier.get(), converterSupplier );
+	}
+
+	private IterableIntervalProjector2D( final int dimX, final int dimY, final RandomAccessible< A > source, final IterableInterval< B > target, final Converter< ? super A, B > converter, final Supplier< ? extends Converter< ? super A, B > > converterSupplier )
 	{
 		super( source.numDimensions() );
 		this.dimX = dimX;
@@ -95,9 +131,34 @@ public class IterableIntervalProjector2D< A, B > extends AbstractProjector2D
 		this.target = target;
 		this.source = source;
 		this.converter = converter;
+		this.converterSupplier = converterSupplier;
 		this.numDimensions = source.numDimensions();
 	}
 
+	/**
+	 * @throws IllegalStateException
+	 *             if rendering in parallel was requested but this projector
+	 *             was constructed with a single converter, which cannot be shared between
+	 *             tasks.
+	 */
+	@Override
+	public void setExecutorService( final ExecutorService executorService, final int numTasks )
+	{
+		if ( converterSupplier == null && executorService != null && numTasks > 1 )
+			throw new IllegalStateException( "Rendering in parallel requires a converter supplier" );
+		super.setExecutorService( executorService, numTasks );
+	}
+
+	/**
+	 * Returns the converter to use for rendering one chunk: a new one from
+	 * {@link #converterSupplier} if rendering in parallel, otherwise
+	 * {@link #converter}.
+	 */
+	protected Converter< ? super A, B > chunkConverter()
+	{
+		return isParallel() ? converterSupplier.get() : converter;
+	}
+
 	/**
 	 * projects data from the source to the target and applies the former
 	 * specified {@link Converter} e.g. for normalization.
@@ -116,62 +177,85 @@ public class IterableIntervalProjector2D< A, B > extends AbstractProjector2D
 
 		// TODO: this is ugly, but the only way to make sure, that iteration
 		// order fits in the case of one sized dims. Tobi?
-		final IterableInterval< A > ii = Views.iterable( Views.interval( source, new FinalInterval( min, max ) ) );
+		final FinalInterval sourceInterval = new FinalInterval( min, max );
+		final IterableInterval< A > ii = Views.iterable( Views.interval( source, sourceInterval ) );
 
-		final Cursor< A > sourceCursor = ii.cursor();
+		final long width = target.dimension( 0 );
 
-		if ( target.iterationOrder().equals( ii.iterationOrder() ) && !( sourceCursor instanceof RandomAccessibleIntervalCursor ) )
+		if ( target.iterationOrder().equals( ii.iterationOrder() ) && !( ii.cursor() instanceof RandomAccessibleIntervalCursor ) )
 		{
-			final Cursor< B > targetCursor = target.cursor();
-			while ( targetCursor.hasNext() )
-			{
-				converter.convert( sourceCursor.next(), targetCursor.next() );
-			}
+			mapChunks( target.size(), width, chunk -> mapIterationOrder( ii, chunk, chunkConverter() ) );
 		}
 		else if ( target.iterationOrder() instanceof FlatIterationOrder )
 		{
-			final Cursor< B > targetCursor = target.cursor();
-			targetCursor.fwd();
-			final FinalInterval sourceInterval = new FinalInterval( min, max );
+			mapChunks( target.size(), width, chunk -> mapFlat( sourceInterval, chunk, chunkConverter() ) );
+		}
+		else
+		{
+			mapChunks( target.size(), width, chunk -> mapLocalizing( chunk, chunkConverter() ) );
+		}
+	}
 
-			// use localizing cursor
-			final RandomAccess< A > sourceRandomAccess = source.randomAccess( sourceInterval );
-			sourceRandomAccess.setPosition( position );
+	/**
+	 * Render {@code chunk} if source {@code ii} and target have the same
+	 * iteration order.
+	 */
+	private void mapIterationOrder( final IterableInterval< A > ii, final Chunk chunk, final Converter< ? super A, B > conv )
+	{
+		final Cursor< A > sourceCursor = chunk.cursor( ii );
+		final Cursor< B > targetCursor = chunk.cursor( target );
+		for ( long i = 0; i < chunk.size(); ++i )
+		{
+			conv.convert( sourceCursor.next(), targetCursor.next() );
+		}
+	}
 
-			final long cr = -target.dimension( 0 );
+	/**
+	 * Render {@code chunk} (consisting of whole rows) of a target with
+	 * {@link FlatIterationOrder}.
+	 */
+	private void mapFlat( final FinalInterval sourceInterval, final Chunk chunk, final Converter< ? super A, B > conv )
+	{
+		final Cursor< B > targetCursor = chunk.cursor( target );
+		targetCursor.fwd();
 
-			final long width = target.dimension( 0 );
-			final long height = target.dimension( 1 );
+		final RandomAccess< A > sourceRandomAccess = source.randomAccess( sourceInterval );
 
-			sourceRandomAccess.setPosition( min );
-			for ( long y = 0; y < height; ++y )
+		final long width = target.dimension( 0 );
+		final long cr = -width;
+		final long height = chunk.size() / width;
+
+		sourceRandomAccess.setPosition( min );
+		sourceRandomAccess.move( chunk.getStartIndex() / width, dimY );
+		for ( long y = 0; y < height; ++y )
+		{
+			for ( long x = 0; x < width; ++x )
 			{
-				for ( long x = 0; x < width; ++x )
-				{
-					converter.convert( sourceRandomAccess.get(), targetCursor.get() );
-					sourceRandomAccess.fwd( dimX );
-					targetCursor.fwd();
-				}
-				sourceRandomAccess.move( cr, dimX );
-				sourceRandomAccess.fwd( dimY );
+				conv.convert( sourceRandomAccess.get(), targetCursor.get() );
+				sourceRandomAccess.fwd( dimX );
+				targetCursor.fwd();
 			}
-
+			sourceRandomAccess.move( cr, dimX );
+			sourceRandomAccess.fwd( dimY );
 		}
-		else
+	}
+
+	/**
+	 * Render {@code chunk} of a target with arbitrary iteration order.
+	 */
+	private void mapLocalizing( final Chunk chunk, final Converter< ? super A, B > conv )
+	{
+		final Cursor< B > targetCursor = chunk.localizingCursor( target );
+
+		final RandomAccess< A > sourceRandomAccess = source.randomAccess();
+		sourceRandomAccess.setPosition( min );
+		for ( long i = 0; i < chunk.size(); ++i )
 		{
-			final Cursor< B > targetCursor = target.localizingCursor();
-			
-			// use localizing cursor
-			final RandomAccess< A > sourceRandomAccess = source.randomAccess();
-			sourceRandomAccess.setPosition( position );
-			while ( targetCursor.hasNext() )
-			{
-				final B b = targetCursor.next();
-				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), dimX );
-				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), dimY );
+			final B b = targetCursor.next();
+			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), dimX );
+			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), dimY );
 
-				converter.convert( sourceRandomAccess.get(), b );
-			}
+			conv.convert( sourceRandomAccess.get(), b );
 		}
 	}
 }
@@ -35,6 +35,9 @@
 package net.imglib2.display.projector.composite;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
@@ -43,6 +46,7 @@ import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converter;
 import net.imglib2.display.projector.AbstractProjector2D;
+import net.imglib2.parallel.Chunk;
 import net.imglib2.type.numeric.ARGBType;
 
 /**
@@ -53,6 +57,11 @@ import net.imglib2.type.numeric.ARGBType;
  * inclusion in the computed composite value using the {@link #setComposite}
  * methods.
  *
+ * When rendering in {@link #setExecutorService parallel}, each task obtains
+ * its own converters from the {@code converterSuppliers} given at
+ * construction. A projector constructed with converters instead of suppliers
+ * renders in the calling thread only.
+ *
  * See XYProjector for the code upon which this class was based.
  *
  * @author Stephan Saalfeld
@@ -65,6 +74,12 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 
 	private final ArrayList< Converter< A, ARGBType >> converters;
 
+	/**
+	 * Provide converters per task when rendering in parallel, {@code null} if
+	 * constructed with converters.
+	 */
+	private final List< ? extends Supplier< ? extends Converter< A, ARGBType > > > converterSuppliers;
+
 	private final int dimIndex;
 
 	private final long positionCount;
@@ -77,17 +92,38 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 
 	protected final Converter< A, ARGBType >[] currentConverters;
 
+	/**
+	 * Indices (into the converter list) of {@link #currentConverters}.
+	 */
+	protected final int[] currentConverterIndices;
+
 	private final IterableInterval< ARGBType > target;
 
 	private final RandomAccessibleInterval< A > source;
 
-	@SuppressWarnings( "unchecked" )
 	public CompositeXYProjector( final RandomAccessibleInterval< A > source, final IterableInterval< ARGBType > target, final ArrayList< Converter< A, ARGBType >> converters, final int dimIndex )
+	{
+		this( source, target, converters, null, dimIndex );
+	}
+
+	/**
+	 * @param converterSuppliers
+	 *            one supplier per dimensional position, providing a new
+	 *            converter for each task when rendering in parallel.
+	 */
+	public CompositeXYProjector( final RandomAccessibleInterval< A > source, final IterableInterval< ARGBType > target, final List< ? extends Supplier< ? extends Converter< A, ARGBType > > > converterSuppliers, final int dimIndex )
+	{
+		this( source, target, newConverters( converterSuppliers ), converterSuppliers, dimIndex );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private CompositeXYProjector( final RandomAccessibleInterval< A > source, final IterableInterval< ARGBType > target, final ArrayList< Converter< A, ARGBType >> converters, final List< ? extends Supplier< ? extends Converter< A, ARGBType > > > converterSuppliers, final int dimIndex )
 	{
 		super( source.numDimensions() );
 		this.source = source;
 		this.target = target;
 		this.converters = converters;
+		this.converterSuppliers = converterSuppliers;
 		this.dimIndex = dimIndex;
 
 		// check that there is one converter per dimensional position
@@ -100,6 +136,29 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 		composite[ 0 ] = true;
 		currentPositions = new long[ converterCount ];
 		currentConverters = new Converter[ converterCount ];
+		currentConverterIndices = new int[ converterCount ];
+	}
+
+	private static < A > ArrayList< Converter< A, ARGBType > > newConverters( final List< ? extends Supplier< ? extends Converter< A, ARGBType > > > converterSuppliers )
+	{
+		final ArrayList< Converter< A, ARGBType > > converters = new ArrayList<>( converterSuppliers.size() );
+		for ( final Supplier< ? extends Converter< A, ARGBType > > supplier : converterSuppliers )
+			converters.add( supplier.get() );
+		return converters;
+	}
+
+	/**
+	 * @throws IllegalStateException
+	 *             if rendering in parallel was requested but this projector
+	 *             was constructed with converters, which cannot be shared between
+	 *             tasks.
+	 */
+	@Override
+	public void setExecutorService( final ExecutorService executorService, final int numTasks )
+	{
+		if ( converterSuppliers == null && executorService != null && numTasks > 1 )
+			throw new IllegalStateException( "Rendering in parallel requires converter suppliers" );
+		super.setExecutorService( executorService, numTasks );
 	}
 
 	// -- CompositeXYProjector methods --
@@ -157,9 +216,12 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 		{
 			// there is only converter[0]
 			// use it to map the current position
-			final RandomAccess< A > sourceRandomAccess = source.randomAccess( new FinalInterval( min, max ) );
-			sourceRandomAccess.setPosition( min );
-			mapSingle( sourceRandomAccess, converters.get( 0 ) );
+			final FinalInterval interval = new FinalInterval( min, max );
+			mapChunks( target.size(), target.dimension( 0 ), chunk -> {
+				final RandomAccess< A > sourceRandomAccess = source.randomAccess( interval );
+				sourceRandomAccess.setPosition( min );
+				mapSingle( sourceRandomAccess, isParallel() ? converterSuppliers.get( 0 ).get() : converters.get( 0 ), chunk );
+			} );
 			return;
 		}
 
@@ -171,21 +233,31 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 				min[ dimIndex ] = currentPositions[ i ];
 			else if ( currentPositions[ i ] > max[ dimIndex ] )
 				max[ dimIndex ] = currentPositions[ i ];
-		final RandomAccess< A > sourceRandomAccess = source.randomAccess( new FinalInterval( min, max ) );
-		sourceRandomAccess.setPosition( min );
+		final FinalInterval interval = new FinalInterval( min, max );
 
-		if ( size == 1 )
-		{
-			// there is only one active converter: converter[0]
-			// use it to map the slice at currentPositions[0]
-			mapSingle( sourceRandomAccess, currentConverters[ 0 ] );
-			return;
-		}
+		mapChunks( target.size(), target.dimension( 0 ), chunk -> {
+			final RandomAccess< A > sourceRandomAccess = source.randomAccess( interval );
+			sourceRandomAccess.setPosition( min );
+			final Converter< A, ARGBType >[] chunkConverters = chunkConverters( size );
+			if ( size == 1 )
+			{
+				// there is only one active converter: converter[0]
+				// use it to map the slice at currentPositions[0]
+				mapSingle( sourceRandomAccess, chunkConverters[ 0 ], chunk );
+			}
+			else
+			{
+				mapComposite( sourceRandomAccess, chunkConverters, size, chunk );
+			}
+		} );
+	}
 
-		final Cursor< ARGBType > targetCursor = target.localizingCursor();
+	private void mapComposite( final RandomAccess< A > sourceRandomAccess, final Converter< A, ARGBType >[] convs, final int size, final Chunk chunk )
+	{
+		final Cursor< ARGBType > targetCursor = chunk.localizingCursor( target );
 		final ARGBType bi = new ARGBType();
 
-		while ( targetCursor.hasNext() )
+		for ( long j = 0; j < chunk.size(); ++j )
 		{
 			targetCursor.fwd();
 			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
@@ -194,7 +266,7 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 			for ( int i = 0; i < size; i++ )
 			{
 				sourceRandomAccess.setPosition( currentPositions[ i ], dimIndex );
-				currentConverters[ i ].convert( sourceRandomAccess.get(), bi );
+				convs[ i ].convert( sourceRandomAccess.get(), bi );
 
 				// accumulate converted result
 				final int value = bi.get();
@@ -219,6 +291,22 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 		}
 	}
 
+	/**
+	 * Returns the converters to use for rendering one chunk: new ones from
+	 * {@link #converterSuppliers} if rendering in parallel, otherwise
+	 * {@link #currentConverters}.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private Converter< A, ARGBType >[] chunkConverters( final int size )
+	{
+		if ( !isParallel() )
+			return currentConverters;
+		final Converter< A, ARGBType >[] convs = new Converter[ size ];
+		for ( int i = 0; i < size; ++i )
+			convs[ i ] = converterSuppliers.get( currentConverterIndices[ i ] ).get();
+		return convs;
+	}
+
 	// -- Helper methods --
 
 	/**
@@ -246,7 +334,8 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 			// this is the isSingle() case.
 			// map the current position using the converter at that position
 			currentPositions[ 0 ] = position[ dimIndex ];
-			currentConverters[ 0 ] = converters.get( ( int ) ( position[ dimIndex ] - positionMin ) );
+			currentConverterIndices[ 0 ] = ( int ) ( position[ dimIndex ] - positionMin );
+			currentConverters[ 0 ] = converters.get( currentConverterIndices[ 0 ] );
 			return 1;
 		}
 		// this is the normal case.
@@ -258,6 +347,7 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 			{
 				currentPositions[ j ] = positionMin + i;
 				currentConverters[ j ] = converters.get( i );
+				currentConverterIndices[ j ] = i;
 				++j;
 			}
 		return currentSize;
@@ -265,8 +355,13 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 
 	protected void mapSingle( final RandomAccess< A > sourceRandomAccess, final Converter< A, ARGBType > conv )
 	{
-		final Cursor< ARGBType > targetCursor = target.localizingCursor();
-		while ( targetCursor.hasNext() )
+		mapSingle( sourceRandomAccess, conv, new Chunk( 0, target.size() ) );
+	}
+
+	protected void mapSingle( final RandomAccess< A > sourceRandomAccess, final Converter< A, ARGBType > conv, final Chunk chunk )
+	{
+		final Cursor< ARGBType > targetCursor = chunk.localizingCursor( target );
+		for ( long i = 0; i < chunk.size(); ++i )
 		{
 			targetCursor.fwd();
 			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
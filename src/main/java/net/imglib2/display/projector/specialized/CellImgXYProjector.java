@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.display.projector.specialized;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.display.projector.AbstractProjector2D;
+import net.imglib2.display.screenimage.awt.ARGBScreenImage;
+import net.imglib2.display.screenimage.awt.UnsignedByteAWTScreenImage;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+/**
+ * Fast implementation of a {@link AbstractProjector2D} that selects a 2D data
+ * plain from a CellImg (or any other {@link AbstractCellImg}, e.g. a
+ * {@code LazyCellImg}) with one byte, short, int, float or double array entry
+ * per pixel. The map method visits the cells intersecting the selected plane
+ * and normalizes their storage arrays row by row into the primitive array of an
+ * 8-bit image (e.g., for {@link UnsignedByteAWTScreenImage}) or an
+ * {@link ARGBScreenImage}.
+ * <p>
+ * A value is normalized by: normalizedValue = (value - min) *
+ * normalizationFactor, clamped to 0..255. Signed values are normalized by
+ * their signed value.
+ * 
+ * @author agent
+ */
+public class CellImgXYProjector< A extends RealType< A > & NativeType< A > > extends AbstractProjector2D
+{
+
+	private final AbstractCellImg< A, ?, ? extends Cell< ? >, ? > source;
+
+	private final NormalizingPlaneWriter writer;
+
+	private final boolean isSigned;
+
+	private final int width;
+
+	/**
+	 * Normalizes a CellImg and writes the result into an 8-bit target.
+	 * 
+	 * @param source
+	 *            input data
+	 * @param target
+	 *            8-bit output, with the dimensions of the XY plane of
+	 *            {@code source}
+	 * @param normalizationFactor
+	 * @param min
+	 * @throws IllegalArgumentException
+	 *             if the storage of {@code source} is not supported, or the
+	 *             size of {@code target} does not match.
+	 */
+	public CellImgXYProjector( final AbstractCellImg< A, ?, ? extends Cell< ? >, ? > source, final ArrayImg< UnsignedByteType, ByteArray > target, final double normalizationFactor, final double min )
+	{
+		this( source, new NormalizingPlaneWriter( target, normalizationFactor, min ) );
+	}
+
+	/**
+	 * Normalizes a CellImg and writes the result as grey values into an ARGB
+	 * target.
+	 * 
+	 * @param source
+	 *            input data
+	 * @param target
+	 *            ARGB output, with the dimensions of the XY plane of
+	 *            {@code source}
+	 * @param normalizationFactor
+	 * @param min
+	 * @throws IllegalArgumentException
+	 *             if the storage of {@code source} is not supported, or the
+	 *             size of {@code target} does not match.
+	 */
+	public CellImgXYProjector( final AbstractCellImg< A, ?, ? extends Cell< ? >, ? > source, final ARGBScreenImage target, final double normalizationFactor, final double min )
+	{
+		this( source, new NormalizingPlaneWriter( target, normalizationFactor, min ) );
+	}
+
+	private CellImgXYProjector( final AbstractCellImg< A, ?, ? extends Cell< ? >, ? > source, final NormalizingPlaneWriter writer )
+	{
+		super( source.numDimensions() );
+
+		final A type = source.firstElement();
+		if ( type.getEntitiesPerPixel().getRatio() != 1 )
+			throw new IllegalArgumentException( type.getClass().getSimpleName() + " does not store one array entry per pixel" );
+		final RandomAccess< ? extends Cell< ? > > cells = source.getCells().randomAccess();
+		cells.setPosition( new long[ source.numDimensions() ] );
+		final Object data = cells.get().getData();
+		if ( !( data instanceof ArrayDataAccess ) || !NormalizingPlaneWriter.isSupported( ( ( ArrayDataAccess< ? > ) data ).getCurrentStorageArray() ) )
+			throw new IllegalArgumentException( "cell data of type " + data.getClass().getSimpleName() + " is not backed by a byte, short, int, float or double array" );
+		writer.checkSize( source );
+
+		this.source = source;
+		this.writer = writer;
+		this.isSigned = type.getMinValue() < 0;
+		this.width = ( int ) source.dimension( 0 );
+	}
+
+	@Override
+	public void map()
+	{
+		final CellGrid grid = source.getCellGrid();
+		final long[] cellPos = new long[ n ];
+		grid.getCellPosition( position, cellPos );
+
+		// global position of the first pixel of the current row of a cell
+		final long[] rowPos = position.clone();
+
+		final RandomAccess< ? extends Cell< ? > > cells = source.getCells().randomAccess();
+		final long numCellsX = grid.gridDimension( 0 );
+		final long numCellsY = grid.gridDimension( 1 );
+		for ( long cy = 0; cy < numCellsY; ++cy )
+		{
+			cellPos[ 1 ] = cy;
+			for ( long cx = 0; cx < numCellsX; ++cx )
+			{
+				cellPos[ 0 ] = cx;
+				cells.setPosition( cellPos );
+				final Cell< ? > cell = cells.get();
+				final Object sourceArray = ( ( ArrayDataAccess< ? > ) cell.getData() ).getCurrentStorageArray();
+
+				final long cellMinX = cell.min( 0 );
+				final long cellMinY = cell.min( 1 );
+				final int cellWidth = cell.dimension( 0 );
+				final int cellHeight = cell.dimension( 1 );
+				rowPos[ 0 ] = cellMinX;
+				for ( int ly = 0; ly < cellHeight; ++ly )
+				{
+					rowPos[ 1 ] = cellMinY + ly;
+					final int sourceOffset = cell.globalPositionToIndex( rowPos );
+					final int targetOffset = ( int ) ( rowPos[ 1 ] * width + cellMinX );
+					writer.write( sourceArray, isSigned, sourceOffset, targetOffset, cellWidth );
+				}
+			}
+		}
+	}
+
+}
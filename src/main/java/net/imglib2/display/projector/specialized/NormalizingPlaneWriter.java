@@ -0,0 +1,183 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.display.projector.specialized;
+
+import net.imglib2.Interval;
+import net.imglib2.display.screenimage.awt.ARGBScreenImage;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+/**
+ * Normalizes runs of primitive source values and writes them into the
+ * primitive array of an 8-bit or ARGB target image. A value is normalized by
+ * {@code (value - min) * normalizationFactor}, rounded and clamped to
+ * {@code 0..255}. For ARGB targets the result is written as an opaque grey
+ * value.
+ * <p>
+ * Signed integer sources are normalized by their signed value. This gives the
+ * same result as {@link ArrayImgXYShortProjector} and
+ * {@link ArrayImgXYByteProjector}, which shift signed values and {@code min}
+ * by the same offset into the unsigned range.
+ * 
+ * @author agent
+ */
+final class NormalizingPlaneWriter
+{
+	private final byte[] byteTarget;
+
+	private final int[] argbTarget;
+
+	private final double min;
+
+	private final double normalizationFactor;
+
+	NormalizingPlaneWriter( final ArrayImg< UnsignedByteType, ByteArray > target, final double normalizationFactor, final double min )
+	{
+		this.byteTarget = target.update( null ).getCurrentStorageArray();
+		this.argbTarget = null;
+		this.normalizationFactor = normalizationFactor;
+		this.min = min;
+	}
+
+	NormalizingPlaneWriter( final ARGBScreenImage target, final double normalizationFactor, final double min )
+	{
+		this.byteTarget = null;
+		this.argbTarget = target.getData();
+		this.normalizationFactor = normalizationFactor;
+		this.min = min;
+	}
+
+	/**
+	 * Returns the number of target pixels.
+	 */
+	int size()
+	{
+		return byteTarget != null ? byteTarget.length : argbTarget.length;
+	}
+
+	/**
+	 * Throws an {@link IllegalArgumentException} unless the target has as many
+	 * pixels as the XY plane of {@code source}.
+	 */
+	void checkSize( final Interval source )
+	{
+		final long width = source.dimension( 0 );
+		final long height = source.numDimensions() > 1 ? source.dimension( 1 ) : 1;
+		if ( width * height != size() )
+			throw new IllegalArgumentException( "target has " + size() + " pixels, but the XY plane of the source has " + width + "x" + height );
+	}
+
+	/**
+	 * Returns {@code true} if {@link #write(Object, boolean, int, int, int)}
+	 * supports the primitive storage array {@code source}.
+	 */
+	static boolean isSupported( final Object source )
+	{
+		return source instanceof byte[] || source instanceof short[] || source instanceof int[] || source instanceof float[] || source instanceof double[];
+	}
+
+	void write( final byte[] source, final boolean isSigned, final int sourceOffset, final int targetOffset, final int length )
+	{
+		if ( isSigned )
+			for ( int i = 0; i < length; ++i )
+				set( targetOffset + i, source[ sourceOffset + i ] );
+		else
+			for ( int i = 0; i < length; ++i )
+				set( targetOffset + i, source[ sourceOffset + i ] & 0xff );
+	}
+
+	void write( final short[] source, final boolean isSigned, final int sourceOffset, final int targetOffset, final int length )
+	{
+		if ( isSigned )
+			for ( int i = 0; i < length; ++i )
+				set( targetOffset + i, source[ sourceOffset + i ] );
+		else
+			for ( int i = 0; i < length; ++i )
+				set( targetOffset + i, source[ sourceOffset + i ] & 0xffff );
+	}
+
+	void write( final int[] source, final boolean isSigned, final int sourceOffset, final int targetOffset, final int length )
+	{
+		if ( isSigned )
+			for ( int i = 0; i < length; ++i )
+				set( targetOffset + i, source[ sourceOffset + i ] );
+		else
+			for ( int i = 0; i < length; ++i )
+				set( targetOffset + i, source[ sourceOffset + i ] & 0xffffffffL );
+	}
+
+	void write( final float[] source, final int sourceOffset, final int targetOffset, final int length )
+	{
+		for ( int i = 0; i < length; ++i )
+			set( targetOffset + i, source[ sourceOffset + i ] );
+	}
+
+	void write( final double[] source, final int sourceOffset, final int targetOffset, final int length )
+	{
+		for ( int i = 0; i < length; ++i )
+			set( targetOffset + i, source[ sourceOffset + i ] );
+	}
+
+	/**
+	 * Write the primitive array {@code source} of a
+	 * {@link net.imglib2.img.basictypeaccess.array.ArrayDataAccess}.
+	 */
+	void write( final Object source, final boolean isSigned, final int sourceOffset, final int targetOffset, final int length )
+	{
+		if ( source instanceof byte[] )
+			write( ( byte[] ) source, isSigned, sourceOffset, targetOffset, length );
+		else if ( source instanceof short[] )
+			write( ( short[] ) source, isSigned, sourceOffset, targetOffset, length );
+		else if ( source instanceof int[] )
+			write( ( int[] ) source, isSigned, sourceOffset, targetOffset, length );
+		else if ( source instanceof float[] )
+			write( ( float[] ) source, sourceOffset, targetOffset, length );
+		else if ( source instanceof double[] )
+			write( ( double[] ) source, sourceOffset, targetOffset, length );
+		else
+			throw new IllegalArgumentException( "unsupported storage array " + source.getClass().getSimpleName() );
+	}
+
+	private void set( final int i, final double value )
+	{
+		final int v = ( int ) Math.min( 255, Math.max( 0, Math.round( ( value - min ) * normalizationFactor ) ) );
+		if ( byteTarget != null )
+			byteTarget[ i ] = ( byte ) v;
+		else
+			argbTarget[ i ] = 0xff000000 | ( v << 16 ) | ( v << 8 ) | v;
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.display.projector.specialized;
+
+import net.imglib2.display.projector.AbstractProjector2D;
+import net.imglib2.display.screenimage.awt.ARGBScreenImage;
+import net.imglib2.display.screenimage.awt.UnsignedByteAWTScreenImage;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * Fast implementation of a {@link AbstractProjector2D} that selects a 2D data
+ * plain from a FloatType PlanarImg. The map method normalizes the values
+ * directly from the {@code float[]} of the selected plane into the
+ * primitive array of an 8-bit image (e.g., for
+ * {@link UnsignedByteAWTScreenImage}) or an {@link ARGBScreenImage}.
+ * <p>
+ * A value is normalized by: normalizedValue = (value - min) *
+ * normalizationFactor, clamped to 0..255.
+ * 
+ * @author agent
+ */
+public class PlanarImgXYFloatProjector extends AbstractProjector2D
+{
+
+	private final PlanarImg< FloatType, FloatArray > source;
+
+	private final NormalizingPlaneWriter writer;
+
+	/**
+	 * Normalizes a PlanarImg and writes the result into an 8-bit target.
+	 * 
+	 * @param source
+	 *            input data
+	 * @param target
+	 *            8-bit output, with the dimensions of the XY plane of
+	 *            {@code source}
+	 * @param normalizationFactor
+	 * @param min
+	 */
+	public PlanarImgXYFloatProjector( final PlanarImg< FloatType, FloatArray > source, final ArrayImg< UnsignedByteType, ByteArray > target, final double normalizationFactor, final double min )
+	{
+		this( source, new NormalizingPlaneWriter( target, normalizationFactor, min ) );
+	}
+
+	/**
+	 * Normalizes a PlanarImg and writes the result as grey values into an
+	 * ARGB target.
+	 * 
+	 * @param source
+	 *            input data
+	 * @param target
+	 *            ARGB output, with the dimensions of the XY plane of
+	 *            {@code source}
+	 * @param normalizationFactor
+	 * @param min
+	 */
+	public PlanarImgXYFloatProjector( final PlanarImg< FloatType, FloatArray > source, final ARGBScreenImage target, final double normalizationFactor, final double min )
+	{
+		this( source, new NormalizingPlaneWriter( target, normalizationFactor, min ) );
+	}
+
+	private PlanarImgXYFloatProjector( final PlanarImg< FloatType, FloatArray > source, final NormalizingPlaneWriter writer )
+	{
+		super( source.numDimensions() );
+
+		this.writer = writer;
+		writer.checkSize( source );
+		this.source = source;
+	}
+
+	@Override
+	public void map()
+	{
+		// positioning for every call to map because the plane index is
+		// position dependent
+		int planeIndex;
+		if ( position.length > 2 )
+		{
+			final long[] tmpPos = new long[ position.length - 2 ];
+			final long[] tmpDim = new long[ position.length - 2 ];
+			for ( int i = 0; i < tmpDim.length; i++ )
+			{
+				tmpPos[ i ] = position[ i + 2 ];
+				tmpDim[ i ] = source.dimension( i + 2 );
+			}
+			planeIndex = ( int ) IntervalIndexer.positionToIndex( tmpPos, tmpDim );
+		}
+		else
+		{
+			planeIndex = 0;
+		}
+
+		final float[] sourceArray = source.update( new PlanarImgContainerSamplerImpl( planeIndex ) ).getCurrentStorageArray();
+
+		writer.write( sourceArray, 0, 0, writer.size() );
+	}
+
+}
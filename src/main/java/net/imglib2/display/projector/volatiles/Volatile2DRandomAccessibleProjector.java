@@ -33,6 +33,11 @@
  */
 package net.imglib2.display.projector.volatiles;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
 import net.imglib2.IterableInterval;
@@ -42,12 +47,21 @@ import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.Volatile;
 import net.imglib2.converter.Converter;
 import net.imglib2.display.projector.IterableIntervalProjector2D;
+import net.imglib2.parallel.Chunk;
+import net.imglib2.parallel.Chunks;
 import net.imglib2.view.Views;
 
 /**
  * {@link IterableIntervalProjector2D} for {@link Volatile} input. After each
  * {@link #map()} call, the projector has a {@link #isValid() state} that
  * signalizes whether all projected pixels were valid.
+ * <p>
+ * The target is divided into tiles of {@link #setTileHeight(int) a few} rows.
+ * Validity is tracked per tile, and subsequent {@link #map()} calls only
+ * re-render tiles that contained invalid pixels. All tiles are rendered again
+ * when the projector position changes, or after {@link #invalidate()}. A
+ * {@link #map()} call can be {@link #cancel() canceled} from another thread
+ * between tiles, the remaining tiles stay invalid.
  *
  * @author Stephan Saalfeld
  */
@@ -55,11 +69,30 @@ public class Volatile2DRandomAccessibleProjector< T, A extends Volatile< T >, B
 {
 	protected boolean valid = false;
 
+	private int tileHeight = 16;
+
+	private List< Chunk > tiles;
+
+	private boolean[] tileValid;
+
+	/**
+	 * Source interval rendered by the previous {@link #map()} call, or
+	 * {@code null} if all tiles must be rendered.
+	 */
+	private long[] mappedMin;
+
+	private long lastMapNanoTime;
+
 	public Volatile2DRandomAccessibleProjector( final int dimX, final int dimY, final RandomAccessible< A > source, final RandomAccessibleInterval< B > target, final Converter< ? super A, B > converter )
 	{
 		super( dimX, dimY, source, Views.iterable( target ), converter );
 	}
 
+	public Volatile2DRandomAccessibleProjector( final int dimX, final int dimY, final RandomAccessible< A > source, final RandomAccessibleInterval< B > target, final Supplier< ? extends Converter< ? super A, B > > converterSupplier )
+	{
+		super( dimX, dimY, source, Views.iterable( target ), converterSupplier );
+	}
+
 	/**
 	 * @return true if all mapped pixels were {@link Volatile#isValid() valid}.
 	 */
@@ -68,13 +101,72 @@ public class Volatile2DRandomAccessibleProjector< T, A extends Volatile< T >, B
 		return valid;
 	}
 
+	/**
+	 * Mark all tiles invalid, such that the next {@link #map()} renders the
+	 * complete target. This should be called when the source data or the
+	 * converter changed.
+	 */
+	public void invalidate()
+	{
+		mappedMin = null;
+		valid = false;
+	}
+
+	/**
+	 * Set the number of target rows per tile. Invalidates all tiles.
+	 */
+	public void setTileHeight( final int tileHeight )
+	{
+		if ( tileHeight < 1 )
+			throw new IllegalArgumentException( "tileHeight must be >= 1" );
+		this.tileHeight = tileHeight;
+		tiles = null;
+		invalidate();
+	}
+
+	/**
+	 * Returns the number of target rows per tile.
+	 */
+	public int getTileHeight()
+	{
+		return tileHeight;
+	}
+
+	/**
+	 * Returns the number of tiles the target is divided into.
+	 */
+	public int numTiles()
+	{
+		return tiles().size();
+	}
+
+	/**
+	 * Returns {@code true} if all pixels of the given tile were valid when it
+	 * was last rendered.
+	 */
+	public boolean isTileValid( final int tile )
+	{
+		return mappedMin != null && tileValid[ tile ];
+	}
+
+	/**
+	 * Returns the time in nanoseconds spent in the last {@link #map()} call.
+	 */
+	public long getLastMapNanoTime()
+	{
+		return lastMapNanoTime;
+	}
+
 	/**
 	 * projects data from the source to the target and applies the former
-	 * specified {@link Converter} e.g. for normalization.
+	 * specified {@link Converter} e.g. for normalization. Only tiles that were
+	 * not valid in the previous call are rendered.
 	 */
 	@Override
 	public void map()
 	{
+		final long startTime = System.nanoTime();
+
 		// fix interval for all dimensions
 		for ( int d = 0; d < position.length; ++d )
 			min[ d ] = max[ d ] = position[ d ];
@@ -84,30 +176,82 @@ public class Volatile2DRandomAccessibleProjector< T, A extends Volatile< T >, B
 		max[ 0 ] = target.max( 0 );
 		max[ 1 ] = target.max( 1 );
 
+		final List< Chunk > allTiles = tiles();
+		if ( mappedMin == null || !Arrays.equals( mappedMin, min ) )
+		{
+			Arrays.fill( tileValid, false );
+			mappedMin = min.clone();
+		}
+
+		final long tileSize = tileHeight * target.dimension( 0 );
+		final List< Chunk > invalidTiles = new ArrayList<>();
+		for ( int i = 0; i < allTiles.size(); ++i )
+			if ( !tileValid[ i ] )
+				invalidTiles.add( allTiles.get( i ) );
+
 		final IterableInterval< A > srcIterable = Views.iterable( Views.interval( source, new FinalInterval( min, max ) ) );
-		final Cursor< B > targetCursor = target.localizingCursor();
+		final boolean sameIterationOrder = target.iterationOrder().equals( srcIterable.iterationOrder() );
+		// one converter per thread, not per tile
+		final ThreadLocal< Converter< ? super A, B > > converters = ThreadLocal.withInitial( this::chunkConverter );
+		mapChunks( invalidTiles, chunk -> {
+			final int tile = ( int ) ( chunk.getStartIndex() / tileSize );
+			tileValid[ tile ] = sameIterationOrder
+					? mapIterationOrder( srcIterable, chunk, converters.get() )
+					: mapLocalizing( chunk, converters.get() );
+		} );
+
+		boolean allValid = true;
+		for ( final boolean v : tileValid )
+			allValid &= v;
+		valid = allValid;
+
+		lastMapNanoTime = System.nanoTime() - startTime;
+	}
+
+	private List< Chunk > tiles()
+	{
+		if ( tiles == null )
+		{
+			final long width = target.dimension( 0 );
+			final long numTiles = ( target.size() / width + tileHeight - 1 ) / tileHeight;
+			tiles = Chunks.split( target.size(), tileHeight * width, ( int ) Math.max( 1, numTiles ) );
+			tileValid = new boolean[ tiles.size() ];
+		}
+		return tiles;
+	}
 
-		if ( target.iterationOrder().equals( srcIterable.iterationOrder() ) )
+	private boolean mapIterationOrder( final IterableInterval< A > srcIterable, final Chunk chunk, final Converter< ? super A, B > conv )
+	{
+		// use cursors
+		boolean v = true;
+		final Cursor< A > sourceCursor = chunk.cursor( srcIterable );
+		final Cursor< B > targetCursor = chunk.cursor( target );
+		for ( long i = 0; i < chunk.size(); ++i )
 		{
-			// use cursors
-			final Cursor< A > sourceCursor = srcIterable.cursor();
-			while ( targetCursor.hasNext() )
-			{
-				converter.convert( sourceCursor.next(), targetCursor.next() );
-			}
+			final A a = sourceCursor.next();
+			conv.convert( a, targetCursor.next() );
+			v &= a.isValid();
 		}
-		else
+		return v;
+	}
+
+	private boolean mapLocalizing( final Chunk chunk, final Converter< ? super A, B > conv )
+	{
+		// use localizing cursor
+		boolean v = true;
+		final Cursor< B > targetCursor = chunk.localizingCursor( target );
+		final RandomAccess< A > sourceRandomAccess = source.randomAccess();
+		sourceRandomAccess.setPosition( min );
+		for ( long i = 0; i < chunk.size(); ++i )
 		{
-			// use localizing cursor
-			final RandomAccess< A > sourceRandomAccess = source.randomAccess();
-			while ( targetCursor.hasNext() )
-			{
-				final B b = targetCursor.next();
-				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
-				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), 1 );
-
-				converter.convert( sourceRandomAccess.get(), b );
-			}
+			final B b = targetCursor.next();
+			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
+			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), 1 );
+
+			final A a = sourceRandomAccess.get();
+			conv.convert( a, b );
+			v &= a.isValid();
 		}
+		return v;
 	}
 }
@@ -47,6 +47,7 @@ import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.util.Intervals;
 
 /**
  * This class represents an n-dimensional set of counters. Histogram
@@ -168,6 +169,53 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 		totalValues--;
 	}
 
+	/**
+	 * Increments the frequency count of a specified bin by {@code count}.
+	 */
+	public void increment( final long[] binPos, final long count )
+	{
+		accessor.setPosition( binPos );
+		final LongType t = accessor.get();
+		t.set( t.get() + count );
+		totalValues += count;
+	}
+
+	/**
+	 * Adds the frequency counts of another distribution to this one. This can
+	 * be used to merge partial distributions that were counted independently
+	 * (e.g., by several threads).
+	 *
+	 * @param other
+	 *            a distribution with the same bin counts as this one
+	 */
+	public void add( final DiscreteFrequencyDistribution other )
+	{
+		if ( !Intervals.equalDimensions( this, other ) )
+			throw new IllegalArgumentException( "distributions must have the same bin counts" );
+		if ( counts.iterationOrder().equals( other.counts.iterationOrder() ) )
+		{
+			final Cursor< LongType > c = counts.cursor();
+			final Cursor< LongType > o = other.counts.cursor();
+			while ( c.hasNext() )
+			{
+				final LongType t = c.next();
+				t.set( t.get() + o.next().get() );
+			}
+		}
+		else
+		{
+			final Cursor< LongType > c = counts.localizingCursor();
+			final RandomAccess< LongType > o = other.counts.randomAccess();
+			while ( c.hasNext() )
+			{
+				final LongType t = c.next();
+				o.setPosition( c );
+				t.set( t.get() + o.get().get() );
+			}
+		}
+		totalValues += other.totalValues;
+	}
+
 	/**
 	 * Returns the total number of values counted by this distribution.
 	 */
@@ -34,16 +34,29 @@
 
 package net.imglib2.histogram;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.parallel.Chunk;
+import net.imglib2.parallel.Chunks;
+import net.imglib2.parallel.ParallelIteration;
 import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
 
 /**
  * A Histogram1d is a histogram that tracks up to four kinds of values: 1)
@@ -437,6 +450,45 @@ public class Histogram1d< T > implements Img< LongType >
 		add( data );
 	}
 
+	/**
+	 * Counts the data contained in the given data source using the underlying
+	 * bin distribution. The data is split into {@code numTasks} chunks that are
+	 * counted into partial distributions by {@code executor} and merged
+	 * afterwards. If {@code executor} is {@code null} or {@code numTasks <= 1}
+	 * the data is counted in the calling thread.
+	 * 
+	 * @param data
+	 *            The total data to count
+	 * @param numTasks
+	 *            The number of chunks to split the data into
+	 * @param executor
+	 *            The executor used to count the chunks
+	 */
+	public void countData( final IterableInterval< T > data, final int numTasks, final ExecutorService executor )
+	{
+		reset();
+		if ( data.size() > 0 )
+			firstValue = data.firstElement();
+		add( data, numTasks, executor );
+	}
+
+	/**
+	 * Counts additional data contained in a given data source, splitting the
+	 * work into {@code numTasks} chunks counted by {@code executor}.
+	 * 
+	 * @param data
+	 *            The new data to count
+	 * @param numTasks
+	 *            The number of chunks to split the data into
+	 * @param executor
+	 *            The executor used to count the chunks
+	 * @see #countData(IterableInterval, int, ExecutorService)
+	 */
+	public void addData( final IterableInterval< T > data, final int numTasks, final ExecutorService executor )
+	{
+		add( data, numTasks, executor );
+	}
+
 	/**
 	 * Uncounts some original data contained in a given iterable collection. One
 	 * can use this to update an existing histogram with a subset of values.
@@ -732,6 +784,12 @@ public class Histogram1d< T > implements Img< LongType >
 
 	private void init( final Iterable< T > data )
 	{
+		if ( data instanceof IterableInterval && countsRawValues( ( IterableInterval< T > ) data ) )
+		{
+			countData( ( IterableInterval< T > ) data, 1, null );
+			return;
+		}
+
 		reset();
 
 		// record the first element
@@ -751,12 +809,160 @@ public class Histogram1d< T > implements Img< LongType >
 
 	private void add( final Iterable< T > data )
 	{
+		if ( data instanceof IterableInterval && countsRawValues( ( IterableInterval< T > ) data ) )
+		{
+			add( ( IterableInterval< T > ) data, 1, null );
+			return;
+		}
+
 		for ( final T value : data )
 		{
 			increment( value );
 		}
 	}
 
+	private void add( final IterableInterval< T > data, final int numTasks, final ExecutorService executor )
+	{
+		if ( countsRawValues( data ) )
+		{
+			addRawCounts( data, numTasks, executor );
+		}
+		else if ( numTasks <= 1 || executor == null )
+		{
+			for ( final T value : data )
+			{
+				increment( value );
+			}
+		}
+		else
+		{
+			final List< Chunk > chunks = Chunks.split( data, numTasks );
+			final List< Callable< Histogram1d< T > > > tasks = new ArrayList<>( chunks.size() );
+			for ( final Chunk chunk : chunks )
+			{
+				tasks.add( () -> {
+					final Histogram1d< T > partial = new Histogram1d<>( mapper.copy() );
+					final Cursor< T > cursor = chunk.cursor( data );
+					for ( long i = 0; i < chunk.size(); ++i )
+						partial.increment( cursor.next() );
+					return partial;
+				} );
+			}
+			for ( final Histogram1d< T > partial : ParallelIteration.invokeAll( tasks, executor ) )
+			{
+				distrib.add( partial.distrib );
+				ignoredCount += partial.ignoredCount;
+			}
+		}
+	}
+
+	/**
+	 * Whether {@code data} can be counted by tallying raw values first and
+	 * mapping each distinct value to a bin afterwards. This is the case for
+	 * {@link Integer1dBinMapper}s over {@link UnsignedByteType} and
+	 * {@link UnsignedShortType} data.
+	 */
+	private boolean countsRawValues( final IterableInterval< T > data )
+	{
+		if ( !( mapper instanceof Integer1dBinMapper ) || data.size() == 0 )
+			return false;
+		final T t = data.firstElement();
+		return t instanceof UnsignedByteType || t instanceof UnsignedShortType;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private void addRawCounts( final IterableInterval< T > data, final int numTasks, final ExecutorService executor )
+	{
+		final T t = data.firstElement();
+		final boolean isByte = t instanceof UnsignedByteType;
+		final int numValues = isByte ? 1 << 8 : 1 << 16;
+
+		final long[] raw;
+		if ( numTasks <= 1 || executor == null )
+		{
+			raw = countRawValues( data, new Chunk( 0, data.size() ), numValues );
+		}
+		else
+		{
+			final List< Chunk > chunks = Chunks.split( data, numTasks );
+			final List< Callable< long[] > > tasks = new ArrayList<>( chunks.size() );
+			for ( final Chunk chunk : chunks )
+				tasks.add( () -> countRawValues( data, chunk, numValues ) );
+			final List< long[] > partials = ParallelIteration.invokeAll( tasks, executor );
+			raw = partials.get( 0 );
+			for ( int i = 1; i < partials.size(); ++i )
+			{
+				final long[] partial = partials.get( i );
+				for ( int v = 0; v < numValues; ++v )
+					raw[ v ] += partial[ v ];
+			}
+		}
+
+		final T value;
+		if ( isByte )
+			value = ( T ) new UnsignedByteType();
+		else
+			value = ( T ) new UnsignedShortType();
+		for ( int v = 0; v < numValues; ++v )
+		{
+			final long count = raw[ v ];
+			if ( count == 0 )
+				continue;
+			if ( isByte )
+				( ( UnsignedByteType ) value ).set( v );
+			else
+				( ( UnsignedShortType ) value ).set( v );
+			final long bin = mapper.map( value );
+			if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+			{
+				ignoredCount += count;
+			}
+			else
+			{
+				pos[ 0 ] = bin;
+				distrib.increment( pos, count );
+			}
+		}
+	}
+
+	/**
+	 * Tally the raw values of the {@link UnsignedByteType} or
+	 * {@link UnsignedShortType} elements in {@code chunk}. {@link ArrayImg}s
+	 * are scanned directly on the primitive storage array.
+	 */
+	private static long[] countRawValues( final IterableInterval< ? > data, final Chunk chunk, final int numValues )
+	{
+		final long[] raw = new long[ numValues ];
+		final int start = ( int ) chunk.getStartIndex();
+		final int end = start + ( int ) chunk.size();
+		final Object access = data instanceof ArrayImg ? ( ( ArrayImg< ?, ? > ) data ).update( null ) : null;
+		if ( access instanceof ByteArray && numValues == 1 << 8 )
+		{
+			final byte[] values = ( ( ByteArray ) access ).getCurrentStorageArray();
+			for ( int i = start; i < end; ++i )
+				++raw[ values[ i ] & 0xff ];
+		}
+		else if ( access instanceof ShortArray && numValues == 1 << 16 )
+		{
+			final short[] values = ( ( ShortArray ) access ).getCurrentStorageArray();
+			for ( int i = start; i < end; ++i )
+				++raw[ values[ i ] & 0xffff ];
+		}
+		else if ( numValues == 1 << 8 )
+		{
+			final Cursor< ? > cursor = chunk.cursor( data );
+			for ( long i = 0; i < chunk.size(); ++i )
+				++raw[ ( ( UnsignedByteType ) cursor.next() ).get() ];
+		}
+		else
+		{
+			final Cursor< ? > cursor = chunk.cursor( data );
+			for ( long i = 0; i < chunk.size(); ++i )
+				++raw[ ( ( UnsignedShortType ) cursor.next() ).get() ];
+		}
+		return raw;
+	}
+
 	private void subtract( final Iterable< T > data )
 	{
 		for ( final T value : data )
@@ -37,14 +37,20 @@ package net.imglib2.histogram;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.parallel.Chunk;
+import net.imglib2.parallel.Chunks;
+import net.imglib2.parallel.ParallelIteration;
 import net.imglib2.type.numeric.integer.LongType;
 
 // TODO - calculate lazily but should be able to count upper/lower/middle in
@@ -112,7 +118,7 @@ public class HistogramNd< T > implements Img< LongType >
 	public HistogramNd( final HistogramNd< T > other )
 	{
 		final List< BinMapper1d< T >> mappersCopy = new ArrayList< BinMapper1d< T >>();
-		for ( final BinMapper1d< T > m : mappers )
+		for ( final BinMapper1d< T > m : other.mappers )
 		{
 			mappersCopy.add( m.copy() );
 		}
@@ -756,6 +762,27 @@ public class HistogramNd< T > implements Img< LongType >
 		init( data );
 	}
 
+	/**
+	 * Counts the data contained in the given data sources using the underlying
+	 * bin distribution. The data is split into {@code numTasks} chunks that are
+	 * counted into partial distributions by {@code executor} and merged
+	 * afterwards. If {@code executor} is {@code null} or {@code numTasks <= 1}
+	 * the data is counted in the calling thread.
+	 * 
+	 * @param data
+	 *            The total data to count, one source per dimension. All
+	 *            sources must have the same iteration order.
+	 * @param numTasks
+	 *            The number of chunks to split the data into
+	 * @param executor
+	 *            The executor used to count the chunks
+	 */
+	public void countData( final List< ? extends IterableInterval< T >> data, final int numTasks, final ExecutorService executor )
+	{
+		reset();
+		add( data, numTasks, executor );
+	}
+
 	/**
 	 * Counts additional data contained in a given iterable collection. One can
 	 * use this to update an existing histogram with a subset of values.
@@ -780,6 +807,24 @@ public class HistogramNd< T > implements Img< LongType >
 		add( data );
 	}
 
+	/**
+	 * Counts additional data contained in the given data sources, splitting
+	 * the work into {@code numTasks} chunks counted by {@code executor}.
+	 * 
+	 * @param data
+	 *            The new data to count, one source per dimension. All sources
+	 *            must have the same iteration order.
+	 * @param numTasks
+	 *            The number of chunks to split the data into
+	 * @param executor
+	 *            The executor used to count the chunks
+	 * @see #countData(List, int, ExecutorService)
+	 */
+	public void addData( final List< ? extends IterableInterval< T >> data, final int numTasks, final ExecutorService executor )
+	{
+		add( data, numTasks, executor );
+	}
+
 	/**
 	 * Uncounts some original data contained in a given iterable collection. One
 	 * can use this to update an existing histogram with a subset of values.
@@ -1050,6 +1095,57 @@ public class HistogramNd< T > implements Img< LongType >
 		modifyCounts( data, incrementer );
 	}
 
+	private void add( final List< ? extends IterableInterval< T >> data, final int numTasks, final ExecutorService executor )
+	{
+		if ( numTasks <= 1 || executor == null || data.isEmpty() )
+		{
+			modifyCounts( new ArrayList< Iterable< T >>( data ), incrementer );
+			return;
+		}
+
+		final IterableInterval< T > first = data.get( 0 );
+		for ( final IterableInterval< T > d : data )
+		{
+			if ( !first.iterationOrder().equals( d.iterationOrder() ) )
+				throw new IllegalArgumentException( "data sources must have the same iteration order" );
+		}
+
+		final List< Chunk > chunks = Chunks.split( first, numTasks );
+		final List< Callable< HistogramNd< T >> > tasks = new ArrayList<>( chunks.size() );
+		for ( final Chunk chunk : chunks )
+		{
+			tasks.add( () -> {
+				final List< BinMapper1d< T >> mappersCopy = new ArrayList< BinMapper1d< T >>();
+				for ( final BinMapper1d< T > m : mappers )
+				{
+					mappersCopy.add( m.copy() );
+				}
+				final HistogramNd< T > partial = new HistogramNd< T >( mappersCopy );
+				final List< Cursor< T >> cursors = new ArrayList< Cursor< T >>( data.size() );
+				final List< T > vals = new ArrayList< T >( data.size() );
+				for ( final IterableInterval< T > d : data )
+				{
+					cursors.add( chunk.cursor( d ) );
+					vals.add( null );
+				}
+				for ( long i = 0; i < chunk.size(); ++i )
+				{
+					for ( int j = 0; j < cursors.size(); j++ )
+					{
+						vals.set( j, cursors.get( j ).next() );
+					}
+					partial.count( vals, partial.incrementer );
+				}
+				return partial;
+			} );
+		}
+		for ( final HistogramNd< T > partial : ParallelIteration.invokeAll( tasks, executor ) )
+		{
+			distrib.add( partial.distrib );
+			ignoredCount += partial.ignoredCount;
+		}
+	}
+
 	private void subtract( final Iterable< List< T >> data )
 	{
 		modifyCounts( data, decrementer );
@@ -0,0 +1,462 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.histogram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.parallel.Chunk;
+import net.imglib2.parallel.Chunks;
+import net.imglib2.parallel.ParallelIteration;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Util;
+
+/**
+ * A single-pass summary of the distribution of real values that answers
+ * approximate quantile queries. In contrast to {@link Histogram1d}, the range
+ * of the values does not need to be known in advance.
+ * <p>
+ * The sketch is a merging t-digest (Dunning &amp; Ertl, "Computing extremely
+ * accurate quantiles using t-digests"): values are clustered into at most
+ * about {@code compression} weighted centroids, which are small near the tails
+ * of the distribution and larger near the median. Quantile estimates are
+ * therefore most accurate for extreme quantiles. The exact minimum and maximum
+ * are tracked as well.
+ * <p>
+ * Sketches are mergeable: data can be split (e.g., between threads or image
+ * cells), summarized into separate sketches, and combined using
+ * {@link #add(QuantileSketch)}.
+ * <p>
+ * Instances are not thread-safe. Queries may modify the internal state (to
+ * merge buffered values into centroids).
+ *
+ * @author agent
+ */
+public class QuantileSketch
+{
+	private final double compression;
+
+	/**
+	 * Centroid means and weights. The first {@code numMerged} entries are
+	 * merged centroids sorted by mean. Entries {@code numMerged} to
+	 * {@code size} are buffered values that have not been merged yet.
+	 */
+	private double[] means;
+
+	private double[] weights;
+
+	private int numMerged;
+
+	private int size;
+
+	private double totalWeight;
+
+	private double min;
+
+	private double max;
+
+	/**
+	 * Create an empty sketch with a compression of 100.
+	 */
+	public QuantileSketch()
+	{
+		this( 100 );
+	}
+
+	/**
+	 * Create an empty sketch.
+	 *
+	 * @param compression
+	 *            controls accuracy and size of the sketch. The sketch keeps at
+	 *            most about {@code compression} centroids.
+	 */
+	public QuantileSketch( final double compression )
+	{
+		if ( !( compression >= 1 ) )
+			throw new IllegalArgumentException( "compression must be >= 1" );
+		this.compression = compression;
+		final int capacity = 6 * ( int ) Math.ceil( compression ) + 1;
+		means = new double[ capacity ];
+		weights = new double[ capacity ];
+		clear();
+	}
+
+	/**
+	 * Create a sketch summarizing {@code data}.
+	 */
+	public < T extends RealType< T > > QuantileSketch( final Iterable< T > data, final double compression )
+	{
+		this( compression );
+		add( data );
+	}
+
+	private QuantileSketch( final QuantileSketch other )
+	{
+		compression = other.compression;
+		means = other.means.clone();
+		weights = other.weights.clone();
+		numMerged = other.numMerged;
+		size = other.size;
+		totalWeight = other.totalWeight;
+		min = other.min;
+		max = other.max;
+	}
+
+	/**
+	 * Remove all values from the sketch.
+	 */
+	public void clear()
+	{
+		numMerged = 0;
+		size = 0;
+		totalWeight = 0;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Add a value. {@code NaN} values are ignored.
+	 */
+	public void add( final double value )
+	{
+		add( value, 1 );
+	}
+
+	/**
+	 * Add all values of {@code data}. {@code NaN} values are ignored.
+	 */
+	public < T extends RealType< T > > void add( final Iterable< T > data )
+	{
+		for ( final T t : data )
+			add( t.getRealDouble(), 1 );
+	}
+
+	/**
+	 * Add all values of {@code data}. The data is split into {@code numTasks}
+	 * chunks that are summarized into partial sketches by {@code executor} and
+	 * merged afterwards. If {@code executor} is {@code null} or
+	 * {@code numTasks <= 1} the data is processed in the calling thread.
+	 */
+	public < T extends RealType< T > > void add( final IterableInterval< T > data, final int numTasks, final ExecutorService executor )
+	{
+		if ( numTasks <= 1 || executor == null )
+		{
+			add( data );
+			return;
+		}
+
+		final List< Chunk > chunks = Chunks.split( data, numTasks );
+		final List< Callable< QuantileSketch > > tasks = new ArrayList<>( chunks.size() );
+		for ( final Chunk chunk : chunks )
+		{
+			tasks.add( () -> {
+				final QuantileSketch partial = new QuantileSketch( compression );
+				final Cursor< T > cursor = chunk.cursor( data );
+				for ( long i = 0; i < chunk.size(); ++i )
+					partial.add( cursor.next().getRealDouble(), 1 );
+				return partial;
+			} );
+		}
+		for ( final QuantileSketch partial : ParallelIteration.invokeAll( tasks, executor ) )
+			add( partial );
+	}
+
+	/**
+	 * Merge all values summarized by {@code other} into this sketch.
+	 */
+	public void add( final QuantileSketch other )
+	{
+		if ( other == this )
+		{
+			// adding to this sketch while iterating its centroids would not
+			// terminate
+			add( copy() );
+			return;
+		}
+		other.merge();
+		for ( int i = 0; i < other.size; ++i )
+			add( other.means[ i ], other.weights[ i ] );
+		min = Math.min( min, other.min );
+		max = Math.max( max, other.max );
+	}
+
+	private void add( final double value, final double weight )
+	{
+		if ( Double.isNaN( value ) )
+			return;
+		if ( size == means.length )
+		{
+			merge();
+			if ( size == means.length )
+			{
+				means = Arrays.copyOf( means, 2 * size );
+				weights = Arrays.copyOf( weights, 2 * size );
+			}
+		}
+		means[ size ] = value;
+		weights[ size ] = weight;
+		++size;
+		totalWeight += weight;
+		if ( value < min )
+			min = value;
+		if ( value > max )
+			max = value;
+	}
+
+	/**
+	 * Returns the number of values summarized by this sketch.
+	 */
+	public long count()
+	{
+		return Math.round( totalWeight );
+	}
+
+	/**
+	 * Returns the smallest value added to the sketch, or {@code NaN} if the
+	 * sketch is empty.
+	 */
+	public double min()
+	{
+		return totalWeight == 0 ? Double.NaN : min;
+	}
+
+	/**
+	 * Returns the largest value added to the sketch, or {@code NaN} if the
+	 * sketch is empty.
+	 */
+	public double max()
+	{
+		return totalWeight == 0 ? Double.NaN : max;
+	}
+
+	/**
+	 * Returns the compression parameter of this sketch.
+	 */
+	public double compression()
+	{
+		return compression;
+	}
+
+	/**
+	 * Returns the number of centroids currently used to summarize the values.
+	 */
+	public int numCentroids()
+	{
+		merge();
+		return size;
+	}
+
+	/**
+	 * Returns the approximate {@code q}-quantile of the values, or {@code NaN}
+	 * if the sketch is empty.
+	 *
+	 * @param q
+	 *            quantile in {@code [0, 1]}
+	 */
+	public double quantile( final double q )
+	{
+		if ( q < 0 || q > 1 )
+			throw new IllegalArgumentException( "quantile must be in [0, 1]" );
+		if ( totalWeight == 0 )
+			return Double.NaN;
+		merge();
+
+		final double t = q * totalWeight;
+		if ( t <= weights[ 0 ] / 2 )
+			return interpolate( t, 0, weights[ 0 ] / 2, min, means[ 0 ] );
+
+		double c = weights[ 0 ] / 2;
+		for ( int i = 0; i < size - 1; ++i )
+		{
+			final double cNext = c + ( weights[ i ] + weights[ i + 1 ] ) / 2;
+			if ( t <= cNext )
+				return interpolate( t, c, cNext, means[ i ], means[ i + 1 ] );
+			c = cNext;
+		}
+		return interpolate( t, c, totalWeight, means[ size - 1 ], max );
+	}
+
+	/**
+	 * Returns the approximate fraction of values that are {@code <= x}, or
+	 * {@code NaN} if the sketch is empty.
+	 */
+	public double cdf( final double x )
+	{
+		if ( totalWeight == 0 )
+			return Double.NaN;
+		if ( x < min )
+			return 0;
+		if ( x >= max )
+			return 1;
+		merge();
+
+		if ( x < means[ 0 ] )
+			return interpolate( x, min, means[ 0 ], 0, weights[ 0 ] / 2 ) / totalWeight;
+
+		double c = weights[ 0 ] / 2;
+		for ( int i = 0; i < size - 1; ++i )
+		{
+			final double cNext = c + ( weights[ i ] + weights[ i + 1 ] ) / 2;
+			if ( x < means[ i + 1 ] )
+				return interpolate( x, means[ i ], means[ i + 1 ], c, cNext ) / totalWeight;
+			c = cNext;
+		}
+		return interpolate( x, means[ size - 1 ], max, c, totalWeight ) / totalWeight;
+	}
+
+	/**
+	 * Estimate a histogram of the values with {@code numBins} bins of equal
+	 * width spanning {@code [min(), max()]}.
+	 */
+	public DiscreteFrequencyDistribution dfd( final long numBins )
+	{
+		return dfd( min, max, numBins );
+	}
+
+	/**
+	 * Estimate a histogram of the values with {@code numBins} bins of equal
+	 * width spanning {@code [minVal, maxVal]}. Bins include their lower bound,
+	 * the last bin also includes its upper bound. Values outside the range are
+	 * not counted.
+	 */
+	public DiscreteFrequencyDistribution dfd( final double minVal, final double maxVal, final long numBins )
+	{
+		final DiscreteFrequencyDistribution dfd = new DiscreteFrequencyDistribution( new long[] { numBins } );
+		if ( totalWeight == 0 )
+			return dfd;
+
+		final long[] pos = new long[ 1 ];
+		final double binWidth = ( maxVal - minVal ) / numBins;
+		long lower = Math.round( totalWeight * cdfBelow( minVal ) );
+		for ( long i = 0; i < numBins; ++i )
+		{
+			final long upper = i == numBins - 1
+					? Math.round( totalWeight * cdf( maxVal ) )
+					: Math.round( totalWeight * cdfBelow( minVal + ( i + 1 ) * binWidth ) );
+			pos[ 0 ] = i;
+			dfd.setFrequency( pos, Math.max( 0, upper - lower ) );
+			lower = Math.max( lower, upper );
+		}
+		return dfd;
+	}
+
+	/**
+	 * Create a copy of this sketch.
+	 */
+	public QuantileSketch copy()
+	{
+		return new QuantileSketch( this );
+	}
+
+	/**
+	 * Approximate fraction of values that are {@code < x}.
+	 */
+	private double cdfBelow( final double x )
+	{
+		return x <= min ? 0 : cdf( x );
+	}
+
+	private static double interpolate( final double x, final double x0, final double x1, final double y0, final double y1 )
+	{
+		if ( x1 <= x0 )
+			return y0;
+		return y0 + ( x - x0 ) / ( x1 - x0 ) * ( y1 - y0 );
+	}
+
+	/**
+	 * Merge buffered values into the sorted centroids.
+	 */
+	private void merge()
+	{
+		if ( numMerged == size )
+			return;
+
+		if ( size > 1 )
+			Util.quicksort( means, weights, 0, size - 1 );
+
+		// Greedily combine neighboring centroids, such that each centroid
+		// spans at most 1 along the scale function k(q) = compression / (2
+		// pi) * asin(2q - 1). Output entries are written in place, never
+		// ahead of the entry being read.
+		double wSoFar = 0;
+		double qLimit = kInverse( k( 0 ) + 1 );
+		int n = 0;
+		double mean = means[ 0 ];
+		double weight = weights[ 0 ];
+		for ( int i = 1; i < size; ++i )
+		{
+			final double w = weights[ i ];
+			if ( ( wSoFar + weight + w ) / totalWeight <= qLimit )
+			{
+				weight += w;
+				mean += ( means[ i ] - mean ) * w / weight;
+			}
+			else
+			{
+				means[ n ] = mean;
+				weights[ n ] = weight;
+				++n;
+				wSoFar += weight;
+				qLimit = kInverse( k( wSoFar / totalWeight ) + 1 );
+				mean = means[ i ];
+				weight = w;
+			}
+		}
+		means[ n ] = mean;
+		weights[ n ] = weight;
+		++n;
+
+		size = n;
+		numMerged = n;
+	}
+
+	private double k( final double q )
+	{
+		return compression / ( 2 * Math.PI ) * Math.asin( 2 * q - 1 );
+	}
+
+	private double kInverse( final double k )
+	{
+		if ( k >= compression / 4 )
+			return 1;
+		return ( Math.sin( k * 2 * Math.PI / compression ) + 1 ) / 2;
+	}
+}
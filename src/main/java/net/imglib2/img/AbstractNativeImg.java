@@ -59,6 +59,14 @@ public abstract class AbstractNativeImg< T extends NativeType< T >, A >
 		this.numEntities = entitiesPerPixel.mulCeil( numPixels );
 	}
 
+	/**
+	 * @return the number of storage entities (e.g., {@code int}s) per pixel.
+	 */
+	public Fraction getEntitiesPerPixel()
+	{
+		return entitiesPerPixel;
+	}
+
 	@Override
 	public void setLinkedType( final T type )
 	{
@@ -0,0 +1,185 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.array;
+
+import net.imglib2.AbstractCursor;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * {@link net.imglib2.Cursor} on a {@link ChunkedArrayImg}.
+ *
+ * @param <T>
+ *
+ * @author agent
+ */
+public class ChunkedArrayCursor< T extends NativeType< T > > extends AbstractCursor< T > implements ChunkedArrayImg.ChunkedArraySampler
+{
+	protected final T type;
+
+	protected final ChunkedArrayImg< T, ? > img;
+
+	protected final int lastChunkIndex, lastIndexInLastChunk;
+
+	protected int chunkIndex;
+
+	/**
+	 * The current index of the type within the current chunk. It is faster to
+	 * duplicate this here than to access it through type.getIndex().
+	 */
+	protected int index;
+
+	protected ChunkedArrayCursor( final ChunkedArrayCursor< T > cursor )
+	{
+		super( cursor.numDimensions() );
+
+		img = cursor.img;
+		type = img.createLinkedType();
+
+		lastChunkIndex = cursor.lastChunkIndex;
+		lastIndexInLastChunk = cursor.lastIndexInLastChunk;
+		chunkIndex = cursor.chunkIndex;
+		index = cursor.index;
+
+		type.updateContainer( this );
+		type.updateIndex( index );
+	}
+
+	public ChunkedArrayCursor( final ChunkedArrayImg< T, ? > img )
+	{
+		super( img.numDimensions() );
+
+		this.img = img;
+		type = img.createLinkedType();
+
+		final long lastIndex = img.size() - 1;
+		lastChunkIndex = ( int ) ( lastIndex >> img.log2ChunkSize );
+		lastIndexInLastChunk = ( int ) ( lastIndex & img.chunkMask );
+
+		reset();
+	}
+
+	@Override
+	public int getCurrentChunkIndex()
+	{
+		return chunkIndex;
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public ChunkedArrayCursor< T > copy()
+	{
+		return new ChunkedArrayCursor<>( this );
+	}
+
+	@Override
+	public ChunkedArrayCursor< T > copyCursor()
+	{
+		return copy();
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return ( chunkIndex < lastChunkIndex ) || ( index < lastIndexInLastChunk );
+	}
+
+	@Override
+	public void fwd()
+	{
+		if ( ++index > img.chunkMask )
+		{
+			index = 0;
+			++chunkIndex;
+			type.updateContainer( this );
+		}
+		type.updateIndex( index );
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		final long newIndex = globalIndex() + steps;
+		final int newChunkIndex = ( int ) ( newIndex >> img.log2ChunkSize );
+		index = ( int ) ( newIndex & img.chunkMask );
+		if ( newChunkIndex != chunkIndex )
+		{
+			chunkIndex = newChunkIndex;
+			type.updateContainer( this );
+		}
+		type.updateIndex( index );
+	}
+
+	@Override
+	public void reset()
+	{
+		chunkIndex = 0;
+		index = -1;
+		type.updateIndex( -1 );
+		type.updateContainer( this );
+	}
+
+	/**
+	 * @return the flat index of the current pixel in the image.
+	 */
+	public long globalIndex()
+	{
+		return ( ( long ) chunkIndex << img.log2ChunkSize ) + index;
+	}
+
+	@Override
+	public String toString()
+	{
+		return type.toString();
+	}
+
+	@Override
+	public void localize( final long[] position )
+	{
+		IntervalIndexer.indexToPosition( globalIndex(), img.dimensions, position );
+	}
+
+	@Override
+	public long getLongPosition( final int d )
+	{
+		return IntervalIndexer.indexToPosition( globalIndex(), img.dimensions, img.steps, d );
+	}
+}
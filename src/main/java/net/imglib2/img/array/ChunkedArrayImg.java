@@ -0,0 +1,221 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.array;
+
+import java.util.ArrayList;
+
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.img.AbstractNativeImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * An image that stores its pixels in flat iteration order, like an
+ * {@link ArrayImg}, but splits them into several primitive arrays (chunks) of
+ * 2<sup><em>k</em></sup> pixels each. Pixels are addressed by a {@code long}
+ * index, so the number of pixels is not limited to {@link Integer#MAX_VALUE}.
+ * <p>
+ * Cursors and random accesses only switch the underlying array when they
+ * cross a chunk boundary. The iteration order is
+ * {@link FlatIterationOrder flat}, i.e., the same as for {@link ArrayImg} of
+ * the same dimensions.
+ *
+ * @param <T>
+ *            the pixel type
+ * @param <A>
+ *            the underlying primitive array access type
+ *
+ * @author agent
+ */
+public class ChunkedArrayImg< T extends NativeType< T >, A extends ArrayDataAccess< A > > extends AbstractNativeImg< T, A >
+{
+	/**
+	 * This interface is implemented by all samplers on the
+	 * {@link ChunkedArrayImg}. It allows the container to ask for the chunk
+	 * the sampler is currently in.
+	 */
+	public interface ChunkedArraySampler
+	{
+		/**
+		 * @return the index of the chunk the sampler is currently accessing.
+		 */
+		public int getCurrentChunkIndex();
+	}
+
+	/*
+	 * duplicate of long[] dimension, accessible to the cursors.
+	 */
+	final protected long[] dimensions;
+
+	final protected long[] steps;
+
+	final protected int log2ChunkSize;
+
+	final protected int chunkSize;
+
+	final protected int chunkMask;
+
+	final protected ArrayList< A > chunks;
+
+	/**
+	 * Create a {@link ChunkedArrayImg} with chunks of
+	 * 2<sup>{@code log2ChunkSize}</sup> pixels each. The data of each chunk
+	 * is created by {@code creator}.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if chunks of the given size would not contain an integral
+	 *             number of entities, or too many entities.
+	 */
+	public ChunkedArrayImg( final A creator, final long[] dim, final Fraction entitiesPerPixel, final int log2ChunkSize )
+	{
+		super( dim, entitiesPerPixel );
+
+		if ( log2ChunkSize < 0 || log2ChunkSize > 30 )
+			throw new IllegalArgumentException( "log2ChunkSize must be in [0, 30]" );
+		this.log2ChunkSize = log2ChunkSize;
+		chunkSize = 1 << log2ChunkSize;
+		chunkMask = chunkSize - 1;
+
+		if ( ( chunkSize * entitiesPerPixel.getNumerator() ) % entitiesPerPixel.getDenominator() != 0 )
+			throw new IllegalArgumentException( "Chunks of 2^" + log2ChunkSize + " pixels do not contain an integral number of entities. Use larger chunks." );
+		final long numEntitiesPerChunk = entitiesPerPixel.mulCeil( chunkSize );
+		if ( numEntitiesPerChunk > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Number of entities in chunk too large. Use smaller chunks." );
+
+		dimensions = dim.clone();
+		steps = new long[ n ];
+		IntervalIndexer.createAllocationSteps( dim, steps );
+
+		final long numChunksL = ( numPixels + chunkSize - 1 ) >> log2ChunkSize;
+		if ( numChunksL > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Number of chunks too large. Use larger chunks." );
+		final int numChunks = ( int ) numChunksL;
+
+		chunks = new ArrayList<>( numChunks );
+		for ( int i = 0; i < numChunks; ++i )
+		{
+			final long numPixelsInChunk = Math.min( chunkSize, numPixels - ( ( long ) i << log2ChunkSize ) );
+			chunks.add( creator.createArray( ( int ) entitiesPerPixel.mulCeil( numPixelsInChunk ) ) );
+		}
+	}
+
+	@Override
+	public A update( final Object o )
+	{
+		final int i = ( ( ChunkedArraySampler ) o ).getCurrentChunkIndex();
+		return chunks.get( i < 0 ? 0 : ( i >= chunks.size() ? chunks.size() - 1 : i ) );
+	}
+
+	/**
+	 * @return the number of chunks.
+	 */
+	public int numChunks()
+	{
+		return chunks.size();
+	}
+
+	/**
+	 * @return the number of pixels in a chunk. The last chunk may be smaller.
+	 */
+	public int chunkSize()
+	{
+		return chunkSize;
+	}
+
+	/**
+	 * @return the base 2 logarithm of the number of pixels in a chunk.
+	 */
+	public int log2ChunkSize()
+	{
+		return log2ChunkSize;
+	}
+
+	/**
+	 * Get the data of chunk {@code i}. Chunk {@code i} contains the pixels
+	 * with flat indices <em>i * {@link #chunkSize()}</em> to <em>(i + 1) *
+	 * {@link #chunkSize()} - 1</em>.
+	 */
+	public A getChunk( final int i )
+	{
+		return chunks.get( i );
+	}
+
+	@Override
+	public ChunkedArrayCursor< T > cursor()
+	{
+		return new ChunkedArrayCursor<>( this );
+	}
+
+	@Override
+	public ChunkedArrayLocalizingCursor< T > localizingCursor()
+	{
+		return new ChunkedArrayLocalizingCursor<>( this );
+	}
+
+	@Override
+	public ChunkedArrayRandomAccess< T > randomAccess()
+	{
+		return new ChunkedArrayRandomAccess<>( this );
+	}
+
+	@Override
+	public FlatIterationOrder iterationOrder()
+	{
+		return new FlatIterationOrder( this );
+	}
+
+	@Override
+	public ChunkedArrayImgFactory< T > factory()
+	{
+		return new ChunkedArrayImgFactory<>( log2ChunkSize );
+	}
+
+	@Override
+	public ChunkedArrayImg< T, ? > copy()
+	{
+		final ChunkedArrayImg< T, ? > copy = factory().create( dimension, firstElement().createVariable() );
+
+		final ChunkedArrayCursor< T > source = this.cursor();
+		final ChunkedArrayCursor< T > target = copy.cursor();
+
+		while ( source.hasNext() )
+			target.next().set( source.next() );
+
+		return copy;
+	}
+}
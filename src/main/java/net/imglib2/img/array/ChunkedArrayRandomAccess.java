@@ -0,0 +1,263 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.array;
+
+import net.imglib2.AbstractLocalizable;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.NativeType;
+
+/**
+ * {@link RandomAccess} on a {@link ChunkedArrayImg}. Keeps track of the flat
+ * {@code long} index of the current position and only updates the underlying
+ * array when the chunk changes.
+ *
+ * @param <T>
+ *
+ * @author agent
+ */
+public class ChunkedArrayRandomAccess< T extends NativeType< T > > extends AbstractLocalizable implements RandomAccess< T >, ChunkedArrayImg.ChunkedArraySampler
+{
+	protected final T type;
+
+	protected final ChunkedArrayImg< T, ? > img;
+
+	protected final long[] steps;
+
+	protected final int log2ChunkSize;
+
+	protected final int chunkMask;
+
+	/**
+	 * The flat index of the current position.
+	 */
+	protected long globalIndex;
+
+	protected int chunkIndex;
+
+	protected ChunkedArrayRandomAccess( final ChunkedArrayRandomAccess< T > randomAccess )
+	{
+		super( randomAccess.numDimensions() );
+
+		img = randomAccess.img;
+		type = img.createLinkedType();
+		steps = randomAccess.steps;
+		log2ChunkSize = randomAccess.log2ChunkSize;
+		chunkMask = randomAccess.chunkMask;
+
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = randomAccess.position[ d ];
+		globalIndex = randomAccess.globalIndex;
+		chunkIndex = randomAccess.chunkIndex;
+
+		type.updateContainer( this );
+		type.updateIndex( ( int ) ( globalIndex & chunkMask ) );
+	}
+
+	public ChunkedArrayRandomAccess( final ChunkedArrayImg< T, ? > img )
+	{
+		super( img.numDimensions() );
+
+		this.img = img;
+		type = img.createLinkedType();
+		steps = img.steps;
+		log2ChunkSize = img.log2ChunkSize;
+		chunkMask = img.chunkMask;
+
+		globalIndex = 0;
+		chunkIndex = 0;
+
+		type.updateContainer( this );
+		type.updateIndex( 0 );
+	}
+
+	@Override
+	public int getCurrentChunkIndex()
+	{
+		return chunkIndex;
+	}
+
+	private void updateIndex()
+	{
+		final int newChunkIndex = ( int ) ( globalIndex >> log2ChunkSize );
+		if ( newChunkIndex != chunkIndex )
+		{
+			chunkIndex = newChunkIndex;
+			type.updateContainer( this );
+		}
+		type.updateIndex( ( int ) ( globalIndex & chunkMask ) );
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public void fwd( final int d )
+	{
+		globalIndex += steps[ d ];
+		++position[ d ];
+		updateIndex();
+	}
+
+	@Override
+	public void bck( final int d )
+	{
+		globalIndex -= steps[ d ];
+		--position[ d ];
+		updateIndex();
+	}
+
+	@Override
+	public void move( final int distance, final int d )
+	{
+		globalIndex += steps[ d ] * distance;
+		position[ d ] += distance;
+		updateIndex();
+	}
+
+	@Override
+	public void move( final long distance, final int d )
+	{
+		globalIndex += steps[ d ] * distance;
+		position[ d ] += distance;
+		updateIndex();
+	}
+
+	@Override
+	public void move( final Localizable localizable )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			final long distance = localizable.getLongPosition( d );
+			globalIndex += steps[ d ] * distance;
+			position[ d ] += distance;
+		}
+		updateIndex();
+	}
+
+	@Override
+	public void move( final int[] distance )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			globalIndex += steps[ d ] * distance[ d ];
+			position[ d ] += distance[ d ];
+		}
+		updateIndex();
+	}
+
+	@Override
+	public void move( final long[] distance )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			globalIndex += steps[ d ] * distance[ d ];
+			position[ d ] += distance[ d ];
+		}
+		updateIndex();
+	}
+
+	@Override
+	public void setPosition( final Localizable localizable )
+	{
+		long index = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			final long p = localizable.getLongPosition( d );
+			index += steps[ d ] * p;
+			position[ d ] = p;
+		}
+		globalIndex = index;
+		updateIndex();
+	}
+
+	@Override
+	public void setPosition( final int[] pos )
+	{
+		long index = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			index += steps[ d ] * pos[ d ];
+			position[ d ] = pos[ d ];
+		}
+		globalIndex = index;
+		updateIndex();
+	}
+
+	@Override
+	public void setPosition( final long[] pos )
+	{
+		long index = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			index += steps[ d ] * pos[ d ];
+			position[ d ] = pos[ d ];
+		}
+		globalIndex = index;
+		updateIndex();
+	}
+
+	@Override
+	public void setPosition( final int pos, final int d )
+	{
+		globalIndex += steps[ d ] * ( pos - position[ d ] );
+		position[ d ] = pos;
+		updateIndex();
+	}
+
+	@Override
+	public void setPosition( final long pos, final int d )
+	{
+		globalIndex += steps[ d ] * ( pos - position[ d ] );
+		position[ d ] = pos;
+		updateIndex();
+	}
+
+	@Override
+	public ChunkedArrayRandomAccess< T > copy()
+	{
+		return new ChunkedArrayRandomAccess<>( this );
+	}
+
+	@Override
+	public ChunkedArrayRandomAccess< T > copyRandomAccess()
+	{
+		return copy();
+	}
+}
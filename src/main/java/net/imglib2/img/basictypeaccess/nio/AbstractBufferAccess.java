@@ -0,0 +1,131 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Abstract base class for {@link BufferAccess} implementations. Holds the
+ * underlying {@link ByteBuffer} and a typed view of it.
+ *
+ * @param <A>
+ *            the concrete access type
+ * @param <B>
+ *            the type of the typed view ({@link java.nio.ShortBuffer},
+ *            {@link java.nio.FloatBuffer}, etc.)
+ *
+ * @author agent
+ */
+public abstract class AbstractBufferAccess< A extends AbstractBufferAccess< A, B >, B extends Buffer > implements BufferAccess< A >
+{
+	private static final long serialVersionUID = 1L;
+
+	protected transient ByteBuffer bytes;
+
+	protected transient B data;
+
+	public AbstractBufferAccess( final ByteBuffer bytes )
+	{
+		this.bytes = bytes;
+		this.data = view( bytes );
+	}
+
+	/**
+	 * Create the typed view of {@code bytes}.
+	 */
+	protected abstract B view( ByteBuffer bytes );
+
+	@Override
+	public ByteBuffer getBuffer()
+	{
+		return bytes;
+	}
+
+	@Override
+	public int getArrayLength()
+	{
+		return data.capacity();
+	}
+
+	@Override
+	public A createArray( final int numEntities )
+	{
+		return newInstance( allocateDirect( numEntities, getBytesPerEntity() ) );
+	}
+
+	/**
+	 * Allocate a direct {@link ByteBuffer} in native byte order, large enough
+	 * for {@code numEntities} entities of {@code bytesPerEntity} bytes.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the buffer would be larger than
+	 *             {@link Integer#MAX_VALUE} bytes.
+	 */
+	public static ByteBuffer allocateDirect( final int numEntities, final int bytesPerEntity ) throws IllegalArgumentException
+	{
+		final long numBytes = ( long ) numEntities * bytesPerEntity;
+		if ( numBytes > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Buffer too large: " + numBytes + " > " + Integer.MAX_VALUE + " bytes. Use smaller cells or planes." );
+		return ByteBuffer.allocateDirect( ( int ) numBytes ).order( ByteOrder.nativeOrder() );
+	}
+
+	private void writeObject( final ObjectOutputStream out ) throws IOException
+	{
+		out.defaultWriteObject();
+		final int start = bytes.position();
+		final int end = bytes.limit();
+		out.writeInt( end - start );
+		out.writeBoolean( bytes.order() == ByteOrder.BIG_ENDIAN );
+		for ( int i = start; i < end; ++i )
+			out.writeByte( bytes.get( i ) );
+	}
+
+	private void readObject( final ObjectInputStream in ) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		final int capacity = in.readInt();
+		final ByteOrder order = in.readBoolean() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+		bytes = ByteBuffer.allocateDirect( capacity ).order( order );
+		for ( int i = 0; i < capacity; ++i )
+			bytes.put( i, in.readByte() );
+		data = view( bytes );
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * Basic type access backed by a {@link ByteBuffer}. If the buffer is
+ * {@link ByteBuffer#isDirect() direct}, the data is stored outside the Java
+ * heap and can be handed to native code without copying.
+ * <p>
+ * Unlike {@link ArrayDataAccess}, a {@link BufferAccess} is not backed by a
+ * primitive array. Code that works on the storage arrays of images must handle
+ * {@link BufferAccess}es separately.
+ *
+ * @author agent
+ */
+public interface BufferAccess< A > extends Serializable
+{
+	/**
+	 * Create a new access of the same type, backed by a newly allocated direct
+	 * {@link ByteBuffer} for {@code numEntities} entities.
+	 */
+	A createArray( int numEntities );
+
+	/**
+	 * @return the underlying {@link ByteBuffer}.
+	 */
+	ByteBuffer getBuffer();
+
+	/**
+	 * @return the number of entities (not bytes) in this access.
+	 */
+	int getArrayLength();
+
+	/**
+	 * @return the number of bytes per entity.
+	 */
+	int getBytesPerEntity();
+
+	/**
+	 * Create a new access of the same type backed by {@code buffer}.
+	 */
+	A newInstance( ByteBuffer buffer );
+}
@@ -0,0 +1,140 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A region of a file, starting at a fixed offset, from which
+ * {@link BufferAccess}es are created by memory-mapping with
+ * {@link FileChannel#map(MapMode, long, long)}. Reads and writes to the
+ * accesses go directly to the operating system page cache; pages are loaded
+ * on demand.
+ * <p>
+ * Mapped regions remain valid after the {@link FileChannel} is closed. They
+ * are unmapped when the accesses are garbage-collected.
+ *
+ * @author agent
+ */
+public class MappedFile
+{
+	private final FileChannel channel;
+
+	private final long offset;
+
+	private final MapMode mode;
+
+	private final ByteOrder order;
+
+	/**
+	 * @param channel
+	 *            the file to map.
+	 * @param offset
+	 *            offset (in bytes) of the image data in the file.
+	 * @param mode
+	 *            {@link MapMode#READ_ONLY} or {@link MapMode#READ_WRITE}.
+	 *            With {@link MapMode#READ_WRITE}, the file is extended if
+	 *            necessary.
+	 * @param order
+	 *            byte order of the data in the file.
+	 */
+	public MappedFile( final FileChannel channel, final long offset, final MapMode mode, final ByteOrder order )
+	{
+		this.channel = channel;
+		this.offset = offset;
+		this.mode = mode;
+		this.order = order;
+	}
+
+	public FileChannel getChannel()
+	{
+		return channel;
+	}
+
+	public long getOffset()
+	{
+		return offset;
+	}
+
+	public MapMode getMode()
+	{
+		return mode;
+	}
+
+	public ByteOrder getOrder()
+	{
+		return order;
+	}
+
+	/**
+	 * Map a region of the file and wrap it into a {@link BufferAccess} of the
+	 * same type as {@code creator}.
+	 *
+	 * @param creator
+	 *            determines the type of the returned access.
+	 * @param position
+	 *            start of the region (in bytes), relative to the offset of
+	 *            this {@link MappedFile}.
+	 * @param numEntities
+	 *            size of the region, in entities of {@code creator}.
+	 *
+	 * @throws UncheckedIOException
+	 *             if the region cannot be mapped, e.g., because it extends
+	 *             beyond the end of a file that is mapped
+	 *             {@link MapMode#READ_ONLY read-only}.
+	 */
+	public < A extends BufferAccess< A > > A map( final A creator, final long position, final int numEntities ) throws UncheckedIOException
+	{
+		final long numBytes = ( long ) numEntities * creator.getBytesPerEntity();
+		if ( numBytes > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Region too large: " + numBytes + " > " + Integer.MAX_VALUE + " bytes. Use smaller cells or planes." );
+		try
+		{
+			final ByteBuffer buffer = channel.map( mode, offset + position, numBytes );
+			buffer.order( order );
+			return creator.newInstance( buffer );
+		}
+		catch ( final IOException e )
+		{
+			throw new UncheckedIOException( e );
+		}
+	}
+}
@@ -98,6 +98,25 @@ public abstract class AbstractCellImg<
 		return new CellLocalizingCursor<>( this );
 	}
 
+	/**
+	 * Get a {@link CellGroupCursor} that visits only the cells
+	 * {@code firstCell, ..., firstCell + numCells - 1} (flat index into the
+	 * {@link #getCellGrid() cell grid}).
+	 * <p>
+	 * Cursors on disjoint groups of cells never share a cell. This is useful
+	 * for processing the image in parallel, one group of cells per thread.
+	 *
+	 * @param firstCell
+	 *            flat index of the first cell to visit.
+	 * @param numCells
+	 *            number of cells to visit.
+	 * @return cursor on the given range of cells.
+	 */
+	public CellGroupCursor< T, C > cellGroupCursor( final long firstCell, final long numCells )
+	{
+		return new CellGroupCursor<>( this, firstCell, numCells );
+	}
+
 	@Override
 	public CellRandomAccess< T, C > randomAccess()
 	{
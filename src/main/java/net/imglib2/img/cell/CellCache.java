@@ -0,0 +1,532 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.nio.BufferAccess;
+import net.imglib2.img.cell.LazyCellImg.Get;
+
+/**
+ * A bounded cache of {@link Cell}s for a {@link LazyCellImg}. Cells are keyed
+ * by their flattened index in the {@link CellGrid} (this is the index that
+ * {@link LazyCellImg} passes to its {@link Get} method). A cell that is not in
+ * the cache is obtained from a user-provided loader {@link Get}.
+ * <p>
+ * The cache keeps the most recently (or most frequently) used cells strongly
+ * reachable, up to a maximum number of cells and a maximum number of bytes.
+ * Cells that are evicted from this strongly reachable set remain in the cache
+ * through {@link SoftReference}s or {@link WeakReference}s until they are
+ * reclaimed by the garbage collector.
+ * <p>
+ * The cache is thread-safe. Concurrent requests for the same cell result in
+ * only one call to the loader, so all cursors and random accesses on a
+ * {@link LazyCellImg} see the same {@link Cell} instance.
+ *
+ * @param <A>
+ *            the underlying native access type
+ *
+ * @author agent
+ */
+public class CellCache< A > implements Get< Cell< A > >
+{
+	/**
+	 * How cells that are not in the strongly reachable set are referenced.
+	 */
+	public static enum ReferenceType
+	{
+		/**
+		 * Cells are kept until the JVM runs low on memory.
+		 */
+		SOFT,
+
+		/**
+		 * Cells are kept until the next garbage collection.
+		 */
+		WEAK
+	}
+
+	/**
+	 * Which cell to evict from the strongly reachable set if it exceeds its
+	 * bounds.
+	 */
+	public static enum EvictionPolicy
+	{
+		/**
+		 * Evict the least recently used cell.
+		 */
+		LRU,
+
+		/**
+		 * Evict the least frequently used cell. Ties are broken by recency of
+		 * use. The cell that is currently accessed is never evicted, so that
+		 * newly loaded cells are admitted to the cache.
+		 */
+		LFU
+	}
+
+	/**
+	 * Estimates the memory footprint of a {@link Cell} in bytes.
+	 */
+	@FunctionalInterface
+	public interface Weigher< A >
+	{
+		long weigh( Cell< A > cell );
+	}
+
+	private final Get< Cell< A > > loader;
+
+	private final ReferenceType referenceType;
+
+	private final long maxNumCells;
+
+	private final long maxNumBytes;
+
+	private final Weigher< A > weigher;
+
+	private final ConcurrentHashMap< Long, Entry > map;
+
+	private final ReferenceQueue< Cell< A > > queue;
+
+	private final StrongSet strong;
+
+	/**
+	 * Create a cache that keeps at most {@code maxNumCells} cells and at most
+	 * {@code maxNumBytes} bytes (as estimated by {@code weigher}) strongly
+	 * reachable.
+	 *
+	 * @param loader
+	 *            loads cells that are not in the cache.
+	 * @param maxNumCells
+	 *            maximum number of strongly reachable cells.
+	 * @param maxNumBytes
+	 *            maximum number of bytes in strongly reachable cells.
+	 * @param weigher
+	 *            estimates the size in bytes of a cell.
+	 * @param referenceType
+	 *            how evicted cells are referenced.
+	 * @param evictionPolicy
+	 *            which cells are evicted first.
+	 */
+	public CellCache(
+			final Get< Cell< A > > loader,
+			final long maxNumCells,
+			final long maxNumBytes,
+			final Weigher< A > weigher,
+			final ReferenceType referenceType,
+			final EvictionPolicy evictionPolicy )
+	{
+		if ( maxNumCells < 0 )
+			throw new IllegalArgumentException( "maxNumCells < 0" );
+		if ( maxNumBytes < 0 )
+			throw new IllegalArgumentException( "maxNumBytes < 0" );
+
+		this.loader = loader;
+		this.maxNumCells = maxNumCells;
+		this.maxNumBytes = maxNumBytes;
+		this.weigher = weigher;
+		this.referenceType = referenceType;
+		map = new ConcurrentHashMap<>();
+		queue = new ReferenceQueue<>();
+		strong = new StrongSet( evictionPolicy );
+	}
+
+	/**
+	 * Create a cache that keeps at most {@code maxNumCells} cells and at most
+	 * {@code maxNumBytes} bytes strongly reachable. The size of a cell is
+	 * estimated by {@link #arrayWeigher()}.
+	 */
+	public CellCache(
+			final Get< Cell< A > > loader,
+			final long maxNumCells,
+			final long maxNumBytes,
+			final ReferenceType referenceType,
+			final EvictionPolicy evictionPolicy )
+	{
+		this( loader, maxNumCells, maxNumBytes, arrayWeigher(), referenceType, evictionPolicy );
+	}
+
+	/**
+	 * Create a cache that keeps the {@code maxNumCells} least recently used
+	 * cells strongly reachable, and other cells softly reachable.
+	 */
+	public CellCache( final Get< Cell< A > > loader, final long maxNumCells )
+	{
+		this( loader, maxNumCells, Long.MAX_VALUE, ReferenceType.SOFT, EvictionPolicy.LRU );
+	}
+
+	@Override
+	public Cell< A > get( final long index )
+	{
+		cleanUp();
+
+		final Long key = index;
+		Entry entry = map.get( key );
+		if ( entry != null )
+		{
+			final Cell< A > cell = entry.getCell();
+			if ( cell != null )
+			{
+				strong.touch( index, cell );
+				return cell;
+			}
+		}
+
+		entry = map.computeIfAbsent( key, k -> new Entry( index ) );
+		final Cell< A > cell;
+		synchronized ( entry )
+		{
+			Cell< A > c = entry.getCell();
+			if ( c == null )
+			{
+				c = loader.get( index );
+				entry.setCell( c );
+			}
+			cell = c;
+		}
+		strong.touch( index, cell );
+		return cell;
+	}
+
+	/**
+	 * Get the cell with the given flattened grid index if it is in the cache.
+	 * Does not call the loader.
+	 *
+	 * @return the cached cell, or {@code null} if it is not in the cache.
+	 */
+	public Cell< A > getIfPresent( final long index )
+	{
+		cleanUp();
+
+		final Entry entry = map.get( index );
+		if ( entry != null )
+		{
+			final Cell< A > cell = entry.getCell();
+			if ( cell != null )
+			{
+				strong.touch( index, cell );
+				return cell;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Put a cell into the cache, replacing any cell that is cached for the
+	 * same flattened grid index.
+	 */
+	public void put( final long index, final Cell< A > cell )
+	{
+		cleanUp();
+
+		final Entry entry = map.computeIfAbsent( index, k -> new Entry( index ) );
+		synchronized ( entry )
+		{
+			entry.setCell( cell );
+		}
+		strong.touch( index, cell );
+	}
+
+	/**
+	 * Remove all cells from the cache.
+	 */
+	public void invalidateAll()
+	{
+		strong.clear();
+		map.clear();
+	}
+
+	/**
+	 * Remove the cell with the given flattened grid index from the cache.
+	 */
+	public void invalidate( final long index )
+	{
+		strong.remove( index );
+		map.remove( index );
+	}
+
+	/**
+	 * @return the number of cells that are currently strongly reachable.
+	 */
+	public long getNumStrongCells()
+	{
+		return strong.size();
+	}
+
+	/**
+	 * @return the estimated number of bytes in cells that are currently
+	 *         strongly reachable.
+	 */
+	public long getNumStrongBytes()
+	{
+		return strong.bytes();
+	}
+
+	/**
+	 * Remove map entries whose cells have been garbage-collected.
+	 */
+	private void cleanUp()
+	{
+		Reference< ? extends Cell< A > > ref;
+		while ( ( ref = queue.poll() ) != null )
+		{
+			final long index = ( ( CellReference ) ref ).index();
+			final Entry entry = map.get( index );
+			if ( entry != null )
+			{
+				synchronized ( entry )
+				{
+					if ( entry.ref == ref )
+						map.remove( index, entry );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates a {@link Weigher} that estimates the size of cells whose data is
+	 * an {@link ArrayDataAccess} from the length and primitive type of the
+	 * underlying storage array, and the size of cells whose data is a
+	 * {@link BufferAccess} from the capacity of the underlying buffer. Cells
+	 * with other data are weighed as 1 byte.
+	 */
+	public static < A > Weigher< A > arrayWeigher()
+	{
+		return cell -> {
+			final A data = cell.getData();
+			if ( data instanceof ArrayDataAccess )
+			{
+				final Object array = ( ( ArrayDataAccess< ? > ) data ).getCurrentStorageArray();
+				if ( array instanceof byte[] )
+					return ( ( byte[] ) array ).length;
+				else if ( array instanceof short[] )
+					return 2l * ( ( short[] ) array ).length;
+				else if ( array instanceof char[] )
+					return 2l * ( ( char[] ) array ).length;
+				else if ( array instanceof int[] )
+					return 4l * ( ( int[] ) array ).length;
+				else if ( array instanceof float[] )
+					return 4l * ( ( float[] ) array ).length;
+				else if ( array instanceof long[] )
+					return 8l * ( ( long[] ) array ).length;
+				else if ( array instanceof double[] )
+					return 8l * ( ( double[] ) array ).length;
+			}
+			else if ( data instanceof BufferAccess )
+				return ( ( BufferAccess< ? > ) data ).getBuffer().capacity();
+			return 1;
+		};
+	}
+
+	private interface CellReference
+	{
+		long index();
+	}
+
+	private final class SoftCellReference extends SoftReference< Cell< A > > implements CellReference
+	{
+		private final long index;
+
+		SoftCellReference( final long index, final Cell< A > cell )
+		{
+			super( cell, queue );
+			this.index = index;
+		}
+
+		@Override
+		public long index()
+		{
+			return index;
+		}
+	}
+
+	private final class WeakCellReference extends WeakReference< Cell< A > > implements CellReference
+	{
+		private final long index;
+
+		WeakCellReference( final long index, final Cell< A > cell )
+		{
+			super( cell, queue );
+			this.index = index;
+		}
+
+		@Override
+		public long index()
+		{
+			return index;
+		}
+	}
+
+	private final class Entry
+	{
+		private final long index;
+
+		private volatile Reference< Cell< A > > ref;
+
+		Entry( final long index )
+		{
+			this.index = index;
+		}
+
+		Cell< A > getCell()
+		{
+			final Reference< Cell< A > > r = ref;
+			return r == null ? null : r.get();
+		}
+
+		void setCell( final Cell< A > cell )
+		{
+			ref = referenceType == ReferenceType.SOFT
+					? new SoftCellReference( index, cell )
+					: new WeakCellReference( index, cell );
+		}
+	}
+
+	private static final class Node< A >
+	{
+		final long index;
+
+		final Cell< A > cell;
+
+		final long weight;
+
+		long frequency;
+
+		long tick;
+
+		Node( final long index, final Cell< A > cell, final long weight )
+		{
+			this.index = index;
+			this.cell = cell;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * The set of strongly reachable cells, ordered by eviction priority.
+	 */
+	private final class StrongSet
+	{
+		private final HashMap< Long, Node< A > > nodes;
+
+		private final TreeSet< Node< A > > order;
+
+		private long tick;
+
+		private long bytes;
+
+		StrongSet( final EvictionPolicy evictionPolicy )
+		{
+			final Comparator< Node< A > > byTick = ( a, b ) -> Long.compare( a.tick, b.tick );
+			final Comparator< Node< A > > comparator = evictionPolicy == EvictionPolicy.LFU
+					? ( a, b ) -> {
+						final int c = Long.compare( a.frequency, b.frequency );
+						return c != 0 ? c : byTick.compare( a, b );
+					}
+					: byTick;
+			nodes = new HashMap<>();
+			order = new TreeSet<>( comparator );
+		}
+
+		synchronized void touch( final long index, final Cell< A > cell )
+		{
+			Node< A > node = nodes.get( index );
+			if ( node != null && node.cell == cell )
+				order.remove( node );
+			else
+			{
+				if ( node != null )
+				{
+					order.remove( node );
+					bytes -= node.weight;
+				}
+				node = new Node<>( index, cell, weigher.weigh( cell ) );
+				nodes.put( index, node );
+				bytes += node.weight;
+			}
+			++node.frequency;
+			node.tick = tick++;
+			order.add( node );
+
+			// never evict the node that was just touched, otherwise a newly
+			// loaded cell would be dropped immediately under LFU
+			while ( order.size() > 1 && ( order.size() > maxNumCells || bytes > maxNumBytes ) )
+			{
+				Node< A > evicted = order.first();
+				if ( evicted == node )
+					evicted = order.higher( node );
+				order.remove( evicted );
+				nodes.remove( evicted.index );
+				bytes -= evicted.weight;
+			}
+		}
+
+		synchronized void remove( final long index )
+		{
+			final Node< A > node = nodes.remove( index );
+			if ( node != null )
+			{
+				order.remove( node );
+				bytes -= node.weight;
+			}
+		}
+
+		synchronized void clear()
+		{
+			nodes.clear();
+			order.clear();
+			bytes = 0;
+		}
+
+		synchronized long size()
+		{
+			return nodes.size();
+		}
+
+		synchronized long bytes()
+		{
+			return bytes;
+		}
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import net.imglib2.AbstractCursor;
+import net.imglib2.Cursor;
+import net.imglib2.type.NativeType;
+
+/**
+ * {@link Cursor} on a contiguous range of cells of an {@link AbstractCellImg}.
+ * The cursor visits the cells {@code firstCell, ..., firstCell + numCells - 1}
+ * (flat index into the cell grid) in {@link CellIterationOrder}, and never
+ * leaves this range.
+ * <p>
+ * Cursors on disjoint ranges of cells never share a cell, so they can be used
+ * to process an {@link AbstractCellImg} in parallel without synchronization.
+ *
+ * @see AbstractCellImg#cellGroupCursor(long, long)
+ *
+ * @author agent
+ */
+public class CellGroupCursor< T extends NativeType< T >, C extends Cell< ? > >
+		extends AbstractCursor< T >
+		implements AbstractCellImg.CellImgSampler< C >
+{
+	protected final T type;
+
+	protected final Cursor< C > cursorOnCells;
+
+	protected final long firstCell;
+
+	protected final long numCells;
+
+	/**
+	 * How many cells of the group are left after the current one.
+	 */
+	protected long numRemainingCells;
+
+	protected int lastIndexInCell;
+
+	/**
+	 * The current index of the type. It is faster to duplicate this here than
+	 * to access it through type.getIndex().
+	 */
+	protected int index;
+
+	protected CellGroupCursor( final CellGroupCursor< T, C > cursor )
+	{
+		super( cursor.numDimensions() );
+
+		this.type = cursor.type.duplicateTypeOnSameNativeImg();
+		this.cursorOnCells = cursor.cursorOnCells.copyCursor();
+		this.firstCell = cursor.firstCell;
+		this.numCells = cursor.numCells;
+		numRemainingCells = cursor.numRemainingCells;
+		lastIndexInCell = cursor.lastIndexInCell;
+		index = cursor.index;
+
+		type.updateContainer( this );
+		type.updateIndex( index );
+	}
+
+	/**
+	 * @param img
+	 *            the image to iterate.
+	 * @param firstCell
+	 *            flat index of the first cell to visit.
+	 * @param numCells
+	 *            number of cells to visit. Must be at least 1.
+	 */
+	public CellGroupCursor( final AbstractCellImg< T, ?, C, ? > img, final long firstCell, final long numCells )
+	{
+		super( img.numDimensions() );
+
+		if ( numCells < 1 || firstCell < 0 || firstCell + numCells > img.getCells().size() )
+			throw new IllegalArgumentException( "cell range [" + firstCell + ", " + ( firstCell + numCells - 1 ) + "] is out of bounds" );
+
+		this.type = img.createLinkedType();
+		this.cursorOnCells = img.getCells().cursor();
+		this.firstCell = firstCell;
+		this.numCells = numCells;
+
+		reset();
+	}
+
+	@Override
+	public C getCell()
+	{
+		return cursorOnCells.get();
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public CellGroupCursor< T, C > copy()
+	{
+		return new CellGroupCursor<>( this );
+	}
+
+	@Override
+	public CellGroupCursor< T, C > copyCursor()
+	{
+		return copy();
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return ( index < lastIndexInCell ) || numRemainingCells > 0;
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		long newIndex = index + steps;
+		while ( newIndex > lastIndexInCell )
+		{
+			newIndex -= lastIndexInCell + 1;
+			cursorOnCells.fwd();
+			--numRemainingCells;
+			lastIndexInCell = ( int ) ( getCell().size() - 1 );
+		}
+		index = ( int ) newIndex;
+		type.updateIndex( index );
+		type.updateContainer( this );
+	}
+
+	@Override
+	public void fwd()
+	{
+		if ( ++index > lastIndexInCell )
+		{
+			moveToNextCell();
+			index = 0;
+		}
+		type.updateIndex( index );
+	}
+
+	@Override
+	public void reset()
+	{
+		cursorOnCells.reset();
+		cursorOnCells.jumpFwd( firstCell );
+		numRemainingCells = numCells;
+		moveToNextCell();
+		type.updateIndex( index );
+	}
+
+	@Override
+	public String toString()
+	{
+		return type.toString();
+	}
+
+	@Override
+	public long getLongPosition( final int dim )
+	{
+		return getCell().indexToGlobalPosition( index, dim );
+	}
+
+	@Override
+	public void localize( final long[] position )
+	{
+		getCell().indexToGlobalPosition( index, position );
+	}
+
+	/**
+	 * Move cursor right before the first element of the next cell. Update type
+	 * and index variables.
+	 */
+	private void moveToNextCell()
+	{
+		cursorOnCells.fwd();
+		--numRemainingCells;
+		lastIndexInCell = ( int ) ( getCell().size() - 1 );
+		index = -1;
+		type.updateContainer( this );
+	}
+}
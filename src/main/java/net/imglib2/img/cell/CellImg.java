@@ -1,15 +1,28 @@
 package net.imglib2.img.cell;
 
+import java.util.concurrent.ExecutorService;
+
 import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
 import net.imglib2.img.list.ListImg;
 import net.imglib2.type.NativeType;
 import net.imglib2.util.Fraction;
+import net.imglib2.util.ImgUtil;
 
 public class CellImg< T extends NativeType< T >, A > extends AbstractCellImg< T, A, Cell< A >, ListImg< Cell< A > > >
 {
-	private final CellImgFactory< T > factory;
+	private final NativeImgFactory< T > factory;
 
 	public CellImg( final CellImgFactory< T > factory, final CellGrid grid, final ListImg< Cell< A > > imgOfCells, final Fraction entitiesPerPixel )
+	{
+		this( ( NativeImgFactory< T > ) factory, grid, imgOfCells, entitiesPerPixel );
+	}
+
+	/**
+	 * Create a {@link CellImg} that uses {@code factory} to create copies,
+	 * e.g., a {@link DirectCellImgFactory}.
+	 */
+	public CellImg( final NativeImgFactory< T > factory, final CellGrid grid, final ListImg< Cell< A > > imgOfCells, final Fraction entitiesPerPixel )
 	{
 		super( grid, imgOfCells, entitiesPerPixel );
 		this.factory = factory;
@@ -23,10 +36,25 @@ public class CellImg< T extends NativeType< T >, A > extends AbstractCellImg< T,
 
 	@Override
 	public CellImg< T, A > copy()
+	{
+		return copy( 1, null );
+	}
+
+	/**
+	 * Create a copy of this image using {@link #factory()}. Cells are split
+	 * into {@code numTasks} groups that are copied in parallel on
+	 * {@code executor}.
+	 *
+	 * @param executor
+	 *            executes the tasks. May be {@code null} if
+	 *            {@code numTasks == 1}, in which case the copy runs in the
+	 *            calling thread.
+	 */
+	public CellImg< T, A > copy( final int numTasks, final ExecutorService executor )
 	{
 		@SuppressWarnings( "unchecked" )
 		final CellImg< T, A > copy = ( CellImg< T, A > ) factory().create( dimension, firstElement().createVariable() );
-		copyDataTo( copy );
+		ImgUtil.copy( this, copy, numTasks, executor );
 		return copy;
 	}
 }
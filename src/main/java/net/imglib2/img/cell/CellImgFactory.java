@@ -34,6 +34,8 @@
 
 package net.imglib2.img.cell;
 
+import java.util.function.IntFunction;
+
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.NativeImgFactory;
@@ -201,6 +203,24 @@ public class CellImgFactory< T extends NativeType< T > > extends NativeImgFactor
 	private < A extends ArrayDataAccess< A > >
 			CellImg< T, A >
 			createInstance( final A creator, final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( this, defaultCellDimensions, creator::createArray, dimensions, entitiesPerPixel );
+	}
+
+	/**
+	 * Create a {@link CellImg} with cells of (at most) the given
+	 * {@code defaultCellDimensions}, with cell data created by
+	 * {@code creator}.
+	 *
+	 * @param factory
+	 *            the factory of the created image.
+	 * @param creator
+	 *            creates the data of a cell with the given number of
+	 *            entities.
+	 */
+	static < T extends NativeType< T >, A >
+			CellImg< T, A >
+			createInstance( final NativeImgFactory< T > factory, final int[] defaultCellDimensions, final IntFunction< A > creator, final long[] dimensions, final Fraction entitiesPerPixel )
 	{
 		verifyDimensions( dimensions );
 
@@ -223,10 +243,10 @@ public class CellImgFactory< T extends NativeType< T > > extends NativeImgFactor
 			cellCursor.fwd();
 			cellCursor.localize( cellGridPosition );
 			grid.getCellDimensions( cellGridPosition, cellMin, cellDims );
-			final A data = creator.createArray( ( int ) entitiesPerPixel.mulCeil( Intervals.numElements( cellDims ) ) );
+			final A data = creator.apply( ( int ) entitiesPerPixel.mulCeil( Intervals.numElements( cellDims ) ) );
 			cellCursor.set( new Cell<>( cellDims, cellMin, data ) );
 		}
 
-		return new CellImg<>( this, grid, cells, entitiesPerPixel );
+		return new CellImg<>( factory, grid, cells, entitiesPerPixel );
 	}
 }
@@ -0,0 +1,308 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A queue of loading tasks with several priority levels, worked off by a
+ * fixed pool of daemon threads. Tasks of priority level {@code 0} are executed
+ * first, then tasks of priority level {@code 1}, etc. Within a priority level,
+ * tasks can be enqueued to the front (LIFO) or the back (FIFO).
+ * <p>
+ * Exceptions thrown by a task are passed to the
+ * {@link #setExceptionHandler(Thread.UncaughtExceptionHandler) exception
+ * handler} of the queue, and the worker thread continues with the next task.
+ * <p>
+ * Used by {@link VolatileCellCache} to load {@link Cell}s asynchronously.
+ *
+ * @author agent
+ */
+public class FetchQueue
+{
+	/**
+	 * A task that is notified when it is removed from the queue without being
+	 * executed, by {@link FetchQueue#clear()} or {@link FetchQueue#shutdown()}.
+	 */
+	public interface Task extends Runnable
+	{
+		void discard();
+	}
+
+	private final ArrayDeque< Runnable >[] queues;
+
+	private final int maxPriority;
+
+	private final ReentrantLock lock;
+
+	private final Condition notEmpty;
+
+	private final List< Thread > workers;
+
+	private int count;
+
+	private volatile boolean shutdown;
+
+	private volatile Thread.UncaughtExceptionHandler exceptionHandler;
+
+	/**
+	 * Create a {@link FetchQueue} with {@code numPriorities} priority levels
+	 * and {@code numThreads} worker threads.
+	 *
+	 * @param numPriorities
+	 *            number of priority levels.
+	 * @param numThreads
+	 *            number of worker threads.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public FetchQueue( final int numPriorities, final int numThreads )
+	{
+		if ( numPriorities < 1 )
+			throw new IllegalArgumentException( "numPriorities < 1" );
+		if ( numThreads < 1 )
+			throw new IllegalArgumentException( "numThreads < 1" );
+
+		maxPriority = numPriorities - 1;
+		queues = new ArrayDeque[ numPriorities ];
+		for ( int i = 0; i < numPriorities; ++i )
+			queues[ i ] = new ArrayDeque<>();
+		lock = new ReentrantLock();
+		notEmpty = lock.newCondition();
+		count = 0;
+		shutdown = false;
+
+		workers = new ArrayList<>( numThreads );
+		for ( int i = 0; i < numThreads; ++i )
+		{
+			final Thread worker = new Thread( this::work, "FetchQueue-" + i );
+			worker.setDaemon( true );
+			workers.add( worker );
+			worker.start();
+		}
+	}
+
+	/**
+	 * Create a {@link FetchQueue} with {@code numPriorities} priority levels
+	 * and one worker thread per available processor.
+	 */
+	public FetchQueue( final int numPriorities )
+	{
+		this( numPriorities, Runtime.getRuntime().availableProcessors() );
+	}
+
+	/**
+	 * @return the number of priority levels.
+	 */
+	public int getNumPriorities()
+	{
+		return maxPriority + 1;
+	}
+
+	/**
+	 * Set the handler for exceptions thrown by tasks. If {@code handler} is
+	 * {@code null} (the default), exceptions are passed to the uncaught
+	 * exception handler of the worker thread.
+	 */
+	public void setExceptionHandler( final Thread.UncaughtExceptionHandler handler )
+	{
+		exceptionHandler = handler;
+	}
+
+	/**
+	 * Enqueue a task.
+	 *
+	 * @param task
+	 *            the task to execute.
+	 * @param priority
+	 *            priority level of the task. {@code 0} is the highest
+	 *            priority. Levels above the maximum are clamped to the
+	 *            maximum.
+	 * @param enqueueToFront
+	 *            if true, the task is executed before other tasks of the same
+	 *            priority level that are already in the queue.
+	 * @throws IllegalStateException
+	 *             if the queue has been {@link #shutdown() shut down}. If
+	 *             {@code task} implements {@link Task}, it is
+	 *             {@link Task#discard() notified} before.
+	 */
+	public void put( final Runnable task, final int priority, final boolean enqueueToFront )
+	{
+		final int p = Math.max( 0, Math.min( priority, maxPriority ) );
+		lock.lock();
+		try
+		{
+			// checked while holding the lock, such that no task is enqueued
+			// after shutdown() cleared the queue
+			if ( shutdown )
+			{
+				if ( task instanceof Task )
+					( ( Task ) task ).discard();
+				throw new IllegalStateException( "FetchQueue has been shut down" );
+			}
+			if ( enqueueToFront )
+				queues[ p ].addFirst( task );
+			else
+				queues[ p ].addLast( task );
+			++count;
+			notEmpty.signal();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Remove all pending tasks from the queue and return them. Tasks that are
+	 * currently executed are not affected. Removed tasks that implement
+	 * {@link Task} are {@link Task#discard() notified}.
+	 *
+	 * @return the tasks that were removed, in order of priority.
+	 */
+	public List< Runnable > clear()
+	{
+		final ArrayList< Runnable > pending;
+		lock.lock();
+		try
+		{
+			pending = new ArrayList<>( count );
+			for ( final ArrayDeque< Runnable > queue : queues )
+			{
+				pending.addAll( queue );
+				queue.clear();
+			}
+			count = 0;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+		for ( final Runnable task : pending )
+			if ( task instanceof Task )
+				( ( Task ) task ).discard();
+		return pending;
+	}
+
+	/**
+	 * @return the number of pending tasks.
+	 */
+	public int size()
+	{
+		lock.lock();
+		try
+		{
+			return count;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Discard all pending tasks and stop the worker threads after they
+	 * finished their current task.
+	 */
+	public void shutdown()
+	{
+		lock.lock();
+		try
+		{
+			shutdown = true;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+		clear();
+		for ( final Thread worker : workers )
+			worker.interrupt();
+	}
+
+	private Runnable take() throws InterruptedException
+	{
+		lock.lockInterruptibly();
+		try
+		{
+			while ( count == 0 )
+				notEmpty.await();
+			for ( final ArrayDeque< Runnable > queue : queues )
+			{
+				if ( !queue.isEmpty() )
+				{
+					--count;
+					return queue.pollFirst();
+				}
+			}
+			throw new IllegalStateException();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private void work()
+	{
+		while ( !shutdown )
+		{
+			final Runnable task;
+			try
+			{
+				task = take();
+			}
+			catch ( final InterruptedException e )
+			{
+				break;
+			}
+
+			try
+			{
+				task.run();
+			}
+			catch ( final RuntimeException e )
+			{
+				final Thread thread = Thread.currentThread();
+				final Thread.UncaughtExceptionHandler handler = exceptionHandler;
+				( handler != null ? handler : thread.getUncaughtExceptionHandler() ).uncaughtException( thread, e );
+			}
+		}
+	}
+}
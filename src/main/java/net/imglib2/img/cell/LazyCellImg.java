@@ -2,6 +2,7 @@ package net.imglib2.img.cell;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
@@ -10,11 +11,12 @@ import net.imglib2.img.cell.LazyCellImg.LazyCells;
 import net.imglib2.img.list.AbstractLongListImg;
 import net.imglib2.type.NativeType;
 import net.imglib2.util.Fraction;
+import net.imglib2.util.ImgUtil;
 
 /**
  * A {@link AbstractCellImg} that obtains its Cells lazily when they are
  * accessed. Cells are obtained by a {@link Get} method that is provided by the
- * user. Typically this is some kind of cache.
+ * user. Typically this is some kind of cache, for example a {@link CellCache}.
  *
  * @param <T>
  *            the pixel type
@@ -50,16 +52,66 @@ public class LazyCellImg< T extends NativeType< T >, A >
 		super( grid, new LazyCells<>( grid.getGridDimensions(), get ), entitiesPerPixel );
 	}
 
+	/**
+	 * @return a {@link CellImgFactory} with the cell dimensions of this image.
+	 */
 	@Override
-	public ImgFactory< T > factory()
+	public CellImgFactory< T > factory()
 	{
-		throw new UnsupportedOperationException( "not implemented yet" );
+		final int[] cellDimensions = new int[ grid.numDimensions() ];
+		grid.cellDimensions( cellDimensions );
+		return new CellImgFactory<>( cellDimensions );
 	}
 
+	/**
+	 * Create a {@link CellImg} with the same cell grid, and eagerly load and
+	 * copy all cells in the calling thread.
+	 * <p>
+	 * If cells are obtained from a {@link VolatileCellCache}, they are loaded
+	 * with {@link VolatileCellCache#getBlocking(long)}, such that the copy
+	 * does not contain data of placeholder cells.
+	 */
 	@Override
-	public Img< T > copy()
+	public CellImg< T, ? > copy()
+	{
+		return copy( 1, null );
+	}
+
+	/**
+	 * Create a {@link CellImg} with the same cell grid, and eagerly load and
+	 * copy all cells. Cells are split into {@code numTasks} groups that are
+	 * loaded and copied in parallel on {@code executor}. The number of threads
+	 * of {@code executor} bounds the number of cells loaded concurrently.
+	 * <p>
+	 * If cells are obtained from a {@link VolatileCellCache}, they are loaded
+	 * with {@link VolatileCellCache#getBlocking(long)}, such that the copy
+	 * does not contain data of placeholder cells.
+	 *
+	 * @param executor
+	 *            executes the tasks. May be {@code null} if
+	 *            {@code numTasks == 1}, in which case the copy runs in the
+	 *            calling thread.
+	 */
+	public CellImg< T, ? > copy( final int numTasks, final ExecutorService executor )
+	{
+		final CellImg< T, ? > copy = factory().create( dimension, firstElement().createVariable() );
+		ImgUtil.copy( blocking(), copy, numTasks, executor );
+		return copy;
+	}
+
+	/**
+	 * @return this image, or, if cells are obtained from a
+	 *         {@link VolatileCellCache}, an image with the same cells that
+	 *         are obtained by {@link VolatileCellCache#getBlocking(long)}.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private LazyCellImg< T, A > blocking()
 	{
-		throw new UnsupportedOperationException( "not implemented yet" );
+		final Get< Cell< A > > get = cells.get;
+		if ( !( get instanceof VolatileCellCache ) )
+			return this;
+		final VolatileCellCache< ? > cache = ( VolatileCellCache< ? > ) get;
+		return new LazyCellImg<>( grid, firstElement().createVariable(), index -> ( Cell< A > ) cache.getBlocking( index ) );
 	}
 
 	public static final class LazyCells< T > extends AbstractLongListImg< T >
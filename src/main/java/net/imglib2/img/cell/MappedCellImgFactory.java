@@ -0,0 +1,215 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.nio.BufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.MappedFile;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.img.cell.CellCache.EvictionPolicy;
+import net.imglib2.img.cell.CellCache.ReferenceType;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Factory for {@link LazyCellImg}s that are backed by a memory-mapped file.
+ * Every cell is mapped separately from the {@link MappedFile} when it is first
+ * accessed. Mapped cells are held in a {@link CellCache}.
+ * <p>
+ * Cells are expected to be stored consecutively in the file, in flat
+ * iteration order of the cell grid, each cell in flat iteration order. This
+ * is the order in which a {@link CellCursor} visits the pixels of a
+ * {@link CellImg} of the same dimensions and cell dimensions. Border cells are
+ * not padded. With cells that span one XY plane each, this is the layout of a
+ * file of consecutive planes.
+ * <p>
+ * The file must remain open while the image is used. Only pixel types with an
+ * integral number of entities per pixel are supported.
+ *
+ * @author agent
+ */
+public class MappedCellImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	private final MappedFile file;
+
+	private final long maxNumCachedCells;
+
+	private final int[] defaultCellDimensions;
+
+	/**
+	 * @param file
+	 *            the file to map.
+	 * @param maxNumCachedCells
+	 *            how many mapped cells are kept strongly reachable. Other
+	 *            mapped cells are weakly reachable.
+	 * @param cellDimensions
+	 *            dimensions of a standard cell.
+	 */
+	public MappedCellImgFactory( final MappedFile file, final long maxNumCachedCells, final int... cellDimensions )
+	{
+		this.file = file;
+		this.maxNumCachedCells = maxNumCachedCells;
+		defaultCellDimensions = cellDimensions.clone();
+		CellImgFactory.verifyDimensions( defaultCellDimensions );
+	}
+
+	public MappedCellImgFactory( final MappedFile file, final int... cellDimensions )
+	{
+		this( file, 1000, cellDimensions );
+	}
+
+	@Override
+	public LazyCellImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( LazyCellImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	private < A extends BufferAccess< A > > LazyCellImg< T, A > createInstance( final A creator, final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		CellImgFactory.verifyDimensions( dimensions );
+		if ( entitiesPerPixel.getNumerator() % entitiesPerPixel.getDenominator() != 0 )
+			throw new IllegalArgumentException( "Only types with an integral number of entities per pixel are supported." );
+		final long entities = entitiesPerPixel.getNumerator() / entitiesPerPixel.getDenominator();
+
+		final int n = dimensions.length;
+		final int[] cellDimensions = CellImgFactory.getCellDimensions( defaultCellDimensions, n, entitiesPerPixel );
+		final CellGrid grid = new CellGrid( dimensions, cellDimensions );
+		final long bytesPerPixel = entities * creator.getBytesPerEntity();
+
+		final CellCache< A > cache = new CellCache<>( index -> {
+			final long[] cellGridPosition = new long[ n ];
+			final long[] cellMin = new long[ n ];
+			final int[] cellDims = new int[ n ];
+			grid.getCellGridPositionFlat( index, cellGridPosition );
+			grid.getCellDimensions( cellGridPosition, cellMin, cellDims );
+			final long position = bytesPerPixel * pixelOffset( dimensions, cellDimensions, cellGridPosition, cellDims );
+			long numPixels = 1;
+			for ( int d = 0; d < n; ++d )
+				numPixels *= cellDims[ d ];
+			final A data = file.map( creator, position, ( int ) ( entities * numPixels ) );
+			return new Cell<>( cellDims, cellMin, data );
+		}, maxNumCachedCells, Long.MAX_VALUE, ReferenceType.WEAK, EvictionPolicy.LRU );
+
+		return new LazyCellImg<>( grid, entitiesPerPixel, cache );
+	}
+
+	/**
+	 * Compute the number of pixels stored before the cell at
+	 * {@code cellGridPosition}, if cells are stored in flat order without
+	 * padding.
+	 */
+	static long pixelOffset( final long[] dimensions, final int[] cellDimensions, final long[] cellGridPosition, final int[] cellDims )
+	{
+		final int n = dimensions.length;
+
+		// upper[ d ] = number of pixels in the current cell in dimensions > d
+		final long[] upper = new long[ n ];
+		upper[ n - 1 ] = 1;
+		for ( int d = n - 2; d >= 0; --d )
+			upper[ d ] = upper[ d + 1 ] * cellDims[ d + 1 ];
+
+		long offset = 0;
+		long lower = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			offset += cellGridPosition[ d ] * cellDimensions[ d ] * lower * upper[ d ];
+			lower *= dimensions[ d ];
+		}
+		return offset;
+	}
+
+	@Override
+	public LazyCellImg< T, ByteBufferAccess > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new ByteBufferAccess( 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public LazyCellImg< T, CharBufferAccess > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new CharBufferAccess( 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public LazyCellImg< T, ShortBufferAccess > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new ShortBufferAccess( 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public LazyCellImg< T, IntBufferAccess > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new IntBufferAccess( 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public LazyCellImg< T, LongBufferAccess > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new LongBufferAccess( 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public LazyCellImg< T, FloatBufferAccess > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new FloatBufferAccess( 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public LazyCellImg< T, DoubleBufferAccess > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new DoubleBufferAccess( 0 ), dimensions, entitiesPerPixel );
+	}
+
+	/**
+	 * Returns a {@link DirectCellImgFactory} with the same cell dimensions.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new DirectCellImgFactory( defaultCellDimensions );
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.imglib2.img.basictypeaccess.volatiles.VolatileArrayDataAccess;
+import net.imglib2.img.cell.LazyCellImg.Get;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.Intervals;
+
+/**
+ * Asynchronously loads {@link Cell}s with {@link VolatileArrayDataAccess} data
+ * for a {@link LazyCellImg}.
+ * <p>
+ * {@link #get(long)} never blocks on loading. If the requested cell is in the
+ * underlying {@link CellCache}, it is returned. Otherwise, loading the cell is
+ * enqueued in a {@link FetchQueue} and a placeholder cell is returned
+ * immediately. The data of the placeholder is {@link
+ * VolatileArrayDataAccess#isValid() invalid}. When the cell has been loaded,
+ * subsequent requests return the loaded (valid) cell.
+ * <p>
+ * Each cell has its own placeholder data until it is loaded. If loading a cell
+ * fails, the exception is recorded and rethrown by {@link #getBlocking(long)}.
+ * Failed cells are not enqueued again until {@link #clearFailures()} is
+ * called.
+ *
+ * @param <A>
+ *            the underlying volatile access type
+ *
+ * @author agent
+ */
+public class VolatileCellCache< A extends VolatileArrayDataAccess< A > > implements Get< Cell< A > >
+{
+	private final CellGrid grid;
+
+	private final Fraction entitiesPerPixel;
+
+	private final A creator;
+
+	private final CellCache< A > cache;
+
+	private final FetchQueue queue;
+
+	private final int defaultPriority;
+
+	private final ConcurrentHashMap< Long, Boolean > enqueued;
+
+	private final ConcurrentHashMap< Long, Cell< A > > placeholders;
+
+	private final ConcurrentHashMap< Long, RuntimeException > failures;
+
+	/**
+	 * @param grid
+	 *            the cell grid of the {@link LazyCellImg}.
+	 * @param entitiesPerPixel
+	 *            number of entities per pixel of the pixel type.
+	 * @param creator
+	 *            used to create placeholder data via
+	 *            {@link VolatileArrayDataAccess#createArray(int, boolean)}.
+	 * @param cache
+	 *            holds loaded cells. The loader of the cache is called from the
+	 *            worker threads of {@code queue}.
+	 * @param queue
+	 *            the queue in which loading is enqueued.
+	 * @param defaultPriority
+	 *            the priority level used by {@link #get(long)}.
+	 */
+	public VolatileCellCache(
+			final CellGrid grid,
+			final Fraction entitiesPerPixel,
+			final A creator,
+			final CellCache< A > cache,
+			final FetchQueue queue,
+			final int defaultPriority )
+	{
+		this.grid = grid;
+		this.entitiesPerPixel = entitiesPerPixel;
+		this.creator = creator;
+		this.cache = cache;
+		this.queue = queue;
+		this.defaultPriority = defaultPriority;
+		enqueued = new ConcurrentHashMap<>();
+		placeholders = new ConcurrentHashMap<>();
+		failures = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Get the cell with the given flattened grid index. If the cell is not
+	 * loaded yet, enqueue it for loading with the default priority and return
+	 * an invalid placeholder.
+	 */
+	@Override
+	public Cell< A > get( final long index )
+	{
+		return get( index, defaultPriority, true );
+	}
+
+	/**
+	 * Get the cell with the given flattened grid index. If the cell is not
+	 * loaded yet, enqueue it for loading and return an invalid placeholder.
+	 *
+	 * @param index
+	 *            flattened grid index of the cell.
+	 * @param priority
+	 *            priority level for loading the cell.
+	 * @param enqueueToFront
+	 *            whether to load the cell before already enqueued cells of the
+	 *            same priority.
+	 */
+	public Cell< A > get( final long index, final int priority, final boolean enqueueToFront )
+	{
+		final Cell< A > cell = cache.getIfPresent( index );
+		if ( cell != null )
+			return cell;
+
+		prefetch( index, priority, enqueueToFront );
+		final Cell< A > placeholder = placeholders.computeIfAbsent( index, this::createPlaceholder );
+
+		// the cell might have been loaded while the placeholder was created
+		final Cell< A > loaded = cache.getIfPresent( index );
+		if ( loaded != null )
+		{
+			placeholders.remove( index );
+			return loaded;
+		}
+		return placeholder;
+	}
+
+	/**
+	 * Get the cell with the given flattened grid index, loading it on the
+	 * calling thread if necessary.
+	 *
+	 * @throws RuntimeException
+	 *             if asynchronous loading of the cell failed (the exception
+	 *             thrown by the loader is rethrown), or if loading it on the
+	 *             calling thread fails.
+	 */
+	public Cell< A > getBlocking( final long index )
+	{
+		final RuntimeException failure = failures.get( index );
+		if ( failure != null )
+			throw failure;
+		return cache.get( index );
+	}
+
+	/**
+	 * Enqueue loading of the cell with the given flattened grid index, unless
+	 * it is already loaded, enqueued, or failed to load.
+	 */
+	public void prefetch( final long index, final int priority, final boolean enqueueToFront )
+	{
+		if ( !failures.containsKey( index ) && enqueued.putIfAbsent( index, Boolean.TRUE ) == null )
+			queue.put( new LoadTask( index ), priority, enqueueToFront );
+	}
+
+	/**
+	 * Forget about cells that failed to load, such that they are enqueued
+	 * again when they are requested.
+	 */
+	public void clearFailures()
+	{
+		failures.clear();
+	}
+
+	/**
+	 * Loads a cell into the {@link CellCache}. If the task is
+	 * {@link FetchQueue#clear() removed} from the queue, the cell is enqueued
+	 * again the next time it is requested.
+	 */
+	private final class LoadTask implements FetchQueue.Task
+	{
+		private final long index;
+
+		LoadTask( final long index )
+		{
+			this.index = index;
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				cache.get( index );
+			}
+			catch ( final RuntimeException e )
+			{
+				failures.put( index, e );
+				throw e;
+			}
+			finally
+			{
+				placeholders.remove( index );
+				enqueued.remove( index );
+			}
+		}
+
+		@Override
+		public void discard()
+		{
+			enqueued.remove( index );
+		}
+	}
+
+	private Cell< A > createPlaceholder( final Long index )
+	{
+		final int n = grid.numDimensions();
+		final long[] cellMin = new long[ n ];
+		final int[] cellDims = new int[ n ];
+		grid.getCellDimensions( index, cellMin, cellDims );
+		final int numEntities = ( int ) entitiesPerPixel.mulCeil( Intervals.numElements( cellDims ) );
+		return new Cell<>( cellDims, cellMin, creator.createArray( numEntities, false ) );
+	}
+}
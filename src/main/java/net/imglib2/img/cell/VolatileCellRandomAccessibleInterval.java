@@ -0,0 +1,110 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import net.imglib2.Interval;
+import net.imglib2.Volatile;
+import net.imglib2.converter.AbstractConvertedRandomAccess;
+import net.imglib2.converter.AbstractConvertedRandomAccessibleInterval;
+import net.imglib2.display.projector.volatiles.Volatile2DRandomAccessibleProjector;
+import net.imglib2.img.basictypeaccess.volatiles.VolatileAccess;
+import net.imglib2.type.NativeType;
+
+/**
+ * Presents an {@link AbstractCellImg} with {@link VolatileAccess} data (e.g.,
+ * a {@link LazyCellImg} backed by a {@link VolatileCellCache}) as a
+ * {@link Volatile} image. A pixel is {@link Volatile#isValid() valid} if the
+ * data of the cell containing it is valid. This can be used as the source of
+ * a {@link Volatile2DRandomAccessibleProjector}.
+ *
+ * @param <T>
+ *            the pixel type
+ * @param <A>
+ *            the underlying volatile access type
+ *
+ * @author agent
+ */
+public class VolatileCellRandomAccessibleInterval< T extends NativeType< T >, A extends VolatileAccess >
+		extends AbstractConvertedRandomAccessibleInterval< T, Volatile< T > >
+{
+	private final AbstractCellImg< T, A, ? extends Cell< A >, ? > img;
+
+	public VolatileCellRandomAccessibleInterval( final AbstractCellImg< T, A, ? extends Cell< A >, ? > img )
+	{
+		super( img );
+		this.img = img;
+	}
+
+	@Override
+	public VolatileCellRandomAccess< T, A > randomAccess()
+	{
+		return new VolatileCellRandomAccess<>( img.randomAccess() );
+	}
+
+	@Override
+	public VolatileCellRandomAccess< T, A > randomAccess( final Interval interval )
+	{
+		return randomAccess();
+	}
+
+	public static class VolatileCellRandomAccess< T extends NativeType< T >, A extends VolatileAccess >
+			extends AbstractConvertedRandomAccess< T, Volatile< T > >
+	{
+		private final CellRandomAccess< T, ? extends Cell< A > > cellAccess;
+
+		private final Volatile< T > value;
+
+		public VolatileCellRandomAccess( final CellRandomAccess< T, ? extends Cell< A > > source )
+		{
+			super( source );
+			cellAccess = source;
+			value = new Volatile<>( source.get() );
+		}
+
+		@Override
+		public Volatile< T > get()
+		{
+			value.setValid( cellAccess.getCell().getData().isValid() );
+			return value;
+		}
+
+		@Override
+		public VolatileCellRandomAccess< T, A > copy()
+		{
+			return new VolatileCellRandomAccess<>( cellAccess.copy() );
+		}
+	}
+}
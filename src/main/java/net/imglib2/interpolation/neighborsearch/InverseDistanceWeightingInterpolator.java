@@ -34,10 +34,19 @@
 
 package net.imglib2.interpolation.neighborsearch;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
 import net.imglib2.RealPoint;
 import net.imglib2.RealRandomAccess;
 import net.imglib2.Sampler;
 import net.imglib2.neighborsearch.KNearestNeighborSearch;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.parallel.Chunk;
+import net.imglib2.parallel.Chunks;
+import net.imglib2.parallel.ParallelIteration;
 import net.imglib2.type.numeric.RealType;
 
 /**
@@ -92,7 +101,14 @@ public class InverseDistanceWeightingInterpolator< T extends RealType< T > > ext
 	public T get()
 	{
 		search.search( this );
+		return interpolate();
+	}
 
+	/**
+	 * Set {@link #value} from the current result of {@link #search}.
+	 */
+	private T interpolate()
+	{
 		if ( numNeighbors == 1 || search.getSquareDistance( 0 ) / search.getSquareDistance( 1 ) < minThreshold )
 			value.set( search.getSampler( 0 ).get() );
 		else
@@ -121,6 +137,118 @@ public class InverseDistanceWeightingInterpolator< T extends RealType< T > > ext
 		return value;
 	}
 
+	/**
+	 * Interpolate at a batch of query points. The coordinates of query
+	 * {@code i} are {@code queries[i*n], ..., queries[i*n + n-1]}. Its
+	 * interpolated value is stored in {@code values[i]}.
+	 * <p>
+	 * The queries are processed in the calling thread, using batch search if
+	 * the search is a {@link KNearestNeighborSearchOnFlatKDTree}.
+	 *
+	 * @param queries
+	 *            flattened coordinates of the query points
+	 * @param values
+	 *            receives the interpolated values
+	 */
+	public void get( final double[] queries, final double[] values )
+	{
+		get( queries, values, 1, null );
+	}
+
+	/**
+	 * Interpolate at a batch of query points. The coordinates of query
+	 * {@code i} are {@code queries[i*n], ..., queries[i*n + n-1]}. Its
+	 * interpolated value is stored in {@code values[i]}.
+	 * <p>
+	 * If the search is a {@link KNearestNeighborSearchOnFlatKDTree}, the
+	 * neighbors are found by its batch search, and both searching and
+	 * weighting are split into {@code numTasks} parallel tasks on
+	 * {@code executor}. Otherwise, the queries are searched one at a time in
+	 * the calling thread. This does not change the position of this
+	 * interpolator.
+	 *
+	 * @param queries
+	 *            flattened coordinates of the query points
+	 * @param values
+	 *            receives the interpolated values
+	 * @param numTasks
+	 *            number of tasks to split the queries into
+	 * @param executor
+	 *            executes the tasks. May be {@code null}, in which case the
+	 *            queries are processed in the calling thread.
+	 */
+	public void get( final double[] queries, final double[] values, final int numTasks, final ExecutorService executor )
+	{
+		final int n = numDimensions();
+		if ( queries.length % n != 0 )
+			throw new IllegalArgumentException( "queries.length is not a multiple of n" );
+		final int numQueries = queries.length / n;
+		if ( values.length < numQueries )
+			throw new IllegalArgumentException( "values array is too small" );
+
+		if ( search instanceof KNearestNeighborSearchOnFlatKDTree )
+		{
+			final KNearestNeighborSearchOnFlatKDTree< T > flatSearch = ( KNearestNeighborSearchOnFlatKDTree< T > ) search;
+			final int[] indices = new int[ numQueries * numNeighbors ];
+			final double[] squDistances = new double[ numQueries * numNeighbors ];
+			flatSearch.search( queries, indices, squDistances, numTasks, executor );
+			final List< T > treeValues = flatSearch.getTree().getValues();
+			if ( numTasks <= 1 || executor == null )
+				weight( treeValues, indices, squDistances, values, 0, numQueries );
+			else
+			{
+				final List< Callable< Void > > tasks = new ArrayList<>();
+				for ( final Chunk chunk : Chunks.split( numQueries, 1, numTasks ) )
+					tasks.add( () -> {
+						final int from = ( int ) chunk.getStartIndex();
+						weight( treeValues, indices, squDistances, values, from, from + ( int ) chunk.size() );
+						return null;
+					} );
+				ParallelIteration.invokeAll( tasks, executor );
+			}
+		}
+		else
+		{
+			final RealPoint query = new RealPoint( n );
+			for ( int i = 0; i < numQueries; ++i )
+			{
+				for ( int d = 0; d < n; ++d )
+					query.setPosition( queries[ i * n + d ], d );
+				search.search( query );
+				values[ i ] = interpolate().getRealDouble();
+			}
+		}
+	}
+
+	/**
+	 * Compute {@code values[from], ..., values[to-1]} from the results of a
+	 * batch search.
+	 */
+	private void weight( final List< T > treeValues, final int[] indices, final double[] squDistances, final double[] values, final int from, final int to )
+	{
+		for ( int i = from; i < to; ++i )
+		{
+			final int o = i * numNeighbors;
+			if ( numNeighbors == 1 || squDistances[ o ] / squDistances[ o + 1 ] < minThreshold )
+				values[ i ] = treeValues.get( indices[ o ] ).getRealDouble();
+			else
+			{
+				double sumIntensity = 0;
+				double sumWeights = 0;
+
+				for ( int j = o; j < o + numNeighbors && indices[ j ] >= 0; ++j )
+				{
+					final double weight = computeWeight( squDistances[ j ] );
+
+					sumWeights += weight;
+					sumIntensity += treeValues.get( indices[ j ] ).getRealDouble() * weight;
+				}
+
+				values[ i ] = sumIntensity / sumWeights;
+			}
+		}
+	}
+
 	protected double computeWeight( final double squareDistance )
 	{
 		return 1.0 / Math.pow( squareDistance, p2 );
@@ -34,9 +34,13 @@
 
 package net.imglib2.interpolation.neighborsearch;
 
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
 import net.imglib2.RealPoint;
 import net.imglib2.RealRandomAccess;
 import net.imglib2.neighborsearch.NearestNeighborSearch;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree;
 
 /**
  * Nearest-neighbor interpolation implemented by {@link NearestNeighborSearch}.
@@ -62,6 +66,75 @@ public class NearestNeighborSearchInterpolator< T > extends RealPoint implements
 		return search.getSampler().get();
 	}
 
+	/**
+	 * Get the values at a batch of query points. The coordinates of query
+	 * {@code i} are {@code queries[i*n], ..., queries[i*n + n-1]}. The value
+	 * of its nearest neighbor is stored in {@code values[i]}.
+	 * The queries are processed in the calling thread, using batch search if
+	 * the search is a {@link NearestNeighborSearchOnFlatKDTree}.
+	 *
+	 * @param queries
+	 *            flattened coordinates of the query points
+	 * @param values
+	 *            receives the values at the query points
+	 */
+	public void get( final double[] queries, final T[] values )
+	{
+		get( queries, values, 1, null );
+	}
+
+	/**
+	 * Get the values at a batch of query points. The coordinates of query
+	 * {@code i} are {@code queries[i*n], ..., queries[i*n + n-1]}. The value
+	 * of its nearest neighbor is stored in {@code values[i]}.
+	 * <p>
+	 * If the search is a {@link NearestNeighborSearchOnFlatKDTree}, its batch
+	 * search is used, split into {@code numTasks} parallel tasks on
+	 * {@code executor}. Otherwise, the queries are searched one at a time in
+	 * the calling thread. This does not change the position of this
+	 * interpolator.
+	 *
+	 * @param queries
+	 *            flattened coordinates of the query points
+	 * @param values
+	 *            receives the values at the query points
+	 * @param numTasks
+	 *            number of tasks to split the queries into
+	 * @param executor
+	 *            executes the tasks. May be {@code null}, in which case the
+	 *            queries are processed in the calling thread.
+	 */
+	public void get( final double[] queries, final T[] values, final int numTasks, final ExecutorService executor )
+	{
+		final int n = numDimensions();
+		if ( queries.length % n != 0 )
+			throw new IllegalArgumentException( "queries.length is not a multiple of n" );
+		final int numQueries = queries.length / n;
+		if ( values.length < numQueries )
+			throw new IllegalArgumentException( "values array is too small" );
+
+		if ( search instanceof NearestNeighborSearchOnFlatKDTree )
+		{
+			final NearestNeighborSearchOnFlatKDTree< T > flatSearch = ( NearestNeighborSearchOnFlatKDTree< T > ) search;
+			final int[] indices = new int[ numQueries ];
+			flatSearch.search( queries, indices, new double[ numQueries ], numTasks, executor );
+			final List< T > treeValues = flatSearch.getTree().getValues();
+			for ( int i = 0; i < numQueries; ++i )
+				values[ i ] = treeValues.get( indices[ i ] );
+		}
+		else
+		{
+			final RealPoint query = new RealPoint( n );
+			for ( int i = 0; i < numQueries; ++i )
+			{
+				for ( int d = 0; d < n; ++d )
+					query.setPosition( queries[ i * n + d ], d );
+				search.search( query );
+				values[ i ] = search.getSampler().get();
+			}
+		}
+	}
+
 	@Override
 	public NearestNeighborSearchInterpolator< T > copy()
 	{
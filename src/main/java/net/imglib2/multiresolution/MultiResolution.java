@@ -0,0 +1,482 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.multiresolution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellCache;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.LazyCellImg;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Util;
+
+/**
+ * A source available at several resolution levels. Level 0 is the full
+ * resolution, subsequent levels are increasingly coarse.
+ * <p>
+ * Each level is related to level 0 by a scale and translation per dimension:
+ * a pixel at coordinate {@code x} of level {@code l} is located at
+ * {@code x * scale + translation} in level 0 coordinates.
+ * <p>
+ * Downsampled levels can be generated lazily, see
+ * {@link #averaged(RandomAccessibleInterval, int[], int, int[], long)} and
+ * {@link #mode(RandomAccessibleInterval, int[], int, int[], long)}.
+ * {@link #bestLevel(double)} selects the level to render at a given zoom.
+ *
+ * @param <T>
+ *            pixel type
+ *
+ * @author agent
+ */
+public class MultiResolution< T >
+{
+	/**
+	 * Computes one pixel of a downsampled level from the block of pixels it
+	 * covers in the next finer level.
+	 */
+	public interface Accumulator< T >
+	{
+		/**
+		 * Start a new block.
+		 */
+		void reset();
+
+		/**
+		 * Add a pixel of the current block.
+		 */
+		void add( T value );
+
+		/**
+		 * Write the result for the current block to {@code output}.
+		 */
+		void get( T output );
+	}
+
+	private final int n;
+
+	private final List< RandomAccessibleInterval< T > > levels;
+
+	private final List< double[] > scales;
+
+	private final List< double[] > translations;
+
+	/**
+	 * Create a multi-resolution source from given levels.
+	 *
+	 * @param levels
+	 *            resolution levels, from finest to coarsest.
+	 * @param scales
+	 *            for each level, the scale per dimension relative to level 0.
+	 * @param translations
+	 *            for each level, the translation per dimension relative to
+	 *            level 0.
+	 */
+	public MultiResolution( final List< ? extends RandomAccessibleInterval< T > > levels, final List< double[] > scales, final List< double[] > translations )
+	{
+		if ( levels.isEmpty() )
+			throw new IllegalArgumentException( "at least one level is required" );
+		if ( scales.size() != levels.size() || translations.size() != levels.size() )
+			throw new IllegalArgumentException( "expected one scale and translation per level" );
+		n = levels.get( 0 ).numDimensions();
+		this.levels = new ArrayList<>( levels );
+		this.scales = new ArrayList<>();
+		this.translations = new ArrayList<>();
+		for ( int l = 0; l < levels.size(); ++l )
+		{
+			if ( levels.get( l ).numDimensions() != n || scales.get( l ).length != n || translations.get( l ).length != n )
+				throw new IllegalArgumentException( "dimensionality mismatch at level " + l );
+			this.scales.add( scales.get( l ).clone() );
+			this.translations.add( translations.get( l ).clone() );
+		}
+	}
+
+	/**
+	 * Create a multi-resolution source from given levels, where each pixel of
+	 * a downsampled level covers a block of {@code scale} pixels of level 0,
+	 * and the min pixels of all levels are aligned. The translation of each
+	 * level is derived accordingly, such that pixel centers coincide with
+	 * block centers.
+	 *
+	 * @param levels
+	 *            resolution levels, from finest to coarsest.
+	 * @param scales
+	 *            for each level, the scale per dimension relative to level 0.
+	 */
+	public MultiResolution( final List< ? extends RandomAccessibleInterval< T > > levels, final List< double[] > scales )
+	{
+		this( levels, scales, blockCenterTranslations( levels, scales ) );
+	}
+
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	public int numLevels()
+	{
+		return levels.size();
+	}
+
+	public RandomAccessibleInterval< T > getLevel( final int level )
+	{
+		return levels.get( level );
+	}
+
+	/**
+	 * Returns the scale per dimension of {@code level} relative to level 0.
+	 */
+	public double[] getScale( final int level )
+	{
+		return scales.get( level ).clone();
+	}
+
+	/**
+	 * Returns the translation per dimension of {@code level} relative to
+	 * level 0.
+	 */
+	public double[] getTranslation( final int level )
+	{
+		return translations.get( level ).clone();
+	}
+
+	/**
+	 * Transform {@code position} from level 0 coordinates to coordinates of
+	 * {@code level}.
+	 */
+	public void toLevel( final int level, final double[] position, final double[] levelPosition )
+	{
+		final double[] s = scales.get( level );
+		final double[] t = translations.get( level );
+		for ( int d = 0; d < n; ++d )
+			levelPosition[ d ] = ( position[ d ] - t[ d ] ) / s[ d ];
+	}
+
+	/**
+	 * Transform {@code levelPosition} from coordinates of {@code level} to
+	 * level 0 coordinates.
+	 */
+	public void fromLevel( final int level, final double[] levelPosition, final double[] position )
+	{
+		final double[] s = scales.get( level );
+		final double[] t = translations.get( level );
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = levelPosition[ d ] * s[ d ] + t[ d ];
+	}
+
+	/**
+	 * Select the coarsest level that still provides at least one pixel per
+	 * screen pixel in dimensions 0 and 1.
+	 *
+	 * @param sourcePixelsPerScreenPixel
+	 *            how many level 0 pixels are covered by one screen pixel.
+	 */
+	public int bestLevel( final double sourcePixelsPerScreenPixel )
+	{
+		return bestLevel( sourcePixelsPerScreenPixel, 0, Math.min( 1, n - 1 ) );
+	}
+
+	/**
+	 * Select the coarsest level that still provides at least one pixel per
+	 * screen pixel in dimensions {@code dimX} and {@code dimY}.
+	 *
+	 * @param sourcePixelsPerScreenPixel
+	 *            how many level 0 pixels are covered by one screen pixel.
+	 */
+	public int bestLevel( final double sourcePixelsPerScreenPixel, final int dimX, final int dimY )
+	{
+		final double eps = 1e-9;
+		int best = 0;
+		for ( int l = 1; l < levels.size(); ++l )
+		{
+			final double[] s = scales.get( l );
+			final double levelScale = Math.max( s[ dimX ], s[ dimY ] );
+			if ( levelScale <= sourcePixelsPerScreenPixel + eps )
+				best = l;
+		}
+		return best;
+	}
+
+	/**
+	 * Create a multi-resolution source from {@code img}, where each level is
+	 * downsampled from the previous level by averaging blocks of
+	 * {@code factors} pixels. Downsampled levels are {@link LazyCellImg}s
+	 * which compute cells on demand and cache them.
+	 *
+	 * @param img
+	 *            full resolution level.
+	 * @param factors
+	 *            downsampling factor per dimension between successive levels.
+	 * @param numLevels
+	 *            total number of levels, including {@code img}.
+	 * @param cellDimensions
+	 *            cell size of the downsampled levels.
+	 * @param maxNumCachedCells
+	 *            number of cells per level that are kept strongly reachable,
+	 *            see {@link CellCache}.
+	 */
+	public static < T extends RealType< T > & NativeType< T > > MultiResolution< T > averaged(
+			final RandomAccessibleInterval< T > img,
+			final int[] factors,
+			final int numLevels,
+			final int[] cellDimensions,
+			final long maxNumCachedCells )
+	{
+		return downsampled( img, factors, numLevels, cellDimensions, maxNumCachedCells, () -> new Accumulator< T >()
+		{
+			private double sum;
+
+			private int count;
+
+			@Override
+			public void reset()
+			{
+				sum = 0;
+				count = 0;
+			}
+
+			@Override
+			public void add( final T value )
+			{
+				sum += value.getRealDouble();
+				++count;
+			}
+
+			@Override
+			public void get( final T output )
+			{
+				output.setReal( sum / count );
+			}
+		} );
+	}
+
+	/**
+	 * Create a multi-resolution source from {@code img}, where each level is
+	 * downsampled from the previous level by taking the most frequent value
+	 * (the smallest one, if there are ties) in blocks of {@code factors}
+	 * pixels. This is suitable for label images. Downsampled levels are
+	 * {@link LazyCellImg}s which compute cells on demand and cache them.
+	 *
+	 * @see #averaged(RandomAccessibleInterval, int[], int, int[], long)
+	 */
+	public static < T extends IntegerType< T > & NativeType< T > > MultiResolution< T > mode(
+			final RandomAccessibleInterval< T > img,
+			final int[] factors,
+			final int numLevels,
+			final int[] cellDimensions,
+			final long maxNumCachedCells )
+	{
+		return downsampled( img, factors, numLevels, cellDimensions, maxNumCachedCells, () -> new Accumulator< T >()
+		{
+			private long[] values = new long[ 16 ];
+
+			private int count;
+
+			@Override
+			public void reset()
+			{
+				count = 0;
+			}
+
+			@Override
+			public void add( final T value )
+			{
+				if ( count == values.length )
+					values = Arrays.copyOf( values, 2 * count );
+				values[ count++ ] = value.getIntegerLong();
+			}
+
+			@Override
+			public void get( final T output )
+			{
+				Arrays.sort( values, 0, count );
+				long mode = values[ 0 ];
+				int modeCount = 0;
+				for ( int i = 0; i < count; )
+				{
+					int j = i + 1;
+					while ( j < count && values[ j ] == values[ i ] )
+						++j;
+					if ( j - i > modeCount )
+					{
+						modeCount = j - i;
+						mode = values[ i ];
+					}
+					i = j;
+				}
+				output.setInteger( mode );
+			}
+		} );
+	}
+
+	/**
+	 * Create a multi-resolution source from {@code img}, where each level is
+	 * downsampled from the previous level by reducing blocks of
+	 * {@code factors} pixels with an {@link Accumulator}. Downsampled levels
+	 * are {@link LazyCellImg}s which compute cells on demand and cache them.
+	 *
+	 * @param accumulatorFactory
+	 *            creates a new {@link Accumulator} for each cell that is
+	 *            computed.
+	 *
+	 * @see #averaged(RandomAccessibleInterval, int[], int, int[], long)
+	 */
+	public static < T extends NativeType< T > > MultiResolution< T > downsampled(
+			final RandomAccessibleInterval< T > img,
+			final int[] factors,
+			final int numLevels,
+			final int[] cellDimensions,
+			final long maxNumCachedCells,
+			final Supplier< ? extends Accumulator< T > > accumulatorFactory )
+	{
+		final int n = img.numDimensions();
+		if ( factors.length != n || cellDimensions.length != n )
+			throw new IllegalArgumentException( "expected one factor and cell dimension per image dimension" );
+		if ( numLevels < 1 )
+			throw new IllegalArgumentException( "numLevels < 1" );
+
+		final T type = Util.getTypeFromInterval( img ).createVariable();
+		final List< RandomAccessibleInterval< T > > levels = new ArrayList<>();
+		final List< double[] > scales = new ArrayList<>();
+		levels.add( img );
+		final double[] scale = new double[ n ];
+		Arrays.fill( scale, 1 );
+		scales.add( scale.clone() );
+
+		for ( int l = 1; l < numLevels; ++l )
+		{
+			final RandomAccessibleInterval< T > previous = levels.get( l - 1 );
+			final long[] dimensions = new long[ n ];
+			for ( int d = 0; d < n; ++d )
+			{
+				dimensions[ d ] = ( previous.dimension( d ) + factors[ d ] - 1 ) / factors[ d ];
+				scale[ d ] *= factors[ d ];
+			}
+			final CellGrid grid = new CellGrid( dimensions, cellDimensions );
+			levels.add( lazyLevel( grid, type, maxNumCachedCells, index -> downsampleCell( index, grid, previous, factors, accumulatorFactory.get(), type ) ) );
+			scales.add( scale.clone() );
+		}
+		return new MultiResolution<>( levels, scales );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	private static < T extends NativeType< T > > RandomAccessibleInterval< T > lazyLevel( final CellGrid grid, final T type, final long maxNumCachedCells, final LazyCellImg.Get< Cell< ? > > loader )
+	{
+		final CellCache cache = new CellCache( loader, maxNumCachedCells );
+		return new LazyCellImg( grid, type, cache );
+	}
+
+	/**
+	 * Compute cell {@code index} of {@code grid} by downsampling
+	 * {@code previous}.
+	 */
+	private static < T extends NativeType< T > > Cell< ? > downsampleCell(
+			final long index,
+			final CellGrid grid,
+			final RandomAccessibleInterval< T > previous,
+			final int[] factors,
+			final Accumulator< T > accumulator,
+			final T type )
+	{
+		final int n = grid.numDimensions();
+		final long[] cellMin = new long[ n ];
+		final int[] cellDims = new int[ n ];
+		grid.getCellDimensions( index, cellMin, cellDims );
+		final long[] cellSize = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			cellSize[ d ] = cellDims[ d ];
+
+		final ArrayImg< T, ? > data = new ArrayImgFactory< T >().create( cellSize, type );
+		final Cursor< T > out = data.localizingCursor();
+		final RandomAccess< T > in = previous.randomAccess();
+		final long[] blockMin = new long[ n ];
+		final long[] blockMax = new long[ n ];
+		final long[] pos = new long[ n ];
+		while ( out.hasNext() )
+		{
+			final T output = out.next();
+			for ( int d = 0; d < n; ++d )
+			{
+				blockMin[ d ] = previous.min( d ) + ( cellMin[ d ] + out.getLongPosition( d ) ) * factors[ d ];
+				blockMax[ d ] = Math.min( blockMin[ d ] + factors[ d ] - 1, previous.max( d ) );
+				pos[ d ] = blockMin[ d ];
+			}
+
+			accumulator.reset();
+			while ( true )
+			{
+				in.setPosition( pos );
+				accumulator.add( in.get() );
+				int d = 0;
+				for ( ; d < n; ++d )
+				{
+					if ( ++pos[ d ] <= blockMax[ d ] )
+						break;
+					pos[ d ] = blockMin[ d ];
+				}
+				if ( d == n )
+					break;
+			}
+			accumulator.get( output );
+		}
+		return new Cell<>( cellDims, cellMin, data.update( null ) );
+	}
+
+	private static List< double[] > blockCenterTranslations( final List< ? extends RandomAccessibleInterval< ? > > levels, final List< double[] > scales )
+	{
+		final RandomAccessibleInterval< ? > level0 = levels.get( 0 );
+		final List< double[] > translations = new ArrayList<>( scales.size() );
+		for ( int l = 0; l < scales.size(); ++l )
+		{
+			final double[] scale = scales.get( l );
+			final double[] t = new double[ scale.length ];
+			for ( int d = 0; d < t.length; ++d )
+				t[ d ] = level0.min( d ) - levels.get( l ).min( d ) * scale[ d ] + ( scale[ d ] - 1 ) / 2;
+			translations.add( t );
+		}
+		return translations;
+	}
+}
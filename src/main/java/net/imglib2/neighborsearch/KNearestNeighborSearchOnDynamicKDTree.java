@@ -0,0 +1,264 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * Implementation of {@link KNearestNeighborSearch} search for
+ * {@link DynamicKDTree}. Searches each tree of the forest, skipping deleted
+ * points, and the buffer of points that are not in a tree yet.
+ * <p>
+ * If the tree has less than k points, only {@link #numNeighbors()} neighbors
+ * are found, and {@link #getSampler(int)} and {@link #getPosition(int)}
+ * return {@code null} for the others.
+ *
+ * @author agent
+ */
+public class KNearestNeighborSearchOnDynamicKDTree< T > implements KNearestNeighborSearch< T >
+{
+	protected final DynamicKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final int k;
+
+	protected final int[] bestIds;
+
+	protected final double[] bestSquDistances;
+
+	protected final DynamicKDTree< T >.Element[] bestElements;
+
+	/**
+	 * the tree of the forest that is currently searched, and its index.
+	 */
+	private FlatKDTree< ? > current;
+
+	private int currentIndex;
+
+	@SuppressWarnings( "unchecked" )
+	public KNearestNeighborSearchOnDynamicKDTree( final DynamicKDTree< T > tree, final int k )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.k = k;
+		this.bestIds = new int[ k ];
+		this.bestSquDistances = new double[ k ];
+		this.bestElements = new DynamicKDTree.Element[ k ];
+		for ( int i = 0; i < k; ++i )
+		{
+			bestIds[ i ] = -1;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+			bestElements[ i ] = tree.element( -1 );
+		}
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int getK()
+	{
+		return k;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference )
+	{
+		reference.localize( pos );
+		for ( int i = 0; i < k; ++i )
+		{
+			bestIds[ i ] = -1;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+		}
+		// search large trees first, to find close candidates early
+		for ( int i = tree.numTrees() - 1; i >= 0; --i )
+		{
+			current = tree.getTree( i );
+			currentIndex = i;
+			if ( current != null && current.squDistanceToBounds( pos ) <= bestSquDistances[ k - 1 ] )
+				searchNode( 0 );
+		}
+		current = null;
+		for ( int i = 0; i < tree.numBuffered(); ++i )
+		{
+			final int id = tree.getBufferedId( i );
+			final double squDistance = tree.squDistance( id, pos );
+			if ( squDistance < bestSquDistances[ k - 1 ] )
+				insert( id, squDistance );
+		}
+		for ( int i = 0; i < k; ++i )
+			bestElements[ i ].setId( bestIds[ i ] );
+	}
+
+	/**
+	 * Insert a candidate into the sorted list of the best k points.
+	 */
+	private void insert( final int id, final double squDistance )
+	{
+		int i = k - 1;
+		for ( int j = i - 1; i > 0 && squDistance < bestSquDistances[ j ]; --i, --j )
+		{
+			bestSquDistances[ i ] = bestSquDistances[ j ];
+			bestIds[ i ] = bestIds[ j ];
+		}
+		bestSquDistances[ i ] = squDistance;
+		bestIds[ i ] = id;
+	}
+
+	protected void searchNode( final int node )
+	{
+		// consider the current node
+		final double squDistance = current.squDistance( node, pos );
+		if ( squDistance < bestSquDistances[ k - 1 ] )
+		{
+			final int id = tree.getId( currentIndex, node );
+			if ( id >= 0 )
+				insert( id, squDistance );
+		}
+
+		final double axisDiff = pos[ current.getSplitDimension( node ) ] - current.getSplitCoordinate( node );
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		// search the near branch
+		final int left = FlatKDTree.leftChild( node );
+		final int nearChild = leftIsNearBranch ? left : left + 1;
+		final int awayChild = leftIsNearBranch ? left + 1 : left;
+		final int size = current.numPoints();
+		if ( nearChild < size )
+			searchNode( nearChild );
+
+		// search the away branch - maybe
+		if ( ( axisSquDistance <= bestSquDistances[ k - 1 ] ) && ( awayChild < size ) )
+			searchNode( awayChild );
+	}
+
+	/**
+	 * @return the number of neighbors found by the last search. This is less
+	 *         than k if the tree has less than k points.
+	 */
+	public int numNeighbors()
+	{
+		int i = 0;
+		while ( i < k && bestIds[ i ] >= 0 )
+			++i;
+		return i;
+	}
+
+	/**
+	 * @return the id of the <em>i</em><sup>th</sup> nearest neighbor found by
+	 *         the last search, or -1 if less than {@code i+1} points are in
+	 *         the tree.
+	 */
+	public int getId( final int i )
+	{
+		return bestIds[ i ];
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return bestIds[ i ] < 0 ? null : bestElements[ i ];
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return bestIds[ i ] < 0 ? null : bestElements[ i ];
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return bestSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( bestSquDistances[ i ] );
+	}
+
+	/* NearestNeighborSearch */
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return getPosition( 0 );
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return getSampler( 0 );
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return getSquareDistance( 0 );
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return getDistance( 0 );
+	}
+
+	@Override
+	public KNearestNeighborSearchOnDynamicKDTree< T > copy()
+	{
+		final KNearestNeighborSearchOnDynamicKDTree< T > copy = new KNearestNeighborSearchOnDynamicKDTree< T >( tree, k );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		for ( int i = 0; i < k; ++i )
+		{
+			copy.bestIds[ i ] = bestIds[ i ];
+			copy.bestSquDistances[ i ] = bestSquDistances[ i ];
+			copy.bestElements[ i ].setId( bestIds[ i ] );
+		}
+		return copy;
+	}
+}
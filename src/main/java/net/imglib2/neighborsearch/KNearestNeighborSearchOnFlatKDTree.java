@@ -0,0 +1,500 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.neighborsearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.parallel.Chunk;
+import net.imglib2.parallel.Chunks;
+import net.imglib2.parallel.ParallelIteration;
+
+/**
+ * Implementation of {@link KNearestNeighborSearch} search on a
+ * {@link FlatKDTree}, suitable for large k.
+ * <p>
+ * In contrast to {@link KNearestNeighborSearchOnKDTree}, the tree is traversed
+ * iteratively with an explicit stack, and the best k candidates are kept in a
+ * binary max-heap, so that each candidate costs O(log k) instead of O(k).
+ * <p>
+ * Optionally, a search can be restricted to neighbors within a maximum
+ * distance (see {@link #search(RealLocalizable, double)}), in which case less
+ * than k neighbors may be found (see {@link #numNeighbors()}). With
+ * {@code epsilon > 0}, the search is approximate: subtrees are skipped unless
+ * they may contain points closer than {@code 1 / (1 + epsilon)} times the
+ * current k-th best distance. Then the distance of the <em>i</em>th neighbor
+ * found is at most {@code 1 + epsilon} times the distance of the true
+ * <em>i</em>th nearest neighbor.
+ * <p>
+ * If less than <em>i+1</em> neighbors were found, {@link #getSampler(int)}
+ * and {@link #getPosition(int)} return {@code null} for the <em>i</em>th
+ * neighbor.
+ *
+ * @author agent
+ */
+public class KNearestNeighborSearchOnFlatKDTree< T > implements KNearestNeighborSearch< T >
+{
+	protected final FlatKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final int k;
+
+	protected final double epsilon;
+
+	/**
+	 * {@code (1 + epsilon)^2}, the factor by which lower bounds on the squared
+	 * distance to a subtree are scaled before comparing to the current k-th
+	 * best squared distance.
+	 */
+	private final double boundScale;
+
+	/**
+	 * node indices of the best points, a max-heap on {@link #bestSquDistances}
+	 * during search, sorted by ascending distance afterwards.
+	 */
+	protected final int[] bestNodeIndices;
+
+	protected final double[] bestSquDistances;
+
+	protected int numNeighbors;
+
+	protected final FlatKDTree< T >.Node[] bestNodes;
+
+	/**
+	 * stack of nodes to visit, and lower bounds on the squared distance of
+	 * their subtrees to {@link #pos}.
+	 */
+	private final int[] stackNodes;
+
+	private final double[] stackBounds;
+
+	/**
+	 * Create an exact k-nearest neighbor search on {@code tree}.
+	 */
+	public KNearestNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree, final int k )
+	{
+		this( tree, k, 0 );
+	}
+
+	/**
+	 * Create a (1 + {@code epsilon})-approximate k-nearest neighbor search on
+	 * {@code tree}.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public KNearestNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree, final int k, final double epsilon )
+	{
+		if ( k < 1 )
+			throw new IllegalArgumentException( "k must be positive" );
+		if ( epsilon < 0 )
+			throw new IllegalArgumentException( "epsilon must not be negative" );
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.k = k;
+		this.epsilon = epsilon;
+		this.boundScale = ( 1 + epsilon ) * ( 1 + epsilon );
+		this.bestNodeIndices = new int[ k ];
+		this.bestSquDistances = new double[ k ];
+		this.bestNodes = new FlatKDTree.Node[ k ];
+		for ( int i = 0; i < k; ++i )
+			bestNodes[ i ] = tree.node( -1 );
+
+		// the stack holds at most one node per level, plus one
+		final int height = 32 - Integer.numberOfLeadingZeros( tree.numPoints() );
+		this.stackNodes = new int[ height + 1 ];
+		this.stackBounds = new double[ height + 1 ];
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * Get the tree this search runs on.
+	 */
+	public FlatKDTree< T > getTree()
+	{
+		return tree;
+	}
+
+	@Override
+	public int getK()
+	{
+		return k;
+	}
+
+	public double getEpsilon()
+	{
+		return epsilon;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference )
+	{
+		search( reference, Double.POSITIVE_INFINITY );
+	}
+
+	/**
+	 * Search the k nearest neighbors of {@code reference} that have distance
+	 * smaller or equal {@code maxDistance}.
+	 */
+	public void search( final RealLocalizable reference, final double maxDistance )
+	{
+		reference.localize( pos );
+		searchPos( maxDistance * maxDistance );
+		setBestNodes();
+	}
+
+	/**
+	 * Find the k nearest neighbors of a batch of query points. The
+	 * coordinates of query {@code i} are
+	 * {@code queries[i*n], ..., queries[i*n + n-1]}. For each query, the
+	 * {@link FlatKDTree#getIndex(int) indices} of the k nearest neighbors and
+	 * the squared distances to them are stored, sorted by distance, in
+	 * {@code indices[i*k], ..., indices[i*k + k-1]} and
+	 * {@code squDistances[i*k], ..., squDistances[i*k + k-1]}. If the tree has
+	 * less than k points, the remaining indices are -1.
+	 * <p>
+	 * This overwrites the result of the previous {@link #search(RealLocalizable)}.
+	 *
+	 * @param queries
+	 *            flattened coordinates of the query points
+	 * @param indices
+	 *            receives the indices of the nearest neighbors
+	 * @param squDistances
+	 *            receives the squared distances to the nearest neighbors
+	 */
+	public void search( final double[] queries, final int[] indices, final double[] squDistances )
+	{
+		final int numQueries = numQueries( queries, indices, squDistances );
+		search( queries, indices, squDistances, 0, numQueries );
+	}
+
+	/**
+	 * Find the k nearest neighbors of a batch of query points, using
+	 * {@code numTasks} parallel tasks on {@code executor}. Each task uses its
+	 * own {@link #copy()} of this search. See
+	 * {@link #search(double[], int[], double[])}.
+	 *
+	 * @param queries
+	 *            flattened coordinates of the query points
+	 * @param indices
+	 *            receives the indices of the nearest neighbors
+	 * @param squDistances
+	 *            receives the squared distances to the nearest neighbors
+	 * @param numTasks
+	 *            number of tasks to split the queries into
+	 * @param executor
+	 *            executes the tasks. May be {@code null}, in which case the
+	 *            queries are processed in the calling thread.
+	 */
+	public void search( final double[] queries, final int[] indices, final double[] squDistances, final int numTasks, final ExecutorService executor )
+	{
+		final int numQueries = numQueries( queries, indices, squDistances );
+		if ( numTasks <= 1 || executor == null )
+		{
+			search( queries, indices, squDistances, 0, numQueries );
+			return;
+		}
+		final List< Callable< Void > > tasks = new ArrayList<>();
+		for ( final Chunk chunk : Chunks.split( numQueries, 1, numTasks ) )
+			tasks.add( () -> {
+				final int from = ( int ) chunk.getStartIndex();
+				copy().search( queries, indices, squDistances, from, from + ( int ) chunk.size() );
+				return null;
+			} );
+		ParallelIteration.invokeAll( tasks, executor );
+	}
+
+	private int numQueries( final double[] queries, final int[] indices, final double[] squDistances )
+	{
+		if ( queries.length % n != 0 )
+			throw new IllegalArgumentException( "queries.length is not a multiple of n" );
+		final int numQueries = queries.length / n;
+		if ( indices.length / k < numQueries || squDistances.length / k < numQueries )
+			throw new IllegalArgumentException( "result arrays are too small" );
+		return numQueries;
+	}
+
+	private void search( final double[] queries, final int[] indices, final double[] squDistances, final int from, final int to )
+	{
+		for ( int i = from; i < to; ++i )
+		{
+			System.arraycopy( queries, i * n, pos, 0, n );
+			searchPos( Double.POSITIVE_INFINITY );
+			for ( int j = 0; j < k; ++j )
+			{
+				final int node = bestNodeIndices[ j ];
+				indices[ i * k + j ] = node < 0 ? -1 : tree.getIndex( node );
+				squDistances[ i * k + j ] = bestSquDistances[ j ];
+			}
+		}
+		setBestNodes();
+	}
+
+	/**
+	 * Search the k nearest neighbors of {@link #pos}, and sort them by
+	 * ascending distance.
+	 */
+	private void searchPos( final double maxSquDistance )
+	{
+		numNeighbors = 0;
+		if ( tree.numPoints() > 0 )
+			searchTree( maxSquDistance );
+		sortHeap();
+		for ( int i = numNeighbors; i < k; ++i )
+		{
+			bestNodeIndices[ i ] = -1;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+		}
+	}
+
+	private void setBestNodes()
+	{
+		for ( int i = 0; i < k; ++i )
+			bestNodes[ i ].setNodeIndex( bestNodeIndices[ i ] );
+	}
+
+	private void searchTree( final double maxSquDistance )
+	{
+		final int size = tree.numPoints();
+		int top = 0;
+		stackNodes[ 0 ] = 0;
+		stackBounds[ 0 ] = 0;
+		while ( top >= 0 )
+		{
+			final int current = stackNodes[ top ];
+			final double bound = stackBounds[ top ];
+			--top;
+			if ( !mayContainCandidates( bound, maxSquDistance ) )
+				continue;
+
+			// consider the current node
+			final double squDistance = tree.squDistance( current, pos );
+			if ( numNeighbors < k )
+			{
+				if ( squDistance <= maxSquDistance )
+					heapAdd( current, squDistance );
+			}
+			else if ( squDistance < bestSquDistances[ 0 ] )
+				heapReplaceTop( current, squDistance );
+
+			final double axisDiff = pos[ tree.getSplitDimension( current ) ] - tree.getSplitCoordinate( current );
+			final double awayBound = Math.max( bound, axisDiff * axisDiff );
+			final boolean leftIsNearBranch = axisDiff < 0;
+
+			// push the away branch first, so that the near branch is searched first
+			final int left = FlatKDTree.leftChild( current );
+			final int nearChild = leftIsNearBranch ? left : left + 1;
+			final int awayChild = leftIsNearBranch ? left + 1 : left;
+			if ( awayChild < size && mayContainCandidates( awayBound, maxSquDistance ) )
+			{
+				stackNodes[ ++top ] = awayChild;
+				stackBounds[ top ] = awayBound;
+			}
+			if ( nearChild < size )
+			{
+				stackNodes[ ++top ] = nearChild;
+				stackBounds[ top ] = bound;
+			}
+		}
+	}
+
+	/**
+	 * Whether a subtree with the given lower bound on its squared distance
+	 * needs to be searched.
+	 */
+	private boolean mayContainCandidates( final double bound, final double maxSquDistance )
+	{
+		if ( numNeighbors < k )
+			return bound <= maxSquDistance;
+		else
+			return bound * boundScale < bestSquDistances[ 0 ];
+	}
+
+	private void heapAdd( final int node, final double squDistance )
+	{
+		int i = numNeighbors++;
+		while ( i > 0 )
+		{
+			final int parent = ( i - 1 ) >> 1;
+			if ( bestSquDistances[ parent ] >= squDistance )
+				break;
+			bestNodeIndices[ i ] = bestNodeIndices[ parent ];
+			bestSquDistances[ i ] = bestSquDistances[ parent ];
+			i = parent;
+		}
+		bestNodeIndices[ i ] = node;
+		bestSquDistances[ i ] = squDistance;
+	}
+
+	private void heapReplaceTop( final int node, final double squDistance )
+	{
+		siftDown( node, squDistance, numNeighbors );
+	}
+
+	/**
+	 * Put {@code node} at the top of the heap {@code [0, heapSize)} and sift it
+	 * down to restore the heap property.
+	 */
+	private void siftDown( final int node, final double squDistance, final int heapSize )
+	{
+		int i = 0;
+		while ( true )
+		{
+			int child = 2 * i + 1;
+			if ( child >= heapSize )
+				break;
+			if ( child + 1 < heapSize && bestSquDistances[ child + 1 ] > bestSquDistances[ child ] )
+				++child;
+			if ( bestSquDistances[ child ] <= squDistance )
+				break;
+			bestNodeIndices[ i ] = bestNodeIndices[ child ];
+			bestSquDistances[ i ] = bestSquDistances[ child ];
+			i = child;
+		}
+		bestNodeIndices[ i ] = node;
+		bestSquDistances[ i ] = squDistance;
+	}
+
+	/**
+	 * Sort the heap by ascending distance (heapsort).
+	 */
+	private void sortHeap()
+	{
+		for ( int end = numNeighbors - 1; end > 0; --end )
+		{
+			final int node = bestNodeIndices[ end ];
+			final double squDistance = bestSquDistances[ end ];
+			bestNodeIndices[ end ] = bestNodeIndices[ 0 ];
+			bestSquDistances[ end ] = bestSquDistances[ 0 ];
+			siftDown( node, squDistance, end );
+		}
+	}
+
+	/**
+	 * Get the number of neighbors found by the last search. This is less than
+	 * k if the tree has less than k points, or if the search was restricted
+	 * to a maximum distance.
+	 */
+	public int numNeighbors()
+	{
+		return numNeighbors;
+	}
+
+	/**
+	 * Get the {@link FlatKDTree#getIndex(int) index} of the
+	 * <em>i</em><sup>th</sup> nearest neighbor, or -1 if less than
+	 * {@code i+1} neighbors were found.
+	 */
+	public int getIndex( final int i )
+	{
+		return i < numNeighbors ? tree.getIndex( bestNodeIndices[ i ] ) : -1;
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return i < numNeighbors ? bestNodes[ i ] : null;
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return i < numNeighbors ? bestNodes[ i ] : null;
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return bestSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( bestSquDistances[ i ] );
+	}
+
+	/* NearestNeighborSearch */
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return getPosition( 0 );
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return getSampler( 0 );
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return getSquareDistance( 0 );
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return getDistance( 0 );
+	}
+
+	@Override
+	public KNearestNeighborSearchOnFlatKDTree< T > copy()
+	{
+		final KNearestNeighborSearchOnFlatKDTree< T > copy = new KNearestNeighborSearchOnFlatKDTree< T >( tree, k, epsilon );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		System.arraycopy( bestNodeIndices, 0, copy.bestNodeIndices, 0, k );
+		System.arraycopy( bestSquDistances, 0, copy.bestSquDistances, 0, k );
+		copy.numNeighbors = numNeighbors;
+		for ( int i = 0; i < k; ++i )
+			copy.bestNodes[ i ].setNodeIndex( bestNodeIndices[ i ] );
+		return copy;
+	}
+}
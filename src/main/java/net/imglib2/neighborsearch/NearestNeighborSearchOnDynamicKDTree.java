@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * Implementation of {@link NearestNeighborSearch} search for
+ * {@link DynamicKDTree}. Searches each tree of the forest, skipping deleted
+ * points, and the buffer of points that are not in a tree yet.
+ * <p>
+ * If the tree is empty, {@link #getSampler()} and {@link #getPosition()}
+ * return {@code null} after a search.
+ *
+ * @author agent
+ */
+public class NearestNeighborSearchOnDynamicKDTree< T > implements NearestNeighborSearch< T >
+{
+	protected final DynamicKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected int bestId;
+
+	protected double bestSquDistance;
+
+	protected final DynamicKDTree< T >.Element bestElement;
+
+	/**
+	 * the tree of the forest that is currently searched, and its index.
+	 */
+	private FlatKDTree< ? > current;
+
+	private int currentIndex;
+
+	public NearestNeighborSearchOnDynamicKDTree( final DynamicKDTree< T > tree )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.bestId = -1;
+		this.bestElement = tree.element( -1 );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void search( final RealLocalizable p )
+	{
+		p.localize( pos );
+		bestSquDistance = Double.MAX_VALUE;
+		bestId = -1;
+		// search large trees first, to find close candidates early
+		for ( int i = tree.numTrees() - 1; i >= 0; --i )
+		{
+			current = tree.getTree( i );
+			currentIndex = i;
+			if ( current != null && current.squDistanceToBounds( pos ) <= bestSquDistance )
+				searchNode( 0 );
+		}
+		current = null;
+		for ( int i = 0; i < tree.numBuffered(); ++i )
+		{
+			final int id = tree.getBufferedId( i );
+			final double distance = tree.squDistance( id, pos );
+			if ( distance < bestSquDistance )
+			{
+				bestSquDistance = distance;
+				bestId = id;
+			}
+		}
+		bestElement.setId( bestId );
+	}
+
+	protected void searchNode( final int node )
+	{
+		// consider the current node
+		final double distance = current.squDistance( node, pos );
+		if ( distance < bestSquDistance )
+		{
+			final int id = tree.getId( currentIndex, node );
+			if ( id >= 0 )
+			{
+				bestSquDistance = distance;
+				bestId = id;
+			}
+		}
+
+		final double axisDiff = pos[ current.getSplitDimension( node ) ] - current.getSplitCoordinate( node );
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		// search the near branch
+		final int left = FlatKDTree.leftChild( node );
+		final int nearChild = leftIsNearBranch ? left : left + 1;
+		final int awayChild = leftIsNearBranch ? left + 1 : left;
+		final int size = current.numPoints();
+		if ( nearChild < size )
+			searchNode( nearChild );
+
+		// search the away branch - maybe
+		if ( ( axisSquDistance <= bestSquDistance ) && ( awayChild < size ) )
+			searchNode( awayChild );
+	}
+
+	/**
+	 * @return the id of the nearest neighbor found by the last search, or -1
+	 *         if the tree is empty.
+	 */
+	public int getId()
+	{
+		return bestId;
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return bestId < 0 ? null : bestElement;
+	}
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return bestId < 0 ? null : bestElement;
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return bestSquDistance;
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return Math.sqrt( bestSquDistance );
+	}
+
+	@Override
+	public NearestNeighborSearchOnDynamicKDTree< T > copy()
+	{
+		final NearestNeighborSearchOnDynamicKDTree< T > copy = new NearestNeighborSearchOnDynamicKDTree< T >( tree );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		copy.bestId = bestId;
+		copy.bestSquDistance = bestSquDistance;
+		copy.bestElement.setId( bestId );
+		return copy;
+	}
+}
@@ -0,0 +1,264 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.neighborsearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.parallel.Chunk;
+import net.imglib2.parallel.Chunks;
+import net.imglib2.parallel.ParallelIteration;
+
+/**
+ * Implementation of {@link NearestNeighborSearch} search for
+ * {@link FlatKDTree}s.
+ * <p>
+ * If the tree is empty, {@link #getSampler()} and {@link #getPosition()}
+ * return {@code null} after a search.
+ *
+ * @author agent
+ */
+public class NearestNeighborSearchOnFlatKDTree< T > implements NearestNeighborSearch< T >
+{
+	protected final FlatKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected int bestNodeIndex;
+
+	protected double bestSquDistance;
+
+	protected final FlatKDTree< T >.Node bestNode;
+
+	public NearestNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.bestNodeIndex = -1;
+		this.bestSquDistance = Double.MAX_VALUE;
+		this.bestNode = tree.node( -1 );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * Get the tree this search runs on.
+	 */
+	public FlatKDTree< T > getTree()
+	{
+		return tree;
+	}
+
+	@Override
+	public void search( final RealLocalizable p )
+	{
+		p.localize( pos );
+		searchTree();
+		bestNode.setNodeIndex( bestNodeIndex );
+	}
+
+	private void searchTree()
+	{
+		bestNodeIndex = -1;
+		bestSquDistance = Double.MAX_VALUE;
+		if ( tree.numPoints() > 0 )
+			searchNode( 0 );
+	}
+
+	protected void searchNode( final int current )
+	{
+		// consider the current node
+		final double distance = tree.squDistance( current, pos );
+		if ( distance < bestSquDistance )
+		{
+			bestSquDistance = distance;
+			bestNodeIndex = current;
+		}
+
+		final double axisDiff = pos[ tree.getSplitDimension( current ) ] - tree.getSplitCoordinate( current );
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		// search the near branch
+		final int left = FlatKDTree.leftChild( current );
+		final int nearChild = leftIsNearBranch ? left : left + 1;
+		final int awayChild = leftIsNearBranch ? left + 1 : left;
+		final int size = tree.numPoints();
+		if ( nearChild < size )
+			searchNode( nearChild );
+
+		// search the away branch - maybe
+		if ( ( axisSquDistance <= bestSquDistance ) && ( awayChild < size ) )
+			searchNode( awayChild );
+	}
+
+	/**
+	 * Find the nearest neighbors of a batch of query points. The coordinates
+	 * of query {@code i} are {@code queries[i*n], ..., queries[i*n + n-1]}.
+	 * For each query, the {@link FlatKDTree#getIndex(int) index} of the
+	 * nearest neighbor and the squared distance to it are stored in
+	 * {@code indices[i]} and {@code squDistances[i]}. If the tree is empty, the
+	 * index is -1.
+	 * <p>
+	 * This overwrites the result of the previous {@link #search(RealLocalizable)}.
+	 *
+	 * @param queries
+	 *            flattened coordinates of the query points
+	 * @param indices
+	 *            receives the indices of the nearest neighbors
+	 * @param squDistances
+	 *            receives the squared distances to the nearest neighbors
+	 */
+	public void search( final double[] queries, final int[] indices, final double[] squDistances )
+	{
+		final int numQueries = numQueries( queries, indices, squDistances );
+		search( queries, indices, squDistances, 0, numQueries );
+	}
+
+	/**
+	 * Find the nearest neighbors of a batch of query points, using
+	 * {@code numTasks} parallel tasks on {@code executor}. Each task uses its
+	 * own {@link #copy()} of this search. See
+	 * {@link #search(double[], int[], double[])}.
+	 *
+	 * @param queries
+	 *            flattened coordinates of the query points
+	 * @param indices
+	 *            receives the indices of the nearest neighbors
+	 * @param squDistances
+	 *            receives the squared distances to the nearest neighbors
+	 * @param numTasks
+	 *            number of tasks to split the queries into
+	 * @param executor
+	 *            executes the tasks. May be {@code null}, in which case the
+	 *            queries are processed in the calling thread.
+	 */
+	public void search( final double[] queries, final int[] indices, final double[] squDistances, final int numTasks, final ExecutorService executor )
+	{
+		final int numQueries = numQueries( queries, indices, squDistances );
+		if ( numTasks <= 1 || executor == null )
+		{
+			search( queries, indices, squDistances, 0, numQueries );
+			return;
+		}
+		final List< Callable< Void > > tasks = new ArrayList<>();
+		for ( final Chunk chunk : Chunks.split( numQueries, 1, numTasks ) )
+			tasks.add( () -> {
+				final int from = ( int ) chunk.getStartIndex();
+				copy().search( queries, indices, squDistances, from, from + ( int ) chunk.size() );
+				return null;
+			} );
+		ParallelIteration.invokeAll( tasks, executor );
+	}
+
+	private int numQueries( final double[] queries, final int[] indices, final double[] squDistances )
+	{
+		if ( queries.length % n != 0 )
+			throw new IllegalArgumentException( "queries.length is not a multiple of n" );
+		final int numQueries = queries.length / n;
+		if ( indices.length < numQueries || squDistances.length < numQueries )
+			throw new IllegalArgumentException( "result arrays are too small" );
+		return numQueries;
+	}
+
+	private void search( final double[] queries, final int[] indices, final double[] squDistances, final int from, final int to )
+	{
+		for ( int i = from; i < to; ++i )
+		{
+			System.arraycopy( queries, i * n, pos, 0, n );
+			searchTree();
+			indices[ i ] = bestNodeIndex < 0 ? -1 : tree.getIndex( bestNodeIndex );
+			squDistances[ i ] = bestSquDistance;
+		}
+		bestNode.setNodeIndex( bestNodeIndex );
+	}
+
+	/**
+	 * Get the {@link FlatKDTree#getIndex(int) index} of the nearest neighbor,
+	 * or -1 if the tree is empty.
+	 */
+	public int getIndex()
+	{
+		return bestNodeIndex < 0 ? -1 : tree.getIndex( bestNodeIndex );
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return bestNodeIndex < 0 ? null : bestNode;
+	}
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return bestNodeIndex < 0 ? null : bestNode;
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return bestSquDistance;
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return Math.sqrt( bestSquDistance );
+	}
+
+	@Override
+	public NearestNeighborSearchOnFlatKDTree< T > copy()
+	{
+		final NearestNeighborSearchOnFlatKDTree< T > copy = new NearestNeighborSearchOnFlatKDTree< T >( tree );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		copy.bestNodeIndex = bestNodeIndex;
+		copy.bestNode.setNodeIndex( bestNodeIndex );
+		copy.bestSquDistance = bestSquDistance;
+		return copy;
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.neighborsearch;
+
+import java.util.Arrays;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.util.Util;
+
+/**
+ * Implementation of {@link RadiusNeighborSearch} search for
+ * {@link DynamicKDTree}. Searches each tree of the forest, skipping deleted
+ * points, and the buffer of points that are not in a tree yet.
+ *
+ * @author agent
+ */
+public class RadiusNeighborSearchOnDynamicKDTree< T > implements RadiusNeighborSearch< T >
+{
+	protected final DynamicKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected int numResults;
+
+	protected int[] resultIds;
+
+	protected double[] resultSquDistances;
+
+	/**
+	 * lazily created {@link DynamicKDTree.Element}s returned by
+	 * {@link #getSampler(int)}.
+	 */
+	protected DynamicKDTree< T >.Element[] resultElements;
+
+	/**
+	 * the tree of the forest that is currently searched, and its index.
+	 */
+	private FlatKDTree< ? > current;
+
+	private int currentIndex;
+
+	@SuppressWarnings( "unchecked" )
+	public RadiusNeighborSearchOnDynamicKDTree( final DynamicKDTree< T > tree )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.resultIds = new int[ 16 ];
+		this.resultSquDistances = new double[ 16 ];
+		this.resultElements = new DynamicKDTree.Element[ 16 ];
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		numResults = 0;
+		// search large trees first, to find close candidates early
+		for ( int i = tree.numTrees() - 1; i >= 0; --i )
+		{
+			current = tree.getTree( i );
+			currentIndex = i;
+			if ( current != null && current.squDistanceToBounds( pos ) <= radius * radius )
+				searchNode( 0, radius * radius );
+		}
+		current = null;
+		for ( int i = 0; i < tree.numBuffered(); ++i )
+		{
+			final int id = tree.getBufferedId( i );
+			final double squDistance = tree.squDistance( id, pos );
+			if ( squDistance <= radius * radius )
+				addResult( id, squDistance );
+		}
+		if ( sortResults && numResults > 1 )
+			Util.quicksort( resultSquDistances, resultIds, 0, numResults - 1 );
+	}
+
+	protected void searchNode( final int node, final double squRadius )
+	{
+		// consider the current node
+		final double squDistance = current.squDistance( node, pos );
+		if ( squDistance <= squRadius )
+		{
+			final int id = tree.getId( currentIndex, node );
+			if ( id >= 0 )
+				addResult( id, squDistance );
+		}
+
+		final double axisDiff = pos[ current.getSplitDimension( node ) ] - current.getSplitCoordinate( node );
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		// search the near branch
+		final int left = FlatKDTree.leftChild( node );
+		final int nearChild = leftIsNearBranch ? left : left + 1;
+		final int awayChild = leftIsNearBranch ? left + 1 : left;
+		final int size = current.numPoints();
+		if ( nearChild < size )
+			searchNode( nearChild, squRadius );
+
+		// search the away branch - maybe
+		if ( ( axisSquDistance <= squRadius ) && ( awayChild < size ) )
+			searchNode( awayChild, squRadius );
+	}
+
+	private void addResult( final int id, final double squDistance )
+	{
+		if ( numResults == resultIds.length )
+		{
+			resultIds = Arrays.copyOf( resultIds, 2 * numResults );
+			resultSquDistances = Arrays.copyOf( resultSquDistances, 2 * numResults );
+			resultElements = Arrays.copyOf( resultElements, 2 * numResults );
+		}
+		resultIds[ numResults ] = id;
+		resultSquDistances[ numResults ] = squDistance;
+		++numResults;
+	}
+
+	@Override
+	public int numNeighbors()
+	{
+		return numResults;
+	}
+
+	/**
+	 * @return the id of the <em>i</em><sup>th</sup> neighbor found by the
+	 *         last search.
+	 */
+	public int getId( final int i )
+	{
+		return resultIds[ i ];
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		DynamicKDTree< T >.Element element = resultElements[ i ];
+		if ( element == null )
+			resultElements[ i ] = element = tree.element( -1 );
+		element.setId( resultIds[ i ] );
+		return element;
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return ( RealLocalizable ) getSampler( i );
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return resultSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( resultSquDistances[ i ] );
+	}
+}
@@ -0,0 +1,260 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.neighborsearch;
+
+import java.util.Arrays;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnKDTree.NeighborCallback;
+import net.imglib2.util.Util;
+
+/**
+ * Implementation of {@link RadiusNeighborSearch} search for
+ * {@link FlatKDTree}s.
+ * <p>
+ * Found neighbors are stored as node indices in reusable primitive buffers
+ * that only grow, so repeated searches do not allocate. Use
+ * {@link #count(RealLocalizable, double)} to only count neighbors, or
+ * {@link #search(RealLocalizable, double, NeighborCallback)} to process
+ * neighbors as they are found without storing them.
+ *
+ * @author agent
+ */
+public class RadiusNeighborSearchOnFlatKDTree< T > implements RadiusNeighborSearch< T >
+{
+	protected final FlatKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected int numResults;
+
+	protected double[] resultSquDistances;
+
+	protected int[] resultNodeIndices;
+
+	/**
+	 * lazily created {@link FlatKDTree.Node}s returned by
+	 * {@link #getSampler(int)}.
+	 */
+	protected FlatKDTree< T >.Node[] resultNodes;
+
+	/**
+	 * the node passed to {@link NeighborCallback}s.
+	 */
+	private final FlatKDTree< T >.Node callbackNode;
+
+	@SuppressWarnings( "unchecked" )
+	public RadiusNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.resultSquDistances = new double[ 16 ];
+		this.resultNodeIndices = new int[ 16 ];
+		this.resultNodes = new FlatKDTree.Node[ 16 ];
+		this.callbackNode = tree.node( -1 );
+	}
+
+	@Override
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		numResults = 0;
+		if ( tree.numPoints() > 0 )
+			searchNode( 0, radius * radius );
+		if ( sortResults && numResults > 1 )
+			Util.quicksort( resultSquDistances, resultNodeIndices, 0, numResults - 1 );
+	}
+
+	/**
+	 * Count the points within {@code radius} of {@code reference}, without
+	 * storing them. This does not change the result of the previous
+	 * {@link #search(RealLocalizable, double, boolean)}.
+	 *
+	 * @return the number of points found within radius.
+	 */
+	public int count( final RealLocalizable reference, final double radius )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		return tree.numPoints() > 0 ? countNode( 0, pos, radius * radius ) : 0;
+	}
+
+	/**
+	 * Call {@code callback} for every point within {@code radius} of
+	 * {@code reference}, without storing them. This does not change the
+	 * result of the previous
+	 * {@link #search(RealLocalizable, double, boolean)}.
+	 */
+	public void search( final RealLocalizable reference, final double radius, final NeighborCallback< T > callback )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		if ( tree.numPoints() > 0 )
+			visitNode( 0, pos, radius * radius, callback );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	protected void searchNode( final int current, final double squRadius )
+	{
+		// consider the current node
+		final double squDistance = tree.squDistance( current, pos );
+		if ( squDistance <= squRadius )
+		{
+			if ( numResults == resultNodeIndices.length )
+			{
+				resultNodeIndices = Arrays.copyOf( resultNodeIndices, 2 * numResults );
+				resultNodes = Arrays.copyOf( resultNodes, 2 * numResults );
+				resultSquDistances = Arrays.copyOf( resultSquDistances, 2 * numResults );
+			}
+			resultNodeIndices[ numResults ] = current;
+			resultSquDistances[ numResults ] = squDistance;
+			++numResults;
+		}
+
+		final double axisDiff = pos[ tree.getSplitDimension( current ) ] - tree.getSplitCoordinate( current );
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		// search the near branch
+		final int left = FlatKDTree.leftChild( current );
+		final int nearChild = leftIsNearBranch ? left : left + 1;
+		final int awayChild = leftIsNearBranch ? left + 1 : left;
+		final int size = tree.numPoints();
+		if ( nearChild < size )
+			searchNode( nearChild, squRadius );
+
+		// search the away branch - maybe
+		if ( ( axisSquDistance <= squRadius ) && ( awayChild < size ) )
+			searchNode( awayChild, squRadius );
+	}
+
+	private int countNode( final int current, final double[] p, final double squRadius )
+	{
+		int count = tree.squDistance( current, p ) <= squRadius ? 1 : 0;
+
+		final double axisDiff = p[ tree.getSplitDimension( current ) ] - tree.getSplitCoordinate( current );
+		final boolean leftIsNearBranch = axisDiff < 0;
+		final int left = FlatKDTree.leftChild( current );
+		final int nearChild = leftIsNearBranch ? left : left + 1;
+		final int awayChild = leftIsNearBranch ? left + 1 : left;
+		final int size = tree.numPoints();
+		if ( nearChild < size )
+			count += countNode( nearChild, p, squRadius );
+		if ( ( axisDiff * axisDiff <= squRadius ) && ( awayChild < size ) )
+			count += countNode( awayChild, p, squRadius );
+		return count;
+	}
+
+	private void visitNode( final int current, final double[] p, final double squRadius, final NeighborCallback< T > callback )
+	{
+		final double squDistance = tree.squDistance( current, p );
+		if ( squDistance <= squRadius )
+		{
+			callbackNode.setNodeIndex( current );
+			callback.accept( callbackNode, callbackNode, squDistance );
+		}
+
+		final double axisDiff = p[ tree.getSplitDimension( current ) ] - tree.getSplitCoordinate( current );
+		final boolean leftIsNearBranch = axisDiff < 0;
+		final int left = FlatKDTree.leftChild( current );
+		final int nearChild = leftIsNearBranch ? left : left + 1;
+		final int awayChild = leftIsNearBranch ? left + 1 : left;
+		final int size = tree.numPoints();
+		if ( nearChild < size )
+			visitNode( nearChild, p, squRadius, callback );
+		if ( ( axisDiff * axisDiff <= squRadius ) && ( awayChild < size ) )
+			visitNode( awayChild, p, squRadius, callback );
+	}
+
+	@Override
+	public int numNeighbors()
+	{
+		return numResults;
+	}
+
+	/**
+	 * Get the {@link FlatKDTree#getIndex(int) index} of the
+	 * <em>i</em><sup>th</sup> nearest neighbor.
+	 */
+	public int getIndex( final int i )
+	{
+		return tree.getIndex( resultNodeIndices[ i ] );
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return resultNode( i );
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return resultNode( i );
+	}
+
+	private FlatKDTree< T >.Node resultNode( final int i )
+	{
+		FlatKDTree< T >.Node node = resultNodes[ i ];
+		if ( node == null )
+			resultNodes[ i ] = node = tree.node( -1 );
+		node.setNodeIndex( resultNodeIndices[ i ] );
+		return node;
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return resultSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( resultSquDistances[ i ] );
+	}
+}
@@ -34,37 +34,69 @@
 
 package net.imglib2.neighborsearch;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 
 import net.imglib2.KDTree;
 import net.imglib2.KDTreeNode;
 import net.imglib2.RealLocalizable;
 import net.imglib2.Sampler;
-import net.imglib2.util.ValuePair;
+import net.imglib2.util.Util;
 
 /**
  * Implementation of {@link RadiusNeighborSearch} search for kd-trees.
+ * <p>
+ * Found neighbors are stored in reusable primitive buffers that only grow,
+ * and are sorted by their squared distances as primitive keys, so repeated
+ * searches do not allocate. Use {@link #count(RealLocalizable, double)} to
+ * only count neighbors, or
+ * {@link #search(RealLocalizable, double, NeighborCallback)} to process
+ * neighbors as they are found without storing them.
  * 
  * @author Tobias Pietzsch
  */
 public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch< T >
 {
+	/**
+	 * Receives neighbors found by
+	 * {@link RadiusNeighborSearchOnKDTree#search(RealLocalizable, double, NeighborCallback)}.
+	 */
+	public interface NeighborCallback< T >
+	{
+		/**
+		 * Called for each neighbor within radius, in no particular order.
+		 * {@code position} and {@code sampler} are the same object and are
+		 * only valid during the call.
+		 */
+		public void accept( RealLocalizable position, Sampler< T > sampler, double squDistance );
+	}
+
 	protected KDTree< T > tree;
 
 	protected final int n;
 
 	protected final double[] pos;
 
-	protected ArrayList< ValuePair< KDTreeNode< T >, Double > > resultPoints;
+	protected int numResults;
+
+	protected double[] resultSquDistances;
+
+	protected KDTreeNode< T >[] resultNodes;
+
+	/**
+	 * scratch space for sorting {@link #resultNodes}.
+	 */
+	private int[] permutation;
 
+	private KDTreeNode< T >[] sortedNodes;
+
+	@SuppressWarnings( "unchecked" )
 	public RadiusNeighborSearchOnKDTree( final KDTree< T > tree )
 	{
 		this.tree = tree;
 		this.n = tree.numDimensions();
 		this.pos = new double[ n ];
-		this.resultPoints = new ArrayList< ValuePair< KDTreeNode< T >, Double > >();
+		this.resultSquDistances = new double[ 16 ];
+		this.resultNodes = new KDTreeNode[ 16 ];
 	}
 
 	@Override
@@ -72,19 +104,37 @@ public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch<
 	{
 		assert radius >= 0;
 		reference.localize( pos );
-		resultPoints.clear();
+		numResults = 0;
 		searchNode( tree.getRoot(), radius * radius );
-		if ( sortResults )
-		{
-			Collections.sort( resultPoints, new Comparator< ValuePair< KDTreeNode< T >, Double > >()
-			{
-				@Override
-				public int compare( final ValuePair< KDTreeNode< T >, Double > o1, final ValuePair< KDTreeNode< T >, Double > o2 )
-				{
-					return Double.compare( o1.b, o2.b );
-				}
-			} );
-		}
+		if ( sortResults && numResults > 1 )
+			sortResultNodes();
+	}
+
+	/**
+	 * Count the points within {@code radius} of {@code reference}, without
+	 * storing them. This does not change the result of the previous
+	 * {@link #search(RealLocalizable, double, boolean)}.
+	 * 
+	 * @return the number of points found within radius.
+	 */
+	public int count( final RealLocalizable reference, final double radius )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		return countNode( tree.getRoot(), pos, radius * radius );
+	}
+
+	/**
+	 * Call {@code callback} for every point within {@code radius} of
+	 * {@code reference}, without storing them. This does not change the
+	 * result of the previous
+	 * {@link #search(RealLocalizable, double, boolean)}.
+	 */
+	public void search( final RealLocalizable reference, final double radius, final NeighborCallback< T > callback )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		visitNode( tree.getRoot(), pos, radius * radius, callback );
 	}
 
 	@Override
@@ -99,7 +149,14 @@ public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch<
 		final double squDistance = current.squDistanceTo( pos );
 		if ( squDistance <= squRadius )
 		{
-			resultPoints.add( new ValuePair< KDTreeNode< T >, Double >( current, squDistance ) );
+			if ( numResults == resultNodes.length )
+			{
+				resultNodes = Arrays.copyOf( resultNodes, 2 * numResults );
+				resultSquDistances = Arrays.copyOf( resultSquDistances, 2 * numResults );
+			}
+			resultNodes[ numResults ] = current;
+			resultSquDistances[ numResults ] = squDistance;
+			++numResults;
 		}
 
 		final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
@@ -117,33 +174,86 @@ public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch<
 			searchNode( awayChild, squRadius );
 	}
 
+	private int countNode( final KDTreeNode< T > current, final double[] p, final double squRadius )
+	{
+		int count = current.squDistanceTo( p ) <= squRadius ? 1 : 0;
+
+		final double axisDiff = p[ current.getSplitDimension() ] - current.getSplitCoordinate();
+		final boolean leftIsNearBranch = axisDiff < 0;
+		final KDTreeNode< T > nearChild = leftIsNearBranch ? current.left : current.right;
+		final KDTreeNode< T > awayChild = leftIsNearBranch ? current.right : current.left;
+		if ( nearChild != null )
+			count += countNode( nearChild, p, squRadius );
+		if ( ( axisDiff * axisDiff <= squRadius ) && ( awayChild != null ) )
+			count += countNode( awayChild, p, squRadius );
+		return count;
+	}
+
+	private void visitNode( final KDTreeNode< T > current, final double[] p, final double squRadius, final NeighborCallback< T > callback )
+	{
+		final double squDistance = current.squDistanceTo( p );
+		if ( squDistance <= squRadius )
+			callback.accept( current, current, squDistance );
+
+		final double axisDiff = p[ current.getSplitDimension() ] - current.getSplitCoordinate();
+		final boolean leftIsNearBranch = axisDiff < 0;
+		final KDTreeNode< T > nearChild = leftIsNearBranch ? current.left : current.right;
+		final KDTreeNode< T > awayChild = leftIsNearBranch ? current.right : current.left;
+		if ( nearChild != null )
+			visitNode( nearChild, p, squRadius, callback );
+		if ( ( axisDiff * axisDiff <= squRadius ) && ( awayChild != null ) )
+			visitNode( awayChild, p, squRadius, callback );
+	}
+
+	/**
+	 * Sort {@link #resultNodes} by {@link #resultSquDistances}, via a
+	 * permutation sorted with primitive keys.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private void sortResultNodes()
+	{
+		if ( permutation == null || permutation.length < numResults )
+		{
+			permutation = new int[ resultNodes.length ];
+			sortedNodes = new KDTreeNode[ resultNodes.length ];
+		}
+		for ( int i = 0; i < numResults; ++i )
+			permutation[ i ] = i;
+		Util.quicksort( resultSquDistances, permutation, 0, numResults - 1 );
+		for ( int i = 0; i < numResults; ++i )
+			sortedNodes[ i ] = resultNodes[ permutation[ i ] ];
+		final KDTreeNode< T >[] tmp = resultNodes;
+		resultNodes = sortedNodes;
+		sortedNodes = tmp;
+	}
+
 	@Override
 	public int numNeighbors()
 	{
-		return resultPoints.size();
+		return numResults;
 	}
 
 	@Override
 	public Sampler< T > getSampler( final int i )
 	{
-		return resultPoints.get( i ).a;
+		return resultNodes[ i ];
 	}
 
 	@Override
 	public RealLocalizable getPosition( final int i )
 	{
-		return resultPoints.get( i ).a;
+		return resultNodes[ i ];
 	}
 
 	@Override
 	public double getSquareDistance( final int i )
 	{
-		return resultPoints.get( i ).b;
+		return resultSquDistances[ i ];
 	}
 
 	@Override
 	public double getDistance( final int i )
 	{
-		return Math.sqrt( resultPoints.get( i ).b );
+		return Math.sqrt( resultSquDistances[ i ] );
 	}
 }
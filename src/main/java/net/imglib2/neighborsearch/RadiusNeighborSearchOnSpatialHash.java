@@ -0,0 +1,504 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.neighborsearch;
+
+import java.util.Arrays;
+
+import net.imglib2.IterableRealInterval;
+import net.imglib2.RealCursor;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.util.Util;
+
+/**
+ * Implementation of {@link RadiusNeighborSearch} backed by a uniform grid of
+ * cubic cells, stored as a spatial hash in primitive arrays.
+ * <p>
+ * The elements of an {@link IterableRealInterval} are sorted into hash
+ * buckets by the grid cell they fall into. A search visits all cells
+ * overlapping the bounding box of the search ball. For (roughly) uniformly
+ * distributed points and a cell size close to the search radius, this is
+ * faster than searching a kd-tree. Search radii much larger than the cell
+ * size are supported, but visit many cells.
+ * <p>
+ * Only the coordinates and the iteration index of each point are stored.
+ * Samples are resolved lazily by moving a cursor of the
+ * {@link IterableRealInterval} to the index of the point, when
+ * {@link Sampler#get()} is called on a result. The returned value is only
+ * valid until the next sample of the same search is resolved.
+ * <p>
+ * The hash is built once and shared by {@link #copy() copies}. In a
+ * multi-threaded application, each thread will need its own copy.
+ *
+ * @author agent
+ */
+public class RadiusNeighborSearchOnSpatialHash< T > implements RadiusNeighborSearch< T >
+{
+	protected final int n;
+
+	protected final double cellSize;
+
+	protected final double invCellSize;
+
+	/**
+	 * origin of the grid.
+	 */
+	protected final double[] min;
+
+	/**
+	 * the largest cell coordinate of any point, in each dimension.
+	 */
+	protected final long[] maxCell;
+
+	/**
+	 * {@code bucketStarts[b]} is the index of the first point in bucket
+	 * {@code b}. The last entry is the number of points.
+	 */
+	protected final int[] bucketStarts;
+
+	protected final int bucketMask;
+
+	/**
+	 * whether each bucket contains points of more than one grid cell. Only
+	 * for those, the cell of each point needs to be checked during search.
+	 */
+	protected final boolean[] mixedBuckets;
+
+	/**
+	 * coordinates of points, sorted by bucket. Coordinates of point {@code i}
+	 * are at {@code [i*n, i*n+n)}.
+	 */
+	protected final double[] coordinates;
+
+	/**
+	 * iteration index (in {@link #interval}) of points, sorted by bucket.
+	 */
+	protected final int[] indices;
+
+	protected final IterableRealInterval< T > interval;
+
+	protected final double[] pos;
+
+	/**
+	 * grid cell that is currently visited, and the range of cells to visit.
+	 */
+	private final long[] cell;
+
+	private final long[] cellMin;
+
+	private final long[] cellMax;
+
+	protected int numResults;
+
+	protected int[] resultIndices;
+
+	protected double[] resultSquDistances;
+
+	/**
+	 * lazily created {@link Element}s returned by {@link #getSampler(int)}.
+	 */
+	protected Element[] resultElements;
+
+	/**
+	 * cursor used to resolve samples, and its current iteration index.
+	 */
+	private RealCursor< T > cursor;
+
+	private long cursorIndex;
+
+	/**
+	 * Create a {@link RadiusNeighborSearchOnSpatialHash} over the elements of
+	 * {@code interval}.
+	 *
+	 * @param interval
+	 *            the points to search
+	 * @param cellSize
+	 *            edge length of the grid cells. Should be about the radius
+	 *            that will be searched.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public RadiusNeighborSearchOnSpatialHash( final IterableRealInterval< T > interval, final double cellSize )
+	{
+		if ( !( cellSize > 0 ) )
+			throw new IllegalArgumentException( "cellSize must be positive" );
+		if ( interval.size() > Integer.MAX_VALUE / interval.numDimensions() )
+			throw new IllegalArgumentException( "too many points" );
+
+		this.n = interval.numDimensions();
+		this.interval = interval;
+		this.cellSize = cellSize;
+		this.invCellSize = 1.0 / cellSize;
+		this.min = new double[ n ];
+		interval.realMin( min );
+		this.maxCell = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			maxCell[ d ] = pointCellCoordinate( interval.realMax( d ), d );
+
+		final int size = ( int ) interval.size();
+		final double[] unsortedCoordinates = new double[ size * n ];
+		final RealCursor< T > cursor = interval.localizingCursor();
+		for ( int i = 0; cursor.hasNext(); ++i )
+		{
+			cursor.fwd();
+			for ( int d = 0; d < n; ++d )
+				unsortedCoordinates[ i * n + d ] = cursor.getDoublePosition( d );
+		}
+
+		// power of two, at least twice the number of points
+		final int numBuckets = Integer.highestOneBit( Math.max( 1, 2 * size - 1 ) ) << 1;
+		bucketMask = numBuckets - 1;
+
+		// counting sort by bucket
+		final int[] buckets = new int[ size ];
+		bucketStarts = new int[ numBuckets + 1 ];
+		this.cell = new long[ n ];
+		for ( int i = 0; i < size; ++i )
+		{
+			for ( int d = 0; d < n; ++d )
+				cell[ d ] = pointCellCoordinate( unsortedCoordinates[ i * n + d ], d );
+			buckets[ i ] = bucket( cell );
+			++bucketStarts[ buckets[ i ] + 1 ];
+		}
+		for ( int b = 0; b < numBuckets; ++b )
+			bucketStarts[ b + 1 ] += bucketStarts[ b ];
+		final int[] next = Arrays.copyOf( bucketStarts, numBuckets );
+		coordinates = new double[ size * n ];
+		indices = new int[ size ];
+		for ( int i = 0; i < size; ++i )
+		{
+			final int j = next[ buckets[ i ] ]++;
+			System.arraycopy( unsortedCoordinates, i * n, coordinates, j * n, n );
+			indices[ j ] = i;
+		}
+
+		mixedBuckets = new boolean[ numBuckets ];
+		for ( int b = 0; b < numBuckets; ++b )
+		{
+			final int o = bucketStarts[ b ] * n;
+			A: for ( int i = bucketStarts[ b ] + 1; i < bucketStarts[ b + 1 ]; ++i )
+			{
+				for ( int d = 0; d < n; ++d )
+				{
+					if ( pointCellCoordinate( coordinates[ i * n + d ], d ) != pointCellCoordinate( coordinates[ o + d ], d ) )
+					{
+						mixedBuckets[ b ] = true;
+						break A;
+					}
+				}
+			}
+		}
+
+		this.pos = new double[ n ];
+		this.cellMin = new long[ n ];
+		this.cellMax = new long[ n ];
+		this.resultIndices = new int[ 16 ];
+		this.resultSquDistances = new double[ 16 ];
+		this.resultElements = new RadiusNeighborSearchOnSpatialHash.Element[ 16 ];
+	}
+
+	/**
+	 * Create a copy of {@code search} that shares the hash, but not the
+	 * search results.
+	 */
+	@SuppressWarnings( "unchecked" )
+	protected RadiusNeighborSearchOnSpatialHash( final RadiusNeighborSearchOnSpatialHash< T > search )
+	{
+		this.n = search.n;
+		this.cellSize = search.cellSize;
+		this.invCellSize = search.invCellSize;
+		this.min = search.min;
+		this.maxCell = search.maxCell;
+		this.bucketStarts = search.bucketStarts;
+		this.bucketMask = search.bucketMask;
+		this.mixedBuckets = search.mixedBuckets;
+		this.coordinates = search.coordinates;
+		this.indices = search.indices;
+		this.interval = search.interval;
+		this.pos = new double[ n ];
+		this.cell = new long[ n ];
+		this.cellMin = new long[ n ];
+		this.cellMax = new long[ n ];
+		this.resultIndices = new int[ 16 ];
+		this.resultSquDistances = new double[ 16 ];
+		this.resultElements = new RadiusNeighborSearchOnSpatialHash.Element[ 16 ];
+	}
+
+	/**
+	 * Create a new search that shares the hash with this one. The result of
+	 * the last search is not copied.
+	 */
+	public RadiusNeighborSearchOnSpatialHash< T > copy()
+	{
+		return new RadiusNeighborSearchOnSpatialHash< T >( this );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	public double getCellSize()
+	{
+		return cellSize;
+	}
+
+	private long cellCoordinate( final double x, final int d )
+	{
+		return ( long ) Math.floor( ( x - min[ d ] ) * invCellSize );
+	}
+
+	/**
+	 * Same as {@link #cellCoordinate(double, int)}, for coordinates of points
+	 * in the hash, which are never less than {@code min}.
+	 */
+	private long pointCellCoordinate( final double x, final int d )
+	{
+		return ( long ) ( ( x - min[ d ] ) * invCellSize );
+	}
+
+	private int bucket( final long[] c )
+	{
+		long h = 0;
+		for ( int d = 0; d < n; ++d )
+			h = ( h + c[ d ] ) * 0x9E3779B97F4A7C15L;
+		return ( int ) ( h ^ ( h >>> 32 ) ) & bucketMask;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		numResults = 0;
+		if ( indices.length == 0 )
+			return;
+		// only visit cells of the grid that contain points
+		for ( int d = 0; d < n; ++d )
+		{
+			cellMin[ d ] = Math.max( 0, cellCoordinate( pos[ d ] - radius, d ) );
+			cellMax[ d ] = Math.min( maxCell[ d ], cellCoordinate( pos[ d ] + radius, d ) );
+			if ( cellMin[ d ] > cellMax[ d ] )
+				return;
+			cell[ d ] = cellMin[ d ];
+		}
+		final double squRadius = radius * radius;
+		while ( true )
+		{
+			searchCell( squRadius );
+
+			// next cell
+			int d = 0;
+			for ( ; d < n; ++d )
+			{
+				if ( ++cell[ d ] <= cellMax[ d ] )
+					break;
+				cell[ d ] = cellMin[ d ];
+			}
+			if ( d == n )
+				break;
+		}
+		if ( sortResults && numResults > 1 )
+			Util.quicksort( resultSquDistances, resultIndices, 0, numResults - 1 );
+	}
+
+	private void searchCell( final double squRadius )
+	{
+		final int b = bucket( cell );
+		final int start = bucketStarts[ b ];
+		final int end = bucketStarts[ b + 1 ];
+		if ( start == end )
+			return;
+		if ( !mixedBuckets[ b ] )
+		{
+			// all points in the bucket are in the same cell, check the first
+			for ( int d = 0; d < n; ++d )
+				if ( pointCellCoordinate( coordinates[ start * n + d ], d ) != cell[ d ] )
+					return;
+		}
+		final boolean checkCells = mixedBuckets[ b ];
+		A: for ( int i = start; i < end; ++i )
+		{
+			final int o = i * n;
+			double squDistance = 0;
+			for ( int d = 0; d < n; ++d )
+			{
+				final double x = coordinates[ o + d ];
+				// skip points of other cells that share the bucket
+				if ( checkCells && pointCellCoordinate( x, d ) != cell[ d ] )
+					continue A;
+				final double diff = x - pos[ d ];
+				squDistance += diff * diff;
+			}
+			if ( squDistance <= squRadius )
+			{
+				if ( numResults == resultIndices.length )
+				{
+					resultIndices = Arrays.copyOf( resultIndices, 2 * numResults );
+					resultSquDistances = Arrays.copyOf( resultSquDistances, 2 * numResults );
+					resultElements = Arrays.copyOf( resultElements, 2 * numResults );
+				}
+				resultIndices[ numResults ] = i;
+				resultSquDistances[ numResults ] = squDistance;
+				++numResults;
+			}
+		}
+	}
+
+	@Override
+	public int numNeighbors()
+	{
+		return numResults;
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return resultElement( i );
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return resultElement( i );
+	}
+
+	/**
+	 * Get the iteration index (in the {@link IterableRealInterval} the hash
+	 * was built from) of the <em>i</em><sup>th</sup> neighbor.
+	 */
+	public int getIndex( final int i )
+	{
+		return indices[ resultIndices[ i ] ];
+	}
+
+	private Element resultElement( final int i )
+	{
+		Element element = resultElements[ i ];
+		if ( element == null )
+			resultElements[ i ] = element = new Element();
+		element.point = resultIndices[ i ];
+		return element;
+	}
+
+	/**
+	 * Move {@link #cursor} to the given iteration index and get its value.
+	 */
+	private T resolve( final int index )
+	{
+		if ( cursor == null || index < cursorIndex )
+		{
+			cursor = interval.cursor();
+			cursorIndex = -1;
+		}
+		if ( index > cursorIndex )
+		{
+			cursor.jumpFwd( index - cursorIndex );
+			cursorIndex = index;
+		}
+		return cursor.get();
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return resultSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( resultSquDistances[ i ] );
+	}
+
+	/**
+	 * A reference to a point in the hash. It provides the point's coordinates
+	 * via the {@link RealLocalizable} interface and resolves its value on
+	 * {@link Sampler#get()}.
+	 */
+	protected class Element implements RealLocalizable, Sampler< T >
+	{
+		/**
+		 * index of the point in {@link #coordinates}.
+		 */
+		private int point;
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = ( float ) coordinates[ point * n + d ];
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( coordinates, point * n, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) coordinates[ point * n + d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return coordinates[ point * n + d ];
+		}
+
+		@Override
+		public T get()
+		{
+			return resolve( indices[ point ] );
+		}
+
+		@Override
+		public Element copy()
+		{
+			final Element copy = new Element();
+			copy.point = point;
+			return copy;
+		}
+	}
+}
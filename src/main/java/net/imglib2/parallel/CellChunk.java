@@ -0,0 +1,103 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.parallel;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.CellGroupCursor;
+
+/**
+ * A {@link Chunk} of an {@link AbstractCellImg} that consists of whole cells.
+ * It covers the cells {@link #getFirstCell()}, ...,
+ * {@code getFirstCell() + getNumCells() - 1} (flat index into the cell grid).
+ * <p>
+ * {@link #cursor(IterableInterval)} on the {@link AbstractCellImg} returns a
+ * {@link CellGroupCursor} that is confined to these cells, instead of a
+ * {@link Cursor} on the whole image that is moved into place.
+ *
+ * @author agent
+ */
+public class CellChunk extends Chunk
+{
+	private final long firstCell;
+
+	private final long numCells;
+
+	public CellChunk( final long startIndex, final long size, final long firstCell, final long numCells )
+	{
+		super( startIndex, size );
+		this.firstCell = firstCell;
+		this.numCells = numCells;
+	}
+
+	/**
+	 * @return flat index of the first cell of this chunk.
+	 */
+	public long getFirstCell()
+	{
+		return firstCell;
+	}
+
+	/**
+	 * @return the number of cells in this chunk.
+	 */
+	public long getNumCells()
+	{
+		return numCells;
+	}
+
+	@Override
+	@SuppressWarnings( "unchecked" )
+	public < T > Cursor< T > cursor( final IterableInterval< T > iterable )
+	{
+		if ( iterable instanceof AbstractCellImg )
+			return cellGroupCursor( ( AbstractCellImg< ?, ?, ?, ? > ) iterable );
+		return super.cursor( iterable );
+	}
+
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	private Cursor cellGroupCursor( final AbstractCellImg< ?, ?, ?, ? > img )
+	{
+		return new CellGroupCursor( img, firstCell, numCells );
+	}
+
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() + "( start = " + getStartIndex() + ", size = " + size() + ", firstCell = " + firstCell + ", numCells = " + numCells + " )";
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.parallel;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+
+/**
+ * A contiguous range of elements of an {@link IterableInterval}, in its
+ * iteration order. A chunk starts at element {@link #getStartIndex()} and
+ * contains {@link #size()} elements.
+ *
+ * @author agent
+ */
+public class Chunk
+{
+	private final long startIndex;
+
+	private final long size;
+
+	public Chunk( final long startIndex, final long size )
+	{
+		this.startIndex = startIndex;
+		this.size = size;
+	}
+
+	/**
+	 * @return the index (in iteration order) of the first element of this
+	 *         chunk.
+	 */
+	public long getStartIndex()
+	{
+		return startIndex;
+	}
+
+	/**
+	 * @return the number of elements in this chunk.
+	 */
+	public long size()
+	{
+		return size;
+	}
+
+	/**
+	 * Get a {@link Cursor} on {@code iterable} that is placed right before
+	 * the first element of this chunk. That is, {@link Cursor#fwd()} moves it
+	 * to the first element. Exactly {@link #size()} elements should be visited
+	 * by the cursor.
+	 */
+	public < T > Cursor< T > cursor( final IterableInterval< T > iterable )
+	{
+		final Cursor< T > cursor = iterable.cursor();
+		if ( startIndex > 0 )
+			cursor.jumpFwd( startIndex );
+		return cursor;
+	}
+
+	/**
+	 * Get a localizing {@link Cursor} on {@code iterable} that is placed right
+	 * before the first element of this chunk.
+	 *
+	 * @see #cursor(IterableInterval)
+	 */
+	public < T > Cursor< T > localizingCursor( final IterableInterval< T > iterable )
+	{
+		final Cursor< T > cursor = iterable.localizingCursor();
+		if ( startIndex > 0 )
+			cursor.jumpFwd( startIndex );
+		return cursor;
+	}
+
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() + "( start = " + startIndex + ", size = " + size + " )";
+	}
+}
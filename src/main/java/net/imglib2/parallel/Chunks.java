@@ -0,0 +1,178 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.IterableInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ChunkedArrayImg;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.CellIterationOrder;
+import net.imglib2.img.planar.PlanarImg;
+
+/**
+ * Splits {@link IterableInterval}s into disjoint {@link Chunk}s that can be
+ * processed in parallel.
+ * <p>
+ * Splits are container-aware: chunks of an {@link ArrayImg} consist of whole
+ * lines, chunks of a {@link PlanarImg} of whole planes, chunks of a
+ * {@link ChunkedArrayImg} of whole array chunks, and chunks of an
+ * {@link AbstractCellImg} of whole cells (see {@link CellChunk}), as long
+ * as there are enough of these units to make {@code numChunks} chunks.
+ * Otherwise, a finer alignment is used.
+ *
+ * @author agent
+ */
+public final class Chunks
+{
+	private Chunks()
+	{}
+
+	/**
+	 * Split {@code iterable} into at most {@code numChunks} chunks of
+	 * approximately equal size, aligned to the storage units of the
+	 * underlying container if possible.
+	 *
+	 * @return the chunks, in iteration order. Together they cover all
+	 *         elements of {@code iterable} exactly once.
+	 */
+	public static List< Chunk > split( final IterableInterval< ? > iterable, final int numChunks )
+	{
+		if ( numChunks < 1 )
+			throw new IllegalArgumentException( "numChunks < 1" );
+
+		if ( iterable instanceof AbstractCellImg && iterable.iterationOrder() instanceof CellIterationOrder )
+			return splitCells( ( AbstractCellImg< ?, ?, ?, ? > ) iterable, numChunks );
+
+		return split( iterable.size(), alignment( iterable, numChunks ), numChunks );
+	}
+
+	/**
+	 * Split {@code size} elements into at most {@code numChunks} chunks of
+	 * approximately equal size. Chunk boundaries are multiples of {@code unit}.
+	 */
+	public static List< Chunk > split( final long size, final long unit, final int numChunks )
+	{
+		final List< Chunk > chunks = new ArrayList<>();
+		final long numUnits = ( size + unit - 1 ) / unit;
+		final long numChunksL = Math.min( numChunks, numUnits );
+		long start = 0;
+		for ( long i = 0; i < numChunksL; ++i )
+		{
+			final long end = Math.min( size, unit * ( ( numUnits * ( i + 1 ) ) / numChunksL ) );
+			if ( end > start )
+				chunks.add( new Chunk( start, end - start ) );
+			start = end;
+		}
+		return chunks;
+	}
+
+	private static long alignment( final IterableInterval< ? > iterable, final int numChunks )
+	{
+		final long size = iterable.size();
+		final long line = iterable.dimension( 0 );
+		final long plane = iterable.numDimensions() > 1 ? line * iterable.dimension( 1 ) : line;
+		if ( iterable instanceof PlanarImg )
+		{
+			if ( size / plane >= numChunks )
+				return plane;
+			else if ( size / line >= numChunks )
+				return line;
+		}
+		else if ( iterable instanceof ChunkedArrayImg )
+		{
+			final int chunkSize = ( ( ChunkedArrayImg< ?, ? > ) iterable ).chunkSize();
+			if ( size / chunkSize >= numChunks )
+				return chunkSize;
+			else if ( size / line >= numChunks )
+				return line;
+		}
+		else if ( iterable instanceof ArrayImg )
+		{
+			if ( size / line >= numChunks )
+				return line;
+		}
+		return 1;
+	}
+
+	/**
+	 * Split an {@link AbstractCellImg} (in {@link CellIterationOrder}) into
+	 * {@link CellChunk}s consisting of whole cells. If there are fewer cells
+	 * than {@code numChunks}, one chunk per cell is created.
+	 * <p>
+	 * {@link CellChunk#cursor(IterableInterval)} provides cursors confined to
+	 * the cells of each chunk, such that different chunks never share a cell.
+	 */
+	public static List< Chunk > splitCells( final AbstractCellImg< ?, ?, ?, ? > img, final int numChunks )
+	{
+		final CellGrid grid = img.getCellGrid();
+		final int n = grid.numDimensions();
+		final long[] cellMin = new long[ n ];
+		final int[] cellDims = new int[ n ];
+		long numCells = 1;
+		for ( int d = 0; d < n; ++d )
+			numCells *= grid.gridDimension( d );
+
+		final long size = img.size();
+		final List< Chunk > chunks = new ArrayList<>();
+		long start = 0;
+		long end = 0;
+		long firstCell = 0;
+		int k = 1;
+		for ( long i = 0; i < numCells; ++i )
+		{
+			grid.getCellDimensions( i, cellMin, cellDims );
+			long cellSize = 1;
+			for ( int d = 0; d < n; ++d )
+				cellSize *= cellDims[ d ];
+			end += cellSize;
+			if ( k < numChunks && end >= ( size * k ) / numChunks )
+			{
+				chunks.add( new CellChunk( start, end - start, firstCell, i + 1 - firstCell ) );
+				start = end;
+				firstCell = i + 1;
+				while ( k < numChunks && end >= ( size * k ) / numChunks )
+					++k;
+			}
+		}
+		if ( end > start )
+			chunks.add( new CellChunk( start, end - start, firstCell, numCells - firstCell ) );
+		return chunks;
+	}
+}
@@ -0,0 +1,219 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.view.Views;
+
+/**
+ * Multi-threaded iteration over {@link IterableInterval}s.
+ * <p>
+ * The iterable is {@link Chunks#split(IterableInterval, int) split} into
+ * disjoint {@link Chunk}s, and each chunk is processed by a separate task with
+ * its own {@link Cursor}. Tasks are submitted to a caller-provided
+ * {@link ExecutorService}, or to the {@link ForkJoinPool#commonPool() common
+ * fork-join pool} if none is given. All methods block until every chunk has
+ * been processed.
+ * <p>
+ * To process a {@link RandomAccessibleInterval}, wrap it using
+ * {@link Views#iterable(RandomAccessibleInterval)}.
+ * <p>
+ * If a task throws an exception, it is rethrown (wrapped in a
+ * {@link RuntimeException} if it is a checked exception) after all tasks have
+ * finished.
+ *
+ * @author agent
+ */
+public final class ParallelIteration
+{
+	private ParallelIteration()
+	{}
+
+	/**
+	 * Processes one chunk. The cursor is placed right before the first element
+	 * of the chunk and {@code size} elements should be visited.
+	 */
+	@FunctionalInterface
+	public interface ChunkTask< T >
+	{
+		void run( Cursor< T > cursor, long size );
+	}
+
+	/**
+	 * Processes one chunk and computes a partial result.
+	 *
+	 * @see ChunkTask
+	 */
+	@FunctionalInterface
+	public interface ChunkReducer< T, R >
+	{
+		R reduce( Cursor< T > cursor, long size );
+	}
+
+	/**
+	 * The default number of chunks: a few per available processor, to balance
+	 * load between threads.
+	 */
+	public static int defaultNumChunks()
+	{
+		return 4 * Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Apply {@code action} to every element of {@code iterable}, using the
+	 * common fork-join pool.
+	 */
+	public static < T > void forEach( final IterableInterval< T > iterable, final Consumer< ? super T > action )
+	{
+		forEach( iterable, defaultNumChunks(), ForkJoinPool.commonPool(), action );
+	}
+
+	/**
+	 * Apply {@code action} to every element of {@code iterable}, split into
+	 * {@code numChunks} chunks executed by {@code executor}.
+	 */
+	public static < T > void forEach( final IterableInterval< T > iterable, final int numChunks, final ExecutorService executor, final Consumer< ? super T > action )
+	{
+		forEachChunk( iterable, numChunks, executor, ( cursor, size ) -> {
+			for ( long i = 0; i < size; ++i )
+				action.accept( cursor.next() );
+		} );
+	}
+
+	/**
+	 * Run {@code task} on every chunk of {@code iterable}, using the common
+	 * fork-join pool.
+	 */
+	public static < T > void forEachChunk( final IterableInterval< T > iterable, final ChunkTask< T > task )
+	{
+		forEachChunk( iterable, defaultNumChunks(), ForkJoinPool.commonPool(), task );
+	}
+
+	/**
+	 * Split {@code iterable} into {@code numChunks} chunks and run
+	 * {@code task} on every chunk, using {@code executor}.
+	 */
+	public static < T > void forEachChunk( final IterableInterval< T > iterable, final int numChunks, final ExecutorService executor, final ChunkTask< T > task )
+	{
+		forEachChunk( iterable, Chunks.split( iterable, numChunks ), executor, task );
+	}
+
+	/**
+	 * Run {@code task} on each of the given {@code chunks} of
+	 * {@code iterable}, using {@code executor}.
+	 */
+	public static < T > void forEachChunk( final IterableInterval< T > iterable, final List< Chunk > chunks, final ExecutorService executor, final ChunkTask< T > task )
+	{
+		final List< Callable< Void > > tasks = new ArrayList<>( chunks.size() );
+		for ( final Chunk chunk : chunks )
+			tasks.add( () -> {
+				task.run( chunk.cursor( iterable ), chunk.size() );
+				return null;
+			} );
+		invokeAll( tasks, executor );
+	}
+
+	/**
+	 * Compute a partial result for every chunk of {@code iterable} and
+	 * combine the partial results (in iteration order) using {@code combiner}.
+	 * Uses the common fork-join pool.
+	 */
+	public static < T, R > R reduce( final IterableInterval< T > iterable, final ChunkReducer< T, R > reducer, final BinaryOperator< R > combiner )
+	{
+		return reduce( iterable, defaultNumChunks(), ForkJoinPool.commonPool(), reducer, combiner );
+	}
+
+	/**
+	 * Split {@code iterable} into {@code numChunks} chunks, compute a partial
+	 * result for every chunk using {@code executor}, and combine the partial
+	 * results (in iteration order) using {@code combiner}.
+	 */
+	public static < T, R > R reduce( final IterableInterval< T > iterable, final int numChunks, final ExecutorService executor, final ChunkReducer< T, R > reducer, final BinaryOperator< R > combiner )
+	{
+		final List< Chunk > chunks = Chunks.split( iterable, numChunks );
+		final List< Callable< R > > tasks = new ArrayList<>( chunks.size() );
+		for ( final Chunk chunk : chunks )
+			tasks.add( () -> reducer.reduce( chunk.cursor( iterable ), chunk.size() ) );
+		final List< R > results = invokeAll( tasks, executor );
+		R result = results.isEmpty() ? null : results.get( 0 );
+		for ( int i = 1; i < results.size(); ++i )
+			result = combiner.apply( result, results.get( i ) );
+		return result;
+	}
+
+	/**
+	 * Run all {@code tasks} on {@code executor}, wait for them to complete,
+	 * and return their results. Exceptions thrown by tasks are rethrown as
+	 * described {@link ParallelIteration above}.
+	 */
+	public static < R > List< R > invokeAll( final List< Callable< R > > tasks, final ExecutorService executor )
+	{
+		try
+		{
+			final List< Future< R > > futures = executor.invokeAll( tasks );
+			final List< R > results = new ArrayList<>( futures.size() );
+			for ( final Future< R > future : futures )
+				results.add( future.get() );
+			return results;
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			final Throwable cause = e.getCause();
+			if ( cause instanceof RuntimeException )
+				throw ( RuntimeException ) cause;
+			if ( cause instanceof Error )
+				throw ( Error ) cause;
+			throw new RuntimeException( cause );
+		}
+	}
+}
@@ -42,6 +42,13 @@ import java.util.Collections;
  *
  * Call {@link #benchmark(int, Runnable)} with the number of iterations and a
  * {@link Runnable} to benchmark to obtain a list of run-times in milliseconds.
+ * <p>
+ * This is useful for quick experiments. Reproducible measurements (with
+ * warmup, forking, and dead-code elimination prevention) are provided by the
+ * JMH benchmarks in the test sources, e.g., {@code ImgCursorBenchmark},
+ * {@code ViewsRandomAccessBenchmark}, {@code InterpolatorBenchmark}, and
+ * {@code KDTreeBenchmark}. Run them from the test classpath using
+ * {@code org.openjdk.jmh.Main}.
  *
  * @author Tobias Pietzsch
  */
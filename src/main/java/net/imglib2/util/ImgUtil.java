@@ -34,11 +34,60 @@
 
 package net.imglib2.util;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
 import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.Img;
+import net.imglib2.img.AbstractNativeImg;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ChunkedArrayImg;
+import net.imglib2.img.basictypeaccess.ByteAccess;
+import net.imglib2.img.basictypeaccess.CharAccess;
+import net.imglib2.img.basictypeaccess.DoubleAccess;
+import net.imglib2.img.basictypeaccess.FloatAccess;
+import net.imglib2.img.basictypeaccess.IntAccess;
+import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.img.basictypeaccess.ShortAccess;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.nio.BufferAccess;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.parallel.Chunk;
+import net.imglib2.parallel.Chunks;
+import net.imglib2.parallel.ParallelIteration;
 import net.imglib2.type.BooleanType;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.Type;
 import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
 
 /**
  * This class contains static methods for copying image data to and from Img
@@ -65,6 +114,13 @@ public class ImgUtil
 	 * 
 	 * For instance, a 10 x 10 raster image has a stride of { 1, 10 }.
 	 * 
+	 * If the destination is an {@link ArrayImg} or {@link PlanarImg} whose
+	 * pixels are stored in an array of the same primitive type (e.g.,
+	 * {@link DoubleType} for this method), the data is copied line by line
+	 * using {@link System#arraycopy} (or a strided loop if
+	 * {@code stride[ 0 ] != 1}). The same holds for the other overloads, and
+	 * for copying in the opposite direction.
+	 * 
 	 * @param <T>
 	 *            - the type of the destination image data
 	 * @param src
@@ -80,6 +136,10 @@ public class ImgUtil
 	 */
 	public static < T extends RealType< T >> void copy( final double[] src, final int offset, final int[] stride, final Img< T > dest )
 	{
+		if ( hasType( dest, DoubleType.class ) && copyLines( dest, double[].class, offset, stride,
+				( storage, storageOffset, arrayOffset, arrayStride, length ) -> copy( src, arrayOffset, arrayStride, ( double[] ) storage, storageOffset, 1, length ) ) )
+			return;
+
 		final Cursor< T > c = dest.localizingCursor();
 		final int[] location = new int[ dest.numDimensions() ];
 		while ( c.hasNext() )
@@ -100,6 +160,10 @@ public class ImgUtil
 	 */
 	public static < T extends RealType< T >> void copy( final float[] src, final int offset, final int[] stride, final Img< T > dest )
 	{
+		if ( hasType( dest, FloatType.class ) && copyLines( dest, float[].class, offset, stride,
+				( storage, storageOffset, arrayOffset, arrayStride, length ) -> copy( src, arrayOffset, arrayStride, ( float[] ) storage, storageOffset, 1, length ) ) )
+			return;
+
 		final Cursor< T > c = dest.localizingCursor();
 		final int[] location = new int[ dest.numDimensions() ];
 		while ( c.hasNext() )
@@ -120,6 +184,10 @@ public class ImgUtil
 	 */
 	public static < T extends IntegerType< T >> void copy( final long[] src, final int offset, final int[] stride, final Img< T > dest )
 	{
+		if ( hasType( dest, LongType.class ) && copyLines( dest, long[].class, offset, stride,
+				( storage, storageOffset, arrayOffset, arrayStride, length ) -> copy( src, arrayOffset, arrayStride, ( long[] ) storage, storageOffset, 1, length ) ) )
+			return;
+
 		final Cursor< T > c = dest.localizingCursor();
 		final int[] location = new int[ dest.numDimensions() ];
 		while ( c.hasNext() )
@@ -140,6 +208,10 @@ public class ImgUtil
 	 */
 	public static < T extends IntegerType< T >> void copy( final int[] src, final int offset, final int[] stride, final Img< T > dest )
 	{
+		if ( hasType( dest, IntType.class, UnsignedIntType.class ) && copyLines( dest, int[].class, offset, stride,
+				( storage, storageOffset, arrayOffset, arrayStride, length ) -> copy( src, arrayOffset, arrayStride, ( int[] ) storage, storageOffset, 1, length ) ) )
+			return;
+
 		final Cursor< T > c = dest.localizingCursor();
 		final int[] location = new int[ dest.numDimensions() ];
 		while ( c.hasNext() )
@@ -194,6 +266,10 @@ public class ImgUtil
 	 */
 	public static < T extends RealType< T >> void copy( final Img< T > src, final double[] dest, final int offset, final int[] stride )
 	{
+		if ( hasType( src, DoubleType.class ) && copyLines( src, double[].class, offset, stride,
+				( storage, storageOffset, arrayOffset, arrayStride, length ) -> copy( ( double[] ) storage, storageOffset, 1, dest, arrayOffset, arrayStride, length ) ) )
+			return;
+
 		final Cursor< T > c = src.localizingCursor();
 		final int[] location = new int[ src.numDimensions() ];
 		while ( c.hasNext() )
@@ -214,6 +290,10 @@ public class ImgUtil
 	 */
 	public static < T extends RealType< T >> void copy( final Img< T > src, final float[] dest, final int offset, final int[] stride )
 	{
+		if ( hasType( src, FloatType.class ) && copyLines( src, float[].class, offset, stride,
+				( storage, storageOffset, arrayOffset, arrayStride, length ) -> copy( ( float[] ) storage, storageOffset, 1, dest, arrayOffset, arrayStride, length ) ) )
+			return;
+
 		final Cursor< T > c = src.localizingCursor();
 		final int[] location = new int[ src.numDimensions() ];
 		while ( c.hasNext() )
@@ -234,6 +314,10 @@ public class ImgUtil
 	 */
 	public static < T extends IntegerType< T >> void copy( final Img< T > src, final long[] dest, final int offset, final int[] stride )
 	{
+		if ( hasType( src, LongType.class ) && copyLines( src, long[].class, offset, stride,
+				( storage, storageOffset, arrayOffset, arrayStride, length ) -> copy( ( long[] ) storage, storageOffset, 1, dest, arrayOffset, arrayStride, length ) ) )
+			return;
+
 		final Cursor< T > c = src.localizingCursor();
 		final int[] location = new int[ src.numDimensions() ];
 		while ( c.hasNext() )
@@ -254,6 +338,10 @@ public class ImgUtil
 	 */
 	public static < T extends IntegerType< T >> void copy( final Img< T > src, final int[] dest, final int offset, final int[] stride )
 	{
+		if ( hasType( src, IntType.class, UnsignedIntType.class ) && copyLines( src, int[].class, offset, stride,
+				( storage, storageOffset, arrayOffset, arrayStride, length ) -> copy( ( int[] ) storage, storageOffset, 1, dest, arrayOffset, arrayStride, length ) ) )
+			return;
+
 		final Cursor< T > c = src.localizingCursor();
 		final int[] location = new int[ src.numDimensions() ];
 		while ( c.hasNext() )
@@ -288,4 +376,902 @@ public class ImgUtil
 			dest[ this_offset ] = t.get();
 		}
 	}
+
+	/**
+	 * Visits a line of pixels along dimension 0 of an {@link Img}, stored
+	 * contiguously in a primitive array, and the corresponding (strided)
+	 * elements of a flat array.
+	 */
+	private interface LineCopier
+	{
+		void copy( Object storage, int storageOffset, int arrayOffset, int arrayStride, int length );
+	}
+
+	/**
+	 * If {@code img} is an {@link ArrayImg} or {@link PlanarImg} whose storage
+	 * arrays are of {@code arrayClass}, call {@code copier} for every line
+	 * along dimension 0, with the offset and stride of that line in a flat
+	 * array addressed by {@code offset} and {@code stride} (see
+	 * {@link #copy(double[], int, int[], Img)}).
+	 *
+	 * @return {@code false} if {@code img} is not a supported container, in
+	 *         which case {@code copier} was not called.
+	 */
+	private static boolean copyLines( final Img< ? > img, final Class< ? > arrayClass, final int offset, final int[] stride, final LineCopier copier )
+	{
+		final int n = img.numDimensions();
+		final List< Object > arrays = new ArrayList<>();
+		final int planeDimensions;
+		if ( img instanceof ArrayImg )
+		{
+			final Object access = ( ( ArrayImg< ?, ? > ) img ).update( null );
+			if ( !( access instanceof ArrayDataAccess ) )
+				return false;
+			arrays.add( ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray() );
+			planeDimensions = n;
+		}
+		else if ( img instanceof PlanarImg )
+		{
+			final PlanarImg< ?, ? > planar = ( PlanarImg< ?, ? > ) img;
+			for ( int i = 0; i < planar.numSlices(); ++i )
+			{
+				final ArrayDataAccess< ? > plane = planar.getPlane( i );
+				if ( plane == null )
+					return false;
+				arrays.add( plane.getCurrentStorageArray() );
+			}
+			planeDimensions = Math.min( n, 2 );
+		}
+		else
+			return false;
+		for ( final Object array : arrays )
+			if ( array == null || array.getClass() != arrayClass )
+				return false;
+
+		final long[] dimensions = Intervals.dimensionsAsLongArray( img );
+		final int width = n == 0 ? 1 : ( int ) dimensions[ 0 ];
+		final int stride0 = n == 0 || stride.length == 0 ? 0 : stride[ 0 ];
+		long linesPerPlane = 1;
+		for ( int d = 1; d < planeDimensions; ++d )
+			linesPerPlane *= dimensions[ d ];
+
+		final long[] position = new long[ n ];
+		for ( int p = 0; p < arrays.size(); ++p )
+		{
+			long rest = p;
+			for ( int d = planeDimensions; d < n; ++d )
+			{
+				position[ d ] = rest % dimensions[ d ];
+				rest /= dimensions[ d ];
+			}
+			for ( long l = 0; l < linesPerPlane; ++l )
+			{
+				rest = l;
+				for ( int d = 1; d < planeDimensions; ++d )
+				{
+					position[ d ] = rest % dimensions[ d ];
+					rest /= dimensions[ d ];
+				}
+				int arrayOffset = offset;
+				for ( int d = 1; d < n && d < stride.length; ++d )
+					arrayOffset += position[ d ] * stride[ d ];
+				copier.copy( arrays.get( p ), ( int ) ( l * width ), arrayOffset, stride0, width );
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return whether {@code img} is not empty and its pixel type is one of
+	 *         {@code types} (exactly, not a subclass).
+	 */
+	private static boolean hasType( final Img< ? > img, final Class< ? >... types )
+	{
+		if ( Intervals.numElements( img ) == 0 )
+			return false;
+		final Class< ? > type = img.firstElement().getClass();
+		for ( final Class< ? > t : types )
+			if ( type == t )
+				return true;
+		return false;
+	}
+
+	private static void copy( final double[] src, final int srcPos, final int srcStride, final double[] dest, final int destPos, final int destStride, final int length )
+	{
+		if ( srcStride == 1 && destStride == 1 )
+			System.arraycopy( src, srcPos, dest, destPos, length );
+		else
+			for ( int i = 0, s = srcPos, d = destPos; i < length; ++i, s += srcStride, d += destStride )
+				dest[ d ] = src[ s ];
+	}
+
+	private static void copy( final float[] src, final int srcPos, final int srcStride, final float[] dest, final int destPos, final int destStride, final int length )
+	{
+		if ( srcStride == 1 && destStride == 1 )
+			System.arraycopy( src, srcPos, dest, destPos, length );
+		else
+			for ( int i = 0, s = srcPos, d = destPos; i < length; ++i, s += srcStride, d += destStride )
+				dest[ d ] = src[ s ];
+	}
+
+	private static void copy( final long[] src, final int srcPos, final int srcStride, final long[] dest, final int destPos, final int destStride, final int length )
+	{
+		if ( srcStride == 1 && destStride == 1 )
+			System.arraycopy( src, srcPos, dest, destPos, length );
+		else
+			for ( int i = 0, s = srcPos, d = destPos; i < length; ++i, s += srcStride, d += destStride )
+				dest[ d ] = src[ s ];
+	}
+
+	private static void copy( final int[] src, final int srcPos, final int srcStride, final int[] dest, final int destPos, final int destStride, final int length )
+	{
+		if ( srcStride == 1 && destStride == 1 )
+			System.arraycopy( src, srcPos, dest, destPos, length );
+		else
+			for ( int i = 0, s = srcPos, d = destPos; i < length; ++i, s += srcStride, d += destStride )
+				dest[ d ] = src[ s ];
+	}
+
+	/**
+	 * Copy the contents of {@code source} into {@code target}. Both must have
+	 * the same dimensions. The pixel at offset {@code o} from the min of
+	 * {@code source} is copied to offset {@code o} from the min of
+	 * {@code target}.
+	 * <p>
+	 * If both are {@link ArrayImg}s, {@link PlanarImg}s,
+	 * {@link ChunkedArrayImg}s, or {@link AbstractCellImg}s (in any
+	 * combination) of the same {@link NativeType}, the underlying
+	 * {@link ArrayDataAccess}es and {@link BufferAccess}es are copied in bulk,
+	 * using {@link System#arraycopy} between primitive arrays and bulk
+	 * {@link Buffer} transfers if {@link BufferAccess}es are involved. Each bulk transfer covers the
+	 * longest run of pixels that is contiguous in both source and target
+	 * storage, e.g., whole arrays, whole planes, whole cells (if both images
+	 * have the same {@link CellGrid}), or lines of cells. Otherwise, data is
+	 * copied line by line using {@link RandomAccess}es.
+	 *
+	 * @param source
+	 *            copy data from this image
+	 * @param target
+	 *            copy data to this image
+	 */
+	public static < T extends Type< T > > void copy( final RandomAccessibleInterval< T > source, final RandomAccessibleInterval< T > target )
+	{
+		copy( source, target, 1, null );
+	}
+
+	/**
+	 * Copy the contents of {@code source} into {@code target}, using
+	 * {@code numTasks} parallel tasks on {@code executor}. Both must have the
+	 * same dimensions.
+	 * <p>
+	 * Bulk copies (see {@link #copy(RandomAccessibleInterval, RandomAccessibleInterval)})
+	 * are split into ranges of whole lines, or groups of whole cells. Otherwise,
+	 * the data is copied in blocks that follow the layout of {@code target} if
+	 * it is an {@link AbstractCellImg} (one block per cell), else the layout
+	 * of {@code source} if it is an {@link AbstractCellImg}, else slabs along
+	 * the last dimension. Blocks are copied line by line using
+	 * {@link RandomAccess}es.
+	 *
+	 * @param source
+	 *            copy data from this image
+	 * @param target
+	 *            copy data to this image
+	 * @param numTasks
+	 *            number of tasks to split the work into
+	 * @param executor
+	 *            executes the tasks. May be {@code null} if
+	 *            {@code numTasks == 1}, in which case the copy runs in the
+	 *            calling thread.
+	 */
+	public static < T extends Type< T > > void copy( final RandomAccessibleInterval< T > source, final RandomAccessibleInterval< T > target, final int numTasks, final ExecutorService executor )
+	{
+		if ( !Intervals.equalDimensions( source, target ) )
+			throw new IllegalArgumentException( "source and target dimensions do not match" );
+
+		final List< Callable< Void > > tasks = new ArrayList<>();
+		if ( source instanceof AbstractNativeImg && target instanceof AbstractNativeImg
+				&& bulkCopyable( ( AbstractNativeImg< ?, ? > ) source, ( AbstractNativeImg< ?, ? > ) target ) )
+		{
+			final Fraction epp = ( ( AbstractNativeImg< ?, ? > ) source ).getEntitiesPerPixel();
+			if ( source instanceof AbstractCellImg && target instanceof AbstractCellImg
+					&& ( ( AbstractCellImg< ?, ?, ?, ? > ) source ).getCellGrid().equals( ( ( AbstractCellImg< ?, ?, ?, ? > ) target ).getCellGrid() ) )
+			{
+				final AbstractCellImg< ?, ?, ?, ? > s = ( AbstractCellImg< ?, ?, ?, ? > ) source;
+				final AbstractCellImg< ?, ?, ?, ? > t = ( AbstractCellImg< ?, ?, ?, ? > ) target;
+				for ( final Chunk cells : Chunks.split( s.getCells().size(), 1, numTasks ) )
+					tasks.add( () -> {
+						copyCells( s, t, epp, cells.getStartIndex(), cells.size() );
+						return null;
+					} );
+			}
+			else if ( epp.getNumerator() % epp.getDenominator() == 0 && storage( ( AbstractNativeImg< ?, ? > ) source ) != null && storage( ( AbstractNativeImg< ?, ? > ) target ) != null )
+			{
+				final long entitiesPerPixel = epp.getNumerator() / epp.getDenominator();
+				final long size = Intervals.numElements( source );
+				final long line = source.numDimensions() == 0 ? 1 : source.dimension( 0 );
+				for ( final Chunk range : Chunks.split( size, line, numTasks ) )
+					tasks.add( () -> {
+						final Storage s = storage( ( AbstractNativeImg< ?, ? > ) source );
+						final Storage t = storage( ( AbstractNativeImg< ?, ? > ) target );
+						copyRuns( s, t, entitiesPerPixel, range.getStartIndex(), range.getStartIndex() + range.size() );
+						return null;
+					} );
+			}
+		}
+
+		if ( tasks.isEmpty() )
+		{
+			// blocks are relative to the min of source and target
+			final List< List< Interval > > blocks;
+			if ( target instanceof AbstractCellImg )
+				blocks = cellBlocks( ( AbstractCellImg< ?, ?, ?, ? > ) target, numTasks );
+			else if ( source instanceof AbstractCellImg )
+				blocks = cellBlocks( ( AbstractCellImg< ?, ?, ?, ? > ) source, numTasks );
+			else
+				blocks = slabBlocks( source, numTasks );
+
+			final long[] sourceMin = Intervals.minAsLongArray( source );
+			final long[] targetMin = Intervals.minAsLongArray( target );
+			for ( final List< Interval > group : blocks )
+				tasks.add( () -> {
+					for ( final Interval block : group )
+						copyLines( Views.interval( source, translate( block, sourceMin ) ), Views.interval( target, translate( block, targetMin ) ) );
+					return null;
+				} );
+		}
+
+		if ( tasks.size() == 1 || executor == null )
+		{
+			for ( final Callable< Void > task : tasks )
+			{
+				try
+				{
+					task.call();
+				}
+				catch ( final RuntimeException e )
+				{
+					throw e;
+				}
+				catch ( final Exception e )
+				{
+					throw new RuntimeException( e );
+				}
+			}
+		}
+		else
+			ParallelIteration.invokeAll( tasks, executor );
+	}
+
+	/**
+	 * Create a copy of {@code source} using {@code factory}. The copy is done
+	 * in parallel using the {@link ForkJoinPool#commonPool() common fork-join
+	 * pool}.
+	 *
+	 * @return a new image (with min at the origin) containing the data of
+	 *         {@code source}.
+	 * @see #copy(RandomAccessibleInterval, RandomAccessibleInterval, int,
+	 *      ExecutorService)
+	 */
+	public static < T extends NativeType< T > > Img< T > copy( final RandomAccessibleInterval< T > source, final NativeImgFactory< T > factory )
+	{
+		return copy( source, factory, ParallelIteration.defaultNumChunks(), ForkJoinPool.commonPool() );
+	}
+
+	/**
+	 * Create a copy of {@code source} using {@code factory}. The copy is done
+	 * using {@code numTasks} parallel tasks on {@code executor}.
+	 *
+	 * @return a new image (with min at the origin) containing the data of
+	 *         {@code source}.
+	 * @see #copy(RandomAccessibleInterval, RandomAccessibleInterval, int,
+	 *      ExecutorService)
+	 */
+	public static < T extends NativeType< T > > Img< T > copy( final RandomAccessibleInterval< T > source, final NativeImgFactory< T > factory, final int numTasks, final ExecutorService executor )
+	{
+		final Img< T > target = factory.create( Intervals.dimensionsAsLongArray( source ), Util.getTypeFromInterval( source ).createVariable() );
+		copy( source, target, numTasks, executor );
+		return target;
+	}
+
+	private static Interval translate( final Interval interval, final long[] translation )
+	{
+		final int n = interval.numDimensions();
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = interval.min( d ) + translation[ d ];
+			max[ d ] = interval.max( d ) + translation[ d ];
+		}
+		return new FinalInterval( min, max );
+	}
+
+	/**
+	 * Split the cells of {@code img} into {@code numGroups} groups of
+	 * intervals (one interval per cell, relative to the min of {@code img}).
+	 */
+	private static List< List< Interval > > cellBlocks( final AbstractCellImg< ?, ?, ?, ? > img, final int numGroups )
+	{
+		final CellGrid grid = img.getCellGrid();
+		final int n = grid.numDimensions();
+		final List< List< Interval > > groups = new ArrayList<>();
+		for ( final Chunk chunk : Chunks.split( img.getCells().size(), 1, numGroups ) )
+		{
+			final List< Interval > group = new ArrayList<>();
+			for ( long i = chunk.getStartIndex(); i < chunk.getStartIndex() + chunk.size(); ++i )
+			{
+				final long[] min = new long[ n ];
+				final int[] dims = new int[ n ];
+				grid.getCellDimensions( i, min, dims );
+				final long[] max = new long[ n ];
+				for ( int d = 0; d < n; ++d )
+					max[ d ] = min[ d ] + dims[ d ] - 1;
+				group.add( new FinalInterval( min, max ) );
+			}
+			groups.add( group );
+		}
+		return groups;
+	}
+
+	/**
+	 * Split {@code interval} into {@code numGroups} slabs along the last
+	 * dimension (relative to the min of {@code interval}).
+	 */
+	private static List< List< Interval > > slabBlocks( final Interval interval, final int numGroups )
+	{
+		final int n = interval.numDimensions();
+		final List< List< Interval > > groups = new ArrayList<>();
+		if ( n == 0 || Intervals.numElements( interval ) == 0 )
+			return groups;
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			max[ d ] = interval.dimension( d ) - 1;
+		for ( final Chunk chunk : Chunks.split( interval.dimension( n - 1 ), 1, numGroups ) )
+		{
+			min[ n - 1 ] = chunk.getStartIndex();
+			max[ n - 1 ] = chunk.getStartIndex() + chunk.size() - 1;
+			groups.add( Collections.singletonList( new FinalInterval( min, max ) ) );
+		}
+		return groups;
+	}
+
+	/**
+	 * Copy pixels with flat index {@code from} (inclusive) to {@code to}
+	 * (exclusive) from {@code s} to {@code t}, one contiguous run at a time.
+	 */
+	private static void copyRuns( final Storage s, final Storage t, final long entitiesPerPixel, final long from, final long to )
+	{
+		long k = from;
+		while ( k < to )
+		{
+			final long run = Math.min( to - k, Math.min( s.locate( k ), t.locate( k ) ) );
+			copyEntities(
+					s.access(), ( int ) ( s.offset() * entitiesPerPixel ),
+					t.access(), ( int ) ( t.offset() * entitiesPerPixel ),
+					( int ) ( run * entitiesPerPixel ) );
+			k += run;
+		}
+	}
+
+	/**
+	 * Copy whole cells {@code firstCell, ..., firstCell + numCells - 1}
+	 * between {@link AbstractCellImg}s with the same {@link CellGrid}.
+	 */
+	private static void copyCells( final AbstractCellImg< ?, ?, ?, ? > source, final AbstractCellImg< ?, ?, ?, ? > target, final Fraction entitiesPerPixel, final long firstCell, final long numCells )
+	{
+		final Cursor< ? extends Cell< ? > > s = source.getCells().cursor();
+		final Cursor< ? extends Cell< ? > > t = target.getCells().cursor();
+		if ( firstCell > 0 )
+		{
+			s.jumpFwd( firstCell );
+			t.jumpFwd( firstCell );
+		}
+		for ( long i = 0; i < numCells; ++i )
+		{
+			final Cell< ? > cell = s.next();
+			final int length = ( int ) entitiesPerPixel.mulCeil( cell.size() );
+			copyEntities( cell.getData(), 0, t.next().getData(), 0, length );
+		}
+	}
+
+	/**
+	 * Copy {@code length} entities from {@code source} to {@code target}.
+	 * Accesses must be {@link #bulkCopyable(Object, Object) compatible}.
+	 */
+	private static void copyEntities( final Object source, final int sourcePos, final Object target, final int targetPos, final int length )
+	{
+		final boolean sourceIsBuffer = source instanceof BufferAccess;
+		final boolean targetIsBuffer = target instanceof BufferAccess;
+		if ( !sourceIsBuffer && !targetIsBuffer )
+			System.arraycopy( storageArray( source ), sourcePos, storageArray( target ), targetPos, length );
+		else if ( !sourceIsBuffer )
+			put( storageArray( source ), sourcePos, view( ( BufferAccess< ? > ) target, targetPos, length ), length );
+		else if ( !targetIsBuffer )
+			get( view( ( BufferAccess< ? > ) source, sourcePos, length ), storageArray( target ), targetPos, length );
+		else
+		{
+			final ByteBuffer s = ( ( BufferAccess< ? > ) source ).getBuffer();
+			final ByteBuffer t = ( ( BufferAccess< ? > ) target ).getBuffer();
+			if ( s.order() == t.order() )
+			{
+				// same byte order: transfer raw bytes
+				final int bytesPerEntity = ( ( BufferAccess< ? > ) source ).getBytesPerEntity();
+				final ByteBuffer sb = s.duplicate();
+				final ByteBuffer tb = t.duplicate();
+				final int sp = sb.position() + sourcePos * bytesPerEntity;
+				( ( Buffer ) sb ).limit( sp + length * bytesPerEntity );
+				( ( Buffer ) sb ).position( sp );
+				( ( Buffer ) tb ).position( tb.position() + targetPos * bytesPerEntity );
+				tb.put( sb );
+			}
+			else
+				put( view( ( BufferAccess< ? > ) source, sourcePos, length ), view( ( BufferAccess< ? > ) target, targetPos, length ) );
+		}
+	}
+
+	/**
+	 * Get a typed view ({@link IntBuffer}, {@link FloatBuffer}, etc.) of
+	 * {@code length} entities of {@code access}, starting at entity
+	 * {@code pos}.
+	 */
+	private static Buffer view( final BufferAccess< ? > access, final int pos, final int length )
+	{
+		final ByteBuffer buffer = access.getBuffer();
+		final int bytesPerEntity = access.getBytesPerEntity();
+		final ByteBuffer bytes = buffer.duplicate();
+		final int start = bytes.position() + pos * bytesPerEntity;
+		( ( Buffer ) bytes ).limit( start + length * bytesPerEntity );
+		( ( Buffer ) bytes ).position( start );
+		final ByteBuffer slice = bytes.slice().order( buffer.order() );
+		final Class< ? > kind = primitiveType( access );
+		if ( kind == char.class )
+			return slice.asCharBuffer();
+		else if ( kind == short.class )
+			return slice.asShortBuffer();
+		else if ( kind == int.class )
+			return slice.asIntBuffer();
+		else if ( kind == long.class )
+			return slice.asLongBuffer();
+		else if ( kind == float.class )
+			return slice.asFloatBuffer();
+		else if ( kind == double.class )
+			return slice.asDoubleBuffer();
+		return slice;
+	}
+
+	private static void put( final Object array, final int pos, final Buffer target, final int length )
+	{
+		if ( array instanceof byte[] )
+			( ( ByteBuffer ) target ).put( ( byte[] ) array, pos, length );
+		else if ( array instanceof char[] )
+			( ( CharBuffer ) target ).put( ( char[] ) array, pos, length );
+		else if ( array instanceof short[] )
+			( ( ShortBuffer ) target ).put( ( short[] ) array, pos, length );
+		else if ( array instanceof int[] )
+			( ( IntBuffer ) target ).put( ( int[] ) array, pos, length );
+		else if ( array instanceof long[] )
+			( ( LongBuffer ) target ).put( ( long[] ) array, pos, length );
+		else if ( array instanceof float[] )
+			( ( FloatBuffer ) target ).put( ( float[] ) array, pos, length );
+		else
+			( ( DoubleBuffer ) target ).put( ( double[] ) array, pos, length );
+	}
+
+	private static void get( final Buffer source, final Object array, final int pos, final int length )
+	{
+		if ( array instanceof byte[] )
+			( ( ByteBuffer ) source ).get( ( byte[] ) array, pos, length );
+		else if ( array instanceof char[] )
+			( ( CharBuffer ) source ).get( ( char[] ) array, pos, length );
+		else if ( array instanceof short[] )
+			( ( ShortBuffer ) source ).get( ( short[] ) array, pos, length );
+		else if ( array instanceof int[] )
+			( ( IntBuffer ) source ).get( ( int[] ) array, pos, length );
+		else if ( array instanceof long[] )
+			( ( LongBuffer ) source ).get( ( long[] ) array, pos, length );
+		else if ( array instanceof float[] )
+			( ( FloatBuffer ) source ).get( ( float[] ) array, pos, length );
+		else
+			( ( DoubleBuffer ) source ).get( ( double[] ) array, pos, length );
+	}
+
+	private static void put( final Buffer source, final Buffer target )
+	{
+		if ( source instanceof ByteBuffer )
+			( ( ByteBuffer ) target ).put( ( ByteBuffer ) source );
+		else if ( source instanceof CharBuffer )
+			( ( CharBuffer ) target ).put( ( CharBuffer ) source );
+		else if ( source instanceof ShortBuffer )
+			( ( ShortBuffer ) target ).put( ( ShortBuffer ) source );
+		else if ( source instanceof IntBuffer )
+			( ( IntBuffer ) target ).put( ( IntBuffer ) source );
+		else if ( source instanceof LongBuffer )
+			( ( LongBuffer ) target ).put( ( LongBuffer ) source );
+		else if ( source instanceof FloatBuffer )
+			( ( FloatBuffer ) target ).put( ( FloatBuffer ) source );
+		else
+			( ( DoubleBuffer ) target ).put( ( DoubleBuffer ) source );
+	}
+
+	private static Object storageArray( final Object access )
+	{
+		return ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray();
+	}
+
+	/**
+	 * @return the primitive type of the entities stored in {@code access}, or
+	 *         {@code null} if unknown.
+	 */
+	private static Class< ? > primitiveType( final Object access )
+	{
+		if ( access instanceof BufferAccess )
+		{
+			if ( access instanceof ByteAccess )
+				return byte.class;
+			else if ( access instanceof CharAccess )
+				return char.class;
+			else if ( access instanceof ShortAccess )
+				return short.class;
+			else if ( access instanceof IntAccess )
+				return int.class;
+			else if ( access instanceof LongAccess )
+				return long.class;
+			else if ( access instanceof FloatAccess )
+				return float.class;
+			else if ( access instanceof DoubleAccess )
+				return double.class;
+			return null;
+		}
+		if ( !( access instanceof ArrayDataAccess ) )
+			return null;
+		final Object array = storageArray( access );
+		return array == null ? null : array.getClass().getComponentType();
+	}
+
+	/**
+	 * Whether data can be transferred in bulk between the storages of
+	 * {@code source} and {@code target}: The pixel types must be the same
+	 * class with the same number of entities per pixel, and the accesses must
+	 * be {@link #bulkCopyable(Object, Object) compatible}.
+	 */
+	private static boolean bulkCopyable( final AbstractNativeImg< ?, ? > source, final AbstractNativeImg< ?, ? > target )
+	{
+		if ( Intervals.numElements( source ) == 0 )
+			return false;
+		if ( source.firstElement().getClass() != target.firstElement().getClass() )
+			return false;
+		final Fraction sepp = source.getEntitiesPerPixel();
+		final Fraction tepp = target.getEntitiesPerPixel();
+		if ( sepp.getNumerator() * tepp.getDenominator() != tepp.getNumerator() * sepp.getDenominator() )
+			return false;
+		final Object sa = firstAccess( source );
+		final Object ta = firstAccess( target );
+		return sa != null && ta != null && bulkCopyable( sa, ta );
+	}
+
+	/**
+	 * Whether entities can be transferred in bulk between {@code source} and
+	 * {@code target}: Both are {@link ArrayDataAccess}es with primitive arrays
+	 * of the same class, or both store the same primitive type and at least
+	 * one is a {@link BufferAccess}.
+	 */
+	private static boolean bulkCopyable( final Object source, final Object target )
+	{
+		if ( source instanceof BufferAccess || target instanceof BufferAccess )
+		{
+			final Class< ? > kind = primitiveType( source );
+			return kind != null && kind == primitiveType( target ) && kind != boolean.class;
+		}
+		if ( !( source instanceof ArrayDataAccess && target instanceof ArrayDataAccess ) )
+			return false;
+		final Object sarray = storageArray( source );
+		final Object tarray = storageArray( target );
+		return sarray != null && tarray != null
+				&& sarray.getClass().isArray()
+				&& sarray.getClass() == tarray.getClass();
+	}
+
+	/**
+	 * @return the first access of {@code img}, or {@code null} if {@code img}
+	 *         is not a supported container.
+	 */
+	private static Object firstAccess( final AbstractNativeImg< ?, ? > img )
+	{
+		final Storage storage = storage( img );
+		if ( storage == null )
+			return null;
+		storage.locate( 0 );
+		return storage.access();
+	}
+
+	/**
+	 * Copy line by line along dimension 0 using {@link RandomAccess}es. If
+	 * both are {@link IterableInterval}s with the same iteration order,
+	 * cursors are used instead.
+	 */
+	private static < T extends Type< T > > void copyLines( final RandomAccessibleInterval< T > source, final RandomAccessibleInterval< T > target )
+	{
+		if ( source instanceof IterableInterval && target instanceof IterableInterval
+				&& ( ( IterableInterval< ? > ) source ).iterationOrder().equals( ( ( IterableInterval< ? > ) target ).iterationOrder() ) )
+		{
+			@SuppressWarnings( "unchecked" )
+			final Cursor< T > s = ( ( IterableInterval< T > ) source ).cursor();
+			@SuppressWarnings( "unchecked" )
+			final Cursor< T > t = ( ( IterableInterval< T > ) target ).cursor();
+			while ( t.hasNext() )
+				t.next().set( s.next() );
+			return;
+		}
+
+		final int n = source.numDimensions();
+		if ( Intervals.numElements( source ) == 0 )
+			return;
+		final long[] position = new long[ n ];
+		final long[] offset = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			offset[ d ] = target.min( d ) - source.min( d );
+		source.min( position );
+		final long width = n == 0 ? 1 : source.dimension( 0 );
+
+		final RandomAccess< T > s = source.randomAccess();
+		final RandomAccess< T > t = target.randomAccess();
+		while ( true )
+		{
+			s.setPosition( position );
+			t.setPosition( position );
+			t.move( offset );
+			for ( long x = 0; x < width; ++x )
+			{
+				t.get().set( s.get() );
+				if ( n > 0 )
+				{
+					s.fwd( 0 );
+					t.fwd( 0 );
+				}
+			}
+			int d = 1;
+			for ( ; d < n; ++d )
+			{
+				if ( ++position[ d ] <= source.max( d ) )
+					break;
+				position[ d ] = source.min( d );
+			}
+			if ( d >= n )
+				return;
+		}
+	}
+
+	/**
+	 * Locates contiguous runs of pixels in the {@link ArrayDataAccess}es or
+	 * {@link BufferAccess}es underlying a {@link NativeImg}.
+	 */
+	private interface Storage
+	{
+		/**
+		 * Locate the pixel with the given flat index (in flat iteration order
+		 * of the image).
+		 *
+		 * @return the number of pixels, starting from {@code index}, that are
+		 *         stored contiguously in {@link #access()}.
+		 */
+		long locate( long index );
+
+		/**
+		 * @return the access containing the pixel at the last
+		 *         {@link #locate(long) located} index.
+		 */
+		Object access();
+
+		/**
+		 * @return the pixel index into {@link #access()} of the last
+		 *         {@link #locate(long) located} index.
+		 */
+		long offset();
+	}
+
+	/**
+	 * @return a {@link Storage} for {@code img}, or {@code null} if
+	 *         {@code img} is not a supported container.
+	 */
+	private static Storage storage( final AbstractNativeImg< ?, ? > img )
+	{
+		if ( img instanceof ArrayImg )
+		{
+			final Object access = ( ( ArrayImg< ?, ? > ) img ).update( null );
+			if ( isStorageAccess( access ) )
+				return new ArrayStorage( access, img.size() );
+		}
+		else if ( img instanceof PlanarImg )
+			return new PlanarStorage( ( PlanarImg< ?, ? > ) img );
+		else if ( img instanceof ChunkedArrayImg )
+			return new ChunkedArrayStorage( ( ChunkedArrayImg< ?, ? > ) img );
+		else if ( img instanceof AbstractCellImg )
+		{
+			final AbstractCellImg< ?, ?, ?, ? > cellImg = ( AbstractCellImg< ?, ?, ?, ? > ) img;
+			if ( isStorageAccess( cellImg.getCells().firstElement().getData() ) )
+				return new CellStorage( cellImg );
+		}
+		return null;
+	}
+
+	private static boolean isStorageAccess( final Object access )
+	{
+		return access instanceof ArrayDataAccess || access instanceof BufferAccess;
+	}
+
+	private static class ArrayStorage implements Storage
+	{
+		private final Object access;
+
+		private final long size;
+
+		private long offset;
+
+		ArrayStorage( final Object access, final long size )
+		{
+			this.access = access;
+			this.size = size;
+		}
+
+		@Override
+		public long locate( final long index )
+		{
+			offset = index;
+			return size - index;
+		}
+
+		@Override
+		public Object access()
+		{
+			return access;
+		}
+
+		@Override
+		public long offset()
+		{
+			return offset;
+		}
+	}
+
+	private static class PlanarStorage implements Storage
+	{
+		private final PlanarImg< ?, ? > img;
+
+		private final long planeSize;
+
+		private Object access;
+
+		private long offset;
+
+		PlanarStorage( final PlanarImg< ?, ? > img )
+		{
+			this.img = img;
+			final int n = img.numDimensions();
+			planeSize = n == 0 ? 1 : n == 1 ? img.dimension( 0 ) : img.dimension( 0 ) * img.dimension( 1 );
+		}
+
+		@Override
+		public long locate( final long index )
+		{
+			access = img.getPlane( ( int ) ( index / planeSize ) );
+			offset = index % planeSize;
+			return planeSize - offset;
+		}
+
+		@Override
+		public Object access()
+		{
+			return access;
+		}
+
+		@Override
+		public long offset()
+		{
+			return offset;
+		}
+	}
+
+	private static class ChunkedArrayStorage implements Storage
+	{
+		private final ChunkedArrayImg< ?, ? > img;
+
+		private final long size;
+
+		private Object access;
+
+		private long offset;
+
+		ChunkedArrayStorage( final ChunkedArrayImg< ?, ? > img )
+		{
+			this.img = img;
+			this.size = img.size();
+		}
+
+		@Override
+		public long locate( final long index )
+		{
+			access = img.getChunk( ( int ) ( index >> img.log2ChunkSize() ) );
+			offset = index & ( img.chunkSize() - 1 );
+			return Math.min( img.chunkSize() - offset, size - index );
+		}
+
+		@Override
+		public Object access()
+		{
+			return access;
+		}
+
+		@Override
+		public long offset()
+		{
+			return offset;
+		}
+	}
+
+	private static class CellStorage implements Storage
+	{
+		private final long[] dimensions;
+
+		private final CellGrid grid;
+
+		private final RandomAccess< ? extends Cell< ? > > cells;
+
+		private final long[] position;
+
+		private final long[] cellPosition;
+
+		private Object access;
+
+		private long offset;
+
+		CellStorage( final AbstractCellImg< ?, ?, ?, ? > img )
+		{
+			dimensions = Intervals.dimensionsAsLongArray( img );
+			grid = img.getCellGrid();
+			cells = img.getCells().randomAccess();
+			position = new long[ dimensions.length ];
+			cellPosition = new long[ dimensions.length ];
+		}
+
+		@Override
+		public long locate( final long index )
+		{
+			final int n = dimensions.length;
+			IntervalIndexer.indexToPosition( index, dimensions, position );
+			grid.getCellPosition( position, cellPosition );
+			cells.setPosition( cellPosition );
+			final Cell< ? > cell = cells.get();
+			access = cell.getData();
+			offset = cell.globalPositionToIndex( position );
+
+			if ( n == 0 )
+				return 1;
+
+			// the run continues into the next line (plane, ...) of the cell if
+			// the cell covers the whole image in all lower dimensions
+			long run = cell.min( 0 ) + cell.dimension( 0 ) - position[ 0 ];
+			long step = 1;
+			for ( int d = 1; d < n; ++d )
+			{
+				if ( cell.dimension( d - 1 ) != dimensions[ d - 1 ] )
+					break;
+				step *= dimensions[ d - 1 ];
+				run += ( cell.min( d ) + cell.dimension( d ) - 1 - position[ d ] ) * step;
+			}
+			return run;
+		}
+
+		@Override
+		public Object access()
+		{
+			return access;
+		}
+
+		@Override
+		public long offset()
+		{
+			return offset;
+		}
+	}
 }
@@ -0,0 +1,145 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link NativePointSampleList}.
+ *
+ * @author agent
+ */
+public class NativePointSampleListTest
+{
+	final static private int n = 2;
+
+	// more than two chunks
+	final static private int m = 150000;
+
+	private NativePointSampleList< UnsignedShortType > list;
+
+	private ArrayList< Point > points;
+
+	private int[] samples;
+
+	@Before
+	public void init()
+	{
+		final Random rnd = new Random( 123456 );
+		list = new NativePointSampleList< UnsignedShortType >( n, new UnsignedShortType() );
+		points = new ArrayList< Point >();
+		samples = new int[ m ];
+		for ( int i = 0; i < m; ++i )
+		{
+			final Point p = new Point( n );
+			for ( int d = 0; d < n; ++d )
+				p.setPosition( rnd.nextInt( 20000 ) - 10000, d );
+			samples[ i ] = rnd.nextInt( 65536 );
+			points.add( p );
+			list.add( p ).set( samples[ i ] );
+		}
+	}
+
+	private static void assertPositionEquals( final Localizable expected, final Localizable actual )
+	{
+		for ( int d = 0; d < expected.numDimensions(); ++d )
+			assertEquals( expected.getLongPosition( d ), actual.getLongPosition( d ) );
+	}
+
+	@Test
+	public void testIteration()
+	{
+		assertEquals( m, list.size() );
+		final Cursor< UnsignedShortType > cursor = list.cursor();
+		int i = 0;
+		while ( cursor.hasNext() )
+		{
+			assertEquals( samples[ i ], cursor.next().get() );
+			assertPositionEquals( points.get( i ), cursor );
+			++i;
+		}
+		assertEquals( m, i );
+	}
+
+	@Test
+	public void testBounds()
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			long min = Long.MAX_VALUE;
+			long max = Long.MIN_VALUE;
+			for ( final Point p : points )
+			{
+				min = Math.min( min, p.getLongPosition( d ) );
+				max = Math.max( max, p.getLongPosition( d ) );
+			}
+			assertEquals( min, list.min( d ) );
+			assertEquals( max, list.max( d ) );
+		}
+	}
+
+	@Test( expected = IndexOutOfBoundsException.class )
+	public void testJumpFwdOverflow()
+	{
+		final Cursor< UnsignedShortType > cursor = list.cursor();
+		cursor.fwd();
+		// would wrap around to a negative int index
+		cursor.jumpFwd( Integer.MAX_VALUE + 2l );
+	}
+
+	@Test
+	public void testJumpFwdAndCopy()
+	{
+		final Cursor< UnsignedShortType > cursor = list.cursor();
+		for ( final int step : new int[] { 1, 10, 65530, 7, 3, 70000 } )
+		{
+			final Cursor< UnsignedShortType > copy = cursor.copyCursor();
+			cursor.jumpFwd( step );
+			for ( int i = 0; i < step; ++i )
+				copy.fwd();
+			assertEquals( copy.get().get(), cursor.get().get() );
+			assertPositionEquals( copy, cursor );
+		}
+	}
+}
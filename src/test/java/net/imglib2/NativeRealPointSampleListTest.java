@@ -0,0 +1,170 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import net.imglib2.neighborsearch.NearestNeighborSearchOnKDTree;
+import net.imglib2.type.numeric.real.DoubleType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link NativeRealPointSampleList}.
+ *
+ * @author agent
+ */
+public class NativeRealPointSampleListTest
+{
+	final static private int n = 3;
+
+	// more than two chunks
+	final static private int m = 150000;
+
+	private NativeRealPointSampleList< DoubleType > list;
+
+	private ArrayList< RealPoint > points;
+
+	private double[] samples;
+
+	@Before
+	public void init()
+	{
+		final Random rnd = new Random( 123456 );
+		list = new NativeRealPointSampleList< DoubleType >( n, new DoubleType() );
+		points = new ArrayList< RealPoint >();
+		samples = new double[ m ];
+		for ( int i = 0; i < m; ++i )
+		{
+			final RealPoint p = new RealPoint( n );
+			for ( int d = 0; d < n; ++d )
+				p.setPosition( rnd.nextDouble(), d );
+			samples[ i ] = rnd.nextDouble();
+			points.add( p );
+			list.add( p, new DoubleType( samples[ i ] ) );
+		}
+	}
+
+	private static void assertPositionEquals( final RealLocalizable expected, final RealLocalizable actual )
+	{
+		for ( int d = 0; d < expected.numDimensions(); ++d )
+			assertEquals( expected.getDoublePosition( d ), actual.getDoublePosition( d ), 0 );
+	}
+
+	@Test
+	public void testIteration()
+	{
+		assertEquals( m, list.size() );
+		final RealCursor< DoubleType > cursor = list.cursor();
+		int i = 0;
+		while ( cursor.hasNext() )
+		{
+			assertEquals( samples[ i ], cursor.next().get(), 0 );
+			assertPositionEquals( points.get( i ), cursor );
+			++i;
+		}
+		assertEquals( m, i );
+		assertEquals( samples[ 0 ], list.firstElement().get(), 0 );
+	}
+
+	@Test
+	public void testBounds()
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			double min = Double.MAX_VALUE;
+			double max = -Double.MAX_VALUE;
+			for ( final RealPoint p : points )
+			{
+				min = Math.min( min, p.getDoublePosition( d ) );
+				max = Math.max( max, p.getDoublePosition( d ) );
+			}
+			assertEquals( min, list.realMin( d ), 0 );
+			assertEquals( max, list.realMax( d ), 0 );
+		}
+	}
+
+	@Test( expected = IndexOutOfBoundsException.class )
+	public void testJumpFwdOverflow()
+	{
+		final RealCursor< DoubleType > cursor = list.cursor();
+		cursor.fwd();
+		// would wrap around to a negative int index
+		cursor.jumpFwd( Integer.MAX_VALUE + 2l );
+	}
+
+	@Test
+	public void testJumpFwdAndCopy()
+	{
+		final RealCursor< DoubleType > cursor = list.cursor();
+		for ( final int step : new int[] { 1, 10, 65530, 7, 3, 70000 } )
+		{
+			final RealCursor< DoubleType > copy = cursor.copyCursor();
+			cursor.jumpFwd( step );
+			for ( int i = 0; i < step; ++i )
+				copy.fwd();
+			assertEquals( copy.get().get(), cursor.get().get(), 0 );
+			assertPositionEquals( copy, cursor );
+		}
+	}
+
+	@Test
+	public void testSetSample()
+	{
+		final RealCursor< DoubleType > cursor = list.cursor();
+		while ( cursor.hasNext() )
+			cursor.next().set( 1 );
+		for ( final DoubleType t : list )
+			assertEquals( 1, t.get(), 0 );
+	}
+
+	@Test
+	public void testKDTree()
+	{
+		final KDTree< DoubleType > tree = new KDTree< DoubleType >( list );
+		final NearestNeighborSearchOnKDTree< DoubleType > search = new NearestNeighborSearchOnKDTree< DoubleType >( tree );
+		for ( int i = 0; i < 100; ++i )
+		{
+			search.search( points.get( i ) );
+			assertEquals( 0, search.getSquareDistance(), 0 );
+			assertEquals( samples[ i ], search.getSampler().get().get(), 0 );
+		}
+	}
+}
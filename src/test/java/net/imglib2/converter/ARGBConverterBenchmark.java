@@ -0,0 +1,140 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.converter;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.Cursor;
+import net.imglib2.display.ColorTable16;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+/**
+ * JMH benchmark comparing per-pixel computation ({@link RealARGBConverter},
+ * {@link RealLUTConverter}) with precomputed tables
+ * ({@link IntegerARGBConverter}, {@link IntegerLUTConverter}) for converting
+ * a 16-bit image to ARGB.
+ *
+ * @author agent
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ARGBConverterBenchmark
+{
+	private final ArrayImg< UnsignedShortType, ? > source = ArrayImgs.unsignedShorts( 1024, 1024 );
+
+	private final ArrayImg< ARGBType, ? > target = ArrayImgs.argbs( 1024, 1024 );
+
+	private final ColorTable16 lut = new ColorTable16();
+
+	private final RealARGBConverter< UnsignedShortType > realARGB = new RealARGBConverter<>( 100, 4000 );
+
+	private final IntegerARGBConverter< UnsignedShortType > integerARGB = new IntegerARGBConverter<>( new UnsignedShortType(), 100, 4000 );
+
+	private final RealLUTConverter< UnsignedShortType > realLUT = new RealLUTConverter<>( 100, 4000, lut );
+
+	private final IntegerLUTConverter< UnsignedShortType > integerLUT = new IntegerLUTConverter<>( new UnsignedShortType(), 100, 4000, lut );
+
+	@Setup
+	public void setup()
+	{
+		final Random random = new Random( 1 );
+		for ( final UnsignedShortType t : source )
+			t.set( random.nextInt( 4096 ) );
+	}
+
+	private void convert( final Converter< UnsignedShortType, ARGBType > converter )
+	{
+		final Cursor< UnsignedShortType > s = source.cursor();
+		final Cursor< ARGBType > t = target.cursor();
+		while ( s.hasNext() )
+			converter.convert( s.next(), t.next() );
+	}
+
+	@Benchmark
+	public void realARGBConverter()
+	{
+		convert( realARGB );
+	}
+
+	@Benchmark
+	public void integerARGBConverter()
+	{
+		convert( integerARGB );
+	}
+
+	@Benchmark
+	public void realLUTConverter()
+	{
+		convert( realLUT );
+	}
+
+	@Benchmark
+	public void integerLUTConverter()
+	{
+		convert( integerLUT );
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final Options opt = new OptionsBuilder()
+				.include( ARGBConverterBenchmark.class.getSimpleName() )
+				.build();
+		new Runner( opt ).run();
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.converter;
+
+import static org.junit.Assert.assertEquals;
+
+import net.imglib2.display.ColorTable;
+import net.imglib2.display.ColorTable16;
+import net.imglib2.display.ColorTable8;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.Unsigned12BitType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link IntegerARGBConverter} and {@link IntegerLUTConverter}
+ * give the same results as {@link RealARGBConverter} and
+ * {@link RealLUTConverter}.
+ *
+ * @author agent
+ */
+public class IntegerLUTConverterTest
+{
+	private static < R extends IntegerType< R > > void assertSameConversion( final R type, final Converter< R, ARGBType > expected, final Converter< R, ARGBType > actual )
+	{
+		final R value = type.createVariable();
+		final ARGBType e = new ARGBType();
+		final ARGBType a = new ARGBType();
+		final int numValues = ( int ) type.getMaxValue() + 1;
+		for ( int i = 0; i < numValues; ++i )
+		{
+			value.setInteger( i );
+			expected.convert( value, e );
+			actual.convert( value, a );
+			assertEquals( e.get(), a.get() );
+		}
+	}
+
+	private static < R extends IntegerType< R > > void testType( final R type )
+	{
+		final double max = type.getMaxValue();
+
+		final RealARGBConverter< R > realARGB = new RealARGBConverter<>( 0.1 * max, 0.7 * max );
+		final IntegerARGBConverter< R > integerARGB = new IntegerARGBConverter<>( type, 0.1 * max, 0.7 * max );
+		assertSameConversion( type, realARGB, integerARGB );
+
+		realARGB.setMin( 0.3 * max );
+		integerARGB.setMin( 0.3 * max );
+		realARGB.setMax( 0.5 * max );
+		integerARGB.setMax( 0.5 * max );
+		assertSameConversion( type, realARGB, integerARGB );
+
+		final byte[] r = new byte[ 256 ];
+		final byte[] g = new byte[ 256 ];
+		final byte[] b = new byte[ 256 ];
+		for ( int i = 0; i < 256; ++i )
+		{
+			r[ i ] = ( byte ) i;
+			g[ i ] = ( byte ) ( 255 - i );
+			b[ i ] = ( byte ) ( i / 2 );
+		}
+		final ColorTable lut8 = new ColorTable8( r, g, b );
+		final RealLUTConverter< R > realLUT = new RealLUTConverter<>( 0.2 * max, 0.9 * max, lut8 );
+		final IntegerLUTConverter< R > integerLUT = new IntegerLUTConverter<>( type, 0.2 * max, 0.9 * max, lut8 );
+		assertSameConversion( type, realLUT, integerLUT );
+
+		final short[] s = new short[ 4096 ];
+		for ( int i = 0; i < s.length; ++i )
+			s[ i ] = ( short ) ( i * 16 );
+		final ColorTable lut16 = new ColorTable16( s, s, s );
+		realLUT.setLUT( lut16 );
+		integerLUT.setLUT( lut16 );
+		realLUT.setMax( 0.4 * max );
+		integerLUT.setMax( 0.4 * max );
+		assertSameConversion( type, realLUT, integerLUT );
+	}
+
+	@Test
+	public void testUnsignedByteType()
+	{
+		testType( new UnsignedByteType() );
+	}
+
+	@Test
+	public void testUnsigned12BitType()
+	{
+		testType( new Unsigned12BitType() );
+	}
+
+	@Test
+	public void testUnsignedShortType()
+	{
+		testType( new UnsignedShortType() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testUnsupportedType()
+	{
+		new IntegerARGBConverter<>( new IntType() );
+	}
+}
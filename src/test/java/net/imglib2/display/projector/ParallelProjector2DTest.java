@@ -0,0 +1,236 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.display.projector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.RealARGBConverter;
+import net.imglib2.display.projector.composite.CompositeXYProjector;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that parallel rendering of 2D projectors gives the same result as
+ * serial rendering.
+ *
+ * @author agent
+ */
+public class ParallelProjector2DTest
+{
+	private Img< FloatType > source;
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp()
+	{
+		source = ArrayImgs.floats( 53, 37, 3 );
+		final Random random = new Random( 1 );
+		for ( final FloatType t : source )
+			t.set( random.nextFloat() * 255 );
+		executor = Executors.newFixedThreadPool( 3 );
+	}
+
+	@After
+	public void tearDown()
+	{
+		executor.shutdown();
+	}
+
+	private static int[] toArray( final IterableInterval< ARGBType > img )
+	{
+		final int[] values = new int[ ( int ) img.size() ];
+		final Cursor< ARGBType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			final int v = c.next().get();
+			values[ c.getIntPosition( 0 ) + c.getIntPosition( 1 ) * ( int ) img.dimension( 0 ) ] = v;
+		}
+		return values;
+	}
+
+	private void assertParallelEqualsSerial( final Img< ARGBType > serialTarget, final Img< ARGBType > parallelTarget )
+	{
+		final AtomicInteger numConverters = new AtomicInteger();
+		final Supplier< Converter< FloatType, ARGBType > > converterSupplier = () -> {
+			numConverters.incrementAndGet();
+			return new RealARGBConverter< FloatType >( 0, 255 );
+		};
+
+		final IterableIntervalProjector2D< FloatType, ARGBType > serial = new IterableIntervalProjector2D<>( 0, 1, source, serialTarget, converterSupplier );
+		serial.setPosition( 1, 2 );
+		serial.map();
+
+		final IterableIntervalProjector2D< FloatType, ARGBType > parallel = new IterableIntervalProjector2D<>( 0, 1, source, parallelTarget, converterSupplier );
+		parallel.setPosition( 1, 2 );
+		parallel.setExecutorService( executor, 5 );
+		numConverters.set( 0 );
+		parallel.map();
+
+		assertFalse( parallel.isCanceled() );
+		assertEquals( 5, numConverters.get() );
+		assertArrayEquals( toArray( serialTarget ), toArray( parallelTarget ) );
+	}
+
+	@Test
+	public void testIterableIntervalProjector2D()
+	{
+		// flat iteration order
+		assertParallelEqualsSerial( ArrayImgs.argbs( 53, 37 ), ArrayImgs.argbs( 53, 37 ) );
+
+		// cell iteration order
+		final CellImgFactory< ARGBType > factory = new CellImgFactory<>( 10, 7 );
+		assertParallelEqualsSerial( factory.create( new long[] { 53, 37 }, new ARGBType() ), factory.create( new long[] { 53, 37 }, new ARGBType() ) );
+	}
+
+	@Test
+	public void testCompositeXYProjector()
+	{
+		final List< Supplier< Converter< FloatType, ARGBType > > > converterSuppliers = new ArrayList<>();
+		for ( int c = 0; c < 3; ++c )
+		{
+			final int shift = 8 * c;
+			converterSuppliers.add( () -> ( a, b ) -> b.set( ( ( int ) a.get() ) << shift ) );
+		}
+
+		for ( final boolean composite : new boolean[] { true, false } )
+		{
+			final Img< ARGBType > serialTarget = ArrayImgs.argbs( 53, 37 );
+			final CompositeXYProjector< FloatType > serial = new CompositeXYProjector<>( source, serialTarget, converterSuppliers, 2 );
+			serial.setComposite( composite );
+			serial.setPosition( 1, 2 );
+			serial.map();
+
+			final Img< ARGBType > parallelTarget = ArrayImgs.argbs( 53, 37 );
+			final CompositeXYProjector< FloatType > parallel = new CompositeXYProjector<>( source, parallelTarget, converterSuppliers, 2 );
+			parallel.setComposite( composite );
+			parallel.setPosition( 1, 2 );
+			parallel.setExecutorService( executor, 4 );
+			parallel.map();
+
+			assertArrayEquals( toArray( serialTarget ), toArray( parallelTarget ) );
+		}
+	}
+
+	@Test
+	public void testCancel()
+	{
+		final ExecutorService singleThread = Executors.newSingleThreadExecutor();
+		try
+		{
+			// the converter cancels the projector while rendering the first
+			// row, all remaining rows are skipped
+			final AtomicReference< AbstractProjector2D > projectorRef = new AtomicReference<>();
+			final AtomicInteger numConverted = new AtomicInteger();
+			final Converter< FloatType, ARGBType > canceling = ( a, b ) -> {
+				numConverted.incrementAndGet();
+				projectorRef.get().cancel();
+				b.set( 1 );
+			};
+			final IterableIntervalProjector2D< FloatType, ARGBType > projector = new IterableIntervalProjector2D<>( 0, 1, source, ArrayImgs.argbs( 53, 37 ), () -> canceling );
+			projectorRef.set( projector );
+			projector.setExecutorService( singleThread, 37 );
+
+			projector.map();
+			assertTrue( projector.isCanceled() );
+			assertEquals( 53, numConverted.get() );
+
+			// without executor, the target is rendered completely
+			projector.setExecutorService( null, 1 );
+			numConverted.set( 0 );
+			projector.map();
+			assertEquals( 53 * 37, numConverted.get() );
+		}
+		finally
+		{
+			singleThread.shutdown();
+		}
+	}
+
+	@Test
+	public void testCancelBeforeMap()
+	{
+		final AtomicInteger numConverted = new AtomicInteger();
+		final IterableIntervalProjector2D< FloatType, ARGBType > projector = new IterableIntervalProjector2D<>( 0, 1, source, ArrayImgs.argbs( 53, 37 ), () -> ( a, b ) -> numConverted.incrementAndGet() );
+		for ( final ExecutorService service : new ExecutorService[] { null, executor } )
+		{
+			projector.setExecutorService( service, 5 );
+
+			// a cancel request issued before map() applies to that call
+			numConverted.set( 0 );
+			projector.cancel();
+			projector.map();
+			assertTrue( projector.isCanceled() );
+			assertEquals( 0, numConverted.get() );
+
+			// and is cleared when it returns
+			projector.map();
+			assertFalse( projector.isCanceled() );
+			assertEquals( 53 * 37, numConverted.get() );
+		}
+	}
+
+	@Test( expected = IllegalStateException.class )
+	public void testSharedConverterNotParallel()
+	{
+		final IterableIntervalProjector2D< FloatType, ARGBType > projector = new IterableIntervalProjector2D<>( 0, 1, source, ArrayImgs.argbs( 53, 37 ), new RealARGBConverter<>( 0, 255 ) );
+		projector.setExecutorService( null, 4 );
+		projector.setExecutorService( executor, 1 );
+		projector.setExecutorService( executor, 4 );
+	}
+}
@@ -0,0 +1,255 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.display.projector.specialized;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.display.projector.AbstractProjector2D;
+import net.imglib2.display.screenimage.awt.ARGBScreenImage;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.Unsigned12BitType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the specialized XY projectors against the expected normalization of
+ * the selected plane.
+ *
+ * @author agent
+ */
+public class SpecializedXYProjectorTest
+{
+	private static final long[] dims = new long[] { 37, 23, 3 };
+
+	private static final int z = 1;
+
+	private static final double factor = 0.5;
+
+	private static final double min = -100;
+
+	private final int[] values = new int[ ( int ) ( dims[ 0 ] * dims[ 1 ] * dims[ 2 ] ) ];
+
+	@Before
+	public void setUp()
+	{
+		final Random random = new Random( 1l );
+		for ( int i = 0; i < values.length; ++i )
+			values[ i ] = random.nextInt( 800 ) - 300;
+	}
+
+	private < T extends RealType< T > > void fill( final Img< T > img )
+	{
+		final Cursor< T > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			final long i = c.getLongPosition( 0 ) + dims[ 0 ] * ( c.getLongPosition( 1 ) + dims[ 1 ] * c.getLongPosition( 2 ) );
+			c.get().setReal( values[ ( int ) i ] );
+		}
+	}
+
+	private int expected( final int x, final int y )
+	{
+		final int v = values[ ( int ) ( x + dims[ 0 ] * ( y + dims[ 1 ] * z ) ) ];
+		return ( int ) Math.min( 255, Math.max( 0, Math.round( ( v - min ) * factor ) ) );
+	}
+
+	private byte[] expectedBytes()
+	{
+		final byte[] expected = new byte[ ( int ) ( dims[ 0 ] * dims[ 1 ] ) ];
+		for ( int y = 0; y < dims[ 1 ]; ++y )
+			for ( int x = 0; x < dims[ 0 ]; ++x )
+				expected[ ( int ) ( x + dims[ 0 ] * y ) ] = ( byte ) expected( x, y );
+		return expected;
+	}
+
+	private int[] expectedARGB()
+	{
+		final int[] expected = new int[ ( int ) ( dims[ 0 ] * dims[ 1 ] ) ];
+		for ( int y = 0; y < dims[ 1 ]; ++y )
+			for ( int x = 0; x < dims[ 0 ]; ++x )
+			{
+				final int v = expected( x, y );
+				expected[ ( int ) ( x + dims[ 0 ] * y ) ] = 0xff000000 | ( v << 16 ) | ( v << 8 ) | v;
+			}
+		return expected;
+	}
+
+	private static void mapPlane( final AbstractProjector2D projector )
+	{
+		projector.setPosition( z, 2 );
+		projector.map();
+	}
+
+	private static ArrayImg< UnsignedByteType, ByteArray > byteTarget()
+	{
+		return ArrayImgs.unsignedBytes( dims[ 0 ], dims[ 1 ] );
+	}
+
+	private static ARGBScreenImage argbTarget()
+	{
+		return new ARGBScreenImage( ( int ) dims[ 0 ], ( int ) dims[ 1 ] );
+	}
+
+	@Test
+	public void testArrayImgInt()
+	{
+		final ArrayImg< IntType, IntArray > source = ArrayImgs.ints( dims );
+		fill( source );
+
+		final ArrayImg< UnsignedByteType, ByteArray > bytes = byteTarget();
+		mapPlane( new ArrayImgXYIntProjector<>( source, bytes, factor, min ) );
+		assertArrayEquals( expectedBytes(), bytes.update( null ).getCurrentStorageArray() );
+
+		final ARGBScreenImage argb = argbTarget();
+		mapPlane( new ArrayImgXYIntProjector<>( source, argb, factor, min ) );
+		assertArrayEquals( expectedARGB(), argb.getData() );
+	}
+
+	@Test
+	public void testArrayImgFloat()
+	{
+		final ArrayImg< FloatType, FloatArray > source = ArrayImgs.floats( dims );
+		fill( source );
+
+		final ArrayImg< UnsignedByteType, ByteArray > bytes = byteTarget();
+		mapPlane( new ArrayImgXYFloatProjector( source, bytes, factor, min ) );
+		assertArrayEquals( expectedBytes(), bytes.update( null ).getCurrentStorageArray() );
+
+		final ARGBScreenImage argb = argbTarget();
+		mapPlane( new ArrayImgXYFloatProjector( source, argb, factor, min ) );
+		assertArrayEquals( expectedARGB(), argb.getData() );
+	}
+
+	@Test
+	public void testPlanarImgInt()
+	{
+		final PlanarImg< IntType, IntArray > source = PlanarImgs.ints( dims );
+		fill( source );
+
+		final ArrayImg< UnsignedByteType, ByteArray > bytes = byteTarget();
+		mapPlane( new PlanarImgXYIntProjector<>( source, bytes, factor, min ) );
+		assertArrayEquals( expectedBytes(), bytes.update( null ).getCurrentStorageArray() );
+
+		final ARGBScreenImage argb = argbTarget();
+		mapPlane( new PlanarImgXYIntProjector<>( source, argb, factor, min ) );
+		assertArrayEquals( expectedARGB(), argb.getData() );
+	}
+
+	@Test
+	public void testPlanarImgFloat()
+	{
+		final PlanarImg< FloatType, FloatArray > source = PlanarImgs.floats( dims );
+		fill( source );
+
+		final ArrayImg< UnsignedByteType, ByteArray > bytes = byteTarget();
+		mapPlane( new PlanarImgXYFloatProjector( source, bytes, factor, min ) );
+		assertArrayEquals( expectedBytes(), bytes.update( null ).getCurrentStorageArray() );
+
+		final ARGBScreenImage argb = argbTarget();
+		mapPlane( new PlanarImgXYFloatProjector( source, argb, factor, min ) );
+		assertArrayEquals( expectedARGB(), argb.getData() );
+	}
+
+	@Test
+	public void testCellImgInt()
+	{
+		final CellImg< IntType, ? > source = new CellImgFactory< IntType >( 8, 5, 2 ).create( dims, new IntType() );
+		fill( source );
+
+		final ArrayImg< UnsignedByteType, ByteArray > bytes = byteTarget();
+		mapPlane( new CellImgXYProjector<>( source, bytes, factor, min ) );
+		assertArrayEquals( expectedBytes(), bytes.update( null ).getCurrentStorageArray() );
+
+		final ARGBScreenImage argb = argbTarget();
+		mapPlane( new CellImgXYProjector<>( source, argb, factor, min ) );
+		assertArrayEquals( expectedARGB(), argb.getData() );
+	}
+
+	@Test
+	public void testCellImgFloat()
+	{
+		final CellImg< FloatType, ? > source = new CellImgFactory< FloatType >( 8, 5, 2 ).create( dims, new FloatType() );
+		fill( source );
+
+		final ArrayImg< UnsignedByteType, ByteArray > bytes = byteTarget();
+		mapPlane( new CellImgXYProjector<>( source, bytes, factor, min ) );
+		assertArrayEquals( expectedBytes(), bytes.update( null ).getCurrentStorageArray() );
+
+		final ARGBScreenImage argb = argbTarget();
+		mapPlane( new CellImgXYProjector<>( source, argb, factor, min ) );
+		assertArrayEquals( expectedARGB(), argb.getData() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testCellImgLongStorage()
+	{
+		final CellImg< LongType, ? > source = new CellImgFactory< LongType >( 8, 5, 2 ).create( dims, new LongType() );
+		new CellImgXYProjector<>( source, byteTarget(), factor, min );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testCellImgFractionalEntitiesPerPixel()
+	{
+		final CellImg< Unsigned12BitType, ? > source = new CellImgFactory< Unsigned12BitType >( 8, 5, 2 ).create( dims, new Unsigned12BitType() );
+		new CellImgXYProjector<>( source, byteTarget(), factor, min );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testTargetSizeMismatch()
+	{
+		final ArrayImg< IntType, IntArray > source = ArrayImgs.ints( dims );
+		new ArrayImgXYIntProjector<>( source, ArrayImgs.unsignedBytes( dims[ 0 ], dims[ 1 ] + 1 ), factor, min );
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.display.projector.volatiles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.Volatile;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.list.ListImg;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Tests per-tile validity tracking of {@link Volatile2DRandomAccessibleProjector}.
+ *
+ * @author agent
+ */
+public class Volatile2DRandomAccessibleProjectorTest
+{
+	private static final int W = 20;
+
+	private static final int H = 40;
+
+	private void testTileValidity( final ExecutorService executor )
+	{
+		final List< Volatile< FloatType > > values = new ArrayList<>();
+		for ( int i = 0; i < W * H; ++i )
+			values.add( new Volatile<>( new FloatType( i ), true ) );
+		final ListImg< Volatile< FloatType > > source = new ListImg<>( values, W, H );
+		final Volatile< FloatType > invalid = values.get( 25 * W + 3 );
+		invalid.setValid( false );
+
+		final Img< IntType > target = ArrayImgs.ints( W, H );
+		final AtomicInteger numConverted = new AtomicInteger();
+		final Volatile2DRandomAccessibleProjector< FloatType, Volatile< FloatType >, IntType > projector = new Volatile2DRandomAccessibleProjector<>( 0, 1, source, target, () -> ( a, b ) -> {
+			numConverted.incrementAndGet();
+			b.set( ( int ) a.get().get() );
+		} );
+		projector.setTileHeight( 8 );
+		projector.setExecutorService( executor, 3 );
+		assertEquals( 5, projector.numTiles() );
+
+		// first pass renders everything
+		projector.map();
+		assertEquals( W * H, numConverted.get() );
+		assertFalse( projector.isValid() );
+		for ( int t = 0; t < 5; ++t )
+			assertEquals( t != 3, projector.isTileValid( t ) );
+		assertTrue( projector.getLastMapNanoTime() > 0 );
+
+		// second pass renders only the invalid tile
+		invalid.get().set( -1 );
+		invalid.setValid( true );
+		numConverted.set( 0 );
+		projector.map();
+		assertEquals( 8 * W, numConverted.get() );
+		assertTrue( projector.isValid() );
+		final RandomAccess< IntType > access = target.randomAccess();
+		access.setPosition( new int[] { 3, 25 } );
+		assertEquals( -1, access.get().get() );
+
+		// nothing left to render
+		numConverted.set( 0 );
+		projector.map();
+		assertEquals( 0, numConverted.get() );
+		assertTrue( projector.isValid() );
+
+		// invalidate() renders everything again
+		projector.invalidate();
+		projector.map();
+		assertEquals( W * H, numConverted.get() );
+	}
+
+	@Test
+	public void testTileValidity()
+	{
+		testTileValidity( null );
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			testTileValidity( executor );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testOneConverterPerThread()
+	{
+		final List< Volatile< FloatType > > values = new ArrayList<>();
+		for ( int i = 0; i < W * H; ++i )
+			values.add( new Volatile<>( new FloatType( i ), true ) );
+		final ListImg< Volatile< FloatType > > source = new ListImg<>( values, W, H );
+
+		final AtomicInteger numConverters = new AtomicInteger();
+		final Volatile2DRandomAccessibleProjector< FloatType, Volatile< FloatType >, IntType > projector = new Volatile2DRandomAccessibleProjector<>( 0, 1, source, ArrayImgs.ints( W, H ), () -> {
+			numConverters.incrementAndGet();
+			return ( a, b ) -> b.set( ( int ) a.get().get() );
+		} );
+		projector.setTileHeight( 1 );
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			projector.setExecutorService( executor, 3 );
+			numConverters.set( 0 );
+			projector.map();
+			assertTrue( projector.isValid() );
+			assertTrue( numConverters.get() <= 3 );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+}
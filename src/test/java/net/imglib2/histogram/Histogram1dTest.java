@@ -38,8 +38,17 @@ import static org.junit.Assert.assertEquals;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import net.imglib2.IterableInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
 
 import org.junit.Test;
 
@@ -104,6 +113,68 @@ public class Histogram1dTest
 		assertEquals( 0, hist.upperTailCount() );
 	}
 
+	@Test
+	public void testParallelCounting()
+	{
+		final Random random = new Random( 1 );
+		final ArrayImg< UnsignedByteType, ? > bytes = ArrayImgs.unsignedBytes( 101, 67 );
+		for ( final UnsignedByteType t : bytes )
+			t.set( random.nextInt( 256 ) );
+		final ArrayImg< UnsignedShortType, ? > shorts = ArrayImgs.unsignedShorts( 101, 67 );
+		for ( final UnsignedShortType t : shorts )
+			t.set( random.nextInt( 65536 ) );
+		final ArrayImg< FloatType, ? > floats = ArrayImgs.floats( 101, 67 );
+		for ( final FloatType t : floats )
+			t.set( ( float ) random.nextGaussian() );
+
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			for ( final int numTasks : new int[] { 1, 7 } )
+			{
+				assertCountsEqual( bytes, new Integer1dBinMapper< UnsignedByteType >( 0, 256, false ), numTasks, executor );
+				assertCountsEqual( bytes, new Integer1dBinMapper< UnsignedByteType >( 10, 100, true ), numTasks, executor );
+				assertCountsEqual( bytes, new Integer1dBinMapper< UnsignedByteType >( 10, 100, false ), numTasks, executor );
+				assertCountsEqual( Views.interval( bytes, new long[] { 3, 5 }, new long[] { 90, 60 } ), new Integer1dBinMapper< UnsignedByteType >( 10, 100, false ), numTasks, executor );
+				assertCountsEqual( shorts, new Integer1dBinMapper< UnsignedShortType >( 1000, 5000, true ), numTasks, executor );
+				assertCountsEqual( Views.flatIterable( shorts ), new Integer1dBinMapper< UnsignedShortType >( 1000, 5000, false ), numTasks, executor );
+				assertCountsEqual( floats, new Real1dBinMapper< FloatType >( -1, 1, 20, true ), numTasks, executor );
+				assertCountsEqual( floats, new Real1dBinMapper< FloatType >( -1, 1, 20, false ), numTasks, executor );
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	private static < T > void assertCountsEqual( final IterableInterval< T > data, final BinMapper1d< T > binMapper, final int numTasks, final ExecutorService executor )
+	{
+		final Histogram1d< T > expected = new Histogram1d< T >( binMapper.copy() );
+		for ( final T t : data )
+			expected.increment( t );
+
+		final Histogram1d< T > hist = new Histogram1d< T >( binMapper );
+		hist.countData( data, numTasks, executor );
+		assertHistogramsEqual( expected, hist );
+
+		final Histogram1d< T > serial = new Histogram1d< T >( binMapper.copy() );
+		serial.countData( data );
+		assertHistogramsEqual( expected, serial );
+
+		hist.addData( data, numTasks, executor );
+		assertEquals( 2 * expected.distributionCount(), hist.distributionCount() );
+		assertEquals( 2 * expected.ignoredCount(), hist.ignoredCount() );
+	}
+
+	private static void assertHistogramsEqual( final Histogram1d< ? > expected, final Histogram1d< ? > actual )
+	{
+		for ( long i = 0; i < expected.getBinCount(); ++i )
+			assertEquals( expected.frequency( i ), actual.frequency( i ) );
+		assertEquals( expected.distributionCount(), actual.distributionCount() );
+		assertEquals( expected.ignoredCount(), actual.ignoredCount() );
+	}
+
 	private List< UnsignedByteType > getData1()
 	{
 		final List< UnsignedByteType > data = new ArrayList< UnsignedByteType >();
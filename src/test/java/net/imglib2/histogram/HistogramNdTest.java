@@ -40,13 +40,19 @@ import static org.junit.Assert.assertNotNull;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
 import net.imglib2.type.numeric.ARGBType;
 import net.imglib2.type.numeric.integer.IntType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
 
 import org.junit.Test;
 
@@ -292,6 +298,49 @@ public class HistogramNdTest
 		assertEquals( 20000, hist.distributionCount() );
 	}
 
+	@Test
+	public void testParallelCounting()
+	{
+		final Random random = new Random( 1 );
+		final List< IterableInterval< FloatType >> data = new ArrayList< IterableInterval< FloatType >>();
+		for ( int i = 0; i < 2; i++ )
+		{
+			final Img< FloatType > img = ArrayImgs.floats( 101, 67 );
+			for ( final FloatType t : img )
+				t.set( ( float ) random.nextGaussian() );
+			data.add( img );
+		}
+		final List< Iterable< FloatType >> iterables = new ArrayList< Iterable< FloatType >>( data );
+
+		final double[] minVals = new double[] { -1, -1 };
+		final double[] maxVals = new double[] { 1, 1 };
+		final long[] numBins = new long[] { 10, 12 };
+		final boolean[] tailBins = new boolean[] { true, false };
+		final HistogramNd< FloatType > expected = Real1dBinMapper.histogramNd( minVals, maxVals, numBins, tailBins );
+		expected.countData( iterables );
+
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			final HistogramNd< FloatType > hist = Real1dBinMapper.histogramNd( minVals, maxVals, numBins, tailBins );
+			hist.countData( data, 7, executor );
+			final long[] pos = new long[ 2 ];
+			for ( pos[ 0 ] = 0; pos[ 0 ] < numBins[ 0 ]; pos[ 0 ]++ )
+				for ( pos[ 1 ] = 0; pos[ 1 ] < numBins[ 1 ]; pos[ 1 ]++ )
+					assertEquals( expected.frequency( pos ), hist.frequency( pos ) );
+			assertEquals( expected.distributionCount(), hist.distributionCount() );
+			assertEquals( expected.ignoredCount(), hist.ignoredCount() );
+
+			hist.addData( data, 7, executor );
+			assertEquals( 2 * expected.distributionCount(), hist.distributionCount() );
+			assertEquals( 2 * expected.ignoredCount(), hist.ignoredCount() );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
 	private List< UnsignedByteType > getData1()
 	{
 		final List< UnsignedByteType > data = new ArrayList< UnsignedByteType >();
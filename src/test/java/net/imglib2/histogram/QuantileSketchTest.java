@@ -0,0 +1,224 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.histogram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link QuantileSketch}.
+ *
+ * @author agent
+ */
+public class QuantileSketchTest
+{
+	private static final int N = 100000;
+
+	private static double[] gaussianData()
+	{
+		final Random random = new Random( 1 );
+		final double[] data = new double[ N ];
+		for ( int i = 0; i < N; ++i )
+			data[ i ] = random.nextGaussian() * 10 + 5;
+		return data;
+	}
+
+	/**
+	 * Checks that the rank of the estimated quantile is close to the requested
+	 * one.
+	 */
+	private static void assertQuantilesAccurate( final double[] sorted, final QuantileSketch sketch )
+	{
+		for ( final double q : new double[] { 0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999 } )
+		{
+			final double estimate = sketch.quantile( q );
+			int rank = Arrays.binarySearch( sorted, estimate );
+			if ( rank < 0 )
+				rank = -rank - 1;
+			final double tolerance = 0.005 + 2 * q * ( 1 - q ) * 0.01;
+			assertEquals( "quantile " + q, q, ( double ) rank / sorted.length, tolerance );
+		}
+		assertEquals( sorted[ 0 ], sketch.quantile( 0 ), 0 );
+		assertEquals( sorted[ sorted.length - 1 ], sketch.quantile( 1 ), 0 );
+	}
+
+	@Test
+	public void testQuantiles()
+	{
+		final double[] data = gaussianData();
+		final QuantileSketch sketch = new QuantileSketch();
+		for ( final double d : data )
+			sketch.add( d );
+
+		Arrays.sort( data );
+		assertEquals( N, sketch.count() );
+		assertEquals( data[ 0 ], sketch.min(), 0 );
+		assertEquals( data[ N - 1 ], sketch.max(), 0 );
+		assertTrue( sketch.numCentroids() <= 101 );
+		assertQuantilesAccurate( data, sketch );
+		assertEquals( 0.5, sketch.cdf( sketch.quantile( 0.5 ) ), 0.001 );
+		assertEquals( 0, sketch.cdf( data[ 0 ] - 1 ), 0 );
+		assertEquals( 1, sketch.cdf( data[ N - 1 ] ), 0 );
+	}
+
+	@Test
+	public void testMerge()
+	{
+		final double[] data = gaussianData();
+		final QuantileSketch merged = new QuantileSketch();
+		for ( int part = 0; part < 4; ++part )
+		{
+			final QuantileSketch sketch = new QuantileSketch();
+			for ( int i = part; i < N; i += 4 )
+				sketch.add( data[ i ] );
+			merged.add( sketch );
+		}
+
+		Arrays.sort( data );
+		assertEquals( N, merged.count() );
+		assertEquals( data[ 0 ], merged.min(), 0 );
+		assertEquals( data[ N - 1 ], merged.max(), 0 );
+		assertQuantilesAccurate( data, merged );
+	}
+
+	@Test
+	public void testMergeSelf()
+	{
+		final double[] data = gaussianData();
+		final QuantileSketch sketch = new QuantileSketch();
+		for ( final double d : data )
+			sketch.add( d );
+		sketch.add( sketch );
+
+		final double[] doubled = Arrays.copyOf( data, 2 * N );
+		System.arraycopy( data, 0, doubled, N, N );
+		Arrays.sort( doubled );
+		assertEquals( 2 * N, sketch.count() );
+		assertQuantilesAccurate( doubled, sketch );
+	}
+
+	@Test
+	public void testParallel()
+	{
+		final double[] data = gaussianData();
+		final ArrayImg< FloatType, ? > img = ArrayImgs.floats( N );
+		int i = 0;
+		for ( final FloatType t : img )
+			t.set( ( float ) data[ i++ ] );
+		for ( i = 0; i < N; ++i )
+			data[ i ] = ( float ) data[ i ];
+
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			final QuantileSketch sketch = new QuantileSketch();
+			sketch.add( img, 7, executor );
+			Arrays.sort( data );
+			assertEquals( N, sketch.count() );
+			assertQuantilesAccurate( data, sketch );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testDfd()
+	{
+		final double[] data = gaussianData();
+		final QuantileSketch sketch = new QuantileSketch();
+		for ( final double d : data )
+			sketch.add( d );
+
+		final long numBins = 20;
+		final DiscreteFrequencyDistribution dfd = sketch.dfd( numBins );
+		assertEquals( N, dfd.totalValues() );
+
+		final double min = sketch.min();
+		final double binWidth = ( sketch.max() - min ) / numBins;
+		final long[] expected = new long[ ( int ) numBins ];
+		for ( final double d : data )
+			++expected[ ( int ) Math.min( numBins - 1, ( d - min ) / binWidth ) ];
+		final long[] pos = new long[ 1 ];
+		for ( pos[ 0 ] = 0; pos[ 0 ] < numBins; ++pos[ 0 ] )
+			assertEquals( expected[ ( int ) pos[ 0 ] ], dfd.frequency( pos ), 0.01 * N );
+
+		final DiscreteFrequencyDistribution clipped = sketch.dfd( 0, 10, 5 );
+		long inRange = 0;
+		for ( final double d : data )
+			if ( d >= 0 && d <= 10 )
+				++inRange;
+		assertEquals( inRange, clipped.totalValues(), 0.01 * N );
+	}
+
+	@Test
+	public void testSmall()
+	{
+		final QuantileSketch sketch = new QuantileSketch();
+		assertTrue( Double.isNaN( sketch.quantile( 0.5 ) ) );
+		assertTrue( Double.isNaN( sketch.min() ) );
+
+		sketch.add( 3 );
+		assertEquals( 3, sketch.quantile( 0 ), 0 );
+		assertEquals( 3, sketch.quantile( 0.5 ), 0 );
+		assertEquals( 3, sketch.quantile( 1 ), 0 );
+
+		sketch.add( Double.NaN );
+		for ( int i = 0; i < 9; ++i )
+			sketch.add( 3 );
+		assertEquals( 10, sketch.count() );
+		assertEquals( 3, sketch.quantile( 0.3 ), 0 );
+		assertEquals( 10, sketch.dfd( 4 ).totalValues() );
+
+		final QuantileSketch copy = sketch.copy();
+		copy.add( 5 );
+		assertEquals( 10, sketch.count() );
+		assertEquals( 11, copy.count() );
+		assertEquals( 5, copy.max(), 0 );
+	}
+}
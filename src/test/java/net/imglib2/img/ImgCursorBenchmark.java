@@ -0,0 +1,163 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.img.sparse.NtreeImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+
+/**
+ * JMH benchmark of plain and localizing {@link Cursor}s on the standard
+ * {@link Img} containers. The cursors visit every pixel and sum the values,
+ * respectively the positions.
+ * <p>
+ * Run with {@link #main(String[])} from the test classpath, or
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main ImgCursorBenchmark}.
+ *
+ * @author agent
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ImgCursorBenchmark
+{
+	@Param( { "array", "planar", "cell", "ntree", "list" } )
+	public String container;
+
+	private final long[] dimensions = { 256, 256, 64 };
+
+	private Img< IntType > img;
+
+	@Setup
+	public void setup()
+	{
+		final ImgFactory< IntType > factory;
+		switch ( container )
+		{
+		case "array":
+			factory = new ArrayImgFactory<>();
+			break;
+		case "planar":
+			factory = new PlanarImgFactory<>();
+			break;
+		case "cell":
+			factory = new CellImgFactory<>( 32 );
+			break;
+		case "ntree":
+			factory = new NtreeImgFactory<>();
+			break;
+		case "list":
+			factory = new ListImgFactory<>();
+			break;
+		default:
+			throw new IllegalArgumentException( container );
+		}
+		img = factory.create( dimensions, new IntType() );
+		int i = 0;
+		for ( final IntType t : img )
+			t.set( ( i++ ) % 7 == 0 ? 1 : 0 );
+	}
+
+	@Benchmark
+	public long cursor()
+	{
+		long sum = 0;
+		final Cursor< IntType > c = img.cursor();
+		while ( c.hasNext() )
+			sum += c.next().get();
+		return sum;
+	}
+
+	@Benchmark
+	public long localizingCursor()
+	{
+		long sum = 0;
+		final Cursor< IntType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			sum += c.getLongPosition( 0 ) + c.getLongPosition( 1 );
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public void cursorLocalize( final Blackhole bh )
+	{
+		final long[] position = new long[ img.numDimensions() ];
+		final Cursor< IntType > c = img.cursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( position );
+			bh.consume( position );
+		}
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final Options opt = new OptionsBuilder()
+				.include( ImgCursorBenchmark.class.getSimpleName() )
+				.build();
+		new Runner( opt ).run();
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.array;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.ImgTestHelper;
+import net.imglib2.util.Util;
+
+/**
+ * Unit tests for {@link ChunkedArrayImg}.
+ *
+ * @author agent
+ */
+public class ChunkedArrayImgTest
+{
+	@Test
+	public void testChunkedArrayImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			assertTrue( "ArrayImg vs ChunkedArrayImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new ArrayImgFactory< FloatType >(), new ChunkedArrayImgFactory< FloatType >( 7 ) ) );
+			assertTrue( "ChunkedArrayImg vs ArrayImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new ChunkedArrayImgFactory< FloatType >( 3 ), new ArrayImgFactory< FloatType >() ) );
+		}
+	}
+
+	@Test
+	public void testIterationOrderAndJumpFwd()
+	{
+		final long[] dims = { 13, 7, 5 };
+		final Img< FloatType > img = new ChunkedArrayImgFactory< FloatType >( 4 ).create( dims, new FloatType() );
+		final Img< FloatType > ref = new ArrayImgFactory< FloatType >().create( dims, new FloatType() );
+		assertEquals( ref.iterationOrder(), img.iterationOrder() );
+
+		int v = 0;
+		for ( final FloatType t : img )
+			t.set( v++ );
+
+		final long[] expected = new long[ 3 ];
+		final long[] actual = new long[ 3 ];
+		for ( final long jump : new long[] { 1, 15, 16, 17, 100 } )
+		{
+			final Cursor< FloatType > c = img.cursor();
+			final Cursor< FloatType > lc = img.localizingCursor();
+			final Cursor< FloatType > r = ref.localizingCursor();
+			for ( long i = 0; i + jump <= img.size(); i += jump )
+			{
+				c.jumpFwd( jump );
+				lc.jumpFwd( jump );
+				r.jumpFwd( jump );
+				r.localize( expected );
+				c.localize( actual );
+				assertArrayEquals( expected, actual );
+				lc.localize( actual );
+				assertArrayEquals( expected, actual );
+				assertEquals( i + jump - 1, c.get().get(), 0 );
+				assertEquals( i + jump - 1, lc.get().get(), 0 );
+			}
+		}
+
+		final RandomAccess< FloatType > a = img.randomAccess();
+		a.setPosition( new long[] { 12, 6, 4 } );
+		assertEquals( img.size() - 1, a.get().get(), 0 );
+		a.bck( 2 );
+		assertEquals( img.size() - 1 - 13 * 7, a.get().get(), 0 );
+		a.move( -12, 0 );
+		assertEquals( img.size() - 13 - 13 * 7, a.get().get(), 0 );
+	}
+
+	@Test
+	public void testBitType()
+	{
+		final long[] dims = { 100, 31 };
+		final Img< BitType > img = new ChunkedArrayImgFactory< BitType >( 6 ).create( dims, new BitType() );
+		int i = 0;
+		for ( final BitType t : img )
+			t.set( i++ % 3 == 0 );
+		i = 0;
+		for ( final BitType t : img )
+			assertEquals( i++ % 3 == 0, t.get() );
+	}
+}
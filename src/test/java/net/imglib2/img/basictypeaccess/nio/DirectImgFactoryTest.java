@@ -0,0 +1,100 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.DirectArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.DirectCellImgFactory;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.ImgTestHelper;
+import net.imglib2.util.Util;
+
+/**
+ * Unit tests for images with {@link BufferAccess} data.
+ *
+ * @author agent
+ */
+public class DirectImgFactoryTest
+{
+	@Test
+	public void testDirectImgs()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			assertTrue( "ArrayImg vs DirectArrayImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new ArrayImgFactory< FloatType >(), new DirectArrayImgFactory< FloatType >() ) );
+			if ( dim[ i ].length > 1 )
+				assertTrue( "DirectCellImg vs ArrayImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+						ImgTestHelper.testImg( dim[ i ], new DirectCellImgFactory< FloatType >( 5 ), new ArrayImgFactory< FloatType >() ) );
+		}
+	}
+
+	@Test
+	public void testStorageIsDirect()
+	{
+		final long[] dims = { 20, 30, 4 };
+		final Img< UnsignedShortType > array = new DirectArrayImgFactory< UnsignedShortType >().create( dims, new UnsignedShortType() );
+		final Object storage = ( ( ArrayImg< ?, ? > ) array ).update( null );
+		assertTrue( storage instanceof ShortBufferAccess );
+		assertTrue( ( ( ShortBufferAccess ) storage ).getBuffer().isDirect() );
+		assertFalse( storage instanceof ArrayDataAccess );
+
+		final Img< UnsignedShortType > cell = new DirectCellImgFactory< UnsignedShortType >( 8 ).create( dims, new UnsignedShortType() );
+		assertTrue( ( ( CellImg< ?, ? > ) cell ).getCells().firstElement().getData() instanceof ShortBufferAccess );
+		assertTrue( cell.copy().factory() instanceof DirectCellImgFactory );
+
+		int i = 0;
+		for ( final UnsignedShortType t : cell )
+			t.set( i++ & 0xffff );
+		final Cursor< UnsignedShortType > c = cell.copy().cursor();
+		i = 0;
+		while ( c.hasNext() )
+			assertEquals( i++ & 0xffff, c.next().get() );
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.cell.MappedCellImgFactory;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+/**
+ * Unit tests for images backed by a {@link MappedFile}.
+ *
+ * @author agent
+ */
+public class MappedFileTest
+{
+	private final long[] dims = { 23, 17, 9 };
+
+	private File file;
+
+	private RandomAccessFile raf;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		file = File.createTempFile( "imglib2-mapped", ".raw" );
+		raf = new RandomAccessFile( file, "rw" );
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		raf.close();
+		file.delete();
+	}
+
+	private void writeShorts( final Cursor< UnsignedShortType > source, final ByteOrder order ) throws IOException
+	{
+		final ByteBuffer buffer = ByteBuffer.allocate( 2 * ( int ) ( dims[ 0 ] * dims[ 1 ] * dims[ 2 ] ) ).order( order );
+		int i = 0;
+		while ( source.hasNext() )
+		{
+			buffer.putShort( i, ( short ) source.next().get() );
+			i += 2;
+		}
+		raf.getChannel().write( buffer, 16 );
+	}
+
+	@Test
+	public void testPlanar() throws IOException
+	{
+		final Img< UnsignedShortType > reference = new CellImgFactory< UnsignedShortType >( 1000 ).create( dims, new UnsignedShortType() );
+		int v = 0;
+		for ( final UnsignedShortType t : reference )
+			t.set( v++ );
+		writeShorts( reference.cursor(), ByteOrder.BIG_ENDIAN );
+
+		final FileChannel channel = raf.getChannel();
+		final MappedFile mapped = new MappedFile( channel, 16, MapMode.READ_WRITE, ByteOrder.BIG_ENDIAN );
+		// cells of one plane each read a planar file layout
+		final Img< UnsignedShortType > img = new MappedCellImgFactory< UnsignedShortType >( mapped, 4l, 23, 17, 1 ).create( dims, new UnsignedShortType() );
+		assertImgEquals( reference, img );
+
+		final RandomAccess< UnsignedShortType > a = img.randomAccess();
+		a.setPosition( new long[] { 1, 0, 2 } );
+		a.get().set( 0xbeef );
+		assertEquals( ( short ) 0xbeef, channel.map( MapMode.READ_ONLY, 16 + 2 * ( 2 * 23 * 17 + 1 ), 2 ).getShort() );
+	}
+
+	@Test
+	public void testCells()
+	{
+		final int[] cellDims = { 5, 4, 3 };
+		final Img< UnsignedShortType > reference = new CellImgFactory< UnsignedShortType >( cellDims ).create( dims, new UnsignedShortType() );
+		int v = 0;
+		for ( final UnsignedShortType t : reference )
+			t.set( v++ );
+
+		final MappedFile mapped = new MappedFile( raf.getChannel(), 16, MapMode.READ_WRITE, ByteOrder.LITTLE_ENDIAN );
+		final Img< UnsignedShortType > img = new MappedCellImgFactory< UnsignedShortType >( mapped, 4, cellDims ).create( dims, new UnsignedShortType() );
+		final RandomAccess< UnsignedShortType > a = img.randomAccess();
+		final Cursor< UnsignedShortType > c = reference.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			a.get().set( c.get() );
+		}
+
+		final Cursor< UnsignedShortType > ci = img.cursor();
+		v = 0;
+		while ( ci.hasNext() )
+			assertEquals( v++, ci.next().get() );
+
+		final ByteBuffer buffer = ByteBuffer.allocate( 2 * v ).order( ByteOrder.LITTLE_ENDIAN );
+		try
+		{
+			raf.getChannel().read( buffer, 16 );
+		}
+		catch ( final IOException e )
+		{
+			throw new RuntimeException( e );
+		}
+		for ( int i = 0; i < v; ++i )
+			assertEquals( i, buffer.getShort( 2 * i ) & 0xffff );
+	}
+
+	private static void assertImgEquals( final Img< UnsignedShortType > expected, final Img< UnsignedShortType > actual )
+	{
+		final Cursor< UnsignedShortType > c = expected.localizingCursor();
+		final RandomAccess< UnsignedShortType > a = actual.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			assertEquals( c.get().get(), a.get().get() );
+		}
+	}
+}
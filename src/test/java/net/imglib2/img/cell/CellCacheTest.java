@@ -0,0 +1,172 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.cell.CellCache.EvictionPolicy;
+import net.imglib2.img.cell.CellCache.ReferenceType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Tests {@link CellCache}.
+ *
+ * @author agent
+ */
+public class CellCacheTest
+{
+	private final CellGrid grid = new CellGrid( new long[] { 40, 30, 20 }, new int[] { 10, 10, 10 } );
+
+	private final AtomicInteger numLoads = new AtomicInteger();
+
+	private Cell< FloatArray > load( final long index )
+	{
+		numLoads.incrementAndGet();
+		final long[] cellMin = new long[ 3 ];
+		final int[] cellDims = new int[ 3 ];
+		grid.getCellDimensions( index, cellMin, cellDims );
+		final float[] data = new float[ cellDims[ 0 ] * cellDims[ 1 ] * cellDims[ 2 ] ];
+		for ( int i = 0; i < data.length; ++i )
+			data[ i ] = index;
+		return new Cell<>( cellDims, cellMin, new FloatArray( data ) );
+	}
+
+	@Test
+	public void testLoadOnce()
+	{
+		final CellCache< FloatArray > cache = new CellCache<>( this::load, 1000 );
+		final LazyCellImg< FloatType, FloatArray > img = new LazyCellImg<>( grid, new FloatType(), cache );
+
+		final RandomAccess< FloatType > a = img.randomAccess();
+		final RandomAccess< FloatType > b = img.randomAccess();
+		for ( int i = 0; i < 3; ++i )
+		{
+			final Cursor< FloatType > c = img.cursor();
+			while ( c.hasNext() )
+			{
+				c.fwd();
+				a.setPosition( c );
+				b.setPosition( c );
+				assertEquals( c.get().get(), a.get().get(), 0 );
+				assertEquals( c.get().get(), b.get().get(), 0 );
+			}
+		}
+		assertEquals( 24, numLoads.get() );
+		assertEquals( 24, cache.getNumStrongCells() );
+	}
+
+	@Test
+	public void testBoundedByCells()
+	{
+		final CellCache< FloatArray > cache = new CellCache<>( this::load, 5, Long.MAX_VALUE, ReferenceType.WEAK, EvictionPolicy.LRU );
+		for ( long i = 0; i < 24; ++i )
+			cache.get( i );
+		assertEquals( 5, cache.getNumStrongCells() );
+		assertEquals( 5 * 1000 * 4, cache.getNumStrongBytes() );
+	}
+
+	@Test
+	public void testBoundedByBytes()
+	{
+		final CellCache< FloatArray > cache = new CellCache<>( this::load, Long.MAX_VALUE, 3 * 1000 * 4, ReferenceType.SOFT, EvictionPolicy.LRU );
+		for ( long i = 0; i < 24; ++i )
+			cache.get( i );
+		assertEquals( 3, cache.getNumStrongCells() );
+	}
+
+	@Test
+	public void testBoundedByBufferBytes()
+	{
+		final CellCache< FloatBufferAccess > cache = new CellCache<>( index -> {
+			final long[] cellMin = new long[ 3 ];
+			final int[] cellDims = new int[ 3 ];
+			grid.getCellDimensions( index, cellMin, cellDims );
+			return new Cell<>( cellDims, cellMin, new FloatBufferAccess( cellDims[ 0 ] * cellDims[ 1 ] * cellDims[ 2 ] ) );
+		}, Long.MAX_VALUE, 3 * 1000 * 4, ReferenceType.SOFT, EvictionPolicy.LRU );
+		for ( long i = 0; i < 24; ++i )
+			cache.get( i );
+		assertEquals( 3, cache.getNumStrongCells() );
+		assertEquals( 3 * 1000 * 4, cache.getNumStrongBytes() );
+	}
+
+	@Test
+	public void testLRU()
+	{
+		final CellCache< FloatArray > cache = new CellCache<>( this::load, 2, Long.MAX_VALUE, ReferenceType.SOFT, EvictionPolicy.LRU );
+		final Cell< FloatArray > c0 = cache.get( 0 );
+		cache.get( 1 );
+		assertSame( c0, cache.get( 0 ) );
+		cache.get( 2 ); // evicts 1 from strong set
+		cache.invalidate( 1 );
+		assertEquals( 2, cache.getNumStrongCells() );
+		assertSame( c0, cache.get( 0 ) );
+		assertEquals( 3, numLoads.get() );
+	}
+
+	@Test
+	public void testLFU()
+	{
+		// weigh cells by 1 << index to see which cells are strongly reachable
+		final CellCache< FloatArray > cache = new CellCache<>( this::load, 2, Long.MAX_VALUE,
+				cell -> 1l << ( long ) cell.getData().getValue( 0 ), ReferenceType.SOFT, EvictionPolicy.LFU );
+		cache.get( 0 );
+		cache.get( 0 );
+		cache.get( 0 );
+		cache.get( 1 );
+		cache.get( 1 );
+		cache.get( 2 ); // evicts 1, the least frequently used cell other than 2
+		assertEquals( 2, cache.getNumStrongCells() );
+		assertEquals( 1 + 4, cache.getNumStrongBytes() );
+		cache.get( 3 ); // evicts 2
+		assertEquals( 2, cache.getNumStrongCells() );
+		assertEquals( 1 + 8, cache.getNumStrongBytes() );
+		cache.get( 3 );
+		cache.get( 3 );
+		cache.get( 3 );
+		cache.get( 2 ); // evicts 0, which is now used less frequently than 3
+		assertEquals( 4 + 8, cache.getNumStrongBytes() );
+		assertEquals( 4, numLoads.get() );
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.type.numeric.integer.IntType;
+
+/**
+ * Tests {@link CellGroupCursor}.
+ *
+ * @author agent
+ */
+public class CellGroupCursorTest
+{
+	@Test
+	public void testCellGroupsCoverImage()
+	{
+		final long[] dims = { 17, 10, 6 };
+		final CellImg< IntType, ? > img = new CellImgFactory< IntType >( 4, 3, 5 ).create( dims, new IntType() );
+		int i = 0;
+		for ( final IntType t : img )
+			t.set( i++ );
+
+		final long numCells = img.getCells().size();
+		final Cursor< IntType > ref = img.localizingCursor();
+		final long[] pos = new long[ 3 ];
+		final long[] refPos = new long[ 3 ];
+		for ( long firstCell = 0; firstCell < numCells; firstCell += 4 )
+		{
+			final long n = Math.min( 4, numCells - firstCell );
+			final CellGroupCursor< IntType, ? > c = img.cellGroupCursor( firstCell, n );
+			final CellGroupCursor< IntType, ? > copy = c.copyCursor();
+			while ( c.hasNext() )
+			{
+				assertEquals( ref.next().get(), c.next().get() );
+				assertEquals( c.get().get(), copy.next().get() );
+				ref.localize( refPos );
+				c.localize( pos );
+				assertArrayEquals( refPos, pos );
+			}
+			assertFalse( copy.hasNext() );
+		}
+		assertFalse( ref.hasNext() );
+	}
+
+	@Test
+	public void testJumpFwd()
+	{
+		final long[] dims = { 17, 10 };
+		final CellImg< IntType, ? > img = new CellImgFactory< IntType >( 4 ).create( dims, new IntType() );
+		int i = 0;
+		for ( final IntType t : img )
+			t.set( i++ );
+
+		// cells 3 to 7 start at element 3 * 16
+		final CellGroupCursor< IntType, ? > c = img.cellGroupCursor( 3, 5 );
+		c.jumpFwd( 21 );
+		assertEquals( 3 * 16 + 20, c.get().get() );
+		c.reset();
+		c.fwd();
+		assertEquals( 3 * 16, c.get().get() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testOutOfBounds()
+	{
+		final CellImg< IntType, ? > img = new CellImgFactory< IntType >( 4 ).create( new long[] { 8, 8 }, new IntType() );
+		img.cellGroupCursor( 2, 3 );
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileFloatArray;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Tests {@link LazyCellImg#copy()} and {@link LazyCellImg#factory()}.
+ *
+ * @author agent
+ */
+public class LazyCellImgTest
+{
+	private final CellGrid grid = new CellGrid( new long[] { 40, 30, 21 }, new int[] { 10, 10, 10 } );
+
+	private final AtomicInteger numLoads = new AtomicInteger();
+
+	private final AtomicInteger numConcurrentLoads = new AtomicInteger();
+
+	private final AtomicInteger maxConcurrentLoads = new AtomicInteger();
+
+	private Cell< FloatArray > load( final long index )
+	{
+		final int concurrent = numConcurrentLoads.incrementAndGet();
+		maxConcurrentLoads.accumulateAndGet( concurrent, Math::max );
+		numLoads.incrementAndGet();
+		final long[] cellMin = new long[ 3 ];
+		final int[] cellDims = new int[ 3 ];
+		grid.getCellDimensions( index, cellMin, cellDims );
+		final float[] data = new float[ cellDims[ 0 ] * cellDims[ 1 ] * cellDims[ 2 ] ];
+		for ( int i = 0; i < data.length; ++i )
+			data[ i ] = index * 10000 + i;
+		try
+		{
+			Thread.sleep( 1 );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+		numConcurrentLoads.decrementAndGet();
+		return new Cell<>( cellDims, cellMin, new FloatArray( data ) );
+	}
+
+	private static void assertImgEquals( final Img< FloatType > expected, final Img< FloatType > actual )
+	{
+		final Cursor< FloatType > e = expected.cursor();
+		final Cursor< FloatType > a = actual.cursor();
+		while ( e.hasNext() )
+			assertEquals( e.next().get(), a.next().get(), 0 );
+	}
+
+	@Test
+	public void testFactory()
+	{
+		final LazyCellImg< FloatType, FloatArray > img = new LazyCellImg<>( grid, new FloatType(), this::load );
+		final CellImg< FloatType, ? > created = img.factory().create( grid.getImgDimensions(), new FloatType() );
+		assertEquals( grid, created.getCellGrid() );
+	}
+
+	@Test
+	public void testCopy()
+	{
+		final LazyCellImg< FloatType, FloatArray > img = new LazyCellImg<>( grid, new FloatType(), this::load );
+		final CellImg< FloatType, ? > copy = img.copy();
+		assertEquals( grid, copy.getCellGrid() );
+		assertImgEquals( img, copy );
+	}
+
+	@Test
+	public void testCopyBoundedConcurrency()
+	{
+		final CellCache< FloatArray > cache = new CellCache<>( this::load, 1000 );
+		final LazyCellImg< FloatType, FloatArray > img = new LazyCellImg<>( grid, new FloatType(), cache );
+		final ExecutorService executor = Executors.newFixedThreadPool( 2 );
+		try
+		{
+			final CellImg< FloatType, ? > copy = img.copy( 8, executor );
+			assertImgEquals( img, copy );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+		assertEquals( 4 * 3 * 3, numLoads.get() );
+		assertTrue( maxConcurrentLoads.get() <= 2 );
+	}
+
+	@Test
+	public void testCopyVolatile()
+	{
+		final CellCache< VolatileFloatArray > cache = new CellCache<>( index -> {
+			final Cell< FloatArray > cell = load( index );
+			final long[] cellMin = new long[ 3 ];
+			final int[] cellDims = new int[ 3 ];
+			cell.min( cellMin );
+			cell.dimensions( cellDims );
+			return new Cell<>( cellDims, cellMin, new VolatileFloatArray( cell.getData().getCurrentStorageArray(), true ) );
+		}, 1000 );
+
+		// keep the only worker busy, so all cells would be placeholders
+		final CountDownLatch loadingAllowed = new CountDownLatch( 1 );
+		final FetchQueue queue = new FetchQueue( 1, 1 );
+		queue.put( () -> {
+			try
+			{
+				loadingAllowed.await();
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+			}
+		}, 0, false );
+		final VolatileCellCache< VolatileFloatArray > volatileCache = new VolatileCellCache<>(
+				grid, new Fraction(), new VolatileFloatArray( 1, false ), cache, queue, 0 );
+		final LazyCellImg< FloatType, VolatileFloatArray > img = new LazyCellImg<>( grid, new FloatType(), volatileCache );
+
+		final CellImg< FloatType, ? > copy = img.copy();
+		final LazyCellImg< FloatType, FloatArray > expected = new LazyCellImg<>( grid, new FloatType(), this::load );
+		assertImgEquals( expected, copy );
+
+		loadingAllowed.countDown();
+		queue.shutdown();
+	}
+}
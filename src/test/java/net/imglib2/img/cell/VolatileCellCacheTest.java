@@ -0,0 +1,257 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.Volatile;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileShortArray;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Tests {@link VolatileCellCache} and {@link FetchQueue}.
+ *
+ * @author agent
+ */
+public class VolatileCellCacheTest
+{
+	private final CellGrid grid = new CellGrid( new long[] { 20, 20 }, new int[] { 10, 10 } );
+
+	private Cell< VolatileShortArray > load( final long index )
+	{
+		final long[] cellMin = new long[ 2 ];
+		final int[] cellDims = new int[ 2 ];
+		grid.getCellDimensions( index, cellMin, cellDims );
+		final short[] data = new short[ cellDims[ 0 ] * cellDims[ 1 ] ];
+		for ( int i = 0; i < data.length; ++i )
+			data[ i ] = ( short ) ( index + 1 );
+		return new Cell<>( cellDims, cellMin, new VolatileShortArray( data, true ) );
+	}
+
+	@Test
+	public void testAsynchronousLoading() throws InterruptedException
+	{
+		final CountDownLatch loadingAllowed = new CountDownLatch( 1 );
+		final CountDownLatch loaded = new CountDownLatch( 4 );
+		final CellCache< VolatileShortArray > cache = new CellCache<>( index -> {
+			try
+			{
+				loadingAllowed.await();
+			}
+			catch ( final InterruptedException e )
+			{
+				throw new RuntimeException( e );
+			}
+			final Cell< VolatileShortArray > cell = load( index );
+			loaded.countDown();
+			return cell;
+		}, 100 );
+		final FetchQueue queue = new FetchQueue( 3, 2 );
+		final VolatileCellCache< VolatileShortArray > volatileCache = new VolatileCellCache<>(
+				grid, new Fraction(), new VolatileShortArray( 1, false ), cache, queue, 1 );
+		final LazyCellImg< UnsignedShortType, VolatileShortArray > img = new LazyCellImg<>( grid, new UnsignedShortType(), volatileCache );
+		final VolatileCellRandomAccessibleInterval< UnsignedShortType, VolatileShortArray > volatileImg = new VolatileCellRandomAccessibleInterval<>( img );
+
+		final RandomAccess< Volatile< UnsignedShortType > > a = volatileImg.randomAccess();
+		for ( int y = 0; y < 20; y += 10 )
+			for ( int x = 0; x < 20; x += 10 )
+			{
+				a.setPosition( new int[] { x, y } );
+				assertFalse( a.get().isValid() );
+				assertEquals( 0, a.get().get().get() );
+			}
+
+		loadingAllowed.countDown();
+		loaded.await();
+		while ( queue.size() > 0 || cache.getNumStrongCells() < 4 )
+			Thread.sleep( 1 );
+
+		final RandomAccess< Volatile< UnsignedShortType > > b = volatileImg.randomAccess();
+		for ( int y = 0; y < 20; y += 10 )
+			for ( int x = 0; x < 20; x += 10 )
+			{
+				b.setPosition( new int[] { x, y } );
+				assertTrue( b.get().isValid() );
+				assertEquals( y / 10 * 2 + x / 10 + 1, b.get().get().get() );
+			}
+		queue.shutdown();
+	}
+
+	@Test
+	public void testPlaceholdersAreNotShared()
+	{
+		final CountDownLatch loadingAllowed = new CountDownLatch( 1 );
+		final CellCache< VolatileShortArray > cache = new CellCache<>( index -> {
+			try
+			{
+				loadingAllowed.await();
+			}
+			catch ( final InterruptedException e )
+			{
+				throw new RuntimeException( e );
+			}
+			return load( index );
+		}, 100 );
+		final FetchQueue queue = new FetchQueue( 1, 1 );
+		final VolatileCellCache< VolatileShortArray > volatileCache = new VolatileCellCache<>(
+				grid, new Fraction(), new VolatileShortArray( 1, false ), cache, queue, 0 );
+
+		final Cell< VolatileShortArray > c0 = volatileCache.get( 0 );
+		final Cell< VolatileShortArray > c1 = volatileCache.get( 1 );
+		assertFalse( c0.getData().isValid() );
+		assertNotSame( c0.getData(), c1.getData() );
+		assertSame( c0, volatileCache.get( 0 ) );
+
+		loadingAllowed.countDown();
+		queue.shutdown();
+	}
+
+	@Test
+	public void testLoadingFailure() throws InterruptedException
+	{
+		final AtomicInteger numLoads = new AtomicInteger();
+		final CellCache< VolatileShortArray > cache = new CellCache<>( index -> {
+			numLoads.incrementAndGet();
+			throw new IllegalStateException( "cannot load " + index );
+		}, 100 );
+		final FetchQueue queue = new FetchQueue( 1, 1 );
+		final CountDownLatch handled = new CountDownLatch( 1 );
+		final AtomicReference< Throwable > reported = new AtomicReference<>();
+		queue.setExceptionHandler( ( thread, e ) -> {
+			reported.set( e );
+			handled.countDown();
+		} );
+		final VolatileCellCache< VolatileShortArray > volatileCache = new VolatileCellCache<>(
+				grid, new Fraction(), new VolatileShortArray( 1, false ), cache, queue, 0 );
+
+		assertFalse( volatileCache.get( 2 ).getData().isValid() );
+		handled.await();
+		assertTrue( reported.get() instanceof IllegalStateException );
+		try
+		{
+			volatileCache.getBlocking( 2 );
+			fail( "expected loading failure to be rethrown" );
+		}
+		catch ( final IllegalStateException e )
+		{
+			assertSame( reported.get(), e );
+		}
+
+		// failed cells are not enqueued again until failures are cleared
+		assertFalse( volatileCache.get( 2 ).getData().isValid() );
+		assertEquals( 0, queue.size() );
+		assertEquals( 1, numLoads.get() );
+		queue.shutdown();
+	}
+
+	@Test
+	public void testClearReenqueues() throws InterruptedException
+	{
+		final CountDownLatch loadingAllowed = new CountDownLatch( 1 );
+		final CountDownLatch loading = new CountDownLatch( 1 );
+		final CellCache< VolatileShortArray > cache = new CellCache<>( index -> {
+			loading.countDown();
+			try
+			{
+				loadingAllowed.await();
+			}
+			catch ( final InterruptedException e )
+			{
+				throw new RuntimeException( e );
+			}
+			return load( index );
+		}, 100 );
+		final FetchQueue queue = new FetchQueue( 1, 1 );
+		final VolatileCellCache< VolatileShortArray > volatileCache = new VolatileCellCache<>(
+				grid, new Fraction(), new VolatileShortArray( 1, false ), cache, queue, 0 );
+
+		volatileCache.get( 0 );
+		loading.await(); // the worker is blocked loading cell 0
+		volatileCache.get( 1 );
+		assertEquals( 1, queue.size() );
+		assertEquals( 1, queue.clear().size() );
+		volatileCache.get( 1 );
+		assertEquals( 1, queue.size() );
+
+		loadingAllowed.countDown();
+		queue.shutdown();
+	}
+
+	@Test
+	public void testPutAfterShutdownDiscards()
+	{
+		final FetchQueue queue = new FetchQueue( 1, 1 );
+		queue.shutdown();
+		final AtomicInteger numDiscarded = new AtomicInteger();
+		try
+		{
+			queue.put( new FetchQueue.Task()
+			{
+				@Override
+				public void run()
+				{
+					fail( "task executed after shutdown" );
+				}
+
+				@Override
+				public void discard()
+				{
+					numDiscarded.incrementAndGet();
+				}
+			}, 0, false );
+			fail( "put after shutdown did not throw" );
+		}
+		catch ( final IllegalStateException e )
+		{
+			// expected
+		}
+		assertEquals( 1, numDiscarded.get() );
+		assertEquals( 0, queue.size() );
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.multiresolution;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.LazyCellImg;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link MultiResolution}.
+ *
+ * @author agent
+ */
+public class MultiResolutionTest
+{
+	private static double get( final RandomAccessibleInterval< DoubleType > img, final long x, final long y )
+	{
+		final RandomAccess< DoubleType > a = img.randomAccess();
+		a.setPosition( new long[] { x, y } );
+		return a.get().get();
+	}
+
+	@Test
+	public void testAveraged()
+	{
+		final ArrayImg< DoubleType, ? > img = ArrayImgs.doubles( 100, 70 );
+		final Random random = new Random( 1 );
+		for ( final DoubleType t : img )
+			t.set( random.nextDouble() );
+
+		final MultiResolution< DoubleType > mr = MultiResolution.averaged( img, new int[] { 2, 2 }, 3, new int[] { 16, 16 }, 100 );
+		assertEquals( 3, mr.numLevels() );
+		assertTrue( mr.getLevel( 0 ) == img );
+		assertTrue( mr.getLevel( 1 ) instanceof LazyCellImg );
+		assertArrayEquals( new long[] { 50, 35 }, Intervals.dimensionsAsLongArray( mr.getLevel( 1 ) ) );
+		assertArrayEquals( new long[] { 25, 18 }, Intervals.dimensionsAsLongArray( mr.getLevel( 2 ) ) );
+		assertArrayEquals( new double[] { 4, 4 }, mr.getScale( 2 ), 0 );
+		assertArrayEquals( new double[] { 1.5, 1.5 }, mr.getTranslation( 2 ), 0 );
+
+		final RandomAccessibleInterval< DoubleType > level1 = mr.getLevel( 1 );
+		final Cursor< DoubleType > c = Views.iterable( level1 ).localizingCursor();
+		while ( c.hasNext() )
+		{
+			final double v = c.next().get();
+			final long x = c.getLongPosition( 0 );
+			final long y = c.getLongPosition( 1 );
+			final double expected = ( get( img, 2 * x, 2 * y ) + get( img, 2 * x + 1, 2 * y ) + get( img, 2 * x, 2 * y + 1 ) + get( img, 2 * x + 1, 2 * y + 1 ) ) / 4;
+			assertEquals( expected, v, 1e-12 );
+		}
+
+		// border pixel of level 2 covers a single row of level 1
+		final RandomAccessibleInterval< DoubleType > level2 = mr.getLevel( 2 );
+		final double expected = ( get( level1, 10, 34 ) + get( level1, 11, 34 ) ) / 2;
+		assertEquals( expected, get( level2, 5, 17 ), 1e-12 );
+	}
+
+	@Test
+	public void testMode()
+	{
+		final ArrayImg< IntType, ? > labels = ArrayImgs.ints( new int[] {
+				1, 1, 2, 3,
+				1, 2, 3, 3,
+				5, 5, 4, 4,
+				6, 6, 7, 7 }, 4, 4 );
+		final MultiResolution< IntType > mr = MultiResolution.mode( labels, new int[] { 2, 2 }, 2, new int[] { 2, 2 }, 10 );
+		final int[] actual = new int[ 4 ];
+		int i = 0;
+		for ( final IntType t : Views.flatIterable( mr.getLevel( 1 ) ) )
+			actual[ i++ ] = t.get();
+		assertArrayEquals( new int[] { 1, 3, 5, 4 }, actual );
+	}
+
+	@Test
+	public void testLevelSelection()
+	{
+		final ArrayImg< DoubleType, ? > img = ArrayImgs.doubles( 64, 64, 5 );
+		final MultiResolution< DoubleType > mr = MultiResolution.averaged( img, new int[] { 2, 2, 1 }, 4, new int[] { 16, 16, 5 }, 100 );
+		assertEquals( 0, mr.bestLevel( 0.5 ) );
+		assertEquals( 0, mr.bestLevel( 1 ) );
+		assertEquals( 1, mr.bestLevel( 2 ) );
+		assertEquals( 1, mr.bestLevel( 3.9 ) );
+		assertEquals( 2, mr.bestLevel( 4 ) );
+		assertEquals( 3, mr.bestLevel( 100 ) );
+
+		final double[] level0 = new double[] { 10, 20, 3 };
+		final double[] level2 = new double[ 3 ];
+		mr.toLevel( 2, level0, level2 );
+		assertArrayEquals( new double[] { 2.125, 4.625, 3 }, level2, 1e-12 );
+		final double[] back = new double[ 3 ];
+		mr.fromLevel( 2, level2, back );
+		assertArrayEquals( level0, back, 1e-12 );
+	}
+}
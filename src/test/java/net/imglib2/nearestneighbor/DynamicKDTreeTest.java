@@ -0,0 +1,229 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnDynamicKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnDynamicKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnDynamicKDTree;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link DynamicKDTree} with random insertions and removals against
+ * exhaustive search.
+ *
+ * @author agent
+ */
+public class DynamicKDTreeTest
+{
+	private static RealPoint randomPoint( final int n, final Random rnd )
+	{
+		final RealPoint p = new RealPoint( n );
+		for ( int d = 0; d < n; ++d )
+			p.setPosition( rnd.nextDouble() * 100, d );
+		return p;
+	}
+
+	private static double squDistance( final RealPoint a, final RealPoint b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < a.numDimensions(); ++d )
+		{
+			final double diff = a.getDoublePosition( d ) - b.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	private static double[] sortedSquDistances( final Map< Integer, RealPoint > points, final RealPoint q )
+	{
+		final double[] distances = new double[ points.size() ];
+		int i = 0;
+		for ( final RealPoint p : points.values() )
+			distances[ i++ ] = squDistance( p, q );
+		Arrays.sort( distances );
+		return distances;
+	}
+
+	@Test
+	public void testInsertRemove()
+	{
+		for ( final int bufferSize : new int[] { 1, 7, 64 } )
+			testInsertRemove( bufferSize );
+	}
+
+	private void testInsertRemove( final int bufferSize )
+	{
+		final int n = 3;
+		final int k = 5;
+		final double radius = 20;
+		final Random rnd = new Random( 4231 );
+
+		final DynamicKDTree< RealPoint > tree = new DynamicKDTree< RealPoint >( n, bufferSize );
+		final Map< Integer, RealPoint > points = new HashMap< Integer, RealPoint >();
+		final NearestNeighborSearchOnDynamicKDTree< RealPoint > nn = new NearestNeighborSearchOnDynamicKDTree< RealPoint >( tree );
+		final KNearestNeighborSearchOnDynamicKDTree< RealPoint > knn = new KNearestNeighborSearchOnDynamicKDTree< RealPoint >( tree, k );
+		final RadiusNeighborSearchOnDynamicKDTree< RealPoint > rn = new RadiusNeighborSearchOnDynamicKDTree< RealPoint >( tree );
+
+		for ( int round = 0; round < 40; ++round )
+		{
+			// grow in early rounds, shrink in later rounds
+			final int numInserts = round < 20 ? 100 : 20;
+			final int numRemoves = round < 20 ? 30 : 60;
+			for ( int i = 0; i < numInserts; ++i )
+			{
+				final RealPoint p = randomPoint( n, rnd );
+				final int id = tree.insert( p, p );
+				assertFalse( points.containsKey( id ) );
+				points.put( id, p );
+			}
+			final List< Integer > ids = new ArrayList< Integer >( points.keySet() );
+			for ( int i = 0; i < numRemoves && !ids.isEmpty(); ++i )
+			{
+				final int id = ids.remove( rnd.nextInt( ids.size() ) );
+				assertTrue( tree.remove( id ) );
+				assertFalse( tree.remove( id ) );
+				points.remove( id );
+			}
+			assertEquals( points.size(), tree.size() );
+			for ( final Map.Entry< Integer, RealPoint > entry : points.entrySet() )
+			{
+				assertTrue( tree.contains( entry.getKey() ) );
+				assertTrue( tree.getValue( entry.getKey() ) == entry.getValue() );
+			}
+
+			for ( int i = 0; i < 20; ++i )
+			{
+				final RealPoint q = randomPoint( n, rnd );
+				final double[] expected = sortedSquDistances( points, q );
+
+				nn.search( q );
+				assertEquals( expected[ 0 ], nn.getSquareDistance(), 0 );
+				assertTrue( points.get( nn.getId() ) == nn.getSampler().get() );
+				assertEquals( expected[ 0 ], squDistance( nn.getSampler().get(), q ), 0 );
+
+				knn.search( q );
+				for ( int j = 0; j < k; ++j )
+				{
+					assertEquals( expected[ j ], knn.getSquareDistance( j ), 0 );
+					assertTrue( points.get( knn.getId( j ) ) == knn.getSampler( j ).get() );
+				}
+
+				rn.search( q, radius, true );
+				int numExpected = 0;
+				while ( numExpected < expected.length && expected[ numExpected ] <= radius * radius )
+					++numExpected;
+				assertEquals( numExpected, rn.numNeighbors() );
+				for ( int j = 0; j < numExpected; ++j )
+				{
+					assertEquals( expected[ j ], rn.getSquareDistance( j ), 0 );
+					assertEquals( expected[ j ], squDistance( rn.getSampler( j ).get(), q ), 0 );
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		final DynamicKDTree< RealPoint > tree = new DynamicKDTree< RealPoint >( 2 );
+		final RealPoint p = new RealPoint( 1, 2 );
+		final int id = tree.insert( p, p );
+		assertTrue( tree.remove( id ) );
+		assertEquals( 0, tree.size() );
+		assertFalse( tree.contains( id ) );
+		assertFalse( tree.contains( 1 ) );
+
+		final NearestNeighborSearchOnDynamicKDTree< RealPoint > nn = new NearestNeighborSearchOnDynamicKDTree< RealPoint >( tree );
+		nn.search( p );
+		assertEquals( -1, nn.getId() );
+
+		final RadiusNeighborSearchOnDynamicKDTree< RealPoint > rn = new RadiusNeighborSearchOnDynamicKDTree< RealPoint >( tree );
+		rn.search( p, 10, true );
+		assertEquals( 0, rn.numNeighbors() );
+	}
+
+	@Test
+	public void testLessThanKPoints()
+	{
+		final int k = 5;
+		final DynamicKDTree< RealPoint > tree = new DynamicKDTree< RealPoint >( 2, 2 );
+		final KNearestNeighborSearchOnDynamicKDTree< RealPoint > knn = new KNearestNeighborSearchOnDynamicKDTree< RealPoint >( tree, k );
+		final NearestNeighborSearchOnDynamicKDTree< RealPoint > nn = new NearestNeighborSearchOnDynamicKDTree< RealPoint >( tree );
+		final RealPoint q = new RealPoint( 0, 0 );
+
+		knn.search( q );
+		assertEquals( 0, knn.numNeighbors() );
+		assertNull( knn.getSampler( 0 ) );
+		nn.search( q );
+		assertNull( nn.getSampler() );
+		assertNull( nn.getPosition() );
+
+		// two points in a tree, one in the buffer
+		for ( int i = 1; i <= 3; ++i )
+		{
+			final RealPoint p = new RealPoint( i, 0 );
+			tree.insert( p, p );
+		}
+		knn.search( q );
+		assertEquals( 3, knn.numNeighbors() );
+		for ( int i = 0; i < 3; ++i )
+		{
+			assertEquals( ( i + 1 ) * ( i + 1 ), knn.getSquareDistance( i ), 0 );
+			assertEquals( i + 1, knn.getPosition( i ).getDoublePosition( 0 ), 0 );
+		}
+		for ( int i = 3; i < k; ++i )
+		{
+			assertEquals( -1, knn.getId( i ) );
+			assertNull( knn.getSampler( i ) );
+			assertNull( knn.getPosition( i ) );
+		}
+	}
+}
@@ -0,0 +1,531 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.KDTree;
+import net.imglib2.RealCursor;
+import net.imglib2.RealPoint;
+import net.imglib2.interpolation.neighborsearch.InverseDistanceWeightingInterpolator;
+import net.imglib2.interpolation.neighborsearch.NearestNeighborSearchInterpolator;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearch;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnKDTree;
+import net.imglib2.type.numeric.real.DoubleType;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link FlatKDTree} and searches on it against exhaustive search.
+ *
+ * @author agent
+ */
+public class FlatKDTreeTest
+{
+	private static List< RealPoint > createPoints( final int numDimensions, final int numPoints, final Random rnd )
+	{
+		final List< RealPoint > points = new ArrayList< RealPoint >();
+		final double[] p = new double[ numDimensions ];
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			for ( int d = 0; d < numDimensions; ++d )
+				p[ d ] = rnd.nextDouble() * 100;
+			points.add( new RealPoint( p ) );
+		}
+		return points;
+	}
+
+	private static double squDistance( final RealPoint a, final RealPoint b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < a.numDimensions(); ++d )
+		{
+			final double diff = a.getDoublePosition( d ) - b.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	private static double[] sortedSquDistances( final List< RealPoint > points, final RealPoint q )
+	{
+		final double[] distances = new double[ points.size() ];
+		for ( int i = 0; i < distances.length; ++i )
+			distances[ i ] = squDistance( points.get( i ), q );
+		Arrays.sort( distances );
+		return distances;
+	}
+
+	private static void checkSubtree( final FlatKDTree< ? > tree, final int node, final int dim, final double split, final boolean left )
+	{
+		if ( node >= tree.numPoints() )
+			return;
+		final double x = tree.getDoublePosition( node, dim );
+		assertTrue( left ? x <= split : x >= split );
+		checkSubtree( tree, FlatKDTree.leftChild( node ), dim, split, left );
+		checkSubtree( tree, FlatKDTree.rightChild( node ), dim, split, left );
+	}
+
+	@Test
+	public void testStructure()
+	{
+		final Random rnd = new Random( 12345 );
+		for ( final int numPoints : new int[] { 1, 2, 3, 7, 8, 100, 1001 } )
+		{
+			final List< RealPoint > points = createPoints( 3, numPoints, rnd );
+			final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+			assertEquals( numPoints, tree.size() );
+			final boolean[] seen = new boolean[ numPoints ];
+			for ( int node = 0; node < numPoints; ++node )
+			{
+				final int dim = tree.getSplitDimension( node );
+				final double split = tree.getSplitCoordinate( node );
+				checkSubtree( tree, FlatKDTree.leftChild( node ), dim, split, true );
+				checkSubtree( tree, FlatKDTree.rightChild( node ), dim, split, false );
+
+				final int index = tree.getIndex( node );
+				assertTrue( !seen[ index ] );
+				seen[ index ] = true;
+				assertTrue( tree.getValue( node ) == points.get( index ) );
+				for ( int d = 0; d < 3; ++d )
+					assertEquals( points.get( index ).getDoublePosition( d ), tree.getDoublePosition( node, d ), 0 );
+			}
+
+			int count = 0;
+			final RealCursor< RealPoint > cursor = tree.cursor();
+			while ( cursor.hasNext() )
+			{
+				final RealPoint p = cursor.next();
+				for ( int d = 0; d < 3; ++d )
+					assertEquals( p.getDoublePosition( d ), cursor.getDoublePosition( d ), 0 );
+				++count;
+			}
+			assertEquals( numPoints, count );
+		}
+	}
+
+	@Test
+	public void testParallelConstruction()
+	{
+		final Random rnd = new Random( 12345 );
+		final int n = 3;
+		final int numPoints = 50000;
+		final double[] coordinates = new double[ n * numPoints ];
+		for ( int i = 0; i < coordinates.length; ++i )
+			coordinates[ i ] = rnd.nextInt( 1000 ); // include duplicates
+		final double[] original = coordinates.clone();
+
+		final FlatKDTree< Object > serial = new FlatKDTree< Object >( null, coordinates, n );
+		final ForkJoinPool pool = new ForkJoinPool( 4 );
+		try
+		{
+			for ( final int depth : new int[] { 1, 3, 20 } )
+			{
+				final FlatKDTree< Object > parallel = new FlatKDTree< Object >( null, coordinates, n, depth, pool );
+				assertTrue( Arrays.equals( serial.getPositions(), parallel.getPositions() ) );
+				for ( int node = 0; node < numPoints; ++node )
+				{
+					assertEquals( serial.getIndex( node ), parallel.getIndex( node ) );
+					assertEquals( serial.getSplitDimension( node ), parallel.getSplitDimension( node ) );
+				}
+			}
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		assertTrue( Arrays.equals( original, coordinates ) );
+	}
+
+	@Test
+	public void testDuplicatePoints()
+	{
+		final double[] coordinates = new double[ 2 * 1000 ];
+		for ( int i = 0; i < 1000; ++i )
+			coordinates[ 2 * i ] = i % 3;
+		final FlatKDTree< Object > tree = new FlatKDTree< Object >( null, coordinates, 2 );
+		final NearestNeighborSearchOnFlatKDTree< Object > search = new NearestNeighborSearchOnFlatKDTree< Object >( tree );
+		search.search( RealPoint.wrap( new double[] { 1.2, 0 } ) );
+		assertEquals( 1, search.getPosition().getDoublePosition( 0 ), 0 );
+		assertEquals( 0.04, search.getSquareDistance(), 1e-10 );
+	}
+
+	@Test
+	public void testNearestNeighbor()
+	{
+		final Random rnd = new Random( 435435435 );
+		final List< RealPoint > points = createPoints( 3, 2000, rnd );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		final NearestNeighborSearchOnFlatKDTree< RealPoint > search = new NearestNeighborSearchOnFlatKDTree< RealPoint >( tree );
+		for ( final RealPoint q : createPoints( 3, 200, rnd ) )
+		{
+			search.search( q );
+			final double expected = sortedSquDistances( points, q )[ 0 ];
+			assertEquals( expected, search.getSquareDistance(), 0 );
+			assertEquals( expected, squDistance( search.getSampler().get(), q ), 0 );
+			final NearestNeighborSearchOnFlatKDTree< RealPoint > copy = search.copy();
+			assertTrue( copy.getSampler().get() == search.getSampler().get() );
+		}
+	}
+
+	@Test
+	public void testKNearestNeighbor()
+	{
+		final int k = 10;
+		final Random rnd = new Random( 435435435 );
+		final List< RealPoint > points = createPoints( 3, 2000, rnd );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > search = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, k );
+		for ( final RealPoint q : createPoints( 3, 200, rnd ) )
+		{
+			search.search( q );
+			final double[] expected = sortedSquDistances( points, q );
+			for ( int i = 0; i < k; ++i )
+			{
+				assertEquals( expected[ i ], search.getSquareDistance( i ), 0 );
+				assertEquals( expected[ i ], squDistance( search.getSampler( i ).get(), q ), 0 );
+			}
+		}
+	}
+
+	@Test
+	public void testRadiusNeighbor()
+	{
+		final double radius = 15;
+		final Random rnd = new Random( 435435435 );
+		final List< RealPoint > points = createPoints( 3, 2000, rnd );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		final RadiusNeighborSearchOnFlatKDTree< RealPoint > search = new RadiusNeighborSearchOnFlatKDTree< RealPoint >( tree );
+		for ( final RealPoint q : createPoints( 3, 200, rnd ) )
+		{
+			search.search( q, radius, true );
+			final double[] all = sortedSquDistances( points, q );
+			int numExpected = 0;
+			while ( numExpected < all.length && all[ numExpected ] <= radius * radius )
+				++numExpected;
+			assertEquals( numExpected, search.numNeighbors() );
+			for ( int i = 0; i < numExpected; ++i )
+			{
+				assertEquals( all[ i ], search.getSquareDistance( i ), 0 );
+				assertEquals( all[ i ], squDistance( search.getSampler( i ).get(), q ), 0 );
+			}
+		}
+	}
+
+	@Test
+	public void testBatchSearch()
+	{
+		final int n = 3;
+		final int k = 5;
+		final Random rnd = new Random( 435435435 );
+		final List< RealPoint > points = createPoints( n, 2000, rnd );
+		final List< RealPoint > queryPoints = createPoints( n, 500, rnd );
+		final int numQueries = queryPoints.size();
+		final double[] queries = new double[ numQueries * n ];
+		for ( int i = 0; i < numQueries; ++i )
+			for ( int d = 0; d < n; ++d )
+				queries[ i * n + d ] = queryPoints.get( i ).getDoublePosition( d );
+
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		final NearestNeighborSearchOnFlatKDTree< RealPoint > nn = new NearestNeighborSearchOnFlatKDTree< RealPoint >( tree );
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > knn = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, k );
+
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			for ( final int numTasks : new int[] { 1, 7 } )
+			{
+				final int[] nnIndices = new int[ numQueries ];
+				final double[] nnSquDistances = new double[ numQueries ];
+				nn.search( queries, nnIndices, nnSquDistances, numTasks, executor );
+
+				final int[] knnIndices = new int[ numQueries * k ];
+				final double[] knnSquDistances = new double[ numQueries * k ];
+				knn.search( queries, knnIndices, knnSquDistances, numTasks, executor );
+
+				for ( int i = 0; i < numQueries; ++i )
+				{
+					final RealPoint q = queryPoints.get( i );
+					final double[] expected = sortedSquDistances( points, q );
+					assertEquals( expected[ 0 ], nnSquDistances[ i ], 0 );
+					assertEquals( expected[ 0 ], squDistance( points.get( nnIndices[ i ] ), q ), 0 );
+					for ( int j = 0; j < k; ++j )
+					{
+						assertEquals( expected[ j ], knnSquDistances[ i * k + j ], 0 );
+						assertEquals( expected[ j ], squDistance( points.get( knnIndices[ i * k + j ] ), q ), 0 );
+					}
+				}
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testBatchInterpolation()
+	{
+		final int n = 2;
+		final int k = 4;
+		final Random rnd = new Random( 435435435 );
+		final List< RealPoint > points = createPoints( n, 1000, rnd );
+		final List< DoubleType > values = new ArrayList< DoubleType >();
+		for ( int i = 0; i < points.size(); ++i )
+			values.add( new DoubleType( rnd.nextDouble() ) );
+		final List< RealPoint > queryPoints = createPoints( n, 300, rnd );
+		final int numQueries = queryPoints.size();
+		final double[] queries = new double[ numQueries * n ];
+		for ( int i = 0; i < numQueries; ++i )
+			for ( int d = 0; d < n; ++d )
+				queries[ i * n + d ] = queryPoints.get( i ).getDoublePosition( d );
+
+		final FlatKDTree< DoubleType > flatTree = new FlatKDTree< DoubleType >( values, points );
+		// NB: KDTree reorders the lists it is constructed from
+		final KDTree< DoubleType > tree = new KDTree< DoubleType >( new ArrayList< DoubleType >( values ), new ArrayList< RealPoint >( points ) );
+
+		final NearestNeighborSearchInterpolator< DoubleType > nn = new NearestNeighborSearchInterpolator< DoubleType >( new NearestNeighborSearchOnKDTree< DoubleType >( tree ) );
+		final InverseDistanceWeightingInterpolator< DoubleType > idw = new InverseDistanceWeightingInterpolator< DoubleType >( new KNearestNeighborSearchOnKDTree< DoubleType >( tree, k ), 2 );
+		final double[] expectedNN = new double[ numQueries ];
+		final double[] expectedIDW = new double[ numQueries ];
+		for ( int i = 0; i < numQueries; ++i )
+		{
+			nn.setPosition( queryPoints.get( i ) );
+			expectedNN[ i ] = nn.get().get();
+			idw.setPosition( queryPoints.get( i ) );
+			expectedIDW[ i ] = idw.get().get();
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			final List< NearestNeighborSearchInterpolator< DoubleType > > nns = Arrays.asList( nn,
+					new NearestNeighborSearchInterpolator< DoubleType >( new NearestNeighborSearchOnFlatKDTree< DoubleType >( flatTree ) ) );
+			final List< InverseDistanceWeightingInterpolator< DoubleType > > idws = Arrays.asList( idw,
+					new InverseDistanceWeightingInterpolator< DoubleType >( new KNearestNeighborSearchOnFlatKDTree< DoubleType >( flatTree, k ), 2 ) );
+			for ( final int numTasks : new int[] { 1, 7 } )
+			{
+				for ( final NearestNeighborSearchInterpolator< DoubleType > interpolator : nns )
+				{
+					final DoubleType[] result = new DoubleType[ numQueries ];
+					interpolator.get( queries, result, numTasks, executor );
+					for ( int i = 0; i < numQueries; ++i )
+						assertEquals( expectedNN[ i ], result[ i ].get(), 0 );
+				}
+				for ( final InverseDistanceWeightingInterpolator< DoubleType > interpolator : idws )
+				{
+					final double[] result = new double[ numQueries ];
+					interpolator.get( queries, result, numTasks, executor );
+					for ( int i = 0; i < numQueries; ++i )
+						assertEquals( expectedIDW[ i ], result[ i ], 1e-10 );
+				}
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testRadiusNeighborCountAndCallback()
+	{
+		final double radius = 15;
+		final Random rnd = new Random( 435435435 );
+		final List< RealPoint > points = createPoints( 3, 2000, rnd );
+		final RadiusNeighborSearchOnFlatKDTree< RealPoint > flatSearch = new RadiusNeighborSearchOnFlatKDTree< RealPoint >( new FlatKDTree< RealPoint >( points, points ) );
+		// NB: KDTree reorders the list it is constructed from
+		final List< RealPoint > copy = new ArrayList< RealPoint >( points );
+		final RadiusNeighborSearchOnKDTree< RealPoint > search = new RadiusNeighborSearchOnKDTree< RealPoint >( new KDTree< RealPoint >( copy, copy ) );
+		for ( final RealPoint q : createPoints( 3, 100, rnd ) )
+		{
+			flatSearch.search( q, radius, true );
+			checkSortedRadiusNeighbors( flatSearch, q );
+			final int numNeighbors = flatSearch.numNeighbors();
+			assertEquals( numNeighbors, flatSearch.count( q, radius ) );
+			final double[] flatSum = new double[ 2 ];
+			flatSearch.search( q, radius, ( position, sampler, squDistance ) -> {
+				assertEquals( squDistance, squDistance( sampler.get(), q ), 0 );
+				flatSum[ 0 ] += 1;
+				flatSum[ 1 ] += squDistance;
+			} );
+			checkCallbackSum( flatSearch, flatSum );
+
+			search.search( q, radius, true );
+			checkSortedRadiusNeighbors( search, q );
+			assertEquals( numNeighbors, search.numNeighbors() );
+			assertEquals( numNeighbors, search.count( q, radius ) );
+			final double[] sum = new double[ 2 ];
+			search.search( q, radius, ( position, sampler, squDistance ) -> {
+				assertEquals( squDistance, squDistance( sampler.get(), q ), 0 );
+				sum[ 0 ] += 1;
+				sum[ 1 ] += squDistance;
+			} );
+			checkCallbackSum( search, sum );
+		}
+	}
+
+	private static void checkSortedRadiusNeighbors( final RadiusNeighborSearch< RealPoint > search, final RealPoint q )
+	{
+		final int numNeighbors = search.numNeighbors();
+		for ( int i = 1; i < numNeighbors; ++i )
+			assertTrue( search.getSquareDistance( i - 1 ) <= search.getSquareDistance( i ) );
+		for ( int i = 0; i < numNeighbors; ++i )
+			assertEquals( search.getSquareDistance( i ), squDistance( search.getSampler( i ).get(), q ), 0 );
+	}
+
+	private static void checkCallbackSum( final RadiusNeighborSearch< RealPoint > search, final double[] sum )
+	{
+		final int numNeighbors = search.numNeighbors();
+		double expectedSum = 0;
+		for ( int i = 0; i < numNeighbors; ++i )
+			expectedSum += search.getSquareDistance( i );
+		assertEquals( numNeighbors, sum[ 0 ], 0 );
+		assertEquals( expectedSum, sum[ 1 ], 1e-6 );
+	}
+
+	@Test
+	public void testEmptyTree()
+	{
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( null, new double[ 0 ], 3 );
+		final RealPoint q = new RealPoint( 1, 2, 3 );
+
+		final NearestNeighborSearchOnFlatKDTree< RealPoint > nn = new NearestNeighborSearchOnFlatKDTree< RealPoint >( tree );
+		nn.search( q );
+		assertNull( nn.getSampler() );
+		assertNull( nn.getPosition() );
+		assertEquals( -1, nn.getIndex() );
+
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > knn = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, 3 );
+		knn.search( q );
+		assertEquals( 0, knn.numNeighbors() );
+		assertNull( knn.getSampler( 0 ) );
+		assertNull( knn.getPosition( 2 ) );
+
+		final RadiusNeighborSearchOnFlatKDTree< RealPoint > radius = new RadiusNeighborSearchOnFlatKDTree< RealPoint >( tree );
+		radius.search( q, 10, true );
+		assertEquals( 0, radius.numNeighbors() );
+		assertEquals( 0, radius.count( q, 10 ) );
+	}
+
+	@Test
+	public void testKNearestNeighborLargeK()
+	{
+		final Random rnd = new Random( 435435435 );
+		final List< RealPoint > points = createPoints( 4, 3000, rnd );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		for ( final int k : new int[] { 1, 10, 300, 5000 } )
+		{
+			final KNearestNeighborSearchOnFlatKDTree< RealPoint > search = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, k );
+			for ( final RealPoint q : createPoints( 4, 50, rnd ) )
+			{
+				search.search( q );
+				final double[] expected = sortedSquDistances( points, q );
+				assertEquals( Math.min( k, points.size() ), search.numNeighbors() );
+				for ( int i = 0; i < search.numNeighbors(); ++i )
+				{
+					assertEquals( expected[ i ], search.getSquareDistance( i ), 0 );
+					assertEquals( expected[ i ], squDistance( search.getSampler( i ).get(), q ), 0 );
+					assertTrue( search.getSampler( i ).get() == points.get( search.getIndex( i ) ) );
+				}
+				for ( int i = search.numNeighbors(); i < k; ++i )
+					assertEquals( -1, search.getIndex( i ) );
+			}
+		}
+	}
+
+	@Test
+	public void testKNearestNeighborMaxDistance()
+	{
+		final int k = 50;
+		final double maxDistance = 12;
+		final Random rnd = new Random( 435435435 );
+		final List< RealPoint > points = createPoints( 3, 3000, rnd );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > search = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, k );
+		for ( final RealPoint q : createPoints( 3, 100, rnd ) )
+		{
+			search.search( q, maxDistance );
+			final double[] expected = sortedSquDistances( points, q );
+			int numExpected = 0;
+			while ( numExpected < k && expected[ numExpected ] <= maxDistance * maxDistance )
+				++numExpected;
+			assertEquals( numExpected, search.numNeighbors() );
+			for ( int i = 0; i < numExpected; ++i )
+				assertEquals( expected[ i ], search.getSquareDistance( i ), 0 );
+		}
+	}
+
+	@Test
+	public void testKNearestNeighborApproximate()
+	{
+		final int k = 20;
+		final double epsilon = 0.5;
+		final Random rnd = new Random( 435435435 );
+		final List< RealPoint > points = createPoints( 8, 5000, rnd );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > search = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, k, epsilon );
+		final double scale = ( 1 + epsilon ) * ( 1 + epsilon );
+		for ( final RealPoint q : createPoints( 8, 100, rnd ) )
+		{
+			search.search( q );
+			final double[] expected = sortedSquDistances( points, q );
+			assertEquals( k, search.numNeighbors() );
+			for ( int i = 0; i < k; ++i )
+			{
+				assertTrue( search.getSquareDistance( i ) >= expected[ i ] );
+				assertTrue( search.getSquareDistance( i ) <= expected[ i ] * scale );
+				if ( i > 0 )
+					assertTrue( search.getSquareDistance( i - 1 ) <= search.getSquareDistance( i ) );
+			}
+		}
+	}
+}
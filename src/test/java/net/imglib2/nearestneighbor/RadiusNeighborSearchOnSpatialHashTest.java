@@ -0,0 +1,133 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.imglib2.RealPoint;
+import net.imglib2.RealPointSampleList;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnSpatialHash;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link RadiusNeighborSearchOnSpatialHash} against exhaustive search.
+ *
+ * @author agent
+ */
+public class RadiusNeighborSearchOnSpatialHashTest
+{
+	private static double squDistance( final RealPoint a, final RealPoint b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < a.numDimensions(); ++d )
+		{
+			final double diff = a.getDoublePosition( d ) - b.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Test
+	public void testRadiusSearch()
+	{
+		final int n = 3;
+		final Random rnd = new Random( 2389 );
+		final RealPointSampleList< RealPoint > list = new RealPointSampleList< RealPoint >( n );
+		final List< RealPoint > points = new ArrayList< RealPoint >();
+		for ( int i = 0; i < 5000; ++i )
+		{
+			final RealPoint p = new RealPoint( n );
+			for ( int d = 0; d < n; ++d )
+				p.setPosition( rnd.nextDouble() * 100 - 50, d );
+			list.add( p, p );
+			points.add( p );
+		}
+
+		final RadiusNeighborSearchOnSpatialHash< RealPoint > search = new RadiusNeighborSearchOnSpatialHash< RealPoint >( list, 5 );
+		final RadiusNeighborSearchOnSpatialHash< RealPoint > copy = search.copy();
+		for ( final double radius : new double[] { 0, 2, 5, 12 } )
+		{
+			for ( int j = 0; j < 100; ++j )
+			{
+				final RealPoint q = new RealPoint( n );
+				for ( int d = 0; d < n; ++d )
+					q.setPosition( rnd.nextDouble() * 120 - 60, d );
+
+				final List< Double > expected = new ArrayList< Double >();
+				for ( final RealPoint p : points )
+				{
+					final double squDistance = squDistance( p, q );
+					if ( squDistance <= radius * radius )
+						expected.add( squDistance );
+				}
+				Collections.sort( expected );
+
+				for ( final RadiusNeighborSearchOnSpatialHash< RealPoint > s : new RadiusNeighborSearchOnSpatialHash[] { search, copy } )
+				{
+					s.search( q, radius, true );
+					assertEquals( expected.size(), s.numNeighbors() );
+					for ( int i = 0; i < expected.size(); ++i )
+					{
+						assertEquals( expected.get( i ), s.getSquareDistance( i ), 0 );
+						assertEquals( expected.get( i ), squDistance( s.getSampler( i ).get(), q ), 0 );
+						assertEquals( s.getSampler( i ).get().getDoublePosition( 0 ), s.getPosition( i ).getDoublePosition( 0 ), 0 );
+						assertTrue( points.get( s.getIndex( i ) ) == s.getSampler( i ).get() );
+					}
+				}
+			}
+		}
+
+		// query at a data point
+		search.search( points.get( 17 ), 0, false );
+		assertTrue( search.numNeighbors() >= 1 );
+
+		// a huge radius only visits the cells of the grid that contain points
+		search.search( new RealPoint( 1e6, 1e6, 1e6 ), 1e7, false );
+		assertEquals( points.size(), search.numNeighbors() );
+
+		// query beyond the grid
+		search.search( new RealPoint( 1000, 0, 0 ), 100, false );
+		assertEquals( 0, search.numNeighbors() );
+	}
+}
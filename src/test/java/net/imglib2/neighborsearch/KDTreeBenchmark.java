@@ -0,0 +1,342 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.neighborsearch;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.FlatKDTree;
+import net.imglib2.KDTree;
+import net.imglib2.RealPoint;
+
+/**
+ * JMH benchmark of {@link KDTree} construction and of nearest neighbor,
+ * k-nearest neighbor, and radius searches on a {@link KDTree}, compared to the
+ * same on a {@link FlatKDTree}. Data and query points are uniformly
+ * distributed in the unit cube.
+ *
+ * @author agent
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class KDTreeBenchmark
+{
+	@Param( { "3" } )
+	public int numDimensions;
+
+	@Param( { "100000" } )
+	public int numDataPoints;
+
+	private final int numQueryPoints = 10000;
+
+	private final int k = 10;
+
+	private final int largeK = 200;
+
+	private ArrayList< RealPoint > dataPoints;
+
+	private ArrayList< RealPoint > queryPoints;
+
+	private KDTree< RealPoint > kdtree;
+
+	private FlatKDTree< RealPoint > flatKdtree;
+
+	private double[] coordinates;
+
+	private DynamicKDTree< RealPoint > dynamicKdtree;
+
+	private int[] dynamicIds;
+
+	private int nextUpdate;
+
+	private double radius;
+
+	@Setup
+	public void setup()
+	{
+		final Random random = new Random( 1 );
+		dataPoints = createPoints( numDataPoints, numDimensions, random );
+		queryPoints = createPoints( numQueryPoints, numDimensions, random );
+		kdtree = new KDTree<>( dataPoints, dataPoints );
+		flatKdtree = new FlatKDTree<>( dataPoints, dataPoints );
+		coordinates = new double[ numDataPoints * numDimensions ];
+		for ( int i = 0; i < numDataPoints; ++i )
+			for ( int d = 0; d < numDimensions; ++d )
+				coordinates[ i * numDimensions + d ] = dataPoints.get( i ).getDoublePosition( d );
+
+		dynamicKdtree = new DynamicKDTree<>( numDimensions );
+		dynamicIds = new int[ numDataPoints ];
+		for ( int i = 0; i < numDataPoints; ++i )
+			dynamicIds[ i ] = dynamicKdtree.insert( dataPoints.get( i ), dataPoints.get( i ) );
+
+		// radius of a ball that contains on the order of k points
+		final double volume = ( double ) k / numDataPoints;
+		radius = Math.pow( volume, 1.0 / numDimensions ) / 2;
+	}
+
+	private static ArrayList< RealPoint > createPoints( final int numPoints, final int n, final Random random )
+	{
+		final ArrayList< RealPoint > points = new ArrayList<>( numPoints );
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			final RealPoint p = new RealPoint( n );
+			for ( int d = 0; d < n; ++d )
+				p.setPosition( random.nextDouble(), d );
+			points.add( p );
+		}
+		return points;
+	}
+
+	@Benchmark
+	public KDTree< RealPoint > construction()
+	{
+		return new KDTree<>( dataPoints, dataPoints );
+	}
+
+	@Benchmark
+	public double nearestNeighborSearch()
+	{
+		final NearestNeighborSearchOnKDTree< RealPoint > search = new NearestNeighborSearchOnKDTree<>( kdtree );
+		double sum = 0;
+		for ( final RealPoint q : queryPoints )
+		{
+			search.search( q );
+			sum += search.getSquareDistance();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double kNearestNeighborSearch()
+	{
+		final KNearestNeighborSearchOnKDTree< RealPoint > search = new KNearestNeighborSearchOnKDTree<>( kdtree, k );
+		double sum = 0;
+		for ( final RealPoint q : queryPoints )
+		{
+			search.search( q );
+			sum += search.getSquareDistance( k - 1 );
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long radiusSearch()
+	{
+		final RadiusNeighborSearchOnKDTree< RealPoint > search = new RadiusNeighborSearchOnKDTree<>( kdtree );
+		long sum = 0;
+		for ( final RealPoint q : queryPoints )
+		{
+			search.search( q, radius, false );
+			sum += search.numNeighbors();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long radiusSearchSorted()
+	{
+		final RadiusNeighborSearchOnKDTree< RealPoint > search = new RadiusNeighborSearchOnKDTree<>( kdtree );
+		long sum = 0;
+		for ( final RealPoint q : queryPoints )
+		{
+			search.search( q, radius, true );
+			sum += search.numNeighbors();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long radiusCount()
+	{
+		final RadiusNeighborSearchOnKDTree< RealPoint > search = new RadiusNeighborSearchOnKDTree<>( kdtree );
+		long sum = 0;
+		for ( final RealPoint q : queryPoints )
+			sum += search.count( q, radius );
+		return sum;
+	}
+
+	@Benchmark
+	public FlatKDTree< RealPoint > flatConstruction()
+	{
+		return new FlatKDTree<>( dataPoints, dataPoints );
+	}
+
+	@Benchmark
+	public FlatKDTree< RealPoint > flatConstructionParallel()
+	{
+		return new FlatKDTree<>( dataPoints, coordinates, numDimensions, 6 );
+	}
+
+	@Benchmark
+	public double flatNearestNeighborSearch()
+	{
+		final NearestNeighborSearchOnFlatKDTree< RealPoint > search = new NearestNeighborSearchOnFlatKDTree<>( flatKdtree );
+		double sum = 0;
+		for ( final RealPoint q : queryPoints )
+		{
+			search.search( q );
+			sum += search.getSquareDistance();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double flatKNearestNeighborSearch()
+	{
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > search = new KNearestNeighborSearchOnFlatKDTree<>( flatKdtree, k );
+		double sum = 0;
+		for ( final RealPoint q : queryPoints )
+		{
+			search.search( q );
+			sum += search.getSquareDistance( k - 1 );
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long flatRadiusSearch()
+	{
+		final RadiusNeighborSearchOnFlatKDTree< RealPoint > search = new RadiusNeighborSearchOnFlatKDTree<>( flatKdtree );
+		long sum = 0;
+		for ( final RealPoint q : queryPoints )
+		{
+			search.search( q, radius, false );
+			sum += search.numNeighbors();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long flatRadiusSearchSorted()
+	{
+		final RadiusNeighborSearchOnFlatKDTree< RealPoint > search = new RadiusNeighborSearchOnFlatKDTree<>( flatKdtree );
+		long sum = 0;
+		for ( final RealPoint q : queryPoints )
+		{
+			search.search( q, radius, true );
+			sum += search.numNeighbors();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double largeKNearestNeighborSearch()
+	{
+		final KNearestNeighborSearchOnKDTree< RealPoint > search = new KNearestNeighborSearchOnKDTree<>( kdtree, largeK );
+		double sum = 0;
+		for ( final RealPoint q : queryPoints )
+		{
+			search.search( q );
+			sum += search.getSquareDistance( largeK - 1 );
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double flatLargeKNearestNeighborSearchHeap()
+	{
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > search = new KNearestNeighborSearchOnFlatKDTree<>( flatKdtree, largeK );
+		double sum = 0;
+		for ( final RealPoint q : queryPoints )
+		{
+			search.search( q );
+			sum += search.getSquareDistance( largeK - 1 );
+		}
+		return sum;
+	}
+
+	/**
+	 * Move 1% of the points of a {@link DynamicKDTree} (remove and insert),
+	 * to compare with rebuilding a tree ({@link #construction()}).
+	 */
+	@Benchmark
+	public int dynamicUpdate()
+	{
+		final int numUpdates = numDataPoints / 100;
+		for ( int j = 0; j < numUpdates; ++j )
+		{
+			final int i = nextUpdate;
+			nextUpdate = ( nextUpdate + 1 ) % numDataPoints;
+			dynamicKdtree.remove( dynamicIds[ i ] );
+			final RealPoint p = queryPoints.get( j % numQueryPoints );
+			dynamicIds[ i ] = dynamicKdtree.insert( p, p );
+		}
+		return dynamicKdtree.size();
+	}
+
+	@Benchmark
+	public double dynamicNearestNeighborSearch()
+	{
+		final NearestNeighborSearchOnDynamicKDTree< RealPoint > search = new NearestNeighborSearchOnDynamicKDTree<>( dynamicKdtree );
+		double sum = 0;
+		for ( final RealPoint q : queryPoints )
+		{
+			search.search( q );
+			sum += search.getSquareDistance();
+		}
+		return sum;
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final Options opt = new OptionsBuilder()
+				.include( KDTreeBenchmark.class.getSimpleName() )
+				.build();
+		new Runner( opt ).run();
+	}
+}
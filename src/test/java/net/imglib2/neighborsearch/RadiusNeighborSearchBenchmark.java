@@ -0,0 +1,183 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.neighborsearch;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.KDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.RealPointSampleList;
+
+/**
+ * JMH benchmark of fixed-radius searches with
+ * {@link RadiusNeighborSearchOnKDTree} and
+ * {@link RadiusNeighborSearchOnSpatialHash}, including construction of the
+ * search structure. Data and query points are uniformly distributed in the
+ * unit cube, and the radius is chosen such that on the order of
+ * {@code numNeighbors} points are found per query.
+ *
+ * @author agent
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class RadiusNeighborSearchBenchmark
+{
+	@Param( { "3" } )
+	public int numDimensions;
+
+	@Param( { "100000" } )
+	public int numDataPoints;
+
+	@Param( { "10" } )
+	public int numNeighbors;
+
+	private final int numQueryPoints = 10000;
+
+	private RealPointSampleList< RealPoint > dataPoints;
+
+	private RealPoint[] queryPoints;
+
+	private double radius;
+
+	private RadiusNeighborSearchOnKDTree< RealPoint > kdtreeSearch;
+
+	private RadiusNeighborSearchOnSpatialHash< RealPoint > hashSearch;
+
+	@Setup
+	public void setup()
+	{
+		final Random random = new Random( 1 );
+		dataPoints = new RealPointSampleList<>( numDimensions );
+		for ( int i = 0; i < numDataPoints; ++i )
+		{
+			final RealPoint p = createPoint( random );
+			dataPoints.add( p, p );
+		}
+		queryPoints = new RealPoint[ numQueryPoints ];
+		for ( int i = 0; i < numQueryPoints; ++i )
+			queryPoints[ i ] = createPoint( random );
+
+		final double volume = ( double ) numNeighbors / numDataPoints;
+		radius = Math.pow( volume, 1.0 / numDimensions ) / 2;
+
+		kdtreeSearch = new RadiusNeighborSearchOnKDTree<>( new KDTree<>( dataPoints ) );
+		hashSearch = new RadiusNeighborSearchOnSpatialHash<>( dataPoints, radius );
+	}
+
+	private RealPoint createPoint( final Random random )
+	{
+		final RealPoint p = new RealPoint( numDimensions );
+		for ( int d = 0; d < numDimensions; ++d )
+			p.setPosition( random.nextDouble(), d );
+		return p;
+	}
+
+	@Benchmark
+	public Object kdtreeConstruction()
+	{
+		return new KDTree<>( dataPoints );
+	}
+
+	@Benchmark
+	public Object spatialHashConstruction()
+	{
+		return new RadiusNeighborSearchOnSpatialHash<>( dataPoints, radius );
+	}
+
+	@Benchmark
+	public long kdtreeSearch()
+	{
+		return search( kdtreeSearch, false );
+	}
+
+	@Benchmark
+	public long kdtreeSearchSorted()
+	{
+		return search( kdtreeSearch, true );
+	}
+
+	@Benchmark
+	public long spatialHashSearch()
+	{
+		return search( hashSearch, false );
+	}
+
+	@Benchmark
+	public long spatialHashSearchSorted()
+	{
+		return search( hashSearch, true );
+	}
+
+	private long search( final RadiusNeighborSearch< RealPoint > search, final boolean sortResults )
+	{
+		long sum = 0;
+		for ( final RealPoint q : queryPoints )
+		{
+			search.search( q, radius, sortResults );
+			sum += search.numNeighbors();
+		}
+		return sum;
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final Options opt = new OptionsBuilder()
+				.include( RadiusNeighborSearchBenchmark.class.getSimpleName() )
+				.build();
+		new Runner( opt ).run();
+	}
+}
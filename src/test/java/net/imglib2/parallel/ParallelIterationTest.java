@@ -0,0 +1,213 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.parallel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ChunkedArrayImgFactory;
+import net.imglib2.img.cell.CellGroupCursor;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.view.Views;
+
+/**
+ * Tests {@link Chunks} and {@link ParallelIteration}.
+ *
+ * @author agent
+ */
+public class ParallelIterationTest
+{
+	private static ExecutorService executor;
+
+	private final long[] dims = { 13, 11, 7 };
+
+	@BeforeClass
+	public static void setup()
+	{
+		executor = Executors.newFixedThreadPool( 3 );
+	}
+
+	@AfterClass
+	public static void teardown()
+	{
+		executor.shutdown();
+	}
+
+	private static void assertCovers( final List< Chunk > chunks, final long size )
+	{
+		long next = 0;
+		for ( final Chunk chunk : chunks )
+		{
+			assertEquals( next, chunk.getStartIndex() );
+			assertTrue( chunk.size() > 0 );
+			next += chunk.size();
+		}
+		assertEquals( size, next );
+	}
+
+	@Test
+	public void testSplit()
+	{
+		for ( final int numChunks : new int[] { 1, 2, 3, 5, 7, 100, 2000 } )
+		{
+			assertCovers( Chunks.split( 1001, 1, numChunks ), 1001 );
+			assertCovers( Chunks.split( 1001, 13, numChunks ), 1001 );
+			for ( final ImgFactory< LongType > factory : factories() )
+			{
+				final Img< LongType > img = factory.create( dims, new LongType() );
+				final List< Chunk > chunks = Chunks.split( img, numChunks );
+				assertTrue( chunks.size() <= numChunks );
+				assertCovers( chunks, img.size() );
+			}
+		}
+	}
+
+	@Test
+	public void testSplitAlignment()
+	{
+		final Img< LongType > planar = new PlanarImgFactory< LongType >().create( dims, new LongType() );
+		for ( final Chunk chunk : Chunks.split( planar, 3 ) )
+			assertEquals( 0, chunk.getStartIndex() % ( 13 * 11 ) );
+
+		final Img< LongType > array = new ArrayImgFactory< LongType >().create( dims, new LongType() );
+		for ( final Chunk chunk : Chunks.split( array, 10 ) )
+			assertEquals( 0, chunk.getStartIndex() % 13 );
+
+		final Img< LongType > cells = new CellImgFactory< LongType >( 5 ).create( dims, new LongType() );
+		final List< Chunk > chunks = Chunks.split( cells, 1000 );
+		assertEquals( 3 * 3 * 2, chunks.size() );
+		for ( final Chunk chunk : chunks )
+		{
+			assertTrue( chunk instanceof CellChunk );
+			assertEquals( 1, ( ( CellChunk ) chunk ).getNumCells() );
+			assertTrue( chunk.cursor( cells ) instanceof CellGroupCursor );
+		}
+	}
+
+	@Test
+	public void testForEachChunk()
+	{
+		for ( final ImgFactory< LongType > factory : factories() )
+		{
+			final Img< LongType > img = factory.create( dims, new LongType() );
+			long i = 0;
+			for ( final LongType t : img )
+				t.set( i++ );
+
+			// every element is visited exactly once, in the right order
+			ParallelIteration.forEachChunk( img, 7, executor, ( cursor, size ) -> {
+				long expected = cursor.copyCursor().next().get();
+				for ( long j = 0; j < size; ++j )
+				{
+					final LongType t = cursor.next();
+					assertEquals( expected++, t.get() );
+					t.inc();
+				}
+			} );
+			i = 0;
+			for ( final LongType t : img )
+				assertEquals( ++i, t.get() );
+
+			ParallelIteration.forEach( img, t -> t.mul( 2 ) );
+			final long sum = ParallelIteration.reduce( Views.iterable( img ), 5, executor, ( cursor, size ) -> {
+				long s = 0;
+				for ( long j = 0; j < size; ++j )
+					s += cursor.next().get();
+				return s;
+			}, Long::sum );
+			assertEquals( img.size() * ( img.size() + 1 ), sum );
+		}
+	}
+
+	@Test( expected = IllegalStateException.class )
+	public void testException()
+	{
+		final Img< LongType > img = new ArrayImgFactory< LongType >().create( dims, new LongType() );
+		ParallelIteration.forEachChunk( img, 4, executor, ( cursor, size ) -> {
+			throw new IllegalStateException();
+		} );
+	}
+
+	@Test
+	public void testLocalizingCursor()
+	{
+		final Img< LongType > img = new CellImgFactory< LongType >( 4 ).create( dims, new LongType() );
+		final Cursor< LongType > ref = img.localizingCursor();
+		final long[] pos = new long[ 3 ];
+		final long[] refPos = new long[ 3 ];
+		for ( final Chunk chunk : Chunks.split( img, 5 ) )
+		{
+			final Cursor< LongType > c = chunk.localizingCursor( img );
+			for ( long j = 0; j < chunk.size(); ++j )
+			{
+				c.fwd();
+				ref.fwd();
+				c.localize( pos );
+				ref.localize( refPos );
+				assertArrayEquals( refPos, pos );
+			}
+		}
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private static ImgFactory< LongType >[] factories()
+	{
+		return new ImgFactory[] {
+				new ArrayImgFactory< LongType >(),
+				new PlanarImgFactory< LongType >(),
+				new ChunkedArrayImgFactory< LongType >( 5 ),
+				new CellImgFactory< LongType >( 4 ),
+				new CellImgFactory< LongType >( 5, 3, 2 ),
+				new ListImgFactory< LongType >()
+		};
+	}
+}
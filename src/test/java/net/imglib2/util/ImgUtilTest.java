@@ -36,13 +36,32 @@ package net.imglib2.util;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.Cursor;
 import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
 import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ChunkedArrayImgFactory;
+import net.imglib2.img.array.DirectArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.cell.DirectCellImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
 import net.imglib2.type.numeric.integer.IntType;
 import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.type.numeric.real.DoubleType;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
 
 import org.junit.Test;
 
@@ -333,4 +352,185 @@ public class ImgUtilTest
 		}
 	}
 
+	@SuppressWarnings( "unchecked" )
+	private static < T extends NativeType< T > > ImgFactory< T >[] factories()
+	{
+		return new ImgFactory[] {
+				new ArrayImgFactory< T >(),
+				new DirectArrayImgFactory< T >(),
+				new PlanarImgFactory< T >(),
+				new ChunkedArrayImgFactory< T >( 6 ),
+				new CellImgFactory< T >( 4, 3, 2 ),
+				new CellImgFactory< T >( 13, 3, 2 ),
+				new CellImgFactory< T >( 13, 11, 1 ),
+				new DirectCellImgFactory< T >( 5 ),
+				new ListImgFactory< T >()
+		};
+	}
+
+	@Test
+	public void testCopyImgToImg()
+	{
+		final long[] dims = { 13, 11, 5 };
+		for ( final ImgFactory< IntType > sf : ImgUtilTest.< IntType >factories() )
+		{
+			final Img< IntType > source = sf.create( dims, new IntType() );
+			int i = 0;
+			for ( final IntType t : Views.flatIterable( source ) )
+				t.set( i++ );
+			for ( final ImgFactory< IntType > tf : ImgUtilTest.< IntType >factories() )
+			{
+				final Img< IntType > target = tf.create( dims, new IntType() );
+				ImgUtil.copy( source, target );
+				i = 0;
+				for ( final IntType t : Views.flatIterable( target ) )
+					assertEquals( sf.getClass().getSimpleName() + " -> " + tf.getClass().getSimpleName(), i++, t.get() );
+			}
+		}
+	}
+
+	@Test
+	public void testCopyMultipleEntitiesPerPixel()
+	{
+		final long[] dims = { 7, 9, 4 };
+		for ( final ImgFactory< ComplexFloatType > sf : ImgUtilTest.< ComplexFloatType >factories() )
+		{
+			final Img< ComplexFloatType > source = sf.create( dims, new ComplexFloatType() );
+			int i = 0;
+			for ( final ComplexFloatType t : Views.flatIterable( source ) )
+				t.set( i++, -i );
+			for ( final ImgFactory< ComplexFloatType > tf : ImgUtilTest.< ComplexFloatType >factories() )
+			{
+				final Img< ComplexFloatType > target = tf.create( dims, new ComplexFloatType() );
+				ImgUtil.copy( source, target );
+				final Cursor< ComplexFloatType > s = Views.flatIterable( source ).cursor();
+				for ( final ComplexFloatType t : Views.flatIterable( target ) )
+					assertEquals( s.next(), t );
+			}
+		}
+	}
+
+	@Test
+	public void testCopyBitType()
+	{
+		final long[] dims = { 70, 9 };
+		final Img< BitType > source = new CellImgFactory< BitType >( 20 ).create( dims, new BitType() );
+		int i = 0;
+		for ( final BitType t : Views.flatIterable( source ) )
+			t.set( ( i++ ) % 3 == 0 );
+		final Img< BitType > target = new ArrayImgFactory< BitType >().create( dims, new BitType() );
+		ImgUtil.copy( source, target );
+		i = 0;
+		for ( final BitType t : Views.flatIterable( target ) )
+			assertEquals( ( i++ ) % 3 == 0, t.get() );
+	}
+
+	@Test
+	public void testCopyViews()
+	{
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( new long[] { 10, 10 }, new IntType() );
+		int i = 0;
+		for ( final IntType t : img )
+			t.set( i++ );
+		final RandomAccessibleInterval< IntType > source = Views.interval( img, new long[] { 2, 3 }, new long[] { 5, 7 } );
+		final Img< IntType > target = new CellImgFactory< IntType >( 3 ).create( source, new IntType() );
+		ImgUtil.copy( Views.permute( Views.permute( source, 0, 1 ), 0, 1 ), Views.translate( target, 1, 1 ) );
+		final RandomAccess< IntType > a = target.randomAccess();
+		for ( int y = 0; y < 5; ++y )
+			for ( int x = 0; x < 4; ++x )
+			{
+				a.setPosition( new int[] { x, y } );
+				assertEquals( ( y + 3 ) * 10 + x + 2, a.get().get() );
+			}
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testCopyDimensionMismatch()
+	{
+		final ArrayImgFactory< IntType > factory = new ArrayImgFactory< IntType >();
+		ImgUtil.copy( factory.create( new long[] { 3, 4 }, new IntType() ), factory.create( new long[] { 4, 3 }, new IntType() ) );
+	}
+
+	@Test
+	public void testCopyStridedArrays()
+	{
+		final long[] dims = { 4, 3, 5 };
+		final int[][] strides = { { 1, 4, 12 }, { 15, 1, 3 }, { 2, 8, 24 } };
+		final int offset = 7;
+		final int[] input = new int[ 130 ];
+		for ( int i = 0; i < input.length; ++i )
+			input[ i ] = 3 * i + 1;
+		for ( final ImgFactory< IntType > factory : ImgUtilTest.< IntType >factories() )
+		{
+			for ( final int[] stride : strides )
+			{
+				final Img< IntType > img = factory.create( dims, new IntType() );
+				ImgUtil.copy( input, offset, stride, img );
+				final Cursor< IntType > c = img.localizingCursor();
+				while ( c.hasNext() )
+				{
+					c.fwd();
+					final int o = offset + c.getIntPosition( 0 ) * stride[ 0 ] + c.getIntPosition( 1 ) * stride[ 1 ] + c.getIntPosition( 2 ) * stride[ 2 ];
+					assertEquals( factory.getClass().getSimpleName(), input[ o ], c.get().get() );
+				}
+
+				final int[] output = new int[ input.length ];
+				ImgUtil.copy( img, output, offset, stride );
+				// the pixel copied from input[ i ] must be written back to output[ i ]
+				final int[] expected = new int[ input.length ];
+				for ( final IntType t : img )
+					expected[ ( t.get() - 1 ) / 3 ] = t.get();
+				assertArrayEquals( factory.getClass().getSimpleName(), expected, output );
+			}
+		}
+	}
+
+	@Test
+	public void testParallelCopy()
+	{
+		final long[] dims = { 13, 11, 5 };
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			for ( final ImgFactory< IntType > sf : ImgUtilTest.< IntType >factories() )
+			{
+				final Img< IntType > source = sf.create( dims, new IntType() );
+				int i = 0;
+				for ( final IntType t : Views.flatIterable( source ) )
+					t.set( i++ );
+				for ( final ImgFactory< IntType > tf : ImgUtilTest.< IntType >factories() )
+				{
+					final Img< IntType > target = tf.create( dims, new IntType() );
+					ImgUtil.copy( source, target, 7, executor );
+					i = 0;
+					for ( final IntType t : Views.flatIterable( target ) )
+						assertEquals( sf.getClass().getSimpleName() + " -> " + tf.getClass().getSimpleName(), i++, t.get() );
+				}
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testCopyToFactory()
+	{
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( new long[] { 20, 20, 3 }, new IntType() );
+		int i = 0;
+		for ( final IntType t : img )
+			t.set( i++ );
+		final RandomAccessibleInterval< IntType > source = Views.interval( img, new long[] { 2, 3, 1 }, new long[] { 15, 17, 2 } );
+		for ( final NativeImgFactory< IntType > factory : Arrays.asList(
+				new ArrayImgFactory< IntType >(),
+				new PlanarImgFactory< IntType >(),
+				new CellImgFactory< IntType >( 4 ) ) )
+		{
+			final Img< IntType > copy = ImgUtil.copy( source, factory );
+			final Cursor< IntType > c = Views.flatIterable( source ).cursor();
+			for ( final IntType t : Views.flatIterable( copy ) )
+				assertEquals( c.next().get(), t.get() );
+		}
+	}
 }
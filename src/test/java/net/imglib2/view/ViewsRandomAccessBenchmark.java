@@ -0,0 +1,178 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.view;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.Intervals;
+
+/**
+ * JMH benchmark of {@link RandomAccess} through {@link Views}. A random access
+ * on each view is moved line by line over an interval of the view (with
+ * {@code fwd()} along X and {@code setPosition()} at the start of each line),
+ * summing the values.
+ * <p>
+ * The {@code extend*} views are accessed on an interval that reaches 16 pixels
+ * beyond the source image on each side.
+ *
+ * @author agent
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ViewsRandomAccessBenchmark
+{
+	@Param( { "img", "interval", "translate", "permute", "hyperSlice", "subsample", "extendZero", "extendBorder", "extendMirrorSingle", "extendPeriodic" } )
+	public String view;
+
+	private RandomAccessible< IntType > source;
+
+	private Interval interval;
+
+	@Setup
+	public void setup()
+	{
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( new long[] { 256, 256, 32 }, new IntType() );
+		int i = 0;
+		for ( final IntType t : img )
+			t.set( i++ );
+
+		final RandomAccessibleInterval< IntType > rai;
+		switch ( view )
+		{
+		case "img":
+			rai = img;
+			break;
+		case "interval":
+			rai = Views.interval( img, new long[] { 10, 10, 2 }, new long[] { 245, 245, 29 } );
+			break;
+		case "translate":
+			rai = Views.translate( img, 10, -20, 3 );
+			break;
+		case "permute":
+			rai = Views.permute( img, 0, 2 );
+			break;
+		case "hyperSlice":
+			rai = Views.hyperSlice( img, 2, 16 );
+			break;
+		case "subsample":
+			rai = Views.subsample( img, 2 );
+			break;
+		case "extendZero":
+			rai = Views.interval( Views.extendZero( img ), Intervals.expand( img, 16 ) );
+			break;
+		case "extendBorder":
+			rai = Views.interval( Views.extendBorder( img ), Intervals.expand( img, 16 ) );
+			break;
+		case "extendMirrorSingle":
+			rai = Views.interval( Views.extendMirrorSingle( img ), Intervals.expand( img, 16 ) );
+			break;
+		case "extendPeriodic":
+			rai = Views.interval( Views.extendPeriodic( img ), Intervals.expand( img, 16 ) );
+			break;
+		default:
+			throw new IllegalArgumentException( view );
+		}
+		source = rai;
+		interval = rai;
+	}
+
+	@Benchmark
+	public long randomAccess()
+	{
+		final int n = interval.numDimensions();
+		final long[] position = new long[ n ];
+		interval.min( position );
+		final long[] max = new long[ n ];
+		interval.max( max );
+		final long width = interval.dimension( 0 );
+
+		final RandomAccess< IntType > a = source.randomAccess( interval );
+		long sum = 0;
+		while ( true )
+		{
+			a.setPosition( position );
+			for ( long x = 0; x < width; ++x )
+			{
+				sum += a.get().get();
+				a.fwd( 0 );
+			}
+			int d = 1;
+			for ( ; d < n; ++d )
+			{
+				if ( ++position[ d ] <= max[ d ] )
+					break;
+				position[ d ] = interval.min( d );
+			}
+			if ( d == n )
+				return sum;
+		}
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final Options opt = new OptionsBuilder()
+				.include( ViewsRandomAccessBenchmark.class.getSimpleName() )
+				.build();
+		new Runner( opt ).run();
+	}
+}